@@ -68,6 +68,11 @@ public abstract class AsyncServletUpnpStream extends UpnpStream implements Async
         return request;
     }
 
+    @Override
+    protected String getRequestHeader(String name) {
+        return getRequest().getHeader(name);
+    }
+
     protected HttpServletResponse getResponse() {
         ServletResponse response;
         if ((response = asyncContext.getResponse()) == null) {
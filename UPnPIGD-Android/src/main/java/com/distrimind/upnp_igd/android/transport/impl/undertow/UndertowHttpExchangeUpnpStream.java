@@ -54,6 +54,11 @@ public abstract class UndertowHttpExchangeUpnpStream extends UpnpStream {
 		return httpExchange;
 	}
 
+	@Override
+	protected String getRequestHeader(String name) {
+		return getHttpExchange().getRequestHeaders().getFirst(name);
+	}
+
 	private UpnpRequest.Method getRequestMethod()
 	{
 		return UpnpRequest.Method.getByHttpName(getHttpExchange().getRequestMethod().toString());
@@ -26,7 +26,18 @@ import java.util.concurrent.ExecutorService;
  * @since 1.2.0
  */
 public class UndertowStreamClientConfigurationImpl extends AbstractStreamClientConfiguration {
-	private boolean usePersistentConnections = false;
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+	public static final int DEFAULT_MAX_REQUESTS_PER_CONNECTION = 1;
+	public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 10;
+	public static final int DEFAULT_BUFFER_SIZE = 4096;
+
+	private boolean usePersistentConnections = true;
+	private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	private int maxRequestsPerConnection = DEFAULT_MAX_REQUESTS_PER_CONNECTION;
+	private int idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+	private int bufferSize = DEFAULT_BUFFER_SIZE;
+	private boolean directBuffers = true;
+
 	public UndertowStreamClientConfigurationImpl(XnioWorker timeoutExecutorService) {
 		super(timeoutExecutorService);
 	}
@@ -39,7 +50,9 @@ public class UndertowStreamClientConfigurationImpl extends AbstractStreamClientC
 	}
 
 	/**
-	 * Defaults to <code>false</code>, avoiding obscure bugs in the JDK.
+	 * Defaults to <code>true</code>, connections are kept open in a pool per host and reused by
+	 * the next requests. When <code>false</code>, each request is sent with a
+	 * <code>Connection: close</code> header on a new connection.
 	 */
 	public boolean isUsePersistentConnections() {
 		return usePersistentConnections;
@@ -49,6 +62,80 @@ public class UndertowStreamClientConfigurationImpl extends AbstractStreamClientC
 		this.usePersistentConnections = usePersistentConnections;
 	}
 
+	/**
+	 * @return The maximum number of connections opened to the same host and port. Defaults to
+	 * {@value #DEFAULT_MAX_CONNECTIONS_PER_HOST}.
+	 * @since 1.5.0
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		if (maxConnectionsPerHost < 1)
+			throw new IllegalArgumentException("maxConnectionsPerHost must be strictly positive");
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * @return The maximum number of requests sent on the same connection before their responses
+	 * are received, once all the connections of a host are busy. Only connections which already
+	 * carried a request and stayed open are shared. Defaults to
+	 * {@value #DEFAULT_MAX_REQUESTS_PER_CONNECTION}, requests beyond the limits wait for a connection.
+	 * @since 1.5.0
+	 */
+	public int getMaxRequestsPerConnection() {
+		return maxRequestsPerConnection;
+	}
+
+	public void setMaxRequestsPerConnection(int maxRequestsPerConnection) {
+		if (maxRequestsPerConnection < 1)
+			throw new IllegalArgumentException("maxRequestsPerConnection must be strictly positive");
+		this.maxRequestsPerConnection = maxRequestsPerConnection;
+	}
+
+	/**
+	 * @return The number of seconds an idle connection is kept open for the next request. Keep it below
+	 * the keep-alive timeout of the remote servers. Defaults to {@value #DEFAULT_IDLE_TIMEOUT_SECONDS}.
+	 * @since 1.5.0
+	 */
+	public int getIdleTimeoutSeconds() {
+		return idleTimeoutSeconds;
+	}
+
+	public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+		if (idleTimeoutSeconds < 0)
+			throw new IllegalArgumentException("idleTimeoutSeconds must be positive");
+		this.idleTimeoutSeconds = idleTimeoutSeconds;
+	}
+
+	/**
+	 * @return The size of the buffers of the pool shared by all the connections of the client.
+	 * Defaults to {@value #DEFAULT_BUFFER_SIZE}.
+	 * @since 1.5.0
+	 */
+	public int getBufferSize() {
+		return bufferSize;
+	}
+
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize < 1)
+			throw new IllegalArgumentException("bufferSize must be strictly positive");
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * @return <code>true</code> if the shared buffers are allocated outside the heap. Defaults to <code>true</code>.
+	 * @since 1.5.0
+	 */
+	public boolean isDirectBuffers() {
+		return directBuffers;
+	}
+
+	public void setDirectBuffers(boolean directBuffers) {
+		this.directBuffers = directBuffers;
+	}
+
 	@Override
 	public XnioWorker getRequestExecutorService() {
 		return (XnioWorker)super.getRequestExecutorService();
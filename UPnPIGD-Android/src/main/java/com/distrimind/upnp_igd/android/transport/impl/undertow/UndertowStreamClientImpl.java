@@ -21,6 +21,7 @@ import com.distrimind.upnp.Log;
 import com.distrimind.upnp.http.IHeaders;
 import com.distrimind.upnp.model.message.*;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.platform.UpnpIGDThreadFactory;
 import com.distrimind.upnp.transport.spi.InitializationException;
 import com.distrimind.upnp.transport.spi.StreamClient;
 import com.distrimind.upnp.util.Exceptions;
@@ -36,16 +37,51 @@ import org.xnio.channels.StreamSourceChannel;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.*;
 import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
 
 
 /**
+ * HTTP client on the Undertow/XNIO worker, requests are exchanged without blocking a thread.
+ * <p>
+ * The client owns one buffer pool shared by all its connections. With
+ * {@link UndertowStreamClientConfigurationImpl#isUsePersistentConnections()}, connections are kept in a
+ * pool per host and port: at most {@link UndertowStreamClientConfigurationImpl#getMaxConnectionsPerHost()}
+ * connections are opened to the same host, idle connections are closed by a timer after
+ * {@link UndertowStreamClientConfigurationImpl#getIdleTimeoutSeconds()}, and closed connections are
+ * dropped before being reused. Once all the connections of a host are busy, up to
+ * {@link UndertowStreamClientConfigurationImpl#getMaxRequestsPerConnection()} requests are queued on the
+ * same connection, Undertow sends each of them as soon as the previous response has been received.
+ * </p>
+ * <p>
+ * A request failing on a reused connection, usually because the server closed it, is sent again
+ * once on a new connection if it is {@link StreamRequestMessage#isIdempotent() idempotent}, or if
+ * the failure occurred before the exchange was started. A SOAP action the server might already have
+ * executed is never sent twice.
+ * </p>
+ *
  * @author Jason Mahdjoub
  * @since 1.2.0
  */
@@ -57,6 +93,11 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 	final protected UndertowStreamClientConfigurationImpl configuration;
 	private final UndertowClient client;
 	private final OptionMap options;
+	private final ByteBufferPool bufferPool;
+	private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService evictionTimer;
+	private volatile boolean stopped;
+
 	public UndertowStreamClientImpl(UndertowStreamClientConfigurationImpl configuration) throws InitializationException {
 		this.configuration = configuration;
 
@@ -66,6 +107,7 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 
 		log.info("Starting Undertow HttpClient...");
 		this.client = UndertowClient.getInstance();
+		this.bufferPool = new DefaultByteBufferPool(configuration.isDirectBuffers(), configuration.getBufferSize());
 		int timeout=configuration.getTimeoutSeconds();
 
 		options = OptionMap.builder()
@@ -74,6 +116,11 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 				.set(Options.SSL_CLIENT_SESSION_TIMEOUT, timeout)
 				.set(Options.SSL_SERVER_SESSION_TIMEOUT, timeout)
 				.getMap();
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new UpnpIGDThreadFactory("undertow-stream-client"));
+		timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		long periodMillis = Math.max(1000L, configuration.getIdleTimeoutSeconds() * 1000L);
+		timer.scheduleWithFixedDelay(this::evictIdleConnections, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		this.evictionTimer = timer;
 	}
 
 	@Override
@@ -83,82 +130,188 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 
 	@Override
 	public StreamResponseMessage sendRequest(StreamRequestMessage requestMessage) throws InterruptedException {
-
-		final UpnpRequest requestOperation = requestMessage.getOperation();
-		if (log.isDebugEnabled()) {
-			log.debug("Preparing HTTP request message with method '" + requestOperation.getHttpMethodName() + "': " + requestMessage);
-		}
-
-
-		IoFuture<ClientConnection> connectionFuture=null;
-		CompletableFuture<StreamResponseMessage> responseFuture=null;
-		try (ByteBufferPool bufferPool = new DefaultByteBufferPool(true, 4096)){
-
-			int timeout=configuration.getTimeoutSeconds();
-
-			connectionFuture= client.connect(requestOperation.getURI(), configuration.getRequestExecutorService(), bufferPool, options);
-
-			if (connectionFuture.await(timeout, TimeUnit.SECONDS)==IoFuture.Status.DONE) {
-				try(ClientConnection connection=connectionFuture.get()) {
-					connectionFuture = null;
-
-					ClientRequest request = new ClientRequest()
-							.setPath(requestOperation.getURI().getPath())
-							.setMethod(Objects.requireNonNull(Methods.fromString(requestOperation.getHttpMethodName())));
-
-
-					applyRequestProperties(request, requestMessage, requestOperation);
-					responseFuture = new CompletableFuture<>();
-					applyRequestBodyAndGetResponse(connection, request, requestMessage, responseFuture);
-					StreamResponseMessage r = responseFuture.get();
-					responseFuture = null;
-					return r;
-				}
-			}
-			else {
-				if (log.isWarnEnabled())
-					log.warn("HTTP request failed: " + requestMessage);
-				return null;
-			}
-
+		CompletableFuture<StreamResponseMessage> responseFuture = startRequest(requestMessage);
+		try {
+			return handleFailure(requestMessage, responseFuture).get();
 		}
 		catch (InterruptedException ex) {
 			if (log.isDebugEnabled())
 				log.debug("Interruption, aborting request: " + requestMessage);
-
+			responseFuture.cancel(true);
 			throw new InterruptedException("HTTP request interrupted and aborted");
-
 		}
-		catch (ProtocolException ex) {
+		catch (ExecutionException ex) {
 			if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
 			return null;
 		}
-		catch (IOException ex) {
+	}
 
-			if (log.isDebugEnabled())
-				log.debug("Exception occurred, trying to read the error stream: ", Exceptions.unwrap(ex));
-			return null;
+	/**
+	 * Connects and exchanges the request with the XNIO worker's I/O threads, no thread waits for the response.
+	 * A connection still busy with the request when the timeout elapses or when the returned future is
+	 * cancelled is closed.
+	 */
+	@Override
+	public CompletableFuture<StreamResponseMessage> sendRequestAsync(StreamRequestMessage requestMessage) {
+		CompletableFuture<StreamResponseMessage> responseFuture = startRequest(requestMessage);
+		CompletableFuture<StreamResponseMessage> result = handleFailure(requestMessage, responseFuture);
+		result.whenComplete((r, ex) -> {
+			if (result.isCancelled())
+				responseFuture.cancel(true);
+		});
+		return result;
+	}
+
+	protected CompletableFuture<StreamResponseMessage> startRequest(StreamRequestMessage requestMessage) {
+		final UpnpRequest requestOperation = requestMessage.getOperation();
+		if (log.isDebugEnabled()) {
+			log.debug("Preparing HTTP request message with method '" + requestOperation.getHttpMethodName() + "': " + requestMessage);
 		}
-		catch (Exception ex) {
-			if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
-			return null;
 
-		} finally {
+		final CompletableFuture<StreamResponseMessage> responseFuture = new CompletableFuture<>();
+		try {
+			URI uri = requestOperation.getURI();
+			int port = uri.getPort() == -1 ? ("https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80) : uri.getPort();
+			// Counted as used until the response is received, so that the eviction doesn't drop it
+			HostPool pool = pools.compute(uri.getHost() + ":" + port, (key, hostPool) -> {
+				HostPool used = hostPool == null ? new HostPool(uri) : hostPool;
+				used.users.incrementAndGet();
+				return used;
+			});
+			responseFuture.whenComplete((r, ex) -> pool.users.decrementAndGet());
+			sendRequest(pool, requestMessage, responseFuture, true);
+		} catch (RuntimeException ex) {
+			responseFuture.completeExceptionally(ex);
+		}
+		return responseFuture.orTimeout(configuration.getTimeoutSeconds(), TimeUnit.SECONDS);
+	}
+
+	protected void sendRequest(HostPool pool, StreamRequestMessage requestMessage, CompletableFuture<StreamResponseMessage> responseFuture, boolean retry) {
+		CompletableFuture<PooledConnection> connectionFuture = pool.acquire();
+		// Gives up waiting for a connection
+		responseFuture.whenComplete((r, ex) -> connectionFuture.cancel(false));
+		connectionFuture.whenComplete((connection, ex) -> {
+			if (ex != null) {
+				responseFuture.completeExceptionally(ex);
+			} else if (responseFuture.isDone()) {
+				pool.release(connection, true);
+			} else {
+				exchange(pool, connection, requestMessage, responseFuture, retry);
+			}
+		});
+	}
 
-			if (connectionFuture != null) {
-				connectionFuture.cancel();
+	protected void exchange(HostPool pool, PooledConnection connection, StreamRequestMessage requestMessage, CompletableFuture<StreamResponseMessage> responseFuture, boolean retry) {
+		final CompletableFuture<StreamResponseMessage> exchangeFuture = new CompletableFuture<>();
+		final AtomicBoolean exchangeStarted = new AtomicBoolean();
+		// A response which is still expected can't be read by the next request, the connection is closed
+		responseFuture.whenComplete((r, ex) -> {
+			if (exchangeFuture.cancel(false))
+				IoUtils.safeClose(connection.connection);
+		});
+		// Timeouts aren't retried, the server might be processing the request
+		exchangeFuture.whenComplete((response, ex) -> {
+			if (ex == null) {
+				pool.release(connection, response != null && isPersistent(response));
+				responseFuture.complete(response);
+				return;
+			}
+			pool.release(connection, false);
+			Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+			// Not sent again if the server might have executed it, e.g. a SOAP action
+			if (retry && connection.reused && cause instanceof IOException && !(cause instanceof InterruptedIOException) && !responseFuture.isDone()
+					&& (requestMessage.isIdempotent() || !exchangeStarted.get())) {
+				if (log.isDebugEnabled()) {
+					log.debug("Reused connection closed by the server, sending request again: " + cause);
+				}
+				sendRequest(pool, requestMessage, responseFuture, false);
+			} else {
+				responseFuture.completeExceptionally(cause);
+			}
+		});
+		try {
+			final UpnpRequest requestOperation = requestMessage.getOperation();
+			ClientRequest request = new ClientRequest()
+					.setPath(requestOperation.getURI().getPath())
+					.setMethod(Objects.requireNonNull(Methods.fromString(requestOperation.getHttpMethodName())));
+
+			applyRequestProperties(request, requestMessage, requestOperation);
+			if (!configuration.isUsePersistentConnections())
+				request.getRequestHeaders().put(Headers.CONNECTION, "close");
+			if (log.isDebugEnabled()) {
+				log.debug("Sending HTTP request on " + (connection.reused ? "reused" : "new") + " connection: " + requestMessage);
 			}
-			if (responseFuture!=null) {
+			applyRequestBodyAndGetResponse(connection.connection, request, requestMessage, exchangeFuture, exchangeStarted);
+		} catch (IOException | RuntimeException ex) {
+			exchangeFuture.completeExceptionally(ex);
+		}
+	}
 
-				responseFuture.cancel(true);
+	protected boolean isPersistent(StreamResponseMessage response) {
+		return configuration.isUsePersistentConnections()
+				&& !"close".equalsIgnoreCase(response.getHeaders().getFirstHeader(Headers.CONNECTION_STRING));
+	}
 
+	protected CompletableFuture<StreamResponseMessage> handleFailure(StreamRequestMessage requestMessage, CompletableFuture<StreamResponseMessage> responseFuture) {
+		return responseFuture.exceptionally(t -> {
+			Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+			if (cause instanceof TimeoutException) {
+				if (log.isInfoEnabled()) log.info(
+						"Timeout of " + configuration.getTimeoutSeconds()
+								+ " seconds while waiting for HTTP request to complete, aborting: " + requestMessage
+				);
+			} else if (cause instanceof CancellationException) {
+				if (log.isDebugEnabled())
+					log.debug("HTTP request cancelled: " + requestMessage);
+			} else if (cause instanceof IOException) {
+				if (log.isDebugEnabled())
+					log.debug("Exception occurred, aborting request: ", Exceptions.unwrap(cause));
+			} else {
+				if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(cause));
 			}
-		}
+			return null;
+		});
 	}
 
 	@Override
 	public void stop() {
-		// NOOP
+		stopped = true;
+		evictionTimer.shutdownNow();
+		for (HostPool pool : pools.values()) {
+			pool.closeIdleConnections(true);
+		}
+		pools.clear();
+		bufferPool.close();
+	}
+
+	/**
+	 * Closes the connections idle for longer than the configured timeout, and drops the pools
+	 * of the hosts without connections. Called periodically by a timer.
+	 *
+	 * @since 1.5.0
+	 */
+	public void evictIdleConnections() {
+		for (Map.Entry<String, HostPool> entry : pools.entrySet()) {
+			entry.getValue().closeIdleConnections(false);
+			pools.computeIfPresent(entry.getKey(), (key, pool) -> pool.isUnused() ? null : pool);
+		}
+	}
+
+	/**
+	 * @return The number of hosts with a pool of connections.
+	 * @since 1.5.0
+	 */
+	public int getPoolCount() {
+		return pools.size();
+	}
+
+	/**
+	 * @return The number of open connections, busy or idle, to the given host and port.
+	 * @since 1.5.0
+	 */
+	public int getConnectionCount(String host, int port) {
+		HostPool pool = pools.get(host + ":" + port);
+		return pool == null ? 0 : pool.getConnectionCount();
 	}
 
 	protected void applyRequestProperties(ClientRequest request, StreamRequestMessage requestMessage, UpnpRequest requestOperation) {
@@ -190,7 +343,10 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 		request.getRequestHeaders().put(Headers.HOST, requestOperation.getURI().getHost());
 	}
 
-	protected void applyRequestBodyAndGetResponse(ClientConnection connection, ClientRequest request, StreamRequestMessage requestMessage, CompletableFuture<StreamResponseMessage> responseFuture) throws IOException {
+	/**
+	 * @param exchangeStarted Set once the request is handed to the connection, the server might receive it from then on.
+	 */
+	protected void applyRequestBodyAndGetResponse(ClientConnection connection, ClientRequest request, StreamRequestMessage requestMessage, CompletableFuture<StreamResponseMessage> responseFuture, AtomicBoolean exchangeStarted) throws IOException {
 		if (log.isDebugEnabled()) {
 			log.debug("Sending HTTP request: " + requestMessage);
 		}
@@ -219,50 +375,67 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 		connection.sendRequest(request, new ClientCallback<>() {
 			@Override
 			public void completed(ClientExchange exchange) {
-				try (StreamSinkChannel requestChannel=exchange.getRequestChannel()){
-
-					if (bytes!=null)
-						requestChannel.write(ByteBuffer.wrap(bytes));
-					requestChannel.shutdownWrites();
-					if (!requestChannel.flush()) {
-						requestChannel.getWriteSetter().set(ChannelListeners.flushingChannelListener(null, null));
-						requestChannel.resumeWrites();
-					}
-
-					exchange.setResponseListener(new ClientCallback<>() {
-						@Override
-						public void completed(ClientExchange result) {
-							try {
-
-								responseFuture.complete(createResponse(result, request));
-							} catch (Exception e) {
-								log.error("Failed to read response", e);
-								responseFuture.complete(null);
-							}
-						}
-
-						@Override
-						public void failed(IOException e) {
-							log.error("Failed to get response", e);
+				exchangeStarted.set(true);
+				exchange.setResponseListener(new ClientCallback<>() {
+					@Override
+					public void completed(ClientExchange result) {
+						try {
+
+							responseFuture.complete(createResponse(result, request));
+						} catch (Exception e) {
+							log.error("Failed to read response", e);
 							responseFuture.complete(null);
 						}
-					});
-				} catch (IOException e) {
-					log.error("Failed to write body", e);
-					responseFuture.complete(null);
-				}
+					}
+
+					@Override
+					public void failed(IOException e) {
+						responseFuture.completeExceptionally(e);
+					}
+				});
+				writeRequestBody(exchange.getRequestChannel(), bytes == null ? ByteBuffer.allocate(0) : ByteBuffer.wrap(bytes), responseFuture);
 			}
 
 			@Override
 			public void failed(IOException e) {
-				log.error("Failed to send request", e);
-				responseFuture.complete(null);
+				responseFuture.completeExceptionally(e);
 			}
 		});
 
 
 	}
 
+	/**
+	 * Writes the body as the channel accepts it, then terminates the request. The channel must not be closed
+	 * before being flushed, that would abort the connection.
+	 */
+	protected void writeRequestBody(StreamSinkChannel requestChannel, ByteBuffer body, CompletableFuture<StreamResponseMessage> responseFuture) {
+		ChannelListener<StreamSinkChannel> writer = channel -> {
+			try {
+				while (body.hasRemaining()) {
+					if (channel.write(body) == 0) {
+						channel.resumeWrites();
+						return;
+					}
+				}
+				channel.suspendWrites();
+				channel.shutdownWrites();
+				if (!channel.flush()) {
+					channel.getWriteSetter().set(ChannelListeners.flushingChannelListener(null, (c, e) -> {
+						IoUtils.safeClose(c);
+						responseFuture.completeExceptionally(e);
+					}));
+					channel.resumeWrites();
+				}
+			} catch (IOException e) {
+				IoUtils.safeClose(channel);
+				responseFuture.completeExceptionally(e);
+			}
+		};
+		requestChannel.getWriteSetter().set(writer);
+		writer.handleEvent(requestChannel);
+	}
+
 	protected StreamResponseMessage createResponse(ClientExchange result, ClientRequest request) throws Exception {
 
 		final ClientResponse response=result.getResponse();
@@ -320,4 +493,278 @@ public class UndertowStreamClientImpl implements StreamClient<UndertowStreamClie
 		return responseMessage;
 	}
 
-}
\ No newline at end of file
+	/**
+	 * A connection of a {@link HostPool}, with the number of requests it carries.
+	 */
+	protected static class PooledConnection {
+
+		final ClientConnection connection;
+		int exchanges;
+		long lastUsedMillis;
+		boolean reused;
+		boolean persistent;
+		boolean broken;
+
+		PooledConnection(ClientConnection connection) {
+			this.connection = connection;
+		}
+
+		boolean isUsable(long nowMillis, long idleTimeoutMillis) {
+			return !broken && connection.isOpen() && (exchanges > 0 || nowMillis - lastUsedMillis < idleTimeoutMillis);
+		}
+	}
+
+	/**
+	 * The connections to one host and port. Callbacks waiting for a connection are completed outside the lock.
+	 */
+	protected class HostPool {
+
+		final URI uri;
+		// Requests using this pool, it isn't dropped while used
+		final AtomicInteger users = new AtomicInteger();
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Deque<PooledConnection> idle = new ArrayDeque<>();
+		private final List<PooledConnection> busy = new ArrayList<>();
+		private final Deque<CompletableFuture<PooledConnection>> waiting = new ArrayDeque<>();
+		private int connecting;
+
+		HostPool(URI uri) {
+			this.uri = uri;
+		}
+
+		/**
+		 * @return A future completed with an idle, a shared or a new connection, as soon as one is available.
+		 */
+		CompletableFuture<PooledConnection> acquire() {
+			CompletableFuture<PooledConnection> future = new CompletableFuture<>();
+			PooledConnection connection;
+			lock.lock();
+			try {
+				if (stopped) {
+					future.completeExceptionally(new IOException("Stream client stopped"));
+					return future;
+				}
+				connection = lease();
+				if (connection == null) {
+					if (getConnectionCount() >= configuration.getMaxConnectionsPerHost()) {
+						waiting.addLast(future);
+						return future;
+					}
+					connecting++;
+				}
+			} finally {
+				lock.unlock();
+			}
+			if (connection == null)
+				connect(future);
+			else
+				future.complete(connection);
+			return future;
+		}
+
+		void release(PooledConnection connection, boolean reusable) {
+			List<Runnable> actions = new ArrayList<>();
+			boolean close = false;
+			lock.lock();
+			try {
+				connection.exchanges--;
+				if (reusable && !stopped && connection.connection.isOpen()) {
+					connection.persistent = true;
+					connection.lastUsedMillis = System.currentTimeMillis();
+				} else {
+					connection.broken = true;
+				}
+				if (connection.exchanges == 0) {
+					busy.remove(connection);
+					if (connection.broken)
+						close = true;
+					else
+						idle.addLast(connection);
+				}
+				serveWaiting(actions);
+			} finally {
+				lock.unlock();
+			}
+			if (close)
+				IoUtils.safeClose(connection.connection);
+			actions.forEach(Runnable::run);
+		}
+
+		void closeIdleConnections(boolean all) {
+			List<PooledConnection> expired = new ArrayList<>();
+			List<CompletableFuture<PooledConnection>> cancelled = new ArrayList<>();
+			lock.lock();
+			try {
+				long now = System.currentTimeMillis();
+				idle.removeIf(connection -> {
+					if (all || !connection.isUsable(now, getIdleTimeoutMillis())) {
+						expired.add(connection);
+						return true;
+					}
+					return false;
+				});
+				if (all) {
+					cancelled.addAll(waiting);
+					waiting.clear();
+				}
+			} finally {
+				lock.unlock();
+			}
+			for (PooledConnection connection : expired) {
+				IoUtils.safeClose(connection.connection);
+			}
+			for (CompletableFuture<PooledConnection> future : cancelled) {
+				future.completeExceptionally(new IOException("Stream client stopped"));
+			}
+		}
+
+		boolean isUnused() {
+			lock.lock();
+			try {
+				return users.get() == 0 && getConnectionCount() == 0 && waiting.isEmpty();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int getConnectionCount() {
+			lock.lock();
+			try {
+				return idle.size() + busy.size() + connecting;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		/**
+		 * Must be called with the lock held.
+		 *
+		 * @return The most recently used idle connection or, if no other connection may be opened, the
+		 * persistent connection carrying the fewest requests below the configured limit, or <code>null</code>.
+		 */
+		private PooledConnection lease() {
+			long now = System.currentTimeMillis();
+			PooledConnection connection;
+			// Most recently used first, it is the least likely to have been closed by the server
+			while ((connection = idle.pollLast()) != null) {
+				if (connection.isUsable(now, getIdleTimeoutMillis())) {
+					return lease(connection);
+				}
+				IoUtils.safeClose(connection.connection);
+			}
+			if (idle.size() + busy.size() + connecting < configuration.getMaxConnectionsPerHost())
+				return null;
+			PooledConnection shared = null;
+			for (PooledConnection c : busy) {
+				if (c.persistent && c.exchanges < configuration.getMaxRequestsPerConnection() && c.isUsable(now, getIdleTimeoutMillis())
+						&& (shared == null || c.exchanges < shared.exchanges))
+					shared = c;
+			}
+			if (shared != null) {
+				shared.exchanges++;
+				shared.reused = true;
+			}
+			return shared;
+		}
+
+		private PooledConnection lease(PooledConnection connection) {
+			if (connection.exchanges++ == 0)
+				busy.add(connection);
+			connection.reused = true;
+			return connection;
+		}
+
+		/**
+		 * Must be called with the lock held, the collected actions are run once it is released.
+		 */
+		private void serveWaiting(List<Runnable> actions) {
+			CompletableFuture<PooledConnection> future;
+			while ((future = waiting.peekFirst()) != null) {
+				if (future.isDone()) {
+					waiting.pollFirst();
+					continue;
+				}
+				PooledConnection connection = lease();
+				if (connection != null) {
+					final CompletableFuture<PooledConnection> f = waiting.pollFirst();
+					actions.add(() -> {
+						if (!f.complete(connection))
+							release(connection, true);
+					});
+				} else if (getConnectionCount() < configuration.getMaxConnectionsPerHost()) {
+					final CompletableFuture<PooledConnection> f = waiting.pollFirst();
+					connecting++;
+					actions.add(() -> connect(f));
+				} else {
+					break;
+				}
+			}
+		}
+
+		private void connect(CompletableFuture<PooledConnection> future) {
+			try {
+				client.connect(new ClientCallback<>() {
+					@Override
+					public void completed(ClientConnection clientConnection) {
+						PooledConnection connection = new PooledConnection(clientConnection);
+						clientConnection.addCloseListener(c -> closed(connection));
+						lock.lock();
+						try {
+							connecting--;
+							connection.exchanges = 1;
+							busy.add(connection);
+						} finally {
+							lock.unlock();
+						}
+						if (stopped) {
+							release(connection, false);
+							future.completeExceptionally(new IOException("Stream client stopped"));
+						} else if (!future.complete(connection)) {
+							release(connection, true);
+						}
+					}
+
+					@Override
+					public void failed(IOException e) {
+						connectionFailed(future, e);
+					}
+				}, uri, configuration.getRequestExecutorService(), bufferPool, options);
+			} catch (RuntimeException ex) {
+				connectionFailed(future, ex);
+			}
+		}
+
+		private void connectionFailed(CompletableFuture<PooledConnection> future, Exception ex) {
+			List<Runnable> actions = new ArrayList<>();
+			lock.lock();
+			try {
+				connecting--;
+				serveWaiting(actions);
+			} finally {
+				lock.unlock();
+			}
+			future.completeExceptionally(ex);
+			actions.forEach(Runnable::run);
+		}
+
+		/**
+		 * Called when a connection was closed, by the server or by this client.
+		 */
+		private void closed(PooledConnection connection) {
+			List<Runnable> actions = new ArrayList<>();
+			lock.lock();
+			try {
+				connection.broken = true;
+				if (idle.remove(connection))
+					serveWaiting(actions);
+			} finally {
+				lock.unlock();
+			}
+			actions.forEach(Runnable::run);
+		}
+
+		private long getIdleTimeoutMillis() {
+			return configuration.getIdleTimeoutSeconds() * 1000L;
+		}
+	}
+}
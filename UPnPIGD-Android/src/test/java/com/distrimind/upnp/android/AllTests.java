@@ -56,6 +56,7 @@ import com.distrimind.upnp.android.transport.JDKServerJDKClientTest;
 import com.distrimind.upnp.android.transport.JDKServerUndertowClientTest;
 import com.distrimind.upnp.android.transport.UndertowServerJDKClientTest;
 import com.distrimind.upnp.android.transport.UndertowServerUndertowClientTest;
+import com.distrimind.upnp.android.transport.UndertowStreamClientPoolTest;
 import com.distrimind.flexilogxml.log.Level;
 
 import java.io.File;
@@ -71,7 +72,8 @@ public class AllTests {
 						JDKServerJDKClientTest.class,
 						UndertowServerUndertowClientTest.class,
 						UndertowServerJDKClientTest.class,
-						JDKServerUndertowClientTest.class
+						JDKServerUndertowClientTest.class,
+						UndertowStreamClientPoolTest.class
 				))
 		);
 		if (additionalTestGroups!=null)
@@ -0,0 +1,208 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.android.transport;
+
+import com.distrimind.upnp.android.transport.impl.undertow.UndertowStreamClientConfigurationImpl;
+import com.distrimind.upnp.android.transport.impl.undertow.UndertowStreamClientImpl;
+import com.distrimind.upnp.android.transport.impl.undertow.Worker;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+import org.xnio.XnioWorker;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class UndertowStreamClientPoolTest {
+
+    protected HttpServer server;
+    protected ExecutorService serverExecutor;
+    protected XnioWorker worker;
+    protected final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    protected final AtomicInteger droppedRequests = new AtomicInteger();
+
+    @BeforeMethod
+    public void start() throws IOException {
+        clientPorts.clear();
+        droppedRequests.set(0);
+        worker = Worker.createDefaultWorker();
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            try {
+                if (exchange.getRequestURI().getPath().equals("/slow"))
+                    Thread.sleep(200);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.getRequestBody().readAllBytes();
+            if (exchange.getRequestURI().getPath().equals("/drop")) {
+                droppedRequests.incrementAndGet();
+                // The server closes the connection without response
+                throw new IOException("Request dropped");
+            }
+            byte[] response = exchange.getRequestURI().getPath().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=\"utf-8\"");
+            if (exchange.getRequestURI().getPath().equals("/close"))
+                exchange.getResponseHeaders().add("Connection", "close");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterMethod
+    public void stop() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        worker.shutdownNow();
+    }
+
+    @Test
+    public void reuseConnection() throws Exception {
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(new UndertowStreamClientConfigurationImpl(worker, 5));
+        try {
+            for (int i = 0; i < 5; i++) {
+                StreamResponseMessage response = client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc" + i + ".xml")));
+                assertNotNull(response);
+                assertEquals(response.getBodyString(), "/desc" + i + ".xml");
+            }
+            assertEquals(clientPorts.size(), 1);
+            assertEquals(client.getConnectionCount("127.0.0.1", server.getAddress().getPort()), 1);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void limitConnectionsPerHost() throws Exception {
+        UndertowStreamClientConfigurationImpl configuration = new UndertowStreamClientConfigurationImpl(worker, 5);
+        configuration.setMaxConnectionsPerHost(2);
+        configuration.setMaxRequestsPerConnection(2);
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(configuration);
+        try {
+            List<CompletableFuture<StreamResponseMessage>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(client.sendRequestAsync(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/slow"))));
+            }
+            for (CompletableFuture<StreamResponseMessage> response : responses) {
+                assertNotNull(response.get(5, TimeUnit.SECONDS));
+                assertEquals(response.get().getBodyString(), "/slow");
+            }
+            assertTrue(clientPorts.size() <= 2);
+            assertTrue(client.getConnectionCount("127.0.0.1", server.getAddress().getPort()) <= 2);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void replaceClosedConnection() throws Exception {
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(new UndertowStreamClientConfigurationImpl(worker, 5));
+        try {
+            assertEquals(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/close"))).getBodyString(), "/close");
+            assertEquals(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))).getBodyString(), "/desc.xml");
+            assertEquals(clientPorts.size(), 2);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void closeIdleConnections() throws Exception {
+        UndertowStreamClientConfigurationImpl configuration = new UndertowStreamClientConfigurationImpl(worker, 5);
+        configuration.setIdleTimeoutSeconds(0);
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(configuration);
+        try {
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            client.evictIdleConnections();
+            assertEquals(client.getConnectionCount("127.0.0.1", server.getAddress().getPort()), 0);
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertEquals(clientPorts.size(), 2);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void resendOnlyIdempotentRequests() throws Exception {
+        UndertowStreamClientConfigurationImpl configuration = new UndertowStreamClientConfigurationImpl(worker, 5);
+        configuration.setMaxConnectionsPerHost(1);
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(configuration);
+        try {
+            // The server might have executed the action before closing the reused connection
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.POST, getURI("/drop"), "body")));
+            assertEquals(droppedRequests.get(), 1);
+
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/drop"))));
+            assertEquals(droppedRequests.get(), 3);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void dropUnusedPools() throws Exception {
+        UndertowStreamClientConfigurationImpl configuration = new UndertowStreamClientConfigurationImpl(worker, 5);
+        configuration.setIdleTimeoutSeconds(0);
+        UndertowStreamClientImpl client = new UndertowStreamClientImpl(configuration);
+        try {
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertEquals(client.getPoolCount(), 1);
+
+            // Evicted by the timer, without further request
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getPoolCount() > 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(50);
+            assertEquals(client.getPoolCount(), 0);
+            assertEquals(client.getConnectionCount("127.0.0.1", server.getAddress().getPort()), 0);
+
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+        } finally {
+            client.stop();
+        }
+    }
+
+    protected URI getURI(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
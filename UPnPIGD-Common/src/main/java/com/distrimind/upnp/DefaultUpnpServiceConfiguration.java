@@ -26,6 +26,8 @@ import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.meta.RemoteService;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.platform.Platform;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
+import com.distrimind.upnp.protocol.RemoteDescriptorCache;
 import com.distrimind.upnp.platform.PlatformUpnpServiceConfiguration;
 import com.distrimind.upnp.transport.impl.DatagramProcessorImpl;
 import com.distrimind.upnp.transport.impl.NetworkAddressFactoryImpl;
@@ -49,8 +51,10 @@ import com.distrimind.flexilogxml.log.DMLogger;
  * {@link com.distrimind.upnp.binding.xml}.
  * </p>
  * <p>
- * Note that this pool is effectively unlimited, so the number of threads will
- * grow (and shrink) as needed - or restricted by your JVM.
+ * The transports and the registry maintainer run on a pool that is effectively unlimited,
+ * so the number of threads will grow (and shrink) as needed - or restricted by your JVM.
+ * Protocols and registry listeners run on bounded pools, see
+ * {@link com.distrimind.upnp.platform.BoundedUpnpIGDExecutor}.
  * </p>
  * <p>
  * The default {@link Namespace} is configured without any
@@ -69,6 +73,10 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
     protected final PlatformUpnpServiceConfiguration platformUpnpServiceConfiguration;
     private final ExecutorService defaultExecutorService;
     private final ExecutorService defaultAndroidExecutorService;
+    private final ExecutorService asyncProtocolExecutorService;
+    private final ExecutorService syncProtocolExecutorService;
+    private final ExecutorService registryListenerExecutorService;
+    private final ProtocolScheduler protocolScheduler;
     final private DatagramProcessor datagramProcessor;
     final private SOAPActionProcessor soapActionProcessor;
     final private GENAEventProcessor genaEventProcessor;
@@ -124,6 +132,10 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
         platformUpnpServiceConfiguration = platform.getInstance();
         defaultExecutorService=createDefaultExecutorService();
         defaultAndroidExecutorService=platform==Platform.ANDROID?platform.getInstance().createDefaultAndroidExecutorService():defaultExecutorService;
+        asyncProtocolExecutorService=createAsyncProtocolExecutorService();
+        syncProtocolExecutorService=createSyncProtocolExecutorService();
+        registryListenerExecutorService=createRegistryListenerExecutorService();
+        protocolScheduler=createProtocolScheduler();
         datagramProcessor = createDatagramProcessor();
         soapActionProcessor = createSOAPActionProcessor();
         genaEventProcessor = createGENAEventProcessor();
@@ -208,6 +220,14 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
         return new ServiceType[0];
     }
 
+    /**
+     * @return Defaults to <code>null</code>, all received datagrams are parsed.
+     */
+    @Override
+    public DatagramFilter getDatagramFilter() {
+        return null;
+    }
+
     /**
      * @return Defaults to <code>false</code>.
      */
@@ -228,6 +248,14 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
         return platformUpnpServiceConfiguration.getEventSubscriptionHeaders(service);
     }
 
+    /**
+     * @return Defaults to <code>null</code>, the descriptors of remote devices are always retrieved.
+     */
+    @Override
+    public RemoteDescriptorCache getRemoteDescriptorCache() {
+        return null;
+    }
+
     /**
      * @return Defaults to 1000 milliseconds.
      */
@@ -249,14 +277,22 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
         return platformUpnpServiceConfiguration.getRemoteDeviceMaxAgeSeconds();
     }
 
+    /**
+     * @return Defaults to zero, every refresh of a remote device is notified.
+     */
+    @Override
+    public int getRemoteDeviceUpdateNotificationIntervalMillis() {
+        return 0;
+    }
+
     @Override
     public Executor getAsyncProtocolExecutor() {
-        return getDefaultExecutorService();
+        return asyncProtocolExecutorService;
     }
 
     @Override
     public ExecutorService getSyncProtocolExecutorService() {
-        return getDefaultExecutorService();
+        return syncProtocolExecutorService;
     }
 
     @Override
@@ -271,7 +307,12 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
 
     @Override
     public Executor getRegistryListenerExecutor() {
-        return getDefaultExecutorService();
+        return registryListenerExecutorService;
+    }
+
+    @Override
+    public ProtocolScheduler getProtocolScheduler() {
+        return protocolScheduler;
     }
 
     @Override
@@ -281,6 +322,11 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
 
     @Override
     public void shutdown() {
+        log.debug("Shutting down protocol scheduler, protocol and registry listener executor services");
+        protocolScheduler.shutdown();
+        asyncProtocolExecutorService.shutdownNow();
+        syncProtocolExecutorService.shutdownNow();
+        registryListenerExecutorService.shutdownNow();
         log.debug("Shutting down default executor service");
         getDefaultExecutorService().shutdownNow();
     }
@@ -330,6 +376,22 @@ public class DefaultUpnpServiceConfiguration implements UpnpServiceConfiguration
     protected ExecutorService createDefaultExecutorService() throws IOException {
         return platformUpnpServiceConfiguration.createDefaultExecutorService();
     }
+
+    protected ExecutorService createAsyncProtocolExecutorService() {
+        return platformUpnpServiceConfiguration.createAsyncProtocolExecutorService();
+    }
+
+    protected ExecutorService createSyncProtocolExecutorService() {
+        return platformUpnpServiceConfiguration.createSyncProtocolExecutorService();
+    }
+
+    protected ExecutorService createRegistryListenerExecutorService() {
+        return platformUpnpServiceConfiguration.createRegistryListenerExecutorService();
+    }
+
+    protected ProtocolScheduler createProtocolScheduler() {
+        return platformUpnpServiceConfiguration.createProtocolScheduler(asyncProtocolExecutorService);
+    }
     @Override
     public Platform getPlatformType()
     {
@@ -26,8 +26,11 @@ import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.meta.RemoteService;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.platform.Platform;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
+import com.distrimind.upnp.protocol.RemoteDescriptorCache;
 import com.distrimind.upnp.platform.PlatformUpnpServiceConfiguration;
 import com.distrimind.upnp.transport.impl.NetworkAddressFactoryImpl;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
 import com.distrimind.upnp.transport.spi.DatagramIO;
 import com.distrimind.upnp.transport.spi.DatagramProcessor;
 import com.distrimind.upnp.transport.spi.GENAEventProcessor;
@@ -57,6 +60,10 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
     private final PlatformUpnpServiceConfiguration platformUpnpServiceConfiguration;
     private ExecutorService defaultExecutorService;
     private ExecutorService defaultAndroidExecutorService;
+    private ExecutorService asyncProtocolExecutorService;
+    private ExecutorService syncProtocolExecutorService;
+    private ExecutorService registryListenerExecutorService;
+    private ProtocolScheduler protocolScheduler;
 
     protected DatagramProcessor datagramProcessor;
 
@@ -84,6 +91,10 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
 
         defaultExecutorService = createDefaultExecutorService();
         defaultAndroidExecutorService=platformUpnpServiceConfiguration.getPlatformType()==Platform.ANDROID?Platform.ANDROID.getInstance().createDefaultAndroidExecutorService():defaultExecutorService;
+        asyncProtocolExecutorService=createAsyncProtocolExecutorService();
+        syncProtocolExecutorService=createSyncProtocolExecutorService();
+        registryListenerExecutorService=createRegistryListenerExecutorService();
+        protocolScheduler=createProtocolScheduler();
 
         soapActionProcessor = createSOAPActionProcessor();
         genaEventProcessor = createGENAEventProcessor();
@@ -172,6 +183,14 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
         return new ServiceType[0];
     }
 
+    /**
+     * @return Defaults to <code>null</code>, all received datagrams are parsed.
+     */
+    @Override
+    public DatagramFilter getDatagramFilter() {
+        return null;
+    }
+
     /**
      * @return Defaults to <code>false</code>.
      */
@@ -192,6 +211,14 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
         return platformUpnpServiceConfiguration.getEventSubscriptionHeaders(service);
     }
 
+    /**
+     * @return Defaults to <code>null</code>, the descriptors of remote devices are always retrieved.
+     */
+    @Override
+    public RemoteDescriptorCache getRemoteDescriptorCache() {
+        return null;
+    }
+
     /**
      * @return Defaults to 1000 milliseconds.
      */
@@ -213,14 +240,22 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
         return platformUpnpServiceConfiguration.getRemoteDeviceMaxAgeSeconds();
     }
 
+    /**
+     * @return Defaults to zero, every refresh of a remote device is notified.
+     */
+    @Override
+    public int getRemoteDeviceUpdateNotificationIntervalMillis() {
+        return 0;
+    }
+
     @Override
     public Executor getAsyncProtocolExecutor() {
-        return getDefaultExecutorService();
+        return asyncProtocolExecutorService;
     }
 
     @Override
     public ExecutorService getSyncProtocolExecutorService() {
-        return getDefaultExecutorService();
+        return syncProtocolExecutorService;
     }
 
     @Override
@@ -235,7 +270,12 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
 
     @Override
     public Executor getRegistryListenerExecutor() {
-        return getDefaultExecutorService();
+        return registryListenerExecutorService;
+    }
+
+    @Override
+    public ProtocolScheduler getProtocolScheduler() {
+        return protocolScheduler;
     }
 
     @Override
@@ -245,6 +285,11 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
 
     @Override
     public void shutdown() {
+        log.debug("Shutting down protocol scheduler, protocol and registry listener executor services");
+        protocolScheduler.shutdown();
+        asyncProtocolExecutorService.shutdownNow();
+        syncProtocolExecutorService.shutdownNow();
+        registryListenerExecutorService.shutdownNow();
         log.debug("Shutting down default executor service");
         getDefaultExecutorService().shutdownNow();
     }
@@ -285,6 +330,22 @@ public class ManagedUpnpServiceConfiguration implements UpnpServiceConfiguration
     protected ExecutorService createDefaultExecutorService() throws IOException {
         return platformUpnpServiceConfiguration.createDefaultExecutorService();
     }
+
+    protected ExecutorService createAsyncProtocolExecutorService() {
+        return platformUpnpServiceConfiguration.createAsyncProtocolExecutorService();
+    }
+
+    protected ExecutorService createSyncProtocolExecutorService() {
+        return platformUpnpServiceConfiguration.createSyncProtocolExecutorService();
+    }
+
+    protected ExecutorService createRegistryListenerExecutorService() {
+        return platformUpnpServiceConfiguration.createRegistryListenerExecutorService();
+    }
+
+    protected ProtocolScheduler createProtocolScheduler() {
+        return platformUpnpServiceConfiguration.createProtocolScheduler(asyncProtocolExecutorService);
+    }
     protected ExecutorService getDefaultAndroidExecutorService() {
         return defaultAndroidExecutorService;
     }
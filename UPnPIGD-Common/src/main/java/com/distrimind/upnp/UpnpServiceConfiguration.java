@@ -22,6 +22,8 @@ import com.distrimind.upnp.binding.xml.ServiceDescriptorBinder;
 import com.distrimind.upnp.model.UserConstants;
 import com.distrimind.upnp.model.profile.ClientInfo;
 import com.distrimind.upnp.platform.Platform;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
+import com.distrimind.upnp.protocol.RemoteDescriptorCache;
 import com.distrimind.upnp.registry.Registry;
 import com.distrimind.upnp.transport.Router;
 import com.distrimind.upnp.model.Namespace;
@@ -29,6 +31,7 @@ import com.distrimind.upnp.model.message.UpnpHeaders;
 import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.meta.RemoteService;
 import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
 import com.distrimind.upnp.transport.spi.DatagramIO;
 import com.distrimind.upnp.transport.spi.DatagramProcessor;
 import com.distrimind.upnp.transport.spi.GENAEventProcessor;
@@ -157,6 +160,23 @@ public interface UpnpServiceConfiguration {
      */
 	ServiceType[] getExclusiveServiceTypes();
 
+    /**
+     * Optional fast-path filter of the received datagrams.
+     * <p>
+     * The filter is applied to the raw bytes of each datagram, before any header is parsed, so that
+     * announcements nobody is interested in cost a scan of a few header lines instead of a full parse
+     * and a protocol execution.
+     * </p>
+     *
+     * @return The filter of the received datagrams, or <code>null</code> (default) if all datagrams have to be parsed.
+     * @see com.distrimind.upnp.transport.impl.HeaderPrefixDatagramFilter
+     * @since 1.5.0
+     */
+	default DatagramFilter getDatagramFilter()
+	{
+		return null;
+	}
+
     /**
      * @return The time in milliseconds to wait between each registry maintenance operation.
      */
@@ -215,6 +235,26 @@ public interface UpnpServiceConfiguration {
      */
 	Integer getRemoteDeviceMaxAgeSeconds();
 
+    /**
+     * Minimum interval between two {@link com.distrimind.upnp.registry.RegistryListener#remoteDeviceUpdated}
+     * notifications of the same remote device.
+     * <p>
+     * Each alive message and each search response of a known remote device refreshes its expiration.
+     * With a positive interval, such a refresh only notifies the registry listeners if the maximum
+     * age or the descriptor URL announced by the device changed, or if the last notification for
+     * this device is older than the interval. Large networks or chatty devices otherwise flood
+     * the listeners with updates that carry no new information.
+     * </p>
+     *
+     * @return The minimum time in milliseconds between two update notifications of a remote device,
+     *         <code>0</code> (default) to notify every refresh.
+     * @since 1.5.0
+     */
+	default int getRemoteDeviceUpdateNotificationIntervalMillis()
+	{
+		return 0;
+	}
+
     /**
      * Optional extra headers for device descriptor retrieval HTTP requests.
      * <p>
@@ -230,6 +270,23 @@ public interface UpnpServiceConfiguration {
 	@SuppressWarnings("PMD.LooseCoupling")
 	UpnpHeaders getDescriptorRetrievalHeaders(RemoteDeviceIdentity identity);
 
+    /**
+     * Optional persistent store of the descriptors retrieved from remote devices.
+     * <p>
+     * With a store, a device discovered again, also after a restart, is hydrated from its stored
+     * descriptors once a conditional GET has confirmed that its device descriptor didn't change,
+     * instead of retrieving all its service descriptors again. The same instance must be
+     * returned by every call.
+     * </p>
+     *
+     * @return <code>null</code> (default) or the store of the remote descriptors.
+     * @since 1.5.0
+     */
+	default RemoteDescriptorCache getRemoteDescriptorCache()
+	{
+		return null;
+	}
+
     /**
      * Optional extra headers for event subscription (almost HTTP) messages.
      * <p>
@@ -259,7 +316,8 @@ public interface UpnpServiceConfiguration {
 	Namespace getNamespace();
 
     /**
-     * @return The executor which runs the background thread for maintaining the registry.
+     * @return The executor which runs the background thread for maintaining the registry, or
+     *         <code>null</code> (since 1.5.0) if the registry is not maintained in the background.
      */
 	Executor getRegistryMaintainerExecutor();
 
@@ -268,6 +326,18 @@ public interface UpnpServiceConfiguration {
      */
 	Executor getRegistryListenerExecutor();
 
+    /**
+     * @return The scheduler of the delayed protocol tasks, such as the randomly delayed responses
+     *         to search requests and the repetitions of notifications. Defaults to a new scheduler whose
+     *         tasks wait on the threads of the {@link #getAsyncProtocolExecutor()}, override it to
+     *         return a single scheduler with a timer thread.
+     * @since 1.5.0
+     */
+	default ProtocolScheduler getProtocolScheduler()
+	{
+		return ProtocolScheduler.createWaiting(getAsyncProtocolExecutor());
+	}
+
     /**
      * Called by the {@link UpnpService} on shutdown, useful to e.g. shutdown thread pools.
      */
@@ -20,6 +20,7 @@ import com.distrimind.upnp.controlpoint.ControlPoint;
 import com.distrimind.upnp.controlpoint.ControlPointImpl;
 import com.distrimind.upnp.protocol.ProtocolFactory;
 import com.distrimind.upnp.protocol.ProtocolFactoryImpl;
+import com.distrimind.upnp.registry.ConcurrentRegistryImpl;
 import com.distrimind.upnp.registry.Registry;
 import com.distrimind.upnp.registry.RegistryImpl;
 import com.distrimind.upnp.registry.RegistryListener;
@@ -53,6 +54,14 @@ public class UpnpServiceImpl implements UpnpService {
 
     final private static DMLogger log = Log.getLogger(UpnpServiceImpl.class);
 
+    /**
+     * Set this system property to <code>true</code> to use a {@link ConcurrentRegistryImpl}, whose device
+     * lookups don't lock.
+     *
+     * @since 1.5.0
+     */
+    public static final String SYSTEM_PROPERTY_CONCURRENT_REGISTRY = "com.distrimind.upnp.registry.useConcurrentRegistry";
+
     protected final UpnpServiceConfiguration configuration;
     protected final ControlPoint controlPoint;
     protected final ProtocolFactory protocolFactory;
@@ -101,7 +110,13 @@ public class UpnpServiceImpl implements UpnpService {
         return new ProtocolFactoryImpl(this);
     }
 
+    /**
+     * @return A {@link ConcurrentRegistryImpl} if the system property {@link #SYSTEM_PROPERTY_CONCURRENT_REGISTRY}
+     *         is <code>true</code>, a {@link RegistryImpl} otherwise.
+     */
     protected Registry createRegistry(ProtocolFactory protocolFactory) {
+        if (Boolean.getBoolean(SYSTEM_PROPERTY_CONCURRENT_REGISTRY))
+            return new ConcurrentRegistryImpl(this);
         return new RegistryImpl(this);
     }
 
@@ -57,6 +57,9 @@ public class RecoveringUDA10DeviceDescriptorBinderImpl extends UDA10DeviceDescri
 
                 device = super.describe(undescribedDevice, descriptorXml);
                 return device;
+            } catch (UnresolvedHostException ex) {
+                // Not a malformed descriptor, bound again once the host has been resolved
+                throw ex;
             } catch (DescriptorBindingException ex) {
                 if (log.isWarnEnabled())
                     log.warn("Regular parsing failed: ", Exceptions.unwrap(ex).getMessage());
@@ -71,6 +74,8 @@ public class RecoveringUDA10DeviceDescriptorBinderImpl extends UDA10DeviceDescri
                 try {
                     device = super.describe(undescribedDevice, fixedXml);
                     return device;
+                } catch (UnresolvedHostException ex) {
+                    throw ex;
                 } catch (DescriptorBindingException ex) {
                     if (log.isWarnEnabled())
                         log.warn("Removing leading garbage didn't work: ", Exceptions.unwrap(ex));
@@ -82,6 +87,8 @@ public class RecoveringUDA10DeviceDescriptorBinderImpl extends UDA10DeviceDescri
                 try {
                     device = super.describe(undescribedDevice, fixedXml);
                     return device;
+                } catch (UnresolvedHostException ex) {
+                    throw ex;
                 } catch (DescriptorBindingException ex) {
                     if (log.isWarnEnabled())
                         log.warn("Removing trailing garbage didn't work: ", Exceptions.unwrap(ex));
@@ -97,6 +104,8 @@ public class RecoveringUDA10DeviceDescriptorBinderImpl extends UDA10DeviceDescri
                     try {
                         device = super.describe(undescribedDevice, fixedXml);
                         return device;
+                    } catch (UnresolvedHostException ex) {
+                        throw ex;
                     } catch (DescriptorBindingException ex) {
                         if (log.isWarnEnabled())
                             log.warn("Fixing namespace prefix didn't work: ", Exceptions.unwrap(ex));
@@ -112,6 +121,8 @@ public class RecoveringUDA10DeviceDescriptorBinderImpl extends UDA10DeviceDescri
                 try {
                     device = super.describe(undescribedDevice, fixedXml);
                     return device;
+                } catch (UnresolvedHostException ex) {
+                    throw ex;
                 } catch (DescriptorBindingException ex) {
                     if (log.isWarnEnabled())
                         log.warn("Fixing XML entities didn't work: ", Exceptions.unwrap(ex));
@@ -17,10 +17,10 @@ package com.distrimind.upnp.binding.xml;
 
 import static com.distrimind.upnp.model.XMLUtil.appendNewElementIfNotNull;
 
-import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.URI;
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 import com.distrimind.flexilogxml.exceptions.XMLStreamException;
 import com.distrimind.flexilogxml.log.DMLogger;
@@ -50,6 +50,8 @@ import com.distrimind.upnp.model.types.InvalidValueException;
 import com.distrimind.upnp.model.types.ServiceId;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.model.types.UDN;
+import com.distrimind.upnp.transport.Common;
+import com.distrimind.upnp.transport.HostAddressResolver;
 import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
 import com.distrimind.upnp.util.Exceptions;
 import com.distrimind.upnp.util.MimeType;
@@ -64,27 +66,14 @@ public class UDA10DeviceDescriptorBinderImpl implements DeviceDescriptorBinder,
 
     final private static DMLogger log = Log.getLogger(UDA10DeviceDescriptorBinderImpl.class);
     private final NetworkAddressFactory networkAddressFactory;
-    static boolean isNotValidRemoteAddress(URL u, NetworkAddressFactory networkAddressFactory)
+    static boolean isNotValidRemoteAddress(URL u, NetworkAddressFactory networkAddressFactory) throws UnresolvedHostException
     {
-        if (u==null)
-            return false;
-        return isNotValidRemoteAddress(u.getHost(), networkAddressFactory);
-    }
-    static boolean isNotValidRemoteAddress(String host, NetworkAddressFactory networkAddressFactory)
-    {
-        try {
-            InetAddress ia = InetAddress.getByName(host);
-            ia = networkAddressFactory.getLocalAddress(
-                    null,
-                    ia instanceof Inet6Address,
-                    ia
-            );
-            if (ia == null)
-                return true;
-        } catch (Exception ignored) {
-            return true;
+        if (u != null) {
+            CompletableFuture<InetAddress> resolution = HostAddressResolver.resolve(u.getHost());
+            if (!resolution.isDone())
+                throw new UnresolvedHostException(u.getHost(), resolution);
         }
-        return false;
+        return Common.isNotValidRemoteAddress(u, networkAddressFactory);
     }
     public UDA10DeviceDescriptorBinderImpl(NetworkAddressFactory networkAddressFactory)
     {
@@ -138,7 +127,7 @@ public class UDA10DeviceDescriptorBinderImpl implements DeviceDescriptorBinder,
         }
     }
 
-    public <D extends Device<?, D, S>, S extends Service<?, D, S>> D buildInstance(D undescribedDevice, MutableDevice<D, S> descriptor) throws ValidationException {
+    public <D extends Device<?, D, S>, S extends Service<?, D, S>> D buildInstance(D undescribedDevice, MutableDevice<D, S> descriptor) throws ValidationException, UnresolvedHostException {
         D res=descriptor.build(undescribedDevice);
         if (res!=null && res.getDetails()!=null && isNotValidRemoteAddress(res.getDetails().getBaseURL(), networkAddressFactory))
             return null;
@@ -97,7 +97,7 @@ public class UDA10ServiceDescriptorBinderImpl implements ServiceDescriptorBinder
         }
     }
 
-    protected <D extends Device<?, D, S>, S extends Service<?, D, S>> S buildInstance(S undescribedService, MutableService<D, S> descriptor) throws ValidationException {
+    protected <D extends Device<?, D, S>, S extends Service<?, D, S>> S buildInstance(S undescribedService, MutableService<D, S> descriptor) throws ValidationException, UnresolvedHostException {
         S res= descriptor.build(undescribedService.getDevice());
         if (res.getDevice()!=null && res.getDevice().getDetails()!=null && UDA10DeviceDescriptorBinderImpl.isNotValidRemoteAddress(res.getDevice().getDetails().getBaseURL(), networkAddressFactory))
             return null;
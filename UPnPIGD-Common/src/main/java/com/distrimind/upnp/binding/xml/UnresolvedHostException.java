@@ -0,0 +1,53 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.binding.xml;
+
+import com.distrimind.upnp.transport.HostAddressResolver;
+
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Thrown if the base URL of a remote device is a host name whose resolution has not completed yet. The
+ * descriptor can be bound again once the {@link #getResolution() resolution} has completed.
+ *
+ * @see HostAddressResolver#resolve(String)
+ * @since 1.5.0
+ */
+public class UnresolvedHostException extends DescriptorBindingException {
+    private static final long serialVersionUID = 1L;
+
+    private final String host;
+    private final transient CompletableFuture<InetAddress> resolution;
+
+    public UnresolvedHostException(String host, CompletableFuture<InetAddress> resolution) {
+        super("Host not yet resolved: " + host);
+        this.host = host;
+        this.resolution = resolution;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    /**
+     * @return The future address of the host, <code>null</code> if the exception has been deserialized.
+     */
+    public CompletableFuture<InetAddress> getResolution() {
+        return resolution;
+    }
+}
@@ -23,9 +23,11 @@ import com.distrimind.upnp.model.meta.Action;
 import com.distrimind.upnp.model.meta.LocalService;
 import com.distrimind.upnp.model.meta.RemoteService;
 import com.distrimind.upnp.model.meta.Service;
+import com.distrimind.upnp.model.types.ErrorCode;
 import com.distrimind.upnp.protocol.sync.SendingAction;
 
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Execute actions on any service.
@@ -54,6 +56,12 @@ import java.net.URL;
  * upnpService.getControlPoint().execute(getStatusCallback)
  * </pre>
  * <p>
+ * A remote action can also be invoked without blocking any thread while waiting for the response:
+ * </p>
+ * <pre>
+ * upnpService.getControlPoint().executeAsync(getStatusCallback).thenRun(...);
+ * </pre>
+ * <p>
  * You can also execute the action synchronously in the same thread using the
  * {@link ActionCallback.Default} implementation:
  * </p>
@@ -134,34 +142,71 @@ public abstract class ActionCallback implements Runnable {
         // Remote execution
         } else if (service instanceof RemoteService){
 
-            if (getControlPoint()  == null) {
-                throw new IllegalStateException("Callback must be executed through ControlPoint");
-            }
-
-            RemoteService remoteService = (RemoteService)service;
-
-            // Figure out the remote URL where we'd like to send the action request to
-            URL controLURL;
-            try {
-            	controLURL = remoteService.getDevice().normalizeURI(remoteService.getControlURI());
-            } catch(IllegalArgumentException e) {
-            	failure(actionInvocation, null, "bad control URL: " + remoteService.getControlURI());
-            	return ;
-            }
-
             // Do it
-            SendingAction prot = getControlPoint().getProtocolFactory().createSendingAction(actionInvocation, controLURL);
+            SendingAction prot = createSendingAction((RemoteService) service);
+            if (prot == null)
+                return;
             prot.run();
+            handleResponse(prot.getOutputMessage());
+        }
+    }
 
-            IncomingActionResponseMessage response = prot.getOutputMessage();
+    /**
+     * Invokes the action like {@link #run()}, except that a remote invocation doesn't block the
+     * calling thread while waiting for the response. The callback methods are called by the thread
+     * completing the response.
+     *
+     * @return A future completed after {@link #success(ActionInvocation)} or
+     *         {@link #failure(ActionInvocation, UpnpResponse, String)} has been called.
+     * @since 1.5.0
+     */
+    public CompletableFuture<Void> runAsync() {
+        Service<?, ?, ?> service = actionInvocation.getAction().getService();
+        if (!(service instanceof RemoteService)) {
+            run();
+            return CompletableFuture.completedFuture(null);
+        }
 
-            if (response == null) {
+        SendingAction prot = createSendingAction((RemoteService) service);
+        if (prot == null)
+            return CompletableFuture.completedFuture(null);
+        return prot.executeAsync().handle((response, ex) -> {
+            if (ex != null) {
+                if (actionInvocation.getFailure() == null) {
+                    actionInvocation.setFailure(new ActionException(ErrorCode.ACTION_FAILED, "Sending action request failed: " + ex.getMessage(), ex));
+                }
                 failure(actionInvocation, null);
-            } else if (response.getOperation().isFailed()) {
-                failure(actionInvocation, response.getOperation());
             } else {
-                success(actionInvocation);
+                handleResponse(response);
             }
+            return null;
+        });
+    }
+
+    private SendingAction createSendingAction(RemoteService remoteService) {
+        if (getControlPoint()  == null) {
+            throw new IllegalStateException("Callback must be executed through ControlPoint");
+        }
+
+        // Figure out the remote URL where we'd like to send the action request to
+        URL controLURL;
+        try {
+        	controLURL = remoteService.getDevice().normalizeURI(remoteService.getControlURI());
+        } catch(IllegalArgumentException e) {
+        	failure(actionInvocation, null, "bad control URL: " + remoteService.getControlURI());
+        	return null;
+        }
+
+        return getControlPoint().getProtocolFactory().createSendingAction(actionInvocation, controLURL);
+    }
+
+    private void handleResponse(IncomingActionResponseMessage response) {
+        if (response == null) {
+            failure(actionInvocation, null);
+        } else if (response.getOperation().isFailed()) {
+            failure(actionInvocation, response.getOperation());
+        } else {
+            success(actionInvocation);
         }
     }
 
@@ -20,6 +20,7 @@ import com.distrimind.upnp.protocol.ProtocolFactory;
 import com.distrimind.upnp.UpnpServiceConfiguration;
 import com.distrimind.upnp.registry.Registry;
 
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Future;
 
 /**
@@ -38,6 +39,19 @@ public interface ControlPoint {
     void search(int mxSeconds);
     void search(UpnpHeader<?> searchType, int mxSeconds);
     Future<?> execute(ActionCallback callback);
+
+    /**
+     * Invokes the action without holding a thread while waiting for the remote response,
+     * see {@link ActionCallback#runAsync()}.
+     *
+     * @param callback The action to invoke.
+     * @return A future completed after the callback has been notified.
+     * @since 1.5.0
+     */
+    default CompletableFuture<Void> executeAsync(ActionCallback callback) {
+        callback.setControlPoint(this);
+        return callback.runAsync();
+    }
     void execute(SubscriptionCallback callback);
 
 }
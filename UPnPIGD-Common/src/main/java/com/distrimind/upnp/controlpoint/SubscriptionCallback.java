@@ -30,6 +30,7 @@ import com.distrimind.upnp.protocol.sync.SendingSubscribe;
 import com.distrimind.upnp.util.Exceptions;
 
 import java.util.Collections;
+import java.util.concurrent.locks.ReentrantLock;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -79,6 +80,12 @@ public abstract class SubscriptionCallback implements Runnable {
     protected final Service<?, ?, ?> service;
     protected final Integer requestedDurationSeconds;
 
+    /**
+     * Serializes the subscription lifecycle and the callbacks, without pinning the carrier of a
+     * virtual thread while the subscription request is sent.
+     */
+    protected final ReentrantLock lock = new ReentrantLock();
+
     private ControlPoint controlPoint;
     private GENASubscription<?> subscription;
 
@@ -96,32 +103,57 @@ public abstract class SubscriptionCallback implements Runnable {
         return service;
     }
 
-    synchronized public ControlPoint getControlPoint() {
-        return controlPoint;
+    public ControlPoint getControlPoint() {
+        lock.lock();
+        try {
+            return controlPoint;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public void setControlPoint(ControlPoint controlPoint) {
-        this.controlPoint = controlPoint;
+    public void setControlPoint(ControlPoint controlPoint) {
+        lock.lock();
+        try {
+            this.controlPoint = controlPoint;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public GENASubscription<?> getSubscription() {
-        return subscription;
+    public GENASubscription<?> getSubscription() {
+        lock.lock();
+        try {
+            return subscription;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public void setSubscription(GENASubscription<?> subscription) {
-        this.subscription = subscription;
+    public void setSubscription(GENASubscription<?> subscription) {
+        lock.lock();
+        try {
+            this.subscription = subscription;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void run() {
-        if (getControlPoint()  == null) {
-            throw new IllegalStateException("Callback must be executed through ControlPoint");
-        }
-
-        if (getService() instanceof LocalService) {
-            establishLocalSubscription((LocalService<?>) service);
-        } else if (getService() instanceof RemoteService) {
-            establishRemoteSubscription((RemoteService) service);
+	public void run() {
+        lock.lock();
+        try {
+            if (getControlPoint()  == null) {
+                throw new IllegalStateException("Callback must be executed through ControlPoint");
+            }
+
+            if (getService() instanceof LocalService) {
+                establishLocalSubscription((LocalService<?>) service);
+            } else if (getService() instanceof RemoteService) {
+                establishRemoteSubscription((RemoteService) service);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -143,36 +175,48 @@ public abstract class SubscriptionCallback implements Runnable {
                     new LocalGENASubscription<T>(service, Integer.MAX_VALUE, Collections.emptyList()) {
 
                         public void failed(Exception ex) {
-                            synchronized (SubscriptionCallback.this) {
+                            lock.lock();
+                            try {
                                 SubscriptionCallback.this.setSubscription(null);
                                 SubscriptionCallback.this.failed(null, null, ex);
+                            } finally {
+                                lock.unlock();
                             }
                         }
 
                         @Override
 						public void established() {
-                            synchronized (SubscriptionCallback.this) {
+                            lock.lock();
+                            try {
                                 SubscriptionCallback.this.setSubscription(this);
                                 SubscriptionCallback.this.established(this);
+                            } finally {
+                                lock.unlock();
                             }
                         }
 
                         @Override
 						public void ended(CancelReason reason) {
-                            synchronized (SubscriptionCallback.this) {
+                            lock.lock();
+                            try {
                                 SubscriptionCallback.this.setSubscription(null);
                                 SubscriptionCallback.this.ended(this, reason, null);
+                            } finally {
+                                lock.unlock();
                             }
                         }
 
                         @Override
 						public void eventReceived() {
-                            synchronized (SubscriptionCallback.this) {
+                            lock.lock();
+                            try {
                                 if (log.isDebugEnabled()) {
                                     log.debug("Local service state updated, notifying callback, sequence is: " + getCurrentSequence());
 								}
 								SubscriptionCallback.this.eventReceived(this);
                                 incrementSequence();
+                            } finally {
+                                lock.unlock();
                             }
                         }
                     };
@@ -210,46 +254,64 @@ public abstract class SubscriptionCallback implements Runnable {
 
                     @Override
 					public void failed(UpnpResponse responseStatus) {
-                        synchronized (SubscriptionCallback.this) {
+                        lock.lock();
+                        try {
                             SubscriptionCallback.this.setSubscription(null);
                             SubscriptionCallback.this.failed(this, responseStatus, null);
+                        } finally {
+                            lock.unlock();
                         }
                     }
 
                     @Override
 					public void established() {
-                        synchronized (SubscriptionCallback.this) {
+                        lock.lock();
+                        try {
                             SubscriptionCallback.this.setSubscription(this);
                             SubscriptionCallback.this.established(this);
+                        } finally {
+                            lock.unlock();
                         }
                     }
 
                     @Override
 					public void ended(CancelReason reason, UpnpResponse responseStatus) {
-                        synchronized (SubscriptionCallback.this) {
+                        lock.lock();
+                        try {
                             SubscriptionCallback.this.setSubscription(null);
                             SubscriptionCallback.this.ended(this, reason, responseStatus);
+                        } finally {
+                            lock.unlock();
                         }
                     }
 
                     @Override
 					public void eventReceived() {
-                        synchronized (SubscriptionCallback.this) {
+                        lock.lock();
+                        try {
                             SubscriptionCallback.this.eventReceived(this);
+                        } finally {
+                            lock.unlock();
                         }
                     }
 
                     @Override
 					public void eventsMissed(int numberOfMissedEvents) {
-                        synchronized (SubscriptionCallback.this) {
+                        lock.lock();
+                        try {
                             SubscriptionCallback.this.eventsMissed(this, numberOfMissedEvents);
+                        } finally {
+                            lock.unlock();
                         }
                     }
 
 					@Override
 					public void invalidMessage(UnsupportedDataException ex) {
-						synchronized (SubscriptionCallback.this) {
+						lock.lock();
+						try {
 							SubscriptionCallback.this.invalidMessage(this, ex);
+						} finally {
+							lock.unlock();
 						}
 					}
                 };
@@ -264,12 +326,17 @@ public abstract class SubscriptionCallback implements Runnable {
         protocol.run();
     }
 
-    synchronized public void end() {
-        if (subscription == null) return;
-        if (subscription instanceof LocalGENASubscription) {
-            endLocalSubscription((LocalGENASubscription<?>)subscription);
-        } else if (subscription instanceof RemoteGENASubscription) {
-            endRemoteSubscription((RemoteGENASubscription)subscription);
+    public void end() {
+        lock.lock();
+        try {
+            if (subscription == null) return;
+            if (subscription instanceof LocalGENASubscription) {
+                endLocalSubscription((LocalGENASubscription<?>)subscription);
+            } else if (subscription instanceof RemoteGENASubscription) {
+                endRemoteSubscription((RemoteGENASubscription)subscription);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -17,6 +17,7 @@
  import com.distrimind.upnp.model.Constants;
 
  import java.io.ByteArrayInputStream;
+ import java.nio.charset.StandardCharsets;
  import java.util.Collection;
  import java.util.HashMap;
  import java.util.LinkedList;
@@ -81,6 +82,40 @@
 		 putAll(headers);
 	 }
 
+	 /**
+	  * Reads the header lines directly from a byte array slice, up to the first empty line
+	  * or to the end of the slice. Bytes are decoded as ISO-8859-1, like the stream based constructor.
+	  *
+	  * @param data the byte array holding the headers
+	  * @param offset the offset of the first header line
+	  * @param length the number of bytes available from the offset
+	  * @since 1.5.0
+	  */
+	 public Headers(byte[] data, int offset, int length) {
+		 if (length > Constants.MAX_HEADER_LENGTH_IN_BYTES)
+			 throw new IllegalArgumentException();
+		 int end = offset + length;
+		 int lineStart = offset;
+		 String lastHeader = null;
+		 while (lineStart < end) {
+			 int lineEnd = findLineEnd(data, lineStart, end);
+			 int nextLine = lineEnd < end ? lineEnd + 1 : end;
+			 if (lineEnd > lineStart && data[lineEnd - 1] == CR)
+				 lineEnd--;
+			 if (lineEnd == lineStart)
+				 break;
+			 byte firstByte = data[lineStart];
+			 if (lastHeader != null && (firstByte == ' ' || firstByte == '\t')) {
+				 List<String> current = map.get(lastHeader);
+				 int lastPos = current.size() - 1;
+				 current.set(lastPos, current.get(lastPos) + new String(data, lineStart, lineEnd - lineStart, StandardCharsets.ISO_8859_1).trim());
+			 } else {
+				 lastHeader = addHeaderLine(data, lineStart, lineEnd);
+			 }
+			 lineStart = nextLine;
+		 }
+	 }
+
 	 public Headers(boolean normalizeHeaders) {
 		 this.normalizeHeaders = normalizeHeaders;
 	 }
@@ -226,6 +261,50 @@
 		 return sb.toString();
 	 }
 
+	 /**
+	  * @param data the byte array to scan
+	  * @param offset the index of the first byte of the line
+	  * @param end the end of the slice (exclusive)
+	  * @return the index of the line feed terminating the line, or <code>end</code> if there is none
+	  * @since 1.5.0
+	  */
+	 public static int findLineEnd(byte[] data, int offset, int end) {
+		 for (int i = offset; i < end; i++) {
+			 if (data[i] == LF)
+				 return i;
+		 }
+		 return end;
+	 }
+
+	 private String addHeaderLine(byte[] data, int lineStart, int lineEnd) {
+		 int nameStart = lineStart;
+		 while (nameStart < lineEnd && isWhitespace(data[nameStart]))
+			 nameStart++;
+		 int nameEnd = nameStart;
+		 while (nameEnd < lineEnd && data[nameEnd] != ':' && !isWhitespace(data[nameEnd]))
+			 nameEnd++;
+		 int valueStart = nameEnd;
+		 while (valueStart < lineEnd && data[valueStart] != ':')
+			 valueStart++;
+		 if (valueStart < lineEnd)
+			 valueStart++;
+		 while (valueStart < lineEnd && isWhitespace(data[valueStart]))
+			 valueStart++;
+		 int valueEnd = lineEnd;
+		 while (valueEnd > valueStart && isWhitespace(data[valueEnd - 1]))
+			 valueEnd--;
+
+		 // There are really HTTP headers without values
+		 String name = normalize(new String(data, nameStart, nameEnd - nameStart, StandardCharsets.ISO_8859_1));
+		 map.computeIfAbsent(name, k -> new LinkedList<>())
+				 .add(valueStart < valueEnd ? new String(data, valueStart, valueEnd - valueStart, StandardCharsets.ISO_8859_1) : null);
+		 return name;
+	 }
+
+	 private static boolean isWhitespace(byte b) {
+		 return b == ' ' || b == '\t' || b == CR || b == LF || b == 0x0B || b == 0x0C;
+	 }
+
 	 protected String[] splitHeader(String sb) {
 		 int nameStart;
 		 int nameEnd;
@@ -0,0 +1,135 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.mock;
+
+import com.distrimind.upnp.UpnpServiceConfiguration;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.protocol.ProtocolFactory;
+
+import jakarta.enterprise.inject.Alternative;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Keeps the asynchronously sent TCP (HTTP) stream requests waiting until a test responds to them.
+ * <p>
+ * Each request sent with {@link #sendAsync(StreamRequestMessage)} is recorded like with
+ * {@link #send(StreamRequestMessage)}, and its future response is only completed by
+ * {@link #respond(Function)} or {@link #respond(StreamResponseMessage)}, in the order of the
+ * requests. A test can so check what happens while responses are outstanding, and complete
+ * them from the thread of its choice.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+@Alternative
+public class MockPendingRouter extends MockRouter {
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<PendingRequest> pendingRequests = new ArrayDeque<>();
+
+    public MockPendingRouter(UpnpServiceConfiguration configuration, ProtocolFactory protocolFactory) {
+        super(configuration, protocolFactory);
+    }
+
+    @Override
+    public CompletableFuture<StreamResponseMessage> sendAsync(StreamRequestMessage msg) {
+        PendingRequest request = new PendingRequest(msg);
+        lock.lock();
+        try {
+            sentStreamRequestMessages.add(msg);
+            pendingRequests.addLast(request);
+        } finally {
+            lock.unlock();
+        }
+        return request.getFuture();
+    }
+
+    /**
+     * @return The number of requests waiting for their response.
+     */
+    public int getPendingRequestCount() {
+        lock.lock();
+        try {
+            return pendingRequests.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return The oldest request waiting for its response, removed from the pending requests,
+     *         or <code>null</code> if none is pending.
+     */
+    public PendingRequest poll() {
+        lock.lock();
+        try {
+            return pendingRequests.pollFirst();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Completes the oldest pending request with the response created for it.
+     *
+     * @param responder Creates the response, <code>null</code> for no response.
+     * @return <code>false</code> if no request was pending.
+     */
+    public boolean respond(Function<StreamRequestMessage, StreamResponseMessage> responder) {
+        PendingRequest request = poll();
+        if (request == null)
+            return false;
+        request.getFuture().complete(responder.apply(request.getMessage()));
+        return true;
+    }
+
+    /**
+     * Completes the oldest pending request with the given response.
+     *
+     * @param response The response, <code>null</code> for no response.
+     * @return <code>false</code> if no request was pending.
+     */
+    public boolean respond(StreamResponseMessage response) {
+        return respond(request -> response);
+    }
+
+    /**
+     * A request waiting for its response.
+     */
+    public static class PendingRequest {
+
+        private final StreamRequestMessage message;
+        private final CompletableFuture<StreamResponseMessage> future = new CompletableFuture<>();
+
+        public PendingRequest(StreamRequestMessage message) {
+            this.message = message;
+        }
+
+        public StreamRequestMessage getMessage() {
+            return message;
+        }
+
+        public CompletableFuture<StreamResponseMessage> getFuture() {
+            return future;
+        }
+    }
+}
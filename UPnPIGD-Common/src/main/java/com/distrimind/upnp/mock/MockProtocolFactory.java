@@ -21,6 +21,8 @@ import com.distrimind.upnp.model.message.IncomingDatagramMessage;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
 import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.state.StateVariableValue;
+import com.distrimind.upnp.model.types.UnsignedIntegerFourBytes;
 import com.distrimind.upnp.protocol.ProtocolCreationException;
 import com.distrimind.upnp.protocol.ProtocolFactory;
 import com.distrimind.upnp.protocol.ReceivingAsync;
@@ -37,6 +39,7 @@ import com.distrimind.upnp.protocol.sync.SendingUnsubscribe;
 
 import jakarta.enterprise.inject.Alternative;
 import java.net.URL;
+import java.util.Collection;
 
 /**
  * @author Christian Bauer
@@ -98,4 +101,11 @@ public class MockProtocolFactory implements ProtocolFactory {
     public SendingEvent createSendingEvent(LocalGENASubscription<?> subscription) {
         return null;
     }
+
+    @Override
+    public SendingEvent createSendingEvent(LocalGENASubscription<?> subscription,
+                                           UnsignedIntegerFourBytes sequence,
+                                           Collection<? extends StateVariableValue<?>> values) {
+        return null;
+    }
 }
@@ -33,6 +33,7 @@ import java.net.UnknownHostException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * <p>
@@ -50,7 +51,7 @@ public class MockRouter implements Router {
 
     public int counter = -1;
     public List<IncomingDatagramMessage<?>> incomingDatagramMessages = new ArrayList<>();
-    public List<OutgoingDatagramMessage<?>> outgoingDatagramMessages = new ArrayList<>();
+    public List<OutgoingDatagramMessage<?>> outgoingDatagramMessages = new CopyOnWriteArrayList<>(); // Appended by the registry maintainer while tests read it
     public List<UpnpStream> receivedUpnpStreams = new ArrayList<>();
     public List<StreamRequestMessage> sentStreamRequestMessages = new ArrayList<>();
     public List<byte[]> broadcastedBytes = new ArrayList<>();
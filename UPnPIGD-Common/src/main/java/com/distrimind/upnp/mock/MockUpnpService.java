@@ -23,13 +23,14 @@ import com.distrimind.upnp.protocol.ProtocolFactory;
 import com.distrimind.upnp.protocol.ProtocolFactoryImpl;
 import com.distrimind.upnp.protocol.async.SendingNotificationAlive;
 import com.distrimind.upnp.protocol.async.SendingSearch;
+import com.distrimind.upnp.registry.ConcurrentRegistryImpl;
 import com.distrimind.upnp.registry.Registry;
 import com.distrimind.upnp.registry.RegistryImpl;
-import com.distrimind.upnp.registry.RegistryMaintainer;
 import com.distrimind.upnp.transport.RouterException;
 import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
 import com.distrimind.upnp.UpnpService;
 import com.distrimind.upnp.UpnpServiceConfiguration;
+import com.distrimind.upnp.UpnpServiceImpl;
 
 import java.io.IOException;
 
@@ -85,12 +86,7 @@ public class MockUpnpService implements UpnpService {
 
         this.protocolFactory = createProtocolFactory(this, sendsAlive);
 
-        this.registry = new RegistryImpl(this) {
-            @Override
-            protected RegistryMaintainer createRegistryMaintainer() {
-                return configuration.isMaintainsRegistry() ? super.createRegistryMaintainer() : null;
-            }
-        };
+        this.registry = createRegistry(configuration);
 
         this.networkAddressFactory = this.configuration.createNetworkAddressFactory();
 
@@ -103,6 +99,16 @@ public class MockUpnpService implements UpnpService {
         return new MockProtocolFactory(service, sendsAlive);
     }
 
+    /**
+     * The registry is only maintained in the background if the configuration
+     * {@link MockUpnpServiceConfiguration#isMaintainsRegistry() maintains} it.
+     */
+    protected Registry createRegistry(MockUpnpServiceConfiguration configuration) {
+        if (Boolean.getBoolean(UpnpServiceImpl.SYSTEM_PROPERTY_CONCURRENT_REGISTRY))
+            return new ConcurrentRegistryImpl(this);
+        return new RegistryImpl(this);
+    }
+
     protected MockRouter createRouter() {
         return new MockRouter(getConfiguration(), getProtocolFactory());
     }
@@ -20,6 +20,7 @@ import com.distrimind.upnp.binding.xml.ServiceDescriptorBinder;
 import com.distrimind.upnp.platform.DefaultPlatformUpnpServiceConfiguration;
 import com.distrimind.upnp.platform.Platform;
 import com.distrimind.upnp.platform.PlatformUpnpServiceConfiguration;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
 import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
 import com.distrimind.upnp.DefaultUpnpServiceConfiguration;
 import com.distrimind.upnp.transport.spi.SOAPActionProcessor;
@@ -38,6 +39,8 @@ public class MockUpnpServiceConfiguration extends DefaultUpnpServiceConfiguratio
 
     final protected boolean maintainsRegistry;
     final protected boolean multiThreaded;
+    // Delayed tasks are executed immediately on the calling thread, unless multithreaded
+    final private ProtocolScheduler immediateProtocolScheduler;
     private final static DefaultPlatformUpnpServiceConfiguration desktopPlatformUpnpServiceConfiguration=new DefaultPlatformUpnpServiceConfiguration();
     /**
      * Does not maintain registry, single threaded execution.
@@ -74,6 +77,7 @@ public class MockUpnpServiceConfiguration extends DefaultUpnpServiceConfiguratio
         super(platform, false);
         this.maintainsRegistry = maintainsRegistry;
         this.multiThreaded = multiThreaded;
+        this.immediateProtocolScheduler = multiThreaded ? null : new ProtocolScheduler(getDefaultExecutorService());
     }
 
     public boolean isMaintainsRegistry() {
@@ -94,9 +98,49 @@ public class MockUpnpServiceConfiguration extends DefaultUpnpServiceConfiguratio
         if (isMaintainsRegistry()) {
             return this::startThread;
         }
+        return null;
+    }
+
+    @Override
+    public Executor getAsyncProtocolExecutor() {
+        if (isMultiThreaded()) {
+            return super.getAsyncProtocolExecutor();
+        }
+        return getDefaultExecutorService();
+    }
+
+    @Override
+    public ExecutorService getSyncProtocolExecutorService() {
+        if (isMultiThreaded()) {
+            return super.getSyncProtocolExecutorService();
+        }
+        return getDefaultExecutorService();
+    }
+
+    @Override
+    public Executor getRegistryListenerExecutor() {
+        if (isMultiThreaded()) {
+            return super.getRegistryListenerExecutor();
+        }
         return getDefaultExecutorService();
     }
 
+    @Override
+    public ProtocolScheduler getProtocolScheduler() {
+        if (isMultiThreaded()) {
+            return super.getProtocolScheduler();
+        }
+        return immediateProtocolScheduler;
+    }
+
+    @Override
+    public void shutdown() {
+        if (immediateProtocolScheduler != null) {
+            immediateProtocolScheduler.shutdown();
+        }
+        super.shutdown();
+    }
+
     @Override
     protected ExecutorService getDefaultExecutorService()  {
         if (isMultiThreaded()) {
@@ -25,7 +25,8 @@ public class ExpirationDetails {
     public static final int UNLIMITED_AGE = 0;
 
     private int maxAgeSeconds = UNLIMITED_AGE;
-    private long lastRefreshTimestampSeconds = getCurrentTimestampSeconds();
+    // Refreshed in place by the registry, read by the maintenance thread
+    private volatile long lastRefreshTimestampSeconds = getCurrentTimestampSeconds();
 
     public ExpirationDetails() {
     }
@@ -64,6 +65,18 @@ public class ExpirationDetails {
                 (lastRefreshTimestampSeconds + (maxAgeSeconds/(halfTime ? 2 : 1))) < getCurrentTimestampSeconds();
     }
 
+    /**
+     * @param halfTime If <code>true</code> then half maximum age is used to determine expiration.
+     * @return The time in milliseconds since the epoch from which {@link #hasExpired(boolean)} returns
+     *         <code>true</code>, or {@link Long#MAX_VALUE} if the age is unlimited.
+     * @since 1.5.0
+     */
+    public long getExpirationMillis(boolean halfTime) {
+        return maxAgeSeconds == UNLIMITED_AGE
+                ? Long.MAX_VALUE
+                : (lastRefreshTimestampSeconds + (maxAgeSeconds/(halfTime ? 2 : 1)) + 1) * 1000L;
+    }
+
     public long getSecondsUntilExpiration() {
         // Note: Uses direct field access for performance reasons on Android
         return maxAgeSeconds == UNLIMITED_AGE
@@ -29,6 +29,8 @@ import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,6 +49,10 @@ import java.util.regex.Pattern;
  */
 public class XMLUtil {
 
+    private static final int INITIAL_GENERATION_BUFFER_SIZE = 4096;
+    private static final int MAX_POOLED_GENERATION_BUFFER_SIZE = Constants.MAX_BODY_LENGTH;
+    private static final Queue<ByteArrayOutputStream> GENERATION_BUFFERS = new ArrayBlockingQueue<>(8);
+
 
     // TODO: Evil methods to print XML on Android 2.1 (there is no TransformerFactory)
 
@@ -176,19 +182,41 @@ public class XMLUtil {
         return xmlWriter;
     }
     public static String generateXMLToString(XMLWriteConsumer c) throws XMLStreamException {
-        try(ByteArrayOutputStream out=new ByteArrayOutputStream()) {
-
+        return new String(generateXMLToBytes(c), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Generates an UTF-8 encoded document without intermediate string, into a buffer reused by the next
+     * generations.
+     *
+     * @param c Writes the content of the document.
+     * @return The encoded document.
+     * @throws XMLStreamException If the document could not be generated.
+     * @since 1.5.0
+     */
+    @SuppressWarnings("PMD.CloseResource")
+    public static byte[] generateXMLToBytes(XMLWriteConsumer c) throws XMLStreamException {
+        ByteArrayOutputStream out = GENERATION_BUFFERS.poll();
+        if (out == null)
+            out = new ByteArrayOutputStream(INITIAL_GENERATION_BUFFER_SIZE);
+        try {
             IXmlWriter xmlStreamWriter = getXMLWriter(false, out);
 
             c.accept(xmlStreamWriter);
             xmlStreamWriter.writeEndDocument();
             xmlStreamWriter.close();
-            out.flush();
-            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+            return out.toByteArray();
         } catch (Exception e) {
             throw XMLStreamException.getXmlStreamException(e);
+        } finally {
+            // Buffers grown by an unusually large document are not kept
+            if (out.size() <= MAX_POOLED_GENERATION_BUFFER_SIZE) {
+                out.reset();
+                GENERATION_BUFFERS.offer(out);
+            }
         }
     }
+
     @FunctionalInterface
     public interface XMLReadFunction<R> {
 
@@ -25,5 +25,12 @@ public enum CancelReason {
     RENEWAL_FAILED,
     DEVICE_WAS_REMOVED,
     UNSUBSCRIBE_FAILED,
-    EXPIRED
+    EXPIRED,
+
+    /**
+     * The events of a local subscription could not be delivered several times in a row.
+     *
+     * @since 1.5.0
+     */
+    EVENT_DELIVERY_FAILED
 }
@@ -15,6 +15,8 @@
 
 package com.distrimind.upnp.model.message;
 
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+
 import java.net.URI;
 import java.net.URL;
 
@@ -84,5 +86,19 @@ public class StreamRequestMessage extends UpnpMessage<UpnpRequest> {
 	public Connection getConnection() {
 		return connection;
 	}
+
+    /**
+     * @return <code>true</code> if sending the request again has no other effect than sending it
+     *         once: <code>GET</code> and <code>HEAD</code> requests, and renewals of subscriptions.
+     * @since 1.5.0
+     */
+    public boolean isIdempotent() {
+        String method = getOperation().getHttpMethodName();
+        if ("GET".equals(method) || "HEAD".equals(method))
+            return true;
+        // A renewal carries the identifier of the subscription, a new subscription its callback
+        return getOperation().getMethod() == UpnpRequest.Method.SUBSCRIBE
+                && getHeaders().containsKey(UpnpHeader.Type.SID);
+    }
     
 }
\ No newline at end of file
@@ -45,6 +45,14 @@ public class UpnpHeaders extends Headers implements IUpnpHeaders {
         super(inputStream);
     }
 
+    /**
+     * @see Headers#Headers(byte[], int, int)
+     * @since 1.5.0
+     */
+    public UpnpHeaders(byte[] data, int offset, int length) {
+        super(data, offset, length);
+    }
+
     public UpnpHeaders(boolean normalizeHeaders) {
         super(normalizeHeaders);
     }
@@ -221,9 +221,13 @@ public abstract class UpnpMessage<O extends UpnpOperation> {
     }
 
 
+    /**
+     * @return <code>true</code> if the body is a valid non-empty string, or UTF-8 encoded text of a textual
+     *         content type, like the XML bodies generated without intermediate string.
+     */
     public boolean isBodyNonEmptyString() {
         return hasBody()
-            && getBodyType().equals(UpnpMessage.BodyType.STRING)
+            && (getBodyType().equals(UpnpMessage.BodyType.STRING) || isContentTypeText())
             && !ModelUtil.checkDescriptionXMLNotValid(getBodyString());
     }
 
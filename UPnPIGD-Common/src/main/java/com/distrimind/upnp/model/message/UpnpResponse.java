@@ -25,6 +25,7 @@ public class UpnpResponse extends UpnpOperation {
     public enum Status {
 
         OK(200, "OK"),
+        NOT_MODIFIED(304, "Not Modified"),
         BAD_REQUEST(400, "Bad Request"),
         NOT_FOUND(404, "Not Found"),
         METHOD_NOT_SUPPORTED(405, "Method Not Supported"),
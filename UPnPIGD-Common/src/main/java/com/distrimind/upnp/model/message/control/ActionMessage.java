@@ -15,6 +15,8 @@
 
 package com.distrimind.upnp.model.message.control;
 
+import com.distrimind.upnp.model.message.UpnpMessage;
+
 /**
  * A narrowing interface for action request/response messages.
  *
@@ -27,5 +29,10 @@ public interface ActionMessage {
     boolean isBodyNonEmptyString();
     String getBodyString();
     void setBody(String string);
-    
+
+    /**
+     * @since 1.5.0
+     */
+    void setBody(UpnpMessage.BodyType bodyType, Object body);
+
 }
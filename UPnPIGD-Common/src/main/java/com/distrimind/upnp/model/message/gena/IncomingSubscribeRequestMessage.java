@@ -26,6 +26,7 @@ import com.distrimind.upnp.model.message.header.NTEventHeader;
 import com.distrimind.upnp.model.message.header.TimeoutHeader;
 import com.distrimind.upnp.model.message.header.SubscriptionIdHeader;
 import com.distrimind.upnp.model.meta.LocalService;
+import com.distrimind.upnp.transport.HostAddressResolver;
 
 import java.net.*;
 import java.util.ArrayList;
@@ -56,16 +57,16 @@ public class IncomingSubscribeRequestMessage extends StreamRequestMessage {
         {
             for (URL url : header.getValue()) {
                 try {
-                    InetAddress ia = InetAddress.getByName(url.getHost());
-                    if (ia != null) {
-                        if (!ModelUtil.isLocalAddressReachableFromThisMachine(ia)) {
-                            log.debug("Host not accepted in IncomingSubscribeRequestMessage class");
-                        } else {
-                            callbackURLs.add(url);
-                        }
+                    // Never blocks the request thread on a name service lookup, a host name is
+                    // accepted once its resolution has completed
+                    InetAddress ia = HostAddressResolver.getAddress(url.getHost());
+                    if (ia == null) {
+                        log.debug("URL not found in IncomingSubscribeRequestMessage class");
+                    } else if (!ModelUtil.isLocalAddressReachableFromThisMachine(ia)) {
+                        log.debug("Host not accepted in IncomingSubscribeRequestMessage class");
+                    } else {
+                        callbackURLs.add(url);
                     }
-                } catch (UnknownHostException ignored) {
-                    log.debug("URL not found in IncomingSubscribeRequestMessage class");
                 } catch (SocketException e) {
                     log.debug("Cannot parse network interfaces", e);
                 }
@@ -16,9 +16,16 @@
 package com.distrimind.upnp.model.message.header;
 
 
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.types.NotificationSubtype;
+import com.distrimind.upnp.model.types.UDADeviceType;
+import com.distrimind.upnp.model.types.UDAServiceType;
+import com.distrimind.upnp.model.types.UDN;
 import com.distrimind.upnp.util.Exceptions;
 
 import java.util.*;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -151,12 +158,102 @@ public abstract class UpnpHeader<T> {
      */
     public abstract String getString();
 
+    /**
+     * Creates instances of a header subtype without reflection, and rejects cheaply the values its
+     * {@link #setString(String)} method would certainly reject.
+     */
+    private static final class Factory {
+
+        final Supplier<? extends UpnpHeader<?>> constructor;
+        final Predicate<String> mayParse;
+
+        Factory(Supplier<? extends UpnpHeader<?>> constructor, Predicate<String> mayParse) {
+            this.constructor = constructor;
+            this.mayParse = mayParse;
+        }
+    }
+
+    private static final String ROOT_DEVICE = "upnp:rootdevice";
+    private static final String EVENT = "upnp:event";
+    private static final String DEVICE = ":device:";
+    private static final String SERVICE = ":service";
+    private static final String UDA_DEVICE_TYPE_PREFIX = Constants.URN + UDADeviceType.DEFAULT_NAMESPACE + DEVICE;
+    private static final String UDA_SERVICE_TYPE_PREFIX = Constants.URN + UDAServiceType.DEFAULT_NAMESPACE + SERVICE + ":";
+
+    private static final Map<Class<?>, Factory> factories = new HashMap<>();
+    static
+    {
+        Predicate<String> any = s -> true;
+
+        // Values of the NT, ST and USN headers are classified by their prefix
+        factories.put(RootDeviceHeader.class, new Factory(RootDeviceHeader::new,
+                s -> ROOT_DEVICE.equalsIgnoreCase(s)));
+        factories.put(NTEventHeader.class, new Factory(NTEventHeader::new,
+                s -> EVENT.equalsIgnoreCase(s)));
+        factories.put(STAllHeader.class, new Factory(STAllHeader::new,
+                s -> NotificationSubtype.ALL.getHeaderString().equals(s)));
+        factories.put(UDNHeader.class, new Factory(UDNHeader::new,
+                s -> s.startsWith(UDN.PREFIX) && !s.contains("::urn")));
+        factories.put(USNRootDeviceHeader.class, new Factory(USNRootDeviceHeader::new,
+                s -> s.startsWith(UDN.PREFIX) && s.endsWith(USNRootDeviceHeader.ROOT_DEVICE_SUFFIX)));
+        factories.put(DeviceUSNHeader.class, new Factory(DeviceUSNHeader::new,
+                s -> s.contains("::") && isTypeOf(s, DEVICE)));
+        factories.put(ServiceUSNHeader.class, new Factory(ServiceUSNHeader::new,
+                s -> s.contains("::") && isTypeOf(s, SERVICE)));
+        factories.put(UDADeviceTypeHeader.class, new Factory(UDADeviceTypeHeader::new,
+                s -> s.startsWith(UDA_DEVICE_TYPE_PREFIX)));
+        factories.put(UDAServiceTypeHeader.class, new Factory(UDAServiceTypeHeader::new,
+                s -> s.startsWith(UDA_SERVICE_TYPE_PREFIX)));
+        factories.put(DeviceTypeHeader.class, new Factory(DeviceTypeHeader::new,
+                s -> isTypeOf(s, DEVICE) && (s.startsWith(Constants.URN) || hasWhitespace(s))));
+        factories.put(ServiceTypeHeader.class, new Factory(ServiceTypeHeader::new,
+                s -> isTypeOf(s, SERVICE) && (s.startsWith(Constants.URN) || hasWhitespace(s))));
+
+        factories.put(NTSHeader.class, new Factory(NTSHeader::new, any));
+        factories.put(HostHeader.class, new Factory(HostHeader::new, any));
+        factories.put(ServerHeader.class, new Factory(ServerHeader::new, any));
+        factories.put(LocationHeader.class, new Factory(LocationHeader::new, any));
+        factories.put(MaxAgeHeader.class, new Factory(MaxAgeHeader::new, any));
+        factories.put(UserAgentHeader.class, new Factory(UserAgentHeader::new, any));
+        factories.put(ContentTypeHeader.class, new Factory(ContentTypeHeader::new, any));
+        factories.put(MANHeader.class, new Factory(MANHeader::new, any));
+        factories.put(MXHeader.class, new Factory(MXHeader::new, any));
+        factories.put(EXTHeader.class, new Factory(EXTHeader::new, any));
+        factories.put(SoapActionHeader.class, new Factory(SoapActionHeader::new, any));
+        factories.put(TimeoutHeader.class, new Factory(TimeoutHeader::new, any));
+        factories.put(CallbackHeader.class, new Factory(CallbackHeader::new, any));
+        factories.put(SubscriptionIdHeader.class, new Factory(SubscriptionIdHeader::new, any));
+        factories.put(EventSequenceHeader.class, new Factory(EventSequenceHeader::new, any));
+        factories.put(RangeHeader.class, new Factory(RangeHeader::new, any));
+        factories.put(ContentRangeHeader.class, new Factory(ContentRangeHeader::new, any));
+        factories.put(PragmaHeader.class, new Factory(PragmaHeader::new, any));
+        factories.put(InterfaceMacHeader.class, new Factory(InterfaceMacHeader::new, any));
+        factories.put(AVClientInfoHeader.class, new Factory(AVClientInfoHeader::new, any));
+    }
+
+    /**
+     * Device and service types are parsed after removing all whitespaces, the values containing
+     * whitespaces are not classified.
+     */
+    private static boolean isTypeOf(String s, String kind) {
+        return s.contains(kind) || hasWhitespace(s);
+    }
+
+    private static boolean hasWhitespace(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.isWhitespace(s.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
     /**
      * Create a new instance of a {@link UpnpHeader} subtype that matches the given type and value.
      * <p>
      * This method iterates through all potential header subtype classes as declared in {@link Type}.
-     * It creates a new instance of the subtype class and calls its {@link #setString(String)} method.
-     * If no {@link InvalidHeaderException} is thrown, the subtype
+     * The subtypes which can't parse the value according to its prefix are skipped, without
+     * instantiating them. For the others, it creates a new instance of the subtype class and calls
+     * its {@link #setString(String)} method. If no {@link InvalidHeaderException} is thrown, the subtype
      * instance is returned.
    
      *
@@ -166,15 +263,21 @@ public abstract class UpnpHeader<T> {
      */
     public static UpnpHeader<?> newInstance(UpnpHeader.Type type, String headerValue) {
 
+        boolean hasValue = headerValue != null && !headerValue.trim().isEmpty();
+
         // Try all the UPnP headers and see if one matches our value parsers
         UpnpHeader<?> upnpHeader;
         for (Class<? extends UpnpHeader<?>> headerClass : type.getHeaderTypes()) {
+            Factory factory = factories.get(headerClass);
+            if (factory != null && hasValue && !factory.mayParse.test(headerValue)) {
+                continue;
+            }
             try {
 				if (log.isTraceEnabled()) {
 					log.trace("Trying to parse '" + type + "' with class: " + headerClass.getSimpleName());
 				}
-				upnpHeader = headerClass.getConstructor().newInstance();
-                if (headerValue != null && !headerValue.trim().isEmpty()) {
+				upnpHeader = factory != null ? factory.constructor.get() : headerClass.getConstructor().newInstance();
+                if (hasValue) {
                     upnpHeader.setString(headerValue);
                 }
                 return upnpHeader;
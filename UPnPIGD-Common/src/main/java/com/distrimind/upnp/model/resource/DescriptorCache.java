@@ -0,0 +1,208 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.model.resource;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The descriptors generated for a {@link DeviceDescriptorResource} or a {@link ServiceDescriptorResource},
+ * encoded once and served to all control points.
+ * <p>
+ * A device descriptor may differ between control points, see
+ * {@link com.distrimind.upnp.model.profile.DeviceDetailsProvider}, so descriptors are cached per variant.
+ * At most {@link #getMaxVariants()} variants are cached, the least recently served one being evicted
+ * when a new variant is cached.
+ * The cache lives as long as its resource, that is until the device is removed from or added again
+ * to the registry.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class DescriptorCache {
+
+	public static final int DEFAULT_MAX_VARIANTS = 16;
+
+	public static final String HEADER_ETAG = "ETag";
+	public static final String HEADER_LAST_MODIFIED = "Last-Modified";
+	public static final String HEADER_IF_NONE_MATCH = "If-None-Match";
+	public static final String HEADER_IF_MODIFIED_SINCE = "If-Modified-Since";
+
+	private final int maxVariants;
+	private final ReentrantLock lock = new ReentrantLock();
+	// In access order, the eldest entry is the least recently used
+	private final Map<Object, Descriptor> descriptors;
+
+	public DescriptorCache() {
+		this(DEFAULT_MAX_VARIANTS);
+	}
+
+	public DescriptorCache(int maxVariants) {
+		if (maxVariants < 1)
+			throw new IllegalArgumentException("maxVariants must be strictly positive");
+		this.maxVariants = maxVariants;
+		this.descriptors = new LinkedHashMap<>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Object, Descriptor> eldest) {
+				return size() > DescriptorCache.this.maxVariants;
+			}
+		};
+	}
+
+	public int getMaxVariants() {
+		return maxVariants;
+	}
+
+	/**
+	 * @param variant Identifies the generated content, compared with <code>equals()</code>.
+	 * @return The cached descriptor, <code>null</code> if it wasn't cached yet.
+	 */
+	public Descriptor get(Object variant) {
+		lock.lock();
+		try {
+			return descriptors.get(variant);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Encodes the descriptor and caches it, evicting the least recently used variant if the maximum
+	 * number of variants was reached.
+	 *
+	 * @param variant Identifies the generated content, compared with <code>equals()</code>.
+	 * @param xml The generated descriptor.
+	 * @return The cached descriptor, the one cached meanwhile by another thread if any.
+	 */
+	public Descriptor put(Object variant, String xml) {
+		// Encoded and hashed without holding the lock
+		Descriptor descriptor = new Descriptor(xml.getBytes(StandardCharsets.UTF_8));
+		lock.lock();
+		try {
+			Descriptor previous = descriptors.putIfAbsent(variant, descriptor);
+			return previous != null ? previous : descriptor;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public int size() {
+		lock.lock();
+		try {
+			return descriptors.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	public void clear() {
+		lock.lock();
+		try {
+			descriptors.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * An encoded descriptor with its validators, immutable.
+	 */
+	public static final class Descriptor {
+
+		private final byte[] data;
+		private final String eTag;
+		private final long lastModifiedSeconds;
+		private final String lastModified;
+
+		@SuppressWarnings("PMD.ArrayIsStoredDirectly")
+		Descriptor(byte[] data) {
+			this.data = data;
+			this.eTag = '"' + digest(data) + '"';
+			this.lastModifiedSeconds = System.currentTimeMillis() / 1000;
+			this.lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(
+					Instant.ofEpochSecond(lastModifiedSeconds).atZone(ZoneOffset.UTC)
+			);
+		}
+
+		/**
+		 * @return The UTF-8 encoded descriptor, shared by all responses, it must not be modified.
+		 */
+		@SuppressWarnings("PMD.MethodReturnsInternalArray")
+		public byte[] getData() {
+			return data;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		/**
+		 * Evaluates the validators of a conditional request, <code>If-None-Match</code> taking
+		 * precedence over <code>If-Modified-Since</code>.
+		 *
+		 * @param ifNoneMatch The value of the <code>If-None-Match</code> header, or <code>null</code>.
+		 * @param ifModifiedSince The value of the <code>If-Modified-Since</code> header, or <code>null</code>.
+		 * @return <code>true</code> if the client has this descriptor already.
+		 */
+		public boolean isNotModified(String ifNoneMatch, String ifModifiedSince) {
+			if (ifNoneMatch != null) {
+				for (String tag : ifNoneMatch.split(",")) {
+					String t = tag.trim();
+					if ("*".equals(t) || eTag.equals(t) || ("W/" + eTag).equals(t)) {
+						return true;
+					}
+				}
+				return false;
+			}
+			if (ifModifiedSince != null) {
+				try {
+					return ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+							.toEpochSecond() >= lastModifiedSeconds;
+				} catch (DateTimeParseException ex) {
+					return false;
+				}
+			}
+			return false;
+		}
+
+		private static String digest(byte[] data) {
+			try {
+				byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+				StringBuilder sb = new StringBuilder(32);
+				for (int i = 0; i < 16; i++) {
+					sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+				}
+				return sb.toString();
+			} catch (NoSuchAlgorithmException ex) {
+				throw new IllegalStateException(ex);
+			}
+		}
+	}
+}
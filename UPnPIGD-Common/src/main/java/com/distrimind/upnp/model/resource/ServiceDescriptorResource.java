@@ -24,7 +24,17 @@ import java.net.URI;
  */
 public class ServiceDescriptorResource<T> extends Resource<LocalService<T>> {
 
+    final private DescriptorCache descriptorCache = new DescriptorCache();
+
     public ServiceDescriptorResource(URI localURI, LocalService<T> model) {
         super(localURI, model);
     }
+
+    /**
+     * @return The descriptors generated for this resource.
+     * @since 1.5.0
+     */
+    public DescriptorCache getDescriptorCache() {
+        return descriptorCache;
+    }
 }
@@ -0,0 +1,244 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.platform;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+
+import java.util.Comparator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executor of one role of the UPnP stack, with a bounded number of threads and a bounded priority queue.
+ * <p>
+ * Queued tasks are ordered by {@link ExecutionPriority}, then by submission order. When the queue is
+ * full, the {@link OverloadPolicy} decides what is done with the new task. Only
+ * {@link ExecutionPriority#DISCOVERY} tasks are ever dropped: other tasks, like the continuations of
+ * <code>CompletableFuture</code>s, may be waited for, they are run by the submitting thread instead.
+ * The queue capacity is a soft limit: concurrent submissions may exceed it by the number of
+ * submitting threads.
+ * </p>
+ * <p>
+ * Idle threads terminate after one minute.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class BoundedUpnpIGDExecutor extends ThreadPoolExecutor {
+	final private static DMLogger log = Log.getLogger(BoundedUpnpIGDExecutor.class);
+
+	private static final Comparator<Runnable> TASK_ORDER = (a, b) -> ((PrioritizedTask) a).compareTo((PrioritizedTask) b);
+
+	private final String name;
+	private final int queueCapacity;
+	private final OverloadPolicy overloadPolicy;
+	private final AtomicLong sequence = new AtomicLong();
+	private final AtomicLong droppedTaskCount = new AtomicLong();
+	private final AtomicLong callerRunsTaskCount = new AtomicLong();
+
+	public BoundedUpnpIGDExecutor(String name, int maxThreads, int queueCapacity, OverloadPolicy overloadPolicy) {
+		this(name, maxThreads, queueCapacity, overloadPolicy, new UpnpIGDThreadFactory(name));
+	}
+
+	public BoundedUpnpIGDExecutor(String name, int maxThreads, int queueCapacity, OverloadPolicy overloadPolicy, ThreadFactory threadFactory) {
+		super(maxThreads,
+				maxThreads,
+				60L,
+				TimeUnit.SECONDS,
+				new PriorityBlockingQueue<>(Math.min(queueCapacity, 64), TASK_ORDER),
+				threadFactory,
+				new ThreadPoolExecutor.DiscardPolicy() {
+					// Rejections only happen during shutdown
+					@Override
+					public void rejectedExecution(Runnable runnable, ThreadPoolExecutor threadPoolExecutor) {
+						if (log.isInfoEnabled())
+							log.info("Thread pool " + name + " rejected execution of " + runnable);
+						super.rejectedExecution(runnable, threadPoolExecutor);
+					}
+				}
+		);
+		if (queueCapacity < 1)
+			throw new IllegalArgumentException();
+		if (overloadPolicy == null)
+			throw new NullPointerException();
+		this.name = name;
+		this.queueCapacity = queueCapacity;
+		this.overloadPolicy = overloadPolicy;
+		allowCoreThreadTimeOut(true);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public OverloadPolicy getOverloadPolicy() {
+		return overloadPolicy;
+	}
+
+	/**
+	 * @return The number of tasks waiting for a thread.
+	 */
+	public int getQueueDepth() {
+		return getQueue().size();
+	}
+
+	/**
+	 * @return The number of discovery tasks dropped because the queue was full.
+	 */
+	public long getDroppedTaskCount() {
+		return droppedTaskCount.get();
+	}
+
+	/**
+	 * @return The number of tasks run by the submitting thread because the queue was full.
+	 */
+	public long getCallerRunsTaskCount() {
+		return callerRunsTaskCount.get();
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		ExecutionPriority priority = command instanceof PrioritizedFutureTask
+				? ((PrioritizedFutureTask<?>) command).priority
+				: ExecutionPriority.of(command);
+		PrioritizedTask task = new PrioritizedTask(command, priority, sequence.incrementAndGet());
+		if (getQueue().size() >= queueCapacity && !isShutdown()) {
+			PrioritizedTask victim = overloadPolicy == OverloadPolicy.DROP_OLDEST ? findDropCandidate() : null;
+			if (victim != null && getQueue().remove(victim)) {
+				drop(victim);
+			} else if (priority == ExecutionPriority.DISCOVERY && overloadPolicy == OverloadPolicy.DROP_OLDEST) {
+				drop(task);
+				return;
+			} else {
+				// Other tasks may be waited for, continuations of futures for instance, they are never dropped
+				callerRunsTaskCount.incrementAndGet();
+				if (log.isDebugEnabled())
+					log.debug("Thread pool " + name + " is overloaded, running in caller thread: " + command);
+				task.run();
+				return;
+			}
+		}
+		super.execute(task);
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Runnable runnable, T value) {
+		return new PrioritizedFutureTask<>(runnable, value, ExecutionPriority.of(runnable));
+	}
+
+	@Override
+	protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+		return new PrioritizedFutureTask<>(callable, ExecutionPriority.of(callable));
+	}
+
+	@Override
+	protected void afterExecute(Runnable runnable, Throwable throwable) {
+		super.afterExecute(runnable, throwable);
+		UpnpIGDExecutor.logAbruptTermination(runnable, throwable);
+	}
+
+	/**
+	 * @return The oldest queued discovery task, <code>null</code> if there is none.
+	 */
+	private PrioritizedTask findDropCandidate() {
+		PrioritizedTask candidate = null;
+		for (Runnable r : getQueue()) {
+			PrioritizedTask t = (PrioritizedTask) r;
+			if (t.priority == ExecutionPriority.DISCOVERY && (candidate == null || t.sequence < candidate.sequence))
+				candidate = t;
+		}
+		return candidate;
+	}
+
+	private void drop(PrioritizedTask task) {
+		droppedTaskCount.incrementAndGet();
+		if (log.isDebugEnabled())
+			log.debug("Thread pool " + name + " is overloaded, dropping: " + task);
+		if (task.delegate instanceof Future)
+			((Future<?>) task.delegate).cancel(false);
+	}
+
+	/**
+	 * Queued element, ordered by priority, then by submission order.
+	 */
+	private static final class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+		final Runnable delegate;
+		final ExecutionPriority priority;
+		final long sequence;
+
+		PrioritizedTask(Runnable delegate, ExecutionPriority priority, long sequence) {
+			this.delegate = delegate;
+			this.priority = priority;
+			this.sequence = sequence;
+		}
+
+		@Override
+		public void run() {
+			delegate.run();
+		}
+
+		@Override
+		public int compareTo(PrioritizedTask o) {
+			int c = priority.compareTo(o.priority);
+			return c != 0 ? c : Long.compare(sequence, o.sequence);
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof PrioritizedTask && sequence == ((PrioritizedTask) o).sequence;
+		}
+
+		@Override
+		public int hashCode() {
+			return Long.hashCode(sequence);
+		}
+
+		@Override
+		public String toString() {
+			return delegate.toString();
+		}
+	}
+
+	/**
+	 * Task created by the <code>submit</code> methods, keeping the priority of the submitted task.
+	 */
+	private static final class PrioritizedFutureTask<T> extends FutureTask<T> {
+		final ExecutionPriority priority;
+
+		PrioritizedFutureTask(Runnable runnable, T value, ExecutionPriority priority) {
+			super(runnable, value);
+			this.priority = priority;
+		}
+
+		PrioritizedFutureTask(Callable<T> callable, ExecutionPriority priority) {
+			super(callable);
+			this.priority = priority;
+		}
+	}
+}
@@ -56,6 +56,13 @@ public class DefaultPlatformUpnpServiceConfiguration extends PlatformUpnpService
 
 	@Override
 	public StreamClient<?> createStreamClient(ExecutorService syncProtocolExecutorService, int timeoutSeconds) {
+		if (isPooledStreamClientEnabled())
+			return new PooledStreamClientImpl(
+					new PooledStreamClientConfigurationImpl(
+							syncProtocolExecutorService,
+							timeoutSeconds
+					)
+			);
 		return new StreamClientImpl(
 				new StreamClientConfigurationImpl(
 						syncProtocolExecutorService,
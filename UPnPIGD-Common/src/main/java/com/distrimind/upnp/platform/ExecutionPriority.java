@@ -0,0 +1,57 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.platform;
+
+import com.distrimind.upnp.controlpoint.ActionCallback;
+import com.distrimind.upnp.protocol.RetrieveRemoteDescriptors;
+import com.distrimind.upnp.protocol.async.ReceivingNotification;
+import com.distrimind.upnp.protocol.async.ReceivingSearch;
+import com.distrimind.upnp.protocol.async.ReceivingSearchResponse;
+import com.distrimind.upnp.transport.spi.UpnpStream;
+
+/**
+ * Order in which the queued tasks of a {@link BoundedUpnpIGDExecutor} are executed.
+ * <p>
+ * Action invocations go first, so that control traffic is not delayed by a burst of
+ * discovery messages. Tasks of the same priority are executed in submission order.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public enum ExecutionPriority {
+	CONTROL,
+	DEFAULT,
+	DISCOVERY;
+
+	/**
+	 * Received action invocations are run by the {@link UpnpStream} of their HTTP request, which
+	 * reports its priority from the request headers.
+	 *
+	 * @param task The submitted <code>Runnable</code> or <code>Callable</code>.
+	 * @return The priority of the given task, {@link #DEFAULT} if its type is unknown.
+	 */
+	public static ExecutionPriority of(Object task) {
+		if (task instanceof UpnpStream)
+			return ((UpnpStream) task).getExecutionPriority();
+		if (task instanceof ActionCallback)
+			return CONTROL;
+		if (task instanceof ReceivingSearch || task instanceof ReceivingNotification
+				|| task instanceof ReceivingSearchResponse || task instanceof RetrieveRemoteDescriptors)
+			return DISCOVERY;
+		return DEFAULT;
+	}
+}
@@ -0,0 +1,37 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.platform;
+
+/**
+ * What a {@link BoundedUpnpIGDExecutor} does with a new task when its queue is full.
+ *
+ * @since 1.5.0
+ */
+public enum OverloadPolicy {
+	/**
+	 * Drops the oldest queued {@link ExecutionPriority#DISCOVERY} task, or the new task if it is a
+	 * discovery task and none is queued. Fits discovery messages, which are periodically repeated anyway.
+	 * Tasks of other priorities are never dropped, they are run in the submitting thread if no discovery
+	 * task can make room for them.
+	 */
+	DROP_OLDEST,
+	/**
+	 * Runs the new task in the submitting thread, slowing down the producer.
+	 * Fits control messages, which must not be lost.
+	 */
+	CALLER_RUNS
+}
@@ -23,6 +23,7 @@ import com.distrimind.upnp.model.Namespace;
 import com.distrimind.upnp.model.message.UpnpHeaders;
 import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.meta.RemoteService;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
 import com.distrimind.upnp.transport.impl.*;
 import com.distrimind.upnp.transport.spi.*;
 import java.io.IOException;
@@ -34,7 +35,9 @@ import java.net.NetworkInterface;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -43,6 +46,29 @@ import java.util.concurrent.TimeUnit;
  */
 public abstract class PlatformUpnpServiceConfiguration {
 
+	/**
+	 * Set this system property to <code>true</code> to receive all datagrams with a single
+	 * {@link DatagramChannelSelector} instead of one thread per network interface and bind address.
+	 */
+	public static final String SYSTEM_PROPERTY_DATAGRAM_CHANNEL_SELECTOR = "com.distrimind.upnp.transport.useDatagramChannelSelector";
+
+	/**
+	 * Comma separated names of the executors whose threads must be platform threads, even if virtual
+	 * threads are available. Known names are <code>async</code>, <code>sync</code> and
+	 * <code>registry-listener</code>, e.g. <code>-Dcom.distrimind.upnp.platform.platformThreadExecutors=sync</code>
+	 * when registry listeners or action callbacks hold monitors while blocking.
+	 */
+	public static final String SYSTEM_PROPERTY_PLATFORM_THREAD_EXECUTORS = "com.distrimind.upnp.platform.platformThreadExecutors";
+
+	/**
+	 * Set this system property to <code>true</code> to send HTTP requests with a
+	 * {@link com.distrimind.upnp.transport.impl.PooledStreamClientImpl}, keeping connections alive between
+	 * requests to the same device.
+	 */
+	public static final String SYSTEM_PROPERTY_POOLED_STREAM_CLIENT = "com.distrimind.upnp.transport.usePooledStreamClient";
+
+	private DatagramChannelSelector datagramChannelSelector;
+
 	protected PlatformUpnpServiceConfiguration() {
 
 	}
@@ -50,6 +76,78 @@ public abstract class PlatformUpnpServiceConfiguration {
 	{
 		return new UpnpIGDExecutor();
 	}
+
+	/**
+	 * @return The executor of the asynchronous protocols, mostly discovery messages. Defaults to
+	 * 16 threads and 256 queued tasks, the oldest discovery messages being dropped when overloaded.
+	 * @since 1.5.0
+	 */
+	public ExecutorService createAsyncProtocolExecutorService()
+	{
+		return new BoundedUpnpIGDExecutor("async", 16, 256, OverloadPolicy.DROP_OLDEST, createThreadFactory("async"));
+	}
+
+	/**
+	 * @return The executor of the synchronous protocols, such as action invocations and incoming
+	 * HTTP requests. Defaults to 32 threads and 128 queued tasks, the submitting thread running the
+	 * task when overloaded.
+	 * @since 1.5.0
+	 */
+	public ExecutorService createSyncProtocolExecutorService()
+	{
+		return new BoundedUpnpIGDExecutor("sync", 32, 128, OverloadPolicy.CALLER_RUNS, createThreadFactory("sync"));
+	}
+
+	/**
+	 * @return The executor of the registry listener notifications. Defaults to 8 threads,
+	 * notifications are never dropped.
+	 * @since 1.5.0
+	 */
+	public ExecutorService createRegistryListenerExecutorService()
+	{
+		return new BoundedUpnpIGDExecutor("registry-listener", 8, Integer.MAX_VALUE, OverloadPolicy.CALLER_RUNS, createThreadFactory("registry-listener"));
+	}
+
+	/**
+	 * @param executor The executor running the due tasks, the asynchronous protocol executor.
+	 * @return The scheduler of the delayed protocol tasks, with a single timer thread.
+	 * @since 1.5.0
+	 */
+	public ProtocolScheduler createProtocolScheduler(Executor executor)
+	{
+		return new ProtocolScheduler("protocol-scheduler", executor);
+	}
+
+	/**
+	 * @param executorName The name of the executor, <code>async</code>, <code>sync</code> or
+	 *                     <code>registry-listener</code>.
+	 * @return The factory of the threads of the given executor, creating virtual threads if they are
+	 * available and {@link #isVirtualThreadEnabled(String)}.
+	 * @since 1.5.0
+	 */
+	protected ThreadFactory createThreadFactory(String executorName)
+	{
+		return new UpnpIGDThreadFactory(executorName, isVirtualThreadEnabled(executorName));
+	}
+
+	/**
+	 * @param executorName The name of the executor.
+	 * @return <code>false</code> if the executor is listed in the system property
+	 * {@link #SYSTEM_PROPERTY_PLATFORM_THREAD_EXECUTORS}.
+	 * @since 1.5.0
+	 */
+	public boolean isVirtualThreadEnabled(String executorName)
+	{
+		String platformThreadExecutors = System.getProperty(SYSTEM_PROPERTY_PLATFORM_THREAD_EXECUTORS);
+		if (platformThreadExecutors == null)
+			return true;
+		for (String name : platformThreadExecutors.split(",")) {
+			if (name.trim().equals(executorName))
+				return false;
+		}
+		return true;
+	}
+
 	public ExecutorService createDefaultAndroidExecutorService() throws IOException
 	{
 		throw new RuntimeException("Unsupported operation");
@@ -63,17 +161,47 @@ public abstract class PlatformUpnpServiceConfiguration {
 	public abstract StreamClient<?> createStreamClient(ExecutorService syncProtocolExecutorService, int timeoutSeconds);
 
 	public MulticastReceiver<?> createMulticastReceiver(NetworkAddressFactory networkAddressFactory) {
-		return new MulticastReceiverImpl(
-				new MulticastReceiverConfigurationImpl(
-						networkAddressFactory.getMulticastGroup(),
-						networkAddressFactory.getMulticastPort()
-				)
+		MulticastReceiverConfigurationImpl configuration = new MulticastReceiverConfigurationImpl(
+				networkAddressFactory.getMulticastGroup(),
+				networkAddressFactory.getMulticastPort()
 		);
+		if (isDatagramChannelSelectorEnabled())
+			return new MulticastChannelReceiverImpl(configuration, getDatagramChannelSelector());
+		return new MulticastReceiverImpl(configuration);
 	}
 
 	public DatagramIO<?> createDatagramIO(NetworkAddressFactory networkAddressFactory) {
+		if (isDatagramChannelSelectorEnabled())
+			return new DatagramChannelIOImpl(new DatagramIOConfigurationImpl(), getDatagramChannelSelector());
 		return new DatagramIOImpl(new DatagramIOConfigurationImpl());
 	}
+
+	/**
+	 * @return <code>true</code> if {@link #createMulticastReceiver(NetworkAddressFactory)} and
+	 * {@link #createDatagramIO(NetworkAddressFactory)} create transports sharing one
+	 * {@link DatagramChannelSelector}. Defaults to the value of the system property
+	 * {@link #SYSTEM_PROPERTY_DATAGRAM_CHANNEL_SELECTOR}.
+	 */
+	public boolean isDatagramChannelSelectorEnabled() {
+		return Boolean.getBoolean(SYSTEM_PROPERTY_DATAGRAM_CHANNEL_SELECTOR);
+	}
+
+	/**
+	 * @return <code>true</code> if {@link #createStreamClient(ExecutorService, int)} creates a client pooling
+	 * persistent connections. Defaults to the value of the system property {@link #SYSTEM_PROPERTY_POOLED_STREAM_CLIENT}.
+	 */
+	public boolean isPooledStreamClientEnabled() {
+		return Boolean.getBoolean(SYSTEM_PROPERTY_POOLED_STREAM_CLIENT);
+	}
+
+	/**
+	 * @return The selector shared by all datagram transports created by this configuration.
+	 */
+	public synchronized DatagramChannelSelector getDatagramChannelSelector() {
+		if (datagramChannelSelector == null)
+			datagramChannelSelector = new DatagramChannelSelector();
+		return datagramChannelSelector;
+	}
 	public StreamServer<?> createStreamServer(NetworkAddressFactory networkAddressFactory)
 	{
 		return createStreamServer(networkAddressFactory.getStreamListenPort());
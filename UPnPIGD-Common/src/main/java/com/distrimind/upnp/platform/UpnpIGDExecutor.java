@@ -135,6 +135,10 @@ public class UpnpIGDExecutor extends ThreadPoolExecutor {
 	@Override
 	protected void afterExecute(Runnable runnable, Throwable throwable) {
 		super.afterExecute(runnable, throwable);
+		logAbruptTermination(runnable, throwable);
+	}
+
+	static void logAbruptTermination(Runnable runnable, Throwable throwable) {
 		if (throwable != null) {
 			Throwable cause = Exceptions.unwrap(throwable);
 			if (cause instanceof InterruptedException) {
@@ -69,6 +69,7 @@ package com.distrimind.upnp.platform;
 import com.distrimind.flexilogxml.concurrent.ThreadType;
 
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class UpnpIGDThreadFactory implements ThreadFactory {
 
@@ -78,6 +79,37 @@ public class UpnpIGDThreadFactory implements ThreadFactory {
 		this.threadFactory= ThreadType.VIRTUAL_THREAD_IF_AVAILABLE.newThreadFactoryInstance(Thread.currentThread().getThreadGroup(), "upnp_igd-", 0, Thread.NORM_PRIORITY, false);
 	}
 
+	/**
+	 * @param name the name of the pool, added to the names of the created threads
+	 * @since 1.5.0
+	 */
+	public UpnpIGDThreadFactory(String name) {
+		this(name, true);
+	}
+
+	/**
+	 * @param name the name of the pool, added to the names of the created threads
+	 * @param virtualThreadIfAvailable <code>false</code> to create platform threads even if virtual
+	 *                                 threads are available, e.g. for tasks holding monitors while blocking
+	 * @since 1.5.0
+	 */
+	public UpnpIGDThreadFactory(String name, boolean virtualThreadIfAvailable) {
+		if (virtualThreadIfAvailable)
+			this.threadFactory= ThreadType.VIRTUAL_THREAD_IF_AVAILABLE.newThreadFactoryInstance(Thread.currentThread().getThreadGroup(), "upnp_igd-"+name+"-", 0, Thread.NORM_PRIORITY, false);
+		else
+			this.threadFactory= newPlatformThreadFactory(Thread.currentThread().getThreadGroup(), "upnp_igd-"+name+"-");
+	}
+
+	private static ThreadFactory newPlatformThreadFactory(ThreadGroup group, String prefix) {
+		AtomicInteger threadNumber = new AtomicInteger(1);
+		return r -> {
+			Thread t = new Thread(group, r, prefix + threadNumber.getAndIncrement());
+			t.setDaemon(false);
+			t.setPriority(Thread.NORM_PRIORITY);
+			return t;
+		};
+	}
+
 	@Override
 	public Thread newThread(Runnable r) {
 		return threadFactory.newThread(r);
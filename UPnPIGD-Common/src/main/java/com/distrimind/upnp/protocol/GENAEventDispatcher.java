@@ -0,0 +1,379 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.protocol;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.model.gena.CancelReason;
+import com.distrimind.upnp.model.gena.LocalGENASubscription;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.state.StateVariableValue;
+import com.distrimind.upnp.model.types.UnsignedIntegerFourBytes;
+import com.distrimind.upnp.protocol.sync.SendingEvent;
+import com.distrimind.upnp.registry.Registry;
+import com.distrimind.upnp.util.Exceptions;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the events of the local GENA subscriptions to their subscribers.
+ * <p>
+ * Each subscription has its own queue, drained by a single task at a time on the
+ * {@link com.distrimind.upnp.UpnpServiceConfiguration#getSyncProtocolExecutorService()}: the events of a
+ * subscriber are sent in the order of their sequence numbers, with at most
+ * {@link #getMaxInFlightPerSubscription()} events waiting for a response. At most {@link #getMaxInFlight()}
+ * events wait for a response for all subscriptions together. No thread is blocked while waiting, see
+ * {@link SendingEvent#executeAsync()}. An event still waiting after {@link #getEventTimeoutMillis()} is
+ * considered failed, so that a lost completion never holds its permit.
+ * </p>
+ * <p>
+ * The events of a slow subscriber are coalesced: while its earlier events are in flight, the new state
+ * variable values replace the pending ones of the same variables, and are sent with a single event. A
+ * subscription whose last {@link #getMaxConsecutiveFailures()} events could not be delivered is removed
+ * from the registry and ended with {@link CancelReason#EVENT_DELIVERY_FAILED}.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class GENAEventDispatcher {
+
+	final private static DMLogger log = Log.getLogger(GENAEventDispatcher.class);
+
+	public static final int DEFAULT_MAX_IN_FLIGHT_PER_SUBSCRIPTION = 1;
+	public static final int DEFAULT_MAX_IN_FLIGHT = 64;
+	public static final int DEFAULT_MAX_CONSECUTIVE_FAILURES = 3;
+	public static final long DEFAULT_EVENT_TIMEOUT_MILLIS = 60000;
+
+	protected final Registry registry;
+	protected final int maxInFlightPerSubscription;
+	protected final int maxInFlight;
+	protected final int maxConsecutiveFailures;
+	private final Semaphore inFlightPermits;
+	private final ConcurrentMap<String, SubscriptionQueue> queues = new ConcurrentHashMap<>();
+	// Queues having pending events, waiting for a permit
+	private final Queue<SubscriptionQueue> waitingQueues = new ConcurrentLinkedQueue<>();
+
+	public GENAEventDispatcher(Registry registry) {
+		this(registry, DEFAULT_MAX_IN_FLIGHT_PER_SUBSCRIPTION, DEFAULT_MAX_IN_FLIGHT, DEFAULT_MAX_CONSECUTIVE_FAILURES);
+	}
+
+	/**
+	 * @param registry The registry of the local subscriptions.
+	 * @param maxInFlightPerSubscription The maximum number of events of a subscription waiting for a response.
+	 * @param maxInFlight The maximum number of events waiting for a response.
+	 * @param maxConsecutiveFailures The number of consecutive delivery failures after which a subscription
+	 *                               is removed, or <code>0</code> to never remove subscriptions.
+	 */
+	public GENAEventDispatcher(Registry registry, int maxInFlightPerSubscription, int maxInFlight, int maxConsecutiveFailures) {
+		if (maxInFlightPerSubscription < 1)
+			throw new IllegalArgumentException("maxInFlightPerSubscription must be strictly positive");
+		if (maxInFlight < 1)
+			throw new IllegalArgumentException("maxInFlight must be strictly positive");
+		if (maxConsecutiveFailures < 0)
+			throw new IllegalArgumentException("maxConsecutiveFailures must be positive");
+		this.registry = registry;
+		this.maxInFlightPerSubscription = maxInFlightPerSubscription;
+		this.maxInFlight = maxInFlight;
+		this.maxConsecutiveFailures = maxConsecutiveFailures;
+		this.inFlightPermits = new Semaphore(maxInFlight);
+	}
+
+	public int getMaxInFlightPerSubscription() {
+		return maxInFlightPerSubscription;
+	}
+
+	public int getMaxInFlight() {
+		return maxInFlight;
+	}
+
+	public int getMaxConsecutiveFailures() {
+		return maxConsecutiveFailures;
+	}
+
+	/**
+	 * @return The time after which an event waiting for a response is considered failed, and releases its permit.
+	 *         Defaults to {@link #DEFAULT_EVENT_TIMEOUT_MILLIS}, longer than the timeout of the stream client.
+	 */
+	protected long getEventTimeoutMillis() {
+		return DEFAULT_EVENT_TIMEOUT_MILLIS;
+	}
+
+	/**
+	 * Queues an event with the current values of the subscription. Never blocks, call it while
+	 * holding the lock of the subscription so that its values are read consistently.
+	 *
+	 * @param subscription The registered subscription.
+	 */
+	public void dispatch(LocalGENASubscription<?> subscription) {
+		Collection<? extends StateVariableValue<?>> values = new ArrayList<>(subscription.getCurrentValues().values());
+		queues.computeIfAbsent(subscription.getSubscriptionId(), id -> new SubscriptionQueue(subscription))
+				.add(values);
+	}
+
+	/**
+	 * Stops the delivery to the given subscription, its pending events are discarded.
+	 *
+	 * @param subscription The subscription to remove.
+	 */
+	@SuppressWarnings("PMD.CompareObjectsWithEquals")
+	public void remove(LocalGENASubscription<?> subscription) {
+		SubscriptionQueue queue = queues.get(subscription.getSubscriptionId());
+		if (queue != null && queue.subscription == subscription) {
+			queues.remove(subscription.getSubscriptionId(), queue);
+			queue.discard();
+		}
+	}
+
+	/**
+	 * @return The number of events waiting for a response.
+	 */
+	public int getInFlightCount() {
+		return maxInFlight - inFlightPermits.availablePermits();
+	}
+
+	/**
+	 * @return The number of subscriptions having an event queue.
+	 */
+	public int getQueueCount() {
+		return queues.size();
+	}
+
+	/**
+	 * @param subscription A subscription.
+	 * @return The number of events merged into a pending event because earlier events were in flight.
+	 */
+	public long getCoalescedEventCount(LocalGENASubscription<?> subscription) {
+		SubscriptionQueue queue = queues.get(subscription.getSubscriptionId());
+		return queue == null ? 0 : queue.getCoalescedCount();
+	}
+
+	private void resumeWaitingQueues() {
+		SubscriptionQueue queue;
+		while (inFlightPermits.availablePermits() > 0 && (queue = waitingQueues.poll()) != null) {
+			queue.resume();
+		}
+	}
+
+	private final class SubscriptionQueue implements Runnable {
+
+		final LocalGENASubscription<?> subscription;
+		private final ReentrantLock queueLock = new ReentrantLock();
+		private Map<String, StateVariableValue<?>> pendingValues;
+		private int inFlight;
+		private int consecutiveFailures;
+		private boolean scheduled;
+		private boolean waiting;
+		private boolean discarded;
+		private long coalescedCount;
+
+		SubscriptionQueue(LocalGENASubscription<?> subscription) {
+			this.subscription = subscription;
+		}
+
+		void add(Collection<? extends StateVariableValue<?>> values) {
+			boolean submit;
+			queueLock.lock();
+			try {
+				if (discarded)
+					return;
+				if (pendingValues == null) {
+					pendingValues = new LinkedHashMap<>();
+				} else {
+					coalescedCount++;
+					if (log.isTraceEnabled())
+						log.trace("Subscriber lags behind, coalescing pending event: " + subscription);
+				}
+				for (StateVariableValue<?> value : values)
+					pendingValues.put(value.getStateVariable().getName(), value);
+				submit = schedule();
+			} finally {
+				queueLock.unlock();
+			}
+			if (submit)
+				submit();
+		}
+
+		/**
+		 * Call it while holding the queue lock.
+		 *
+		 * @return <code>true</code> if a drain task must be submitted.
+		 */
+		private boolean schedule() {
+			if (discarded || scheduled || waiting || pendingValues == null || inFlight >= maxInFlightPerSubscription)
+				return false;
+			scheduled = true;
+			return true;
+		}
+
+		void discard() {
+			queueLock.lock();
+			try {
+				discarded = true;
+				pendingValues = null;
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		void resume() {
+			boolean submit;
+			queueLock.lock();
+			try {
+				waiting = false;
+				submit = schedule();
+			} finally {
+				queueLock.unlock();
+			}
+			if (submit)
+				submit();
+		}
+
+		long getCoalescedCount() {
+			queueLock.lock();
+			try {
+				return coalescedCount;
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		private void submit() {
+			try {
+				registry.getConfiguration().getSyncProtocolExecutorService().execute(this);
+			} catch (RejectedExecutionException ex) {
+				queueLock.lock();
+				try {
+					if (log.isDebugEnabled())
+						log.debug("Protocol executor rejected event delivery, discarding pending event: " + subscription);
+					pendingValues = null;
+					scheduled = false;
+				} finally {
+					queueLock.unlock();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			// Only this task sends the events of the subscription, their sequence numbers are assigned in order
+			Collection<StateVariableValue<?>> values;
+			while ((values = poll()) != null) {
+				send(values);
+			}
+		}
+
+		/**
+		 * @return The values of the next event to send, <code>null</code> if there is none or if the
+		 *         event can't be sent now.
+		 */
+		@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+		private Collection<StateVariableValue<?>> poll() {
+			queueLock.lock();
+			try {
+				if (discarded || pendingValues == null || inFlight >= maxInFlightPerSubscription) {
+					scheduled = false;
+					return null;
+				}
+				if (inFlightPermits.tryAcquire()) {
+					Collection<StateVariableValue<?>> values = pendingValues.values();
+					pendingValues = null;
+					inFlight++;
+					return values;
+				}
+				scheduled = false;
+				waiting = true;
+			} finally {
+				queueLock.unlock();
+			}
+			if (log.isDebugEnabled())
+				log.debug("Too many events in flight, delaying event of: " + subscription);
+			waitingQueues.add(this);
+			// A permit may have been released meanwhile
+			resumeWaitingQueues();
+			return null;
+		}
+
+		@SuppressWarnings("PMD.CompareObjectsWithEquals")
+		private void send(Collection<StateVariableValue<?>> values) {
+			if (registry.getLocalSubscription(subscription.getSubscriptionId()) != subscription) {
+				if (log.isDebugEnabled())
+					log.debug("Subscription went away, not sending event: " + subscription);
+				remove(subscription);
+				completed(null, null, false);
+				return;
+			}
+			UnsignedIntegerFourBytes sequence = new UnsignedIntegerFourBytes(subscription.getCurrentSequence().getValue());
+			subscription.incrementSequence();
+			try {
+				SendingEvent sendingEvent = registry.getProtocolFactory().createSendingEvent(subscription, sequence, values);
+				sendingEvent.executeAsync()
+						.orTimeout(getEventTimeoutMillis(), TimeUnit.MILLISECONDS)
+						.whenComplete((response, ex) -> completed(response, ex, true));
+			} catch (RuntimeException ex) {
+				completed(null, ex, true);
+			}
+		}
+
+		private void completed(StreamResponseMessage response, Throwable ex, boolean sent) {
+			inFlightPermits.release();
+			boolean failed = sent && (ex != null || response == null || response.getOperation().isFailed());
+			boolean cancel = false;
+			boolean submit;
+			queueLock.lock();
+			try {
+				inFlight--;
+				if (failed) {
+					consecutiveFailures++;
+					if (maxConsecutiveFailures > 0 && consecutiveFailures >= maxConsecutiveFailures && !discarded) {
+						cancel = true;
+						discarded = true;
+						pendingValues = null;
+					}
+				} else if (sent) {
+					consecutiveFailures = 0;
+				}
+				submit = schedule();
+			} finally {
+				queueLock.unlock();
+			}
+			if (failed && log.isDebugEnabled()) {
+				log.debug("Event delivery failed (" + (ex != null ? Exceptions.unwrap(ex) : response) + "): " + subscription);
+			}
+			if (cancel) {
+				if (log.isWarnEnabled())
+					log.warn("Events could not be delivered " + maxConsecutiveFailures + " times in a row, removing subscription: " + subscription);
+				queues.remove(subscription.getSubscriptionId(), this);
+				if (registry.removeLocalSubscription(subscription))
+					subscription.end(CancelReason.EVENT_DELIVERY_FAILED);
+			}
+			if (submit)
+				submit();
+			resumeWaitingQueues();
+		}
+	}
+}
@@ -30,8 +30,11 @@ import com.distrimind.upnp.model.gena.RemoteGENASubscription;
 import com.distrimind.upnp.model.message.IncomingDatagramMessage;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.model.state.StateVariableValue;
+import com.distrimind.upnp.model.types.UnsignedIntegerFourBytes;
 
 import java.net.URL;
+import java.util.Collection;
 
 /**
  * Factory for UPnP protocols, the core implementation of the UPnP specification.
@@ -115,4 +118,16 @@ public interface ProtocolFactory {
      * Called by the {@link GENASubscription}, creates a protocol for sending GENA events.
      */
 	SendingEvent createSendingEvent(LocalGENASubscription<?> subscription);
+
+    /**
+     * Called by the {@link GENAEventDispatcher}, creates a protocol for sending a GENA event
+     * with the given sequence number and values.
+     *
+     * @since 1.5.0
+     */
+	default SendingEvent createSendingEvent(LocalGENASubscription<?> subscription,
+											UnsignedIntegerFourBytes sequence,
+											Collection<? extends StateVariableValue<?>> values) {
+		return new SendingEvent(getUpnpService(), subscription, sequence, values);
+	}
 }
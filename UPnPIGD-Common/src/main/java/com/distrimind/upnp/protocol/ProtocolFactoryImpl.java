@@ -30,10 +30,12 @@ import com.distrimind.upnp.model.message.UpnpRequest;
 import com.distrimind.upnp.model.message.UpnpResponse;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
 import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.state.StateVariableValue;
 import com.distrimind.upnp.model.types.InvalidValueException;
 import com.distrimind.upnp.model.types.NamedServiceType;
 import com.distrimind.upnp.model.types.NotificationSubtype;
 import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.model.types.UnsignedIntegerFourBytes;
 import com.distrimind.upnp.protocol.async.ReceivingNotification;
 import com.distrimind.upnp.protocol.async.ReceivingSearch;
 import com.distrimind.upnp.protocol.async.ReceivingSearchResponse;
@@ -55,6 +57,7 @@ import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 import java.net.URI;
 import java.net.URL;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -261,6 +264,13 @@ public class ProtocolFactoryImpl implements ProtocolFactory {
         return new SendingEvent(getUpnpService(), subscription);
     }
 
+    @Override
+	public SendingEvent createSendingEvent(LocalGENASubscription<?> subscription,
+										   UnsignedIntegerFourBytes sequence,
+										   Collection<? extends StateVariableValue<?>> values) {
+        return new SendingEvent(getUpnpService(), subscription, sequence, values);
+    }
+
     protected ReceivingRetrieval createReceivingRetrieval(StreamRequestMessage message) {
         return new ReceivingRetrieval(getUpnpService(), message);
     }
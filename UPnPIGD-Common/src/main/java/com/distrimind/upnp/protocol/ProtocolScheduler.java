@@ -0,0 +1,264 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.protocol;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.platform.UpnpIGDThreadFactory;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs delayed protocol tasks, such as the randomly delayed responses to search requests and the
+ * repetitions of notifications, without blocking a thread while they wait.
+ * <p>
+ * A single timer thread waits for the next due task and hands it to the executor, usually the
+ * asynchronous protocol executor. A task scheduled with a key is coalesced with a pending task
+ * of equal key: as long as the first one waits, scheduling another one has no effect.
+ * </p>
+ * <p>
+ * Without timer, tasks are handed to the executor immediately, e.g. in a synchronous test environment,
+ * or wait for their delay on a thread of the executor, see {@link #createWaiting(Executor)}.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class ProtocolScheduler {
+
+	final private static DMLogger log = Log.getLogger(ProtocolScheduler.class);
+
+	private static final Comparator<PendingTask> DUE_ORDER = Comparator.comparingLong(t -> t.dueNanos);
+
+	private final ScheduledExecutorService timer;
+	private final Executor executor;
+	private final boolean waiting;
+	private final Map<Object, PendingTask> pendingTasks = new ConcurrentHashMap<>();
+	private volatile boolean terminated;
+
+	/**
+	 * @param name The name of the timer thread.
+	 * @param executor The executor running the due tasks.
+	 */
+	public ProtocolScheduler(String name, Executor executor) {
+		this(createTimer(name), executor);
+	}
+
+	/**
+	 * Creates a scheduler without timer, executing the tasks without delay.
+	 *
+	 * @param executor The executor running the tasks.
+	 */
+	public ProtocolScheduler(Executor executor) {
+		this((ScheduledExecutorService) null, executor);
+	}
+
+	/**
+	 * @param timer The timer on which tasks wait, or <code>null</code> to execute them without delay.
+	 * @param executor The executor running the due tasks.
+	 */
+	public ProtocolScheduler(ScheduledExecutorService timer, Executor executor) {
+		this(timer, executor, false);
+	}
+
+	private ProtocolScheduler(ScheduledExecutorService timer, Executor executor, boolean waiting) {
+		this.timer = timer;
+		this.executor = executor;
+		this.waiting = waiting;
+	}
+
+	/**
+	 * Creates a scheduler without timer, whose tasks wait for their delay on a thread of the executor, as the
+	 * protocols did before. Its tasks are neither coalesced nor flushed.
+	 *
+	 * @param executor The executor on which the tasks wait, and which runs them.
+	 * @return The new scheduler.
+	 */
+	public static ProtocolScheduler createWaiting(Executor executor) {
+		return new ProtocolScheduler(null, executor, true);
+	}
+
+	private static ScheduledExecutorService createTimer(String name) {
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new UpnpIGDThreadFactory(name));
+		timer.setRemoveOnCancelPolicy(true);
+		timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		return timer;
+	}
+
+	/**
+	 * @param task The task to execute.
+	 * @param delayMillis The delay before the execution.
+	 * @return <code>false</code> if the scheduler was shut down.
+	 */
+	public boolean schedule(Runnable task, long delayMillis) {
+		return schedule(null, task, delayMillis);
+	}
+
+	/**
+	 * @param key Identifies identical tasks, <code>null</code> if the task is never coalesced.
+	 * @param task The task to execute.
+	 * @param delayMillis The delay before the execution.
+	 * @return <code>false</code> if a pending task has an equal key, or if the scheduler was shut down.
+	 */
+	public boolean schedule(Object key, Runnable task, long delayMillis) {
+		return schedule(key, task, delayMillis, executor);
+	}
+
+	/**
+	 * Schedules a task handed to the given executor instead of the executor of this scheduler,
+	 * e.g. {@link Runnable#run()} to run a short hand-off directly on the timer thread.
+	 *
+	 * @param task The task to execute.
+	 * @param delayMillis The delay before the execution.
+	 * @param executor The executor running the task when due.
+	 * @return <code>false</code> if the scheduler was shut down, or if the executor rejected the task
+	 *         when executed without delay.
+	 */
+	public boolean schedule(Runnable task, long delayMillis, Executor executor) {
+		return schedule(null, task, delayMillis, executor);
+	}
+
+	private boolean schedule(Object key, Runnable task, long delayMillis, Executor executor) {
+		if (terminated) {
+			return false;
+		}
+		if (timer == null || delayMillis <= 0) {
+			if (waiting && delayMillis > 0) {
+				// Not on the given executor, it may be the thread scheduling the task
+				return execute(this.executor, () -> waitAndExecute(task, delayMillis, executor));
+			}
+			return execute(executor, task);
+		}
+		PendingTask pending = new PendingTask(key, task, executor, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis));
+		if (pendingTasks.putIfAbsent(pending.key, pending) != null) {
+			if (log.isTraceEnabled()) {
+				log.trace("Identical task already pending, coalescing: " + key);
+			}
+			return false;
+		}
+		try {
+			pending.future = timer.schedule(pending, delayMillis, TimeUnit.MILLISECONDS);
+			return true;
+		} catch (RejectedExecutionException ex) {
+			pendingTasks.remove(pending.key, pending);
+			return false;
+		}
+	}
+
+	/**
+	 * Runs all pending tasks on the calling thread, in the order they are due, without waiting for their delay.
+	 * Called on shutdown, so that e.g. the repetitions of the last notifications are still sent.
+	 */
+	public void flush() {
+		List<PendingTask> tasks = new ArrayList<>(pendingTasks.values());
+		tasks.sort(DUE_ORDER);
+		if (log.isTraceEnabled() && !tasks.isEmpty()) {
+			log.trace("Flushing pending protocol tasks: " + tasks.size());
+		}
+		for (PendingTask pending : tasks) {
+			if (!pendingTasks.remove(pending.key, pending)) {
+				continue;
+			}
+			Future<?> future = pending.future;
+			if (future != null) {
+				future.cancel(false);
+			}
+			try {
+				pending.task.run();
+			} catch (RuntimeException ex) {
+				if (log.isWarnEnabled()) log.warn("Flushed protocol task failed: ", ex);
+			}
+		}
+	}
+
+	/**
+	 * @return The number of tasks waiting for their delay.
+	 */
+	public int getPendingTaskCount() {
+		return pendingTasks.size();
+	}
+
+	/**
+	 * Drops the pending tasks and stops the timer.
+	 */
+	public void shutdown() {
+		terminated = true;
+		if (timer != null) {
+			timer.shutdownNow();
+		}
+		pendingTasks.clear();
+	}
+
+	private void waitAndExecute(Runnable task, long delayMillis, Executor executor) {
+		try {
+			Thread.sleep(delayMillis);
+		} catch (InterruptedException ex) {
+			if (log.isInfoEnabled()) {
+				log.info("Protocol task wait interrupted (on shutdown?): " + task);
+			}
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if (!terminated) {
+			execute(executor, task);
+		}
+	}
+
+	private boolean execute(Executor executor, Runnable task) {
+		try {
+			executor.execute(task);
+			return true;
+		} catch (RejectedExecutionException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Protocol task rejected (on shutdown?): " + task);
+			}
+			return false;
+		}
+	}
+
+	private final class PendingTask implements Runnable {
+
+		private final Object key;
+		private final Runnable task;
+		private final Executor executor;
+		private final long dueNanos;
+		private volatile Future<?> future;
+
+		private PendingTask(Object key, Runnable task, Executor executor, long dueNanos) {
+			this.key = key != null ? key : this;
+			this.task = task;
+			this.executor = executor;
+			this.dueNanos = dueNanos;
+		}
+
+		@Override
+		public void run() {
+			if (pendingTasks.remove(key, this)) {
+				execute(executor, task);
+			}
+		}
+	}
+}
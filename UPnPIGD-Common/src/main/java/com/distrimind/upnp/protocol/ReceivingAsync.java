@@ -31,6 +31,10 @@ import com.distrimind.upnp.Log;
  * calls its own {@link #waitBeforeExecution()} method. By default, the protocol does not wait
  * before then proceeding with {@link #execute()}.
  * </p>
+ * <p>
+ * A protocol delaying its execution returns a positive {@link #getExecutionDelayMillis()},
+ * it is then executed later by the {@link ProtocolScheduler}, instead of blocking the calling thread.
+ * </p>
  *
  * @param <M> The type of UPnP message handled by this protocol.
  *
@@ -68,17 +72,31 @@ public abstract class ReceivingAsync<M extends UpnpMessage<?>> implements Runnab
         }
 
         if (proceed) {
-            try {
-                execute();
-            } catch (Exception ex) {
-                Throwable cause = Exceptions.unwrap(ex);
-                if (cause instanceof InterruptedException) {
-                    if (log.isInfoEnabled()) log.info("Interrupted protocol '" + getClass().getSimpleName() + "': " + ex, cause);
-                } else {
-                    throw new RuntimeException(
-                        "Fatal error while executing protocol '" + getClass().getSimpleName() + "': ", ex
-                    );
+            long delay = getExecutionDelayMillis();
+            if (delay > 0) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Scheduling protocol in " + delay + " milliseconds: " + getClass().getSimpleName());
                 }
+                getUpnpService().getConfiguration().getProtocolScheduler().schedule(
+                        getExecutionKey(), this::executeProtocol, delay
+                );
+            } else {
+                executeProtocol();
+            }
+        }
+    }
+
+    protected void executeProtocol() {
+        try {
+            execute();
+        } catch (Exception ex) {
+            Throwable cause = Exceptions.unwrap(ex);
+            if (cause instanceof InterruptedException) {
+                if (log.isInfoEnabled()) log.info("Interrupted protocol '" + getClass().getSimpleName() + "': " + ex, cause);
+            } else {
+                throw new RuntimeException(
+                    "Fatal error while executing protocol '" + getClass().getSimpleName() + "': ", ex
+                );
             }
         }
     }
@@ -95,6 +113,25 @@ public abstract class ReceivingAsync<M extends UpnpMessage<?>> implements Runnab
         return true;
     }
 
+    /**
+     * Provides an opportunity to delay the execution of the protocol without blocking the calling thread.
+     *
+     * @return The delay in milliseconds before {@link #execute()} is called, <code>0</code> (default)
+     *         to execute the protocol immediately.
+     */
+    protected long getExecutionDelayMillis() {
+        return 0;
+    }
+
+    /**
+     * @return The key of a delayed execution, a pending execution with an equal key makes this one
+     *         redundant. <code>null</code> (default) if the execution is never coalesced.
+     * @see ProtocolScheduler#schedule(Object, Runnable, long)
+     */
+    protected Object getExecutionKey() {
+        return null;
+    }
+
     protected abstract void execute() throws RouterException;
 
     protected <H extends UpnpHeader<?>> H getFirstHeader(UpnpHeader.Type headerType, Class<H> subtype) {
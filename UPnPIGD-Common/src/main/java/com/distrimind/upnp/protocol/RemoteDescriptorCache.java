@@ -0,0 +1,416 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.protocol;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.model.types.UDN;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Persistent store of the descriptors retrieved from remote devices, see
+ * {@link com.distrimind.upnp.UpnpServiceConfiguration#getRemoteDescriptorCache()}.
+ * <p>
+ * For each root device, identified by its UDN and the URL of its descriptor, the device descriptor
+ * and the descriptors of its services are stored in one compressed binary file, along with the
+ * <code>ETag</code> and <code>Last-Modified</code> validators of the device descriptor. When the device
+ * is discovered again, also after a restart, {@link RetrieveRemoteDescriptors} revalidates the device
+ * descriptor with a conditional GET, and hydrates the device from the stored service descriptors if it
+ * hasn't changed, instead of retrieving them one by one.
+ * </p>
+ * <p>
+ * Unreadable files are considered missing and deleted, so that the cache directory can be shared
+ * between versions or be truncated by a crash without consequence.
+ * </p>
+ * <p>
+ * The descriptors of devices not seen for {@link #getMaxAgeMillis()} are deleted, and only the
+ * {@link #getMaxEntries()} most recently used devices are kept. The cache is pruned when it is
+ * created, and again each time as many devices as the maximum number of entries have been stored.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class RemoteDescriptorCache {
+
+	final private static DMLogger log = Log.getLogger(RemoteDescriptorCache.class);
+
+	private static final int MAGIC = 0x55504443; // UPDC
+	private static final int FORMAT_VERSION = 1;
+	private static final String FILE_SUFFIX = ".desc";
+	private static final String TMP_FILE_SUFFIX = ".tmp";
+	private static final int MAX_STRING_BYTES = 16 * 1024 * 1024;
+
+	public static final long DEFAULT_MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(30);
+	public static final int DEFAULT_MAX_ENTRIES = 1024;
+
+	private final Path directory;
+	private final long maxAgeMillis;
+	private final int maxEntries;
+	private final AtomicInteger storedSincePruning = new AtomicInteger();
+
+	/**
+	 * @param directory The directory of the cache files, created if it doesn't exist.
+	 * @throws IOException If the directory could not be created.
+	 */
+	public RemoteDescriptorCache(Path directory) throws IOException {
+		this(directory, DEFAULT_MAX_AGE_MILLIS, DEFAULT_MAX_ENTRIES);
+	}
+
+	/**
+	 * @param directory The directory of the cache files, created if it doesn't exist.
+	 * @param maxAgeMillis The time after which the descriptors of a device which hasn't been seen are deleted.
+	 * @param maxEntries The maximum number of devices whose descriptors are kept.
+	 * @throws IOException If the directory could not be created or read.
+	 */
+	public RemoteDescriptorCache(Path directory, long maxAgeMillis, int maxEntries) throws IOException {
+		if (maxAgeMillis <= 0)
+			throw new IllegalArgumentException("maxAgeMillis must be strictly positive");
+		if (maxEntries < 1)
+			throw new IllegalArgumentException("maxEntries must be strictly positive");
+		this.directory = Files.createDirectories(directory);
+		this.maxAgeMillis = maxAgeMillis;
+		this.maxEntries = maxEntries;
+		// Left by stores interrupted by the end of the process
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "*" + TMP_FILE_SUFFIX)) {
+			for (Path file : files) {
+				delete(file);
+			}
+		}
+		prune();
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public long getMaxAgeMillis() {
+		return maxAgeMillis;
+	}
+
+	public int getMaxEntries() {
+		return maxEntries;
+	}
+
+	/**
+	 * @return The stored descriptors of the root device, <code>null</code> if there are none.
+	 */
+	public Entry get(UDN udn, URL descriptorURL) {
+		Path file = getFile(udn, descriptorURL);
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(Files.newInputStream(file))))) {
+			Entry entry = read(in);
+			if (entry.getUdn().equals(udn) && entry.getDescriptorURL().equals(descriptorURL.toString())) {
+				touch(file);
+				return entry;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Ignoring descriptors of another device stored in: " + file);
+			}
+			return null;
+		} catch (NoSuchFileException ex) {
+			return null;
+		} catch (IOException | RuntimeException ex) {
+			if (log.isWarnEnabled()) log.warn("Deleting unreadable descriptor cache file: " + file, ex);
+			delete(file);
+			return null;
+		}
+	}
+
+	/**
+	 * Stores the descriptors, replacing the ones of the same root device. Failures are logged, as
+	 * the cache is only an optimization.
+	 */
+	public void put(Entry entry) {
+		Path file = getFile(entry.getUdn(), entry.getDescriptorURL());
+		Path tmp = null;
+		try {
+			tmp = Files.createTempFile(directory, file.getFileName().toString(), TMP_FILE_SUFFIX);
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(Files.newOutputStream(tmp))))) {
+				write(out, entry);
+			}
+			try {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException ex) {
+				Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+			tmp = null;
+			if (storedSincePruning.incrementAndGet() >= maxEntries) {
+				prune();
+			}
+		} catch (IOException ex) {
+			if (log.isWarnEnabled()) log.warn("Could not store descriptors of device: " + entry.getUdn(), ex);
+		} finally {
+			if (tmp != null) {
+				delete(tmp);
+			}
+		}
+	}
+
+	public void remove(UDN udn, URL descriptorURL) {
+		delete(getFile(udn, descriptorURL));
+	}
+
+	/**
+	 * Deletes all stored descriptors.
+	 */
+	public void clear() {
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+			for (Path file : files) {
+				delete(file);
+			}
+		} catch (IOException ex) {
+			if (log.isWarnEnabled()) log.warn("Could not clear descriptor cache: " + directory, ex);
+		}
+	}
+
+	/**
+	 * Deletes the descriptors of the devices not seen for longer than the maximum age, the ones exceeding
+	 * the maximum number of entries, the least recently used first.
+	 */
+	public void prune() {
+		storedSincePruning.set(0);
+		long expiration = System.currentTimeMillis() - maxAgeMillis;
+		List<Path> kept = new ArrayList<>();
+		Map<Path, Long> lastUses = new HashMap<>();
+		int deleted = 0;
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + FILE_SUFFIX)) {
+			for (Path file : files) {
+				long lastUse;
+				try {
+					lastUse = Files.getLastModifiedTime(file).toMillis();
+				} catch (IOException ex) {
+					// Deleted meanwhile
+					continue;
+				}
+				if (lastUse < expiration) {
+					delete(file);
+					deleted++;
+				} else {
+					kept.add(file);
+					lastUses.put(file, lastUse);
+				}
+			}
+		} catch (IOException ex) {
+			if (log.isWarnEnabled()) log.warn("Could not prune descriptor cache: " + directory, ex);
+			return;
+		}
+		if (kept.size() > maxEntries) {
+			kept.sort(Comparator.comparing(lastUses::get));
+			for (Path file : kept.subList(0, kept.size() - maxEntries)) {
+				delete(file);
+				deleted++;
+			}
+		}
+		if (deleted > 0 && log.isDebugEnabled()) {
+			log.debug("Pruned " + deleted + " descriptor cache file(s) in: " + directory);
+		}
+	}
+
+	protected Path getFile(UDN udn, String descriptorURL) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(udn.getIdentifierString().getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) ' ');
+			byte[] hash = digest.digest(descriptorURL.getBytes(StandardCharsets.UTF_8));
+			StringBuilder sb = new StringBuilder(40 + FILE_SUFFIX.length());
+			for (int i = 0; i < 20; i++) {
+				sb.append(Character.forDigit((hash[i] >> 4) & 0xF, 16)).append(Character.forDigit(hash[i] & 0xF, 16));
+			}
+			return directory.resolve(sb.append(FILE_SUFFIX).toString());
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IllegalStateException(ex);
+		}
+	}
+
+	protected Path getFile(UDN udn, URL descriptorURL) {
+		return getFile(udn, descriptorURL.toString());
+	}
+
+	protected static Entry read(DataInputStream in) throws IOException {
+		if (in.readInt() != MAGIC || in.readUnsignedByte() != FORMAT_VERSION) {
+			throw new IOException("Unknown descriptor cache file format");
+		}
+		UDN udn = new UDN(readString(in));
+		String descriptorURL = readString(in);
+		String eTag = readString(in);
+		String lastModified = readString(in);
+		String deviceDescriptor = readString(in);
+		int count = in.readInt();
+		if (count < 0) {
+			throw new IOException("Invalid number of service descriptors: " + count);
+		}
+		Map<String, String> serviceDescriptors = new HashMap<>();
+		for (int i = 0; i < count; i++) {
+			serviceDescriptors.put(readString(in), readString(in));
+		}
+		if (deviceDescriptor == null || descriptorURL == null) {
+			throw new IOException("Missing device descriptor");
+		}
+		return new Entry(udn, descriptorURL, eTag, lastModified, deviceDescriptor, serviceDescriptors);
+	}
+
+	protected static void write(DataOutputStream out, Entry entry) throws IOException {
+		out.writeInt(MAGIC);
+		out.writeByte(FORMAT_VERSION);
+		writeString(out, entry.getUdn().getIdentifierString());
+		writeString(out, entry.getDescriptorURL());
+		writeString(out, entry.getETag());
+		writeString(out, entry.getLastModified());
+		writeString(out, entry.getDeviceDescriptor());
+		out.writeInt(entry.getServiceDescriptors().size());
+		for (Map.Entry<String, String> e : entry.getServiceDescriptors().entrySet()) {
+			writeString(out, e.getKey());
+			writeString(out, e.getValue());
+		}
+	}
+
+	// Contrary to writeUTF(), not limited to 64KiB, SCPDs of some devices are larger
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		if (s == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int length = in.readInt();
+		if (length == -1) {
+			return null;
+		}
+		if (length < 0 || length > MAX_STRING_BYTES) {
+			throw new IOException("Invalid string length: " + length);
+		}
+		byte[] bytes = new byte[length];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	// The modification time of the file is the last time the device was seen
+	private static void touch(Path file) {
+		try {
+			Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (IOException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Could not update descriptor cache file: " + file, ex);
+			}
+		}
+	}
+
+	private static void delete(Path file) {
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Could not delete descriptor cache file: " + file, ex);
+			}
+		}
+	}
+
+	/**
+	 * The descriptors of a root device, its embedded devices and all their services, immutable.
+	 */
+	public static final class Entry {
+
+		private final UDN udn;
+		private final String descriptorURL;
+		private final String eTag;
+		private final String lastModified;
+		private final String deviceDescriptor;
+		private final Map<String, String> serviceDescriptors;
+
+		/**
+		 * @param eTag The <code>ETag</code> header of the device descriptor response, or <code>null</code>.
+		 * @param lastModified The <code>Last-Modified</code> header of the device descriptor response, or <code>null</code>.
+		 * @param serviceDescriptors The service descriptors by absolute URL.
+		 */
+		public Entry(UDN udn, String descriptorURL, String eTag, String lastModified,
+					 String deviceDescriptor, Map<String, String> serviceDescriptors) {
+			this.udn = udn;
+			this.descriptorURL = descriptorURL;
+			this.eTag = eTag;
+			this.lastModified = lastModified;
+			this.deviceDescriptor = deviceDescriptor;
+			this.serviceDescriptors = Collections.unmodifiableMap(new HashMap<>(serviceDescriptors));
+		}
+
+		public UDN getUdn() {
+			return udn;
+		}
+
+		public String getDescriptorURL() {
+			return descriptorURL;
+		}
+
+		public String getETag() {
+			return eTag;
+		}
+
+		public String getLastModified() {
+			return lastModified;
+		}
+
+		public String getDeviceDescriptor() {
+			return deviceDescriptor;
+		}
+
+		public Map<String, String> getServiceDescriptors() {
+			return serviceDescriptors;
+		}
+
+		/**
+		 * @param serviceDescriptorURL The absolute URL of the service descriptor.
+		 * @return The stored service descriptor, <code>null</code> if there is none.
+		 */
+		public String getServiceDescriptor(URL serviceDescriptorURL) {
+			return serviceDescriptors.get(serviceDescriptorURL.toString());
+		}
+
+		@Override
+		public String toString() {
+			return "(" + getClass().getSimpleName() + ") UDN: " + udn + ", Descriptor: " + descriptorURL
+					+ ", Services: " + serviceDescriptors.size();
+		}
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.protocol;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * The descriptor retrievals of the remote devices in progress, see {@link RetrieveRemoteDescriptors}.
+ * <p>
+ * A device is announced by many notifications and search responses, for itself and for each of its
+ * embedded devices and services. Only the first one retrieves the descriptors, the others join the
+ * retrieval in progress for the same descriptor URL.
+ * </p>
+ * <p>
+ * After a failed retrieval, the descriptor URL is not retrieved again before a delay, doubled after
+ * each consecutive failure from {@link #getInitialBackoffMillis()} up to {@link #getMaxBackoffMillis()},
+ * so that a device with a broken descriptor doesn't cost a retrieval for each of its announcements.
+ * </p>
+ * <p>
+ * A retrieval not completed after {@link #getRetrievalTimeoutMillis()} is considered failed, so that the
+ * URL is never blocked by a retrieval whose completion has been lost.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class RemoteDescriptorRetrievals {
+
+	final private static DMLogger log = Log.getLogger(RemoteDescriptorRetrievals.class);
+
+	public static final long DEFAULT_INITIAL_BACKOFF_MILLIS = 5000;
+	public static final long DEFAULT_MAX_BACKOFF_MILLIS = 300000;
+	public static final long DEFAULT_RETRIEVAL_TIMEOUT_MILLIS = 120000;
+
+	// Above this number of failed URLs, the ones whose delay has elapsed for long are forgotten
+	private static final int MAX_FAILURES_BEFORE_PURGE = 256;
+
+	protected final long initialBackoffMillis;
+	protected final long maxBackoffMillis;
+	protected final long retrievalTimeoutMillis;
+	private final ConcurrentMap<String, CompletableFuture<Void>> activeRetrievals = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Failure> failures = new ConcurrentHashMap<>();
+
+	public RemoteDescriptorRetrievals() {
+		this(DEFAULT_INITIAL_BACKOFF_MILLIS, DEFAULT_MAX_BACKOFF_MILLIS);
+	}
+
+	/**
+	 * @param initialBackoffMillis The delay before retrieving again a descriptor URL which failed once,
+	 *                             or <code>0</code> to retry failed URLs immediately.
+	 * @param maxBackoffMillis The maximum delay before retrieving again a descriptor URL which failed repeatedly.
+	 */
+	public RemoteDescriptorRetrievals(long initialBackoffMillis, long maxBackoffMillis) {
+		this(initialBackoffMillis, maxBackoffMillis, DEFAULT_RETRIEVAL_TIMEOUT_MILLIS);
+	}
+
+	/**
+	 * @param initialBackoffMillis The delay before retrieving again a descriptor URL which failed once,
+	 *                             or <code>0</code> to retry failed URLs immediately.
+	 * @param maxBackoffMillis The maximum delay before retrieving again a descriptor URL which failed repeatedly.
+	 * @param retrievalTimeoutMillis The time after which a retrieval still in progress is considered failed.
+	 */
+	public RemoteDescriptorRetrievals(long initialBackoffMillis, long maxBackoffMillis, long retrievalTimeoutMillis) {
+		if (initialBackoffMillis < 0)
+			throw new IllegalArgumentException("initialBackoffMillis must be positive");
+		if (maxBackoffMillis < initialBackoffMillis)
+			throw new IllegalArgumentException("maxBackoffMillis must be greater than or equal to initialBackoffMillis");
+		if (retrievalTimeoutMillis < 1)
+			throw new IllegalArgumentException("retrievalTimeoutMillis must be strictly positive");
+		this.initialBackoffMillis = initialBackoffMillis;
+		this.maxBackoffMillis = maxBackoffMillis;
+		this.retrievalTimeoutMillis = retrievalTimeoutMillis;
+	}
+
+	public long getInitialBackoffMillis() {
+		return initialBackoffMillis;
+	}
+
+	public long getMaxBackoffMillis() {
+		return maxBackoffMillis;
+	}
+
+	public long getRetrievalTimeoutMillis() {
+		return retrievalTimeoutMillis;
+	}
+
+	/**
+	 * Starts the retrieval, unless one is in progress for the same URL or the URL failed recently.
+	 *
+	 * @param descriptorURL The URL of the device descriptor.
+	 * @param retrieval Starts the retrieval, its future result is <code>true</code> if it failed.
+	 * @return A future completed when the retrieval in progress for this URL completes, or completed
+	 *         already if the URL is skipped. It never completes exceptionally.
+	 */
+	public CompletableFuture<Void> retrieve(URL descriptorURL, Supplier<CompletableFuture<Boolean>> retrieval) {
+		String key = descriptorURL.toString();
+		CompletableFuture<Void> activeRetrieval = activeRetrievals.get(key);
+		if (activeRetrieval != null) {
+			if (log.isTraceEnabled()) {
+				log.trace("Joining active retrieval for URL already in progress: " + key);
+			}
+			return activeRetrieval;
+		}
+		if (isBackingOff(key)) {
+			if (log.isTraceEnabled()) {
+				log.trace("Skipping retrieval of recently failed URL: " + key);
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+		CompletableFuture<Void> future = new CompletableFuture<>();
+		activeRetrieval = activeRetrievals.putIfAbsent(key, future);
+		if (activeRetrieval != null) {
+			return activeRetrieval;
+		}
+		CompletableFuture<Boolean> outcome;
+		try {
+			outcome = retrieval.get();
+		} catch (RuntimeException ex) {
+			outcome = CompletableFuture.failedFuture(ex);
+		}
+		outcome.orTimeout(retrievalTimeoutMillis, TimeUnit.MILLISECONDS).whenComplete((failed, t) -> {
+			if (t instanceof TimeoutException && log.isDebugEnabled()) {
+				log.debug("Descriptor retrieval not completed after " + retrievalTimeoutMillis + "ms: " + key);
+			}
+			if (t != null || Boolean.TRUE.equals(failed))
+				addFailure(key);
+			else
+				failures.remove(key);
+			activeRetrievals.remove(key, future);
+			future.complete(null);
+		});
+		return future;
+	}
+
+	/**
+	 * @return The number of descriptor URLs being retrieved.
+	 */
+	public int getActiveRetrievalCount() {
+		return activeRetrievals.size();
+	}
+
+	/**
+	 * @return <code>true</code> if the URL failed recently and must not be retrieved yet.
+	 */
+	public boolean isBackingOff(URL descriptorURL) {
+		return isBackingOff(descriptorURL.toString());
+	}
+
+	/**
+	 * Forgets the failures of the URL, its next announcement starts a retrieval.
+	 */
+	public void resetBackoff(URL descriptorURL) {
+		failures.remove(descriptorURL.toString());
+	}
+
+	protected long getCurrentTimeNanos() {
+		return System.nanoTime();
+	}
+
+	private boolean isBackingOff(String key) {
+		Failure failure = failures.get(key);
+		return failure != null && getCurrentTimeNanos() - failure.retryAfterNanos < 0;
+	}
+
+	private void addFailure(String key) {
+		long now = getCurrentTimeNanos();
+		Failure failure = failures.compute(key, (k, previous) -> {
+			int count = previous == null ? 1 : previous.count + 1;
+			long backoffMillis = initialBackoffMillis << Math.min(count - 1, 30);
+			if (backoffMillis > maxBackoffMillis || backoffMillis < 0)
+				backoffMillis = maxBackoffMillis;
+			return new Failure(count, now + TimeUnit.MILLISECONDS.toNanos(backoffMillis));
+		});
+		if (log.isDebugEnabled()) {
+			log.debug("Descriptor retrieval failed " + failure.count + " time(s), not retrying it for "
+					+ TimeUnit.NANOSECONDS.toMillis(failure.retryAfterNanos - now) + "ms: " + key);
+		}
+		if (failures.size() > MAX_FAILURES_BEFORE_PURGE) {
+			long expiration = TimeUnit.MILLISECONDS.toNanos(maxBackoffMillis);
+			failures.values().removeIf(f -> now - f.retryAfterNanos > expiration);
+		}
+	}
+
+	private static final class Failure {
+
+		final int count;
+		final long retryAfterNanos;
+
+		Failure(int count, long retryAfterNanos) {
+			this.count = count;
+			this.retryAfterNanos = retryAfterNanos;
+		}
+	}
+}
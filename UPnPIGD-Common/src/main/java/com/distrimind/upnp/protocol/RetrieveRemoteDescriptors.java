@@ -17,7 +17,12 @@ package com.distrimind.upnp.protocol;
 
 import java.net.URL;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -30,11 +35,13 @@ import com.distrimind.upnp.UpnpService;
 import com.distrimind.upnp.binding.xml.DescriptorBindingException;
 import com.distrimind.upnp.binding.xml.DeviceDescriptorBinder;
 import com.distrimind.upnp.binding.xml.ServiceDescriptorBinder;
+import com.distrimind.upnp.binding.xml.UnresolvedHostException;
 import com.distrimind.upnp.model.ValidationError;
 import com.distrimind.upnp.model.ValidationException;
 import com.distrimind.upnp.model.meta.Icon;
 import com.distrimind.upnp.model.meta.RemoteDevice;
 import com.distrimind.upnp.model.meta.RemoteService;
+import com.distrimind.upnp.model.resource.DescriptorCache;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.model.types.UDN;
 import com.distrimind.upnp.util.Exceptions;
@@ -54,7 +61,19 @@ import com.distrimind.upnp.util.Exceptions;
  * </p>
  * <p>
  * Any descriptor retrieval, parsing, or validation error of the metadata will abort this protocol
- * with a warning message in the log.
+ * with a warning message in the log. The descriptor URL is then not retrieved again for a while, see
+ * {@link RemoteDescriptorRetrievals}.
+ * </p>
+ * <p>
+ * The descriptors are retrieved with {@link com.distrimind.upnp.transport.Router#sendAsync(StreamRequestMessage)},
+ * the thread running this protocol is released as soon as the first request has been started. The service
+ * descriptors of the device and of its embedded devices are retrieved concurrently, at most
+ * {@link #getMaxConcurrentServiceRetrievals()} at a time, and once per URL.
+ * </p>
+ * <p>
+ * If a {@link RemoteDescriptorCache} is configured, the stored descriptors of the device are revalidated with
+ * a conditional GET of the device descriptor. If it didn't change, the services are hydrated from the stored
+ * service descriptors without retrieving them.
  * </p>
  *
  * @author Christian Bauer
@@ -63,11 +82,31 @@ public class RetrieveRemoteDescriptors implements Runnable {
 
     final private static DMLogger log = Log.getLogger(RetrieveRemoteDescriptors.class);
 
+    /**
+     * Default maximum number of service descriptor requests in flight for a root device.
+     * @since 1.5.0
+     */
+    public static final int DEFAULT_MAX_CONCURRENT_SERVICE_RETRIEVALS = 4;
+
+    // Joins the retrievals of the registries without their own, failed descriptor URLs aren't backed off
+    private static final RemoteDescriptorRetrievals SHARED_RETRIEVALS = new RemoteDescriptorRetrievals(0, 0);
+
     private final UpnpService upnpService;
     private final RemoteDevice rd;
 
-    private static final List<URL> activeRetrievals = new CopyOnWriteArrayList<>();
     protected List<UDN> errorsAlreadyLogged = new ArrayList<>();
+    private volatile boolean failed;
+
+    private RemoteDescriptorCache descriptorCache;
+    private RemoteDescriptorCache.Entry storedDescriptors;
+    private final Map<String, String> retrievedServiceDescriptors = new ConcurrentHashMap<>();
+    private volatile boolean storedDescriptorsOutdated;
+    private String deviceDescriptorETag;
+    private String deviceDescriptorLastModified;
+
+    private final Map<String, CompletableFuture<StreamResponseMessage>> serviceDescriptorRetrievals = new ConcurrentHashMap<>();
+    private final Queue<Runnable> pendingServiceDescriptorRetrievals = new ArrayDeque<>();
+    private int activeServiceDescriptorRetrievals;
 
     public RetrieveRemoteDescriptors(UpnpService upnpService, RemoteDevice rd) {
         this.upnpService = upnpService;
@@ -78,44 +117,82 @@ public class RetrieveRemoteDescriptors implements Runnable {
         return upnpService;
     }
 
+    /**
+     * Starts the retrieval with {@link #runAsync()}, the calling thread is not blocked while
+     * waiting for the descriptors.
+     */
     @Override
 	public void run() {
+        runAsync();
+    }
 
-        URL deviceURL = rd.getIdentity().getDescriptorURL();
-
-        // Performance optimization, try to avoid concurrent GET requests for device descriptor,
-        // if we retrieve it once, we have the hydrated device. There is no different outcome
-        // processing this several times concurrently.
+    /**
+     * Retrieves the device and service descriptors, and adds the hydrated device to the registry.
+     * <p>
+     * The descriptors are retrieved with the router's non-blocking stream client, no thread
+     * is held while waiting for a response.
+     * </p>
+     *
+     * @return A future completed when the device has been added to the registry, or when the
+     *         retrieval has been skipped or has failed. It is the future of the retrieval in progress
+     *         if the same descriptor URL is being retrieved already. It never completes exceptionally.
+     * @since 1.5.0
+     */
+    public CompletableFuture<Void> runAsync() {
 
-        if (activeRetrievals.contains(deviceURL)) {
-			if (log.isTraceEnabled()) {
-				log.trace("Exiting early, active retrieval for URL already in progress: " + deviceURL);
-			}
-			return;
-        }
+        URL deviceURL = rd.getIdentity().getDescriptorURL();
 
         // Exit if it has been discovered already, could be we have been waiting in the executor queue too long
         if (getUpnpService().getRegistry().getRemoteDevice(rd.getIdentity().getUdn(), true) != null) {
 			if (log.isTraceEnabled()) {
 				log.trace("Exiting early, already discovered: " + deviceURL);
 			}
-			return;
+			return CompletableFuture.completedFuture(null);
         }
 
+        // Performance optimization, avoid concurrent GET requests for the same device descriptor,
+        // if we retrieve it once, we have the hydrated device. There is no different outcome
+        // processing this several times concurrently, so we wait for the active retrieval.
+        RemoteDescriptorRetrievals retrievals = getUpnpService().getRegistry().getDescriptorRetrievals();
+        if (retrievals == null) {
+            retrievals = SHARED_RETRIEVALS;
+        }
+        return retrievals.retrieve(deviceURL, this::retrieve);
+    }
+
+    /**
+     * @return A future completed with <code>true</code> if the descriptors could not be retrieved or bound,
+     *         <code>false</code> if the device has been added to the registry, or if it has been rejected
+     *         for a reason which isn't a failure of the device, see {@link #markFailed()}.
+     */
+    private CompletableFuture<Boolean> retrieve() {
+        CompletableFuture<Void> retrieval;
         try {
-            activeRetrievals.add(deviceURL);
-            describe();
-        } catch (RouterException ex) {
-			if (log.isWarnEnabled()) log.warn(
-                "Descriptor retrieval failed: " + deviceURL,
-                ex
-            );
-        } finally {
-            activeRetrievals.remove(deviceURL);
+            retrieval = describe();
+        } catch (RuntimeException ex) {
+            retrieval = CompletableFuture.failedFuture(ex);
         }
+        return retrieval.handle((result, t) -> {
+            if (t != null) {
+                if (log.isWarnEnabled())
+                    log.warn("Descriptor retrieval failed: " + rd.getIdentity().getDescriptorURL(), unwrap(t));
+                return true;
+            }
+            return failed;
+        });
     }
-	@SuppressWarnings("PMD.LooseCoupling")
-    protected void describe() throws RouterException {
+
+    /**
+     * Records that the descriptors could not be retrieved, the device didn't respond or returned an error,
+     * or that they could not be bound. The descriptor URL is then not retrieved again for a while. Rejections
+     * which don't depend on the device, like a missing router or a failed registration, aren't recorded.
+     * @since 1.5.0
+     */
+    protected void markFailed() {
+        failed = true;
+    }
+
+    protected CompletableFuture<Void> describe() {
 
         // All the following is a very expensive and time-consuming procedure, thanks to the
         // braindead design of UPnP. Several GET requests, several descriptors, several XML parsing
@@ -124,43 +201,173 @@ public class RetrieveRemoteDescriptors implements Runnable {
 
     	if(getUpnpService().getRouter() == null) {
     		log.warn("Router not yet initialized");
-    		return ;
+    		return CompletableFuture.completedFuture(null);
     	}
 
-    	StreamRequestMessage deviceDescRetrievalMsg;
-    	StreamResponseMessage deviceDescMsg;
+    	final StreamRequestMessage deviceDescRetrievalMsg;
 
     	try {
 
     		deviceDescRetrievalMsg =
                 new StreamRequestMessage(UpnpRequest.Method.GET, rd.getIdentity().getDescriptorURL());
 
-            // Extra headers
-			IUpnpHeaders headers =
-                getUpnpService().getConfiguration().getDescriptorRetrievalHeaders(rd.getIdentity());
-            if (headers != null)
-                deviceDescRetrievalMsg.getHeaders().putAll(headers);
-
-			if (log.isDebugEnabled()) {
-				log.debug("Sending device descriptor retrieval message: " + deviceDescRetrievalMsg);
-			}
-			deviceDescMsg = getUpnpService().getRouter().send(deviceDescRetrievalMsg);
-
     	} catch(IllegalArgumentException ex) {
     		// UpnpRequest constructor can throw IllegalArgumentException on invalid URI
-    		// IllegalArgumentException can also be thrown by Apache HttpClient on blank URI in send()
-			if (log.isWarnEnabled()) log.warn(
-                "Device descriptor retrieval failed: "
-                + rd.getIdentity().getDescriptorURL()
-                + ", possibly invalid URL: " + ex);
-            return ;
+            logInvalidDescriptorURL(ex);
+            markFailed();
+            return CompletableFuture.completedFuture(null);
+        }
+
+        // Extra headers
+        IUpnpHeaders headers =
+            getUpnpService().getConfiguration().getDescriptorRetrievalHeaders(rd.getIdentity());
+        if (headers != null)
+            deviceDescRetrievalMsg.getHeaders().putAll(headers);
+
+        final Executor executor = getContinuationExecutor();
+        descriptorCache = getUpnpService().getConfiguration().getRemoteDescriptorCache();
+        // The stored descriptors are read on the continuation executor, never on the thread starting the retrieval
+        CompletableFuture<Void> storedDescriptorsLoaded = descriptorCache == null
+            ? CompletableFuture.completedFuture(null)
+            : CompletableFuture.runAsync(() -> addStoredDescriptorValidators(deviceDescRetrievalMsg), executor);
+
+        return storedDescriptorsLoaded.thenCompose(v -> {
+            CompletableFuture<StreamResponseMessage> deviceDescMsg;
+            try {
+                if (log.isDebugEnabled()) {
+                    log.debug("Sending device descriptor retrieval message: " + deviceDescRetrievalMsg);
+                }
+                deviceDescMsg = getUpnpService().getRouter().sendAsync(deviceDescRetrievalMsg);
+            } catch (IllegalArgumentException ex) {
+                // IllegalArgumentException can also be thrown by Apache HttpClient on blank URI in send()
+                logInvalidDescriptorURL(ex);
+                markFailed();
+                return CompletableFuture.completedFuture(null);
+            }
+            return handleDeviceDescriptorResponse(deviceDescMsg, executor);
+        });
+    }
+
+    private void logInvalidDescriptorURL(IllegalArgumentException ex) {
+        if (log.isWarnEnabled()) log.warn(
+            "Device descriptor retrieval failed: "
+            + rd.getIdentity().getDescriptorURL()
+            + ", possibly invalid URL: " + ex);
+    }
+
+    private CompletableFuture<Void> handleDeviceDescriptorResponse(CompletableFuture<StreamResponseMessage> deviceDescMsg, Executor executor) {
+        // Not on the thread of the transport completing the response, binding and registration are expensive
+        return deviceDescMsg.thenComposeAsync(response -> {
+            if (storedDescriptors != null && response != null
+                && response.getOperation().getStatusCode() == UpnpResponse.Status.NOT_MODIFIED.getStatusCode()) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Device descriptor not modified, hydrating device from stored descriptors: " + storedDescriptors);
+                }
+                return describe(storedDescriptors.getDeviceDescriptor());
+            }
+            String descriptorContent = getDeviceDescriptorContent(response);
+            if (descriptorContent == null) {
+                markFailed();
+                return CompletableFuture.completedFuture(null);
+            }
+            revalidateStoredDescriptors(response, descriptorContent);
+            return describe(descriptorContent);
+        }, executor);
+    }
+
+    /**
+     * Loads the stored descriptors of the device, and makes the device descriptor retrieval conditional.
+     * Called on the {@link #getContinuationExecutor()}.
+     */
+    protected void addStoredDescriptorValidators(StreamRequestMessage deviceDescRetrievalMsg) {
+        if (descriptorCache == null) {
+            return;
+        }
+        storedDescriptors = descriptorCache.get(rd.getIdentity().getUdn(), rd.getIdentity().getDescriptorURL());
+        if (storedDescriptors == null) {
+            storedDescriptorsOutdated = true;
+            return;
         }
+        deviceDescriptorETag = storedDescriptors.getETag();
+        deviceDescriptorLastModified = storedDescriptors.getLastModified();
+        if (deviceDescriptorETag != null)
+            deviceDescRetrievalMsg.getHeaders().add(DescriptorCache.HEADER_IF_NONE_MATCH, deviceDescriptorETag);
+        if (deviceDescriptorLastModified != null)
+            deviceDescRetrievalMsg.getHeaders().add(DescriptorCache.HEADER_IF_MODIFIED_SINCE, deviceDescriptorLastModified);
+    }
 
+    /**
+     * Devices without validators always return their descriptor, the stored service descriptors
+     * are still valid if it didn't change.
+     */
+    protected void revalidateStoredDescriptors(StreamResponseMessage deviceDescMsg, String descriptorContent) {
+        if (descriptorCache == null) {
+            return;
+        }
+        String eTag = deviceDescMsg.getHeaders().getFirstHeader(DescriptorCache.HEADER_ETAG);
+        String lastModified = deviceDescMsg.getHeaders().getFirstHeader(DescriptorCache.HEADER_LAST_MODIFIED);
+        if (!Objects.equals(eTag, deviceDescriptorETag) || !Objects.equals(lastModified, deviceDescriptorLastModified)) {
+            deviceDescriptorETag = eTag;
+            deviceDescriptorLastModified = lastModified;
+            storedDescriptorsOutdated = true;
+        }
+        if (storedDescriptors != null && !storedDescriptors.getDeviceDescriptor().equals(descriptorContent)) {
+            if (log.isDebugEnabled()) {
+                log.debug("Device descriptor changed, discarding stored descriptors: " + storedDescriptors);
+            }
+            storedDescriptors = null;
+            storedDescriptorsOutdated = true;
+        }
+    }
+
+    /**
+     * Stores the descriptors of the hydrated device, if any of them has been retrieved. The file is
+     * written by a task of the asynchronous protocol executor, the retrieval doesn't wait for it.
+     */
+    protected void storeDescriptors(String deviceDescriptor) {
+        if (descriptorCache == null || !storedDescriptorsOutdated) {
+            return;
+        }
+        final RemoteDescriptorCache cache = descriptorCache;
+        final RemoteDescriptorCache.Entry entry = new RemoteDescriptorCache.Entry(
+                rd.getIdentity().getUdn(),
+                rd.getIdentity().getDescriptorURL().toString(),
+                deviceDescriptorETag,
+                deviceDescriptorLastModified,
+                deviceDescriptor,
+                retrievedServiceDescriptors
+        );
+        try {
+            getUpnpService().getConfiguration().getAsyncProtocolExecutor().execute(() -> cache.put(entry));
+        } catch (RejectedExecutionException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("Protocol executor rejected the storage of the descriptors: " + entry);
+            }
+        }
+    }
+
+    /**
+     * The stored descriptors could not be used to hydrate the device, they are retrieved again next time.
+     */
+    protected void discardStoredDescriptors() {
+        if (storedDescriptors != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Discarding stored descriptors of device which could not be hydrated: " + storedDescriptors);
+            }
+            descriptorCache.remove(rd.getIdentity().getUdn(), rd.getIdentity().getDescriptorURL());
+            storedDescriptors = null;
+        }
+    }
+
+    /**
+     * @return The body of the device descriptor response, or <code>null</code> if the retrieval failed.
+     */
+    protected String getDeviceDescriptorContent(StreamResponseMessage deviceDescMsg) {
         if (deviceDescMsg == null) {
 			if (log.isWarnEnabled()) log.warn(
                 "Device descriptor retrieval failed, no response: " + rd.getIdentity().getDescriptorURL()
             );
-            return;
+            return null;
         }
 
         if (deviceDescMsg.getOperation().isFailed()) {
@@ -170,7 +377,7 @@ public class RetrieveRemoteDescriptors implements Runnable {
                             ", "
                             + deviceDescMsg.getOperation().getResponseDetails()
             );
-            return;
+            return null;
         }
 
         if (!deviceDescMsg.isContentTypeTextUDA()) {
@@ -185,149 +392,212 @@ public class RetrieveRemoteDescriptors implements Runnable {
         String descriptorContent = deviceDescMsg.getBodyString();
         if (descriptorContent == null || descriptorContent.isEmpty()) {
 			if (log.isWarnEnabled()) log.warn("Received empty device descriptor:" + rd.getIdentity().getDescriptorURL());
-            return;
+            return null;
         }
 
 		if (log.isDebugEnabled()) {
             log.debug("Received root device descriptor: " + deviceDescMsg);
 		}
-		describe(descriptorContent);
+        return descriptorContent;
     }
 
-    protected void describe(String descriptorXML) throws RouterException {
+    protected CompletableFuture<Void> describe(String descriptorXML) {
 
-        boolean notifiedStart = false;
-        RemoteDevice describedDevice = null;
-        try {
+        DeviceDescriptorBinder deviceDescriptorBinder =
+                getUpnpService().getConfiguration().getDeviceDescriptorBinderUDA10();
 
-            DeviceDescriptorBinder deviceDescriptorBinder =
-                    getUpnpService().getConfiguration().getDeviceDescriptorBinderUDA10();
+        return bind(() -> deviceDescriptorBinder.describe(rd, descriptorXML)).handle((describedDevice, t) -> {
+            if (t == null)
+                return hydrate(describedDevice, descriptorXML);
+            markFailed();
+            discardStoredDescriptors();
+            handleDescriptionFailure(unwrap(t), null, false);
+            return CompletableFuture.<Void>completedFuture(null);
+        }).thenCompose(Function.identity());
+    }
 
-            describedDevice = deviceDescriptorBinder.describe(
-                    rd,
-                    descriptorXML
-            );
-			if (describedDevice==null) {
-				log.debug("Remote device not describable");
-				return;
-			}
-			if (log.isDebugEnabled()) {
-				log.debug("Remote device described (without services) notifying listeners: " + describedDevice);
-			}
-			notifiedStart = getUpnpService().getRegistry().notifyDiscoveryStart(describedDevice);
+    private CompletableFuture<Void> hydrate(RemoteDevice describedDevice, String descriptorXML) {
+		if (describedDevice==null) {
+			log.debug("Remote device not describable");
+			return CompletableFuture.completedFuture(null);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Remote device described (without services) notifying listeners: " + describedDevice);
+		}
+		final boolean notifiedStart = getUpnpService().getRegistry().notifyDiscoveryStart(describedDevice);
 
-			if (log.isDebugEnabled()) {
-				log.debug("Hydrating described device's services: " + describedDevice);
-			}
-			RemoteDevice hydratedDevice = describeServices(describedDevice);
-            if (hydratedDevice == null) {
-            	if(!errorsAlreadyLogged.contains(rd.getIdentity().getUdn())) {
-            		errorsAlreadyLogged.add(rd.getIdentity().getUdn());
-					if (log.isWarnEnabled()) log.warn("Device service description failed: " + rd);
-            	}
-                if (notifiedStart)
-                    getUpnpService().getRegistry().notifyDiscoveryFailure(
-                            describedDevice,
-                            new DescriptorBindingException("Device service description failed: " + rd)
-                    );
-			} else {
-				if (log.isDebugEnabled()) {
-					log.debug("Adding fully hydrated remote device to registry: " + hydratedDevice);
-				}
-				// The registry will do the right thing: A new root device is going to be added, if it's
-                // already present or we just received the descriptor again (because we got an embedded
-                // devices' notification), it will simply update the expiration timestamp of the root
-                // device.
-                getUpnpService().getRegistry().addDevice(hydratedDevice);
+		if (log.isDebugEnabled()) {
+			log.debug("Hydrating described device's services: " + describedDevice);
+		}
+		return describeServices(describedDevice).handle((hydratedDevice, t) -> {
+            if (t != null) {
+                markFailed();
+                discardStoredDescriptors();
+                Throwable cause = unwrap(t);
+                if (cause instanceof RouterException) {
+                    throw new CompletionException(cause);
+                }
+                handleDescriptionFailure(cause, describedDevice, notifiedStart);
+                return null;
             }
+            try {
+                if (hydratedDevice == null) {
+                    markFailed();
+                    if(!errorsAlreadyLogged.contains(rd.getIdentity().getUdn())) {
+                        errorsAlreadyLogged.add(rd.getIdentity().getUdn());
+                        if (log.isWarnEnabled()) log.warn("Device service description failed: " + rd);
+                    }
+                    if (notifiedStart)
+                        getUpnpService().getRegistry().notifyDiscoveryFailure(
+                                describedDevice,
+                                new DescriptorBindingException("Device service description failed: " + rd)
+                        );
+                } else {
+                    if (log.isDebugEnabled()) {
+                        log.debug("Adding fully hydrated remote device to registry: " + hydratedDevice);
+                    }
+                    // The registry will do the right thing: A new root device is going to be added, if it's
+                    // already present or we just received the descriptor again (because we got an embedded
+                    // devices' notification), it will simply update the expiration timestamp of the root
+                    // device.
+                    getUpnpService().getRegistry().addDevice(hydratedDevice);
+                    storeDescriptors(descriptorXML);
+                }
+            } catch (RegistrationException ex) {
+                handleDescriptionFailure(ex, describedDevice, notifiedStart);
+            }
+            return null;
+        });
+    }
 
-        } catch (ValidationException ex) {
+    protected void handleDescriptionFailure(Throwable cause, RemoteDevice describedDevice, boolean notifiedStart) {
+        if (cause instanceof ValidationException) {
     		// Avoid error log spam each time device is discovered, errors are logged once per device.
         	if(!errorsAlreadyLogged.contains(rd.getIdentity().getUdn())) {
         		errorsAlreadyLogged.add(rd.getIdentity().getUdn());
 				if (log.isWarnEnabled()) log.warn("Could not validate device model: " + rd);
-        		for (ValidationError validationError : ex.getErrors()) {
+        		for (ValidationError validationError : ((ValidationException) cause).getErrors()) {
 					if (log.isWarnEnabled()) log.warn(validationError.toString());
         		}
                 if (describedDevice != null && notifiedStart)
-                    getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, ex);
+                    getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, (ValidationException) cause);
         	}
 
-        } catch (DescriptorBindingException ex) {
+        } else if (cause instanceof DescriptorBindingException) {
 			if (log.isWarnEnabled()) {
 				log.warn("Could not hydrate device or its services from descriptor: " + rd);
-				log.warn("Cause was: ", Exceptions.unwrap(ex));
+				log.warn("Cause was: ", Exceptions.unwrap(cause));
 			}
             if (describedDevice != null && notifiedStart)
-                getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, ex);
+                getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, (DescriptorBindingException) cause);
 
-        } catch (RegistrationException ex) {
+        } else if (cause instanceof RegistrationException) {
 			if (log.isWarnEnabled()) {
 				log.warn("Adding hydrated device to registry failed: " + rd);
-				log.warn("Cause was: ", ex);
+				log.warn("Cause was: ", cause);
 			}
             if (describedDevice != null && notifiedStart)
-                getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, ex);
+                getUpnpService().getRegistry().notifyDiscoveryFailure(describedDevice, (RegistrationException) cause);
+
+        } else {
+            throw cause instanceof CompletionException ? (CompletionException) cause : new CompletionException(cause);
         }
     }
 
-    protected RemoteDevice describeServices(RemoteDevice currentDevice)
-            throws RouterException, DescriptorBindingException, ValidationException {
-
-        List<RemoteService> describedServices = new ArrayList<>();
-        if (currentDevice.hasServices()) {
-            List<RemoteService> filteredServices = filterExclusiveServices(currentDevice.getServices());
-            for (RemoteService service : filteredServices) {
-                RemoteService svc = describeService(service);
-                 // Skip invalid services (yes, we can continue with only some services available)
-                if (svc != null)
-                    describedServices.add(svc);
-                else if (log.isWarnEnabled())
-					log.warn("Skipping invalid service '" + service + "' of: " + currentDevice);
-            }
+    /**
+     * Retrieves the service descriptors of the device and of its embedded devices concurrently.
+     *
+     * @return The future new immutable device graph, completed exceptionally with a {@link RouterException},
+     *         {@link DescriptorBindingException} or {@link ValidationException} if a descriptor could not be
+     *         retrieved or bound.
+     */
+    protected CompletableFuture<RemoteDevice> describeServices(RemoteDevice currentDevice) {
+
+        List<RemoteService> filteredServices = currentDevice.hasServices()
+                ? filterExclusiveServices(currentDevice.getServices())
+                : Collections.emptyList();
+        List<CompletableFuture<RemoteService>> serviceRetrievals = new ArrayList<>(filteredServices.size());
+        for (RemoteService service : filteredServices) {
+            serviceRetrievals.add(describeService(service));
         }
 
-        List<RemoteDevice> describedEmbeddedDevices = new ArrayList<>();
+        List<CompletableFuture<RemoteDevice>> embeddedDeviceRetrievals = new ArrayList<>();
         if (currentDevice.hasEmbeddedDevices()) {
             for (RemoteDevice embeddedDevice : currentDevice.getEmbeddedDevices()) {
                  // Skip invalid embedded device
                 if (embeddedDevice == null)
                     continue;
-                RemoteDevice describedEmbeddedDevice = describeServices(embeddedDevice);
-                 // Skip invalid embedded services
+                embeddedDeviceRetrievals.add(describeServices(embeddedDevice));
+            }
+        }
+
+        List<CompletableFuture<?>> retrievals = new ArrayList<>(serviceRetrievals);
+        retrievals.addAll(embeddedDeviceRetrievals);
+        return CompletableFuture.allOf(retrievals.toArray(new CompletableFuture<?>[0])).thenApplyAsync(v -> {
+            List<RemoteService> describedServices = new ArrayList<>(serviceRetrievals.size());
+            for (int i = 0; i < serviceRetrievals.size(); i++) {
+                RemoteService describedService = serviceRetrievals.get(i).join();
+                // Skip invalid services (yes, we can continue with only some services available)
+                if (describedService != null)
+                    describedServices.add(describedService);
+                else if (log.isWarnEnabled())
+                    log.warn("Skipping invalid service '" + filteredServices.get(i) + "' of: " + currentDevice);
+            }
+
+            List<RemoteDevice> describedEmbeddedDevices = new ArrayList<>(embeddedDeviceRetrievals.size());
+            for (CompletableFuture<RemoteDevice> embeddedDeviceRetrieval : embeddedDeviceRetrievals) {
+                RemoteDevice describedEmbeddedDevice = embeddedDeviceRetrieval.join();
+                // Skip invalid embedded services
                 if (describedEmbeddedDevice != null)
                     describedEmbeddedDevices.add(describedEmbeddedDevice);
             }
-        }
 
-        List<Icon> iconDupes = new ArrayList<>(currentDevice.getIcons().size());
-        for (Icon icon : currentDevice.getIcons()) {
-            iconDupes.add(icon.deepCopy());
-        }
+            List<Icon> iconDupes = new ArrayList<>(currentDevice.getIcons().size());
+            for (Icon icon : currentDevice.getIcons()) {
+                iconDupes.add(icon.deepCopy());
+            }
 
-        // Yes, we create a completely new immutable graph here
-        return currentDevice.newInstance(
-                currentDevice.getIdentity().getUdn(),
-                currentDevice.getVersion(),
-                currentDevice.getType(),
-                currentDevice.getDetails(),
-                iconDupes,
-                describedServices,
-                describedEmbeddedDevices
-        );
+            // Yes, we create a completely new immutable graph here
+            try {
+                return currentDevice.newInstance(
+                        currentDevice.getIdentity().getUdn(),
+                        currentDevice.getVersion(),
+                        currentDevice.getType(),
+                        currentDevice.getDetails(),
+                        iconDupes,
+                        describedServices,
+                        describedEmbeddedDevices
+                );
+            } catch (ValidationException ex) {
+                throw new CompletionException(ex);
+            }
+        }, getContinuationExecutor());
     }
 
-    protected RemoteService describeService(RemoteService service)
-            throws RouterException, DescriptorBindingException, ValidationException {
+    /**
+     * @return The future hydrated service, <code>null</code> if the service is invalid.
+     */
+    protected CompletableFuture<RemoteService> describeService(RemoteService service) {
 
     	URL descriptorURL;
     	try {
     		descriptorURL = service.getDevice().normalizeURI(service.getDescriptorURI());
     	}  catch(IllegalArgumentException e) {
 			if (log.isWarnEnabled()) log.warn("Could not normalize service descriptor URL: " + service.getDescriptorURI());
-    		return null;
+    		return CompletableFuture.completedFuture(null);
     	}
 
+        if (storedDescriptors != null) {
+            String storedDescriptor = storedDescriptors.getServiceDescriptor(descriptorURL);
+            if (storedDescriptor != null) {
+				if (log.isDebugEnabled()) {
+					log.debug("Hydrating service model from stored descriptor: " + descriptorURL);
+				}
+                retrievedServiceDescriptors.put(descriptorURL.toString(), storedDescriptor);
+                return bind(() -> getUpnpService().getConfiguration().getServiceDescriptorBinderUDA10().describe(service, storedDescriptor));
+            }
+        }
+
         StreamRequestMessage serviceDescRetrievalMsg = new StreamRequestMessage(UpnpRequest.Method.GET, descriptorURL);
 
         // Extra headers
@@ -339,7 +609,92 @@ public class RetrieveRemoteDescriptors implements Runnable {
 		if (log.isDebugEnabled()) {
             log.debug("Sending service descriptor retrieval message: " + serviceDescRetrievalMsg);
 		}
-		StreamResponseMessage serviceDescMsg = getUpnpService().getRouter().send(serviceDescRetrievalMsg);
+		return retrieveServiceDescriptor(serviceDescRetrievalMsg)
+            .thenComposeAsync(
+                serviceDescMsg -> bind(() -> describeService(service, descriptorURL, serviceDescMsg)),
+                getContinuationExecutor()
+            );
+    }
+
+    /**
+     * Sends the service descriptor request, unless the same descriptor is already being retrieved for another
+     * service, as embedded devices of the same type often share their service descriptors. Requests exceeding
+     * {@link #getMaxConcurrentServiceRetrievals()} are queued until a response has been received.
+     *
+     * @return The future response, shared by all services with the same descriptor URL.
+     * @since 1.5.0
+     */
+    protected CompletableFuture<StreamResponseMessage> retrieveServiceDescriptor(StreamRequestMessage serviceDescRetrievalMsg) {
+        CompletableFuture<StreamResponseMessage> retrieval = new CompletableFuture<>();
+        CompletableFuture<StreamResponseMessage> activeRetrieval =
+            serviceDescriptorRetrievals.putIfAbsent(serviceDescRetrievalMsg.getUri().toString(), retrieval);
+        if (activeRetrieval != null) {
+			if (log.isDebugEnabled()) {
+				log.debug("Service descriptor already retrieved for another service: " + serviceDescRetrievalMsg.getUri());
+			}
+            return activeRetrieval;
+        }
+        boolean send;
+        synchronized (pendingServiceDescriptorRetrievals) {
+            send = activeServiceDescriptorRetrievals < getMaxConcurrentServiceRetrievals();
+            if (send)
+                activeServiceDescriptorRetrievals++;
+            else
+                pendingServiceDescriptorRetrievals.add(() -> sendServiceDescriptorRequest(serviceDescRetrievalMsg, retrieval));
+        }
+        if (send)
+            sendServiceDescriptorRequest(serviceDescRetrievalMsg, retrieval);
+        return retrieval;
+    }
+
+    private void sendServiceDescriptorRequest(StreamRequestMessage serviceDescRetrievalMsg,
+                                              CompletableFuture<StreamResponseMessage> retrieval) {
+        CompletableFuture<StreamResponseMessage> response;
+        try {
+            response = getUpnpService().getRouter().sendAsync(serviceDescRetrievalMsg);
+        } catch (RuntimeException ex) {
+            response = CompletableFuture.failedFuture(ex);
+        }
+        response.whenComplete((serviceDescMsg, t) -> {
+            Runnable next;
+            synchronized (pendingServiceDescriptorRetrievals) {
+                next = pendingServiceDescriptorRetrievals.poll();
+                if (next == null)
+                    activeServiceDescriptorRetrievals--;
+            }
+            if (t != null)
+                retrieval.completeExceptionally(unwrap(t));
+            else
+                retrieval.complete(serviceDescMsg);
+            if (next != null)
+                next.run();
+        });
+    }
+
+    /**
+     * The retrieval waits for the completion of the tasks running its stages, they must never be dropped. They
+     * don't run on the asynchronous protocol executor, which may drop tasks when overloaded, but on the
+     * {@link com.distrimind.upnp.UpnpServiceConfiguration#getSyncProtocolExecutorService()}, which runs them in
+     * the submitting thread instead.
+     *
+     * @return The executor loading the stored descriptors, and binding the received descriptors.
+     * @since 1.5.0
+     */
+    protected Executor getContinuationExecutor() {
+        return getUpnpService().getConfiguration().getSyncProtocolExecutorService();
+    }
+
+    /**
+     * @return The maximum number of service descriptor requests in flight for the root device,
+     *         defaults to {@link #DEFAULT_MAX_CONCURRENT_SERVICE_RETRIEVALS}.
+     * @since 1.5.0
+     */
+    protected int getMaxConcurrentServiceRetrievals() {
+        return DEFAULT_MAX_CONCURRENT_SERVICE_RETRIEVALS;
+    }
+
+    protected RemoteService describeService(RemoteService service, URL descriptorURL, StreamResponseMessage serviceDescMsg)
+            throws DescriptorBindingException, ValidationException {
 
         if (serviceDescMsg == null) {
 			if (log.isWarnEnabled()) log.warn("Could not retrieve service descriptor, no response: " + service);
@@ -370,12 +725,51 @@ public class RetrieveRemoteDescriptors implements Runnable {
 		if (log.isDebugEnabled()) {
             log.debug("Received service descriptor, hydrating service model: " + serviceDescMsg);
 		}
+        if (descriptorCache != null) {
+            retrievedServiceDescriptors.put(descriptorURL.toString(), descriptorContent);
+            storedDescriptorsOutdated = true;
+        }
 		ServiceDescriptorBinder serviceDescriptorBinder =
                 getUpnpService().getConfiguration().getServiceDescriptorBinderUDA10();
 
         return serviceDescriptorBinder.describe(service, descriptorContent);
     }
 
+    /**
+     * Binds a descriptor. If the host of the device is still being resolved, the descriptor is bound again
+     * on the {@link #getContinuationExecutor()} once the resolution has completed, no thread waits for it.
+     *
+     * @return The future bound model, completed exceptionally with a {@link DescriptorBindingException} or
+     *         {@link ValidationException} if the descriptor could not be bound.
+     */
+    private <T> CompletableFuture<T> bind(Binding<T> binding) {
+        try {
+            return CompletableFuture.completedFuture(binding.bind());
+        } catch (UnresolvedHostException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug("Waiting for the resolution of the host of the device: " + ex.getHost());
+            }
+            return ex.getResolution().thenApplyAsync(address -> {
+                try {
+                    return binding.bind();
+                } catch (DescriptorBindingException | ValidationException e) {
+                    throw new CompletionException(e);
+                }
+            }, getContinuationExecutor());
+        } catch (DescriptorBindingException | ValidationException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    @FunctionalInterface
+    private interface Binding<T> {
+        T bind() throws DescriptorBindingException, ValidationException;
+    }
+
+    private static Throwable unwrap(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
     protected List<RemoteService> filterExclusiveServices(Collection<RemoteService> services) {
         ServiceType[] exclusiveTypes = getUpnpService().getConfiguration().getExclusiveServiceTypes();
 
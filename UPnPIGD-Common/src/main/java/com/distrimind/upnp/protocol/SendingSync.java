@@ -20,11 +20,15 @@ import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.StreamResponseMessage;
 import com.distrimind.upnp.UpnpService;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Supertype for all synchronously executing protocols, sending UPnP messages.
  * <p>
  * After instantiation by the {@link ProtocolFactory}, this protocol <code>run()</code>s and
- * calls its {@link #executeSync()} method.
+ * calls its {@link #executeSync()} method. Alternatively, {@link #executeAsync()} composes the
+ * protocol on the router's non-blocking stream client.
  * </p>
  *
  * @param <IN> The type of request UPnP message send by this protocol.
@@ -57,4 +61,42 @@ public abstract class SendingSync<IN extends StreamRequestMessage, OUT extends S
 
     protected abstract OUT executeSync() throws RouterException;
 
+    /**
+     * Executes this protocol without blocking the calling thread while waiting for responses.
+     * <p>
+     * The returned future completes with the same value as {@link #executeSync()}, which is also
+     * available with {@link #getOutputMessage()} afterwards, or exceptionally with the
+     * {@link RouterException} thrown by the router. This default implementation runs
+     * {@link #executeSync()} on the calling thread, subclasses compose on
+     * {@link com.distrimind.upnp.transport.Router#sendAsync(StreamRequestMessage)} instead.
+     * </p>
+     *
+     * @return The future response.
+     * @since 1.5.0
+     */
+    public CompletableFuture<OUT> executeAsync() {
+        try {
+            outputMessage = executeSync();
+            return CompletableFuture.completedFuture(outputMessage);
+        } catch (RouterException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+    }
+
+    /**
+     * @return The given response, after it has been stored as the output message of this protocol.
+     */
+    protected OUT setOutputMessage(OUT outputMessage) {
+        this.outputMessage = outputMessage;
+        return outputMessage;
+    }
+
+    /**
+     * @return The cause of the given exception if it was thrown by a stage of a
+     *         {@link CompletableFuture}, otherwise the given exception.
+     */
+    protected static Throwable unwrapCompletionException(Throwable t) {
+        return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+    }
+
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
 package com.distrimind.upnp.protocol.async;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Random;
@@ -113,16 +114,21 @@ public class ReceivingSearch extends ReceivingAsync<IncomingSearchRequest> {
     }
 
     @Override
-    protected boolean waitBeforeExecution() throws InterruptedException {
+    protected boolean waitBeforeExecution() {
 
-        Integer mx = getInputMessage().getMX();
-
-        if (mx == null) {
+        if (getInputMessage().getMX() == null) {
 			if (log.isDebugEnabled()) {
 				log.debug("Invalid search request, did not contain MX header: " + getInputMessage());
 			}
 			return false;
         }
+        return true;
+    }
+
+    @Override
+    protected long getExecutionDelayMillis() {
+
+        Integer mx = getInputMessage().getMX();
 
         // Spec says we should assume "less" if it's 120 or more
         // From the spec, MX should be "greater than or equal to 1"
@@ -131,14 +137,31 @@ public class ReceivingSearch extends ReceivingAsync<IncomingSearchRequest> {
 
         // Only wait if there is something to wait for
         if (!getUpnpService().getRegistry().getLocalDevices().isEmpty()) {
-            int sleepTime = randomGenerator.nextInt(mx * 1000);
+            int delay = randomGenerator.nextInt(mx * 1000);
 			if (log.isDebugEnabled()) {
-				log.debug("Sleeping " + sleepTime + " milliseconds to avoid flooding with search responses");
+				log.debug("Delaying response of " + delay + " milliseconds to avoid flooding with search responses");
 			}
-			Thread.sleep(sleepTime);
+			return delay;
         }
 
-        return true;
+        return 0;
+    }
+
+    /**
+     * Control points usually repeat their search requests, the responses to a repetition
+     * received while the first ones are still delayed would be identical.
+     *
+     * @return The requester, the local address and the search target.
+     */
+    @Override
+    protected Object getExecutionKey() {
+        UpnpHeader<?> searchTarget = getInputMessage().getSearchTarget();
+        return Arrays.asList(
+                getInputMessage().getSourceAddress(),
+                getInputMessage().getSourcePort(),
+                getInputMessage().getLocalAddress(),
+                searchTarget != null ? searchTarget.getString() : null
+        );
     }
     
     protected void sendResponses(UpnpHeader<?> searchTarget, NetworkAddress activeStreamServer) throws RouterException {
@@ -37,8 +37,8 @@ import com.distrimind.upnp.Log;
 /**
  * Sending notification messages for a registered local device.
  * <p>
- * Sends all required (dozens) of messages three times, waits between 0 and 150
- * milliseconds between each bulk sending procedure.
+ * Sends all required (dozens) of messages three times. The repetitions are sent 150
+ * milliseconds apart by the {@link com.distrimind.upnp.protocol.ProtocolScheduler}.
  * </p>
  *
  * @author Christian Bauer
@@ -79,25 +79,48 @@ public abstract class SendingNotification extends SendingAsync {
             );
         }
 
-        for (int i = 0; i < getBulkRepeat(); i++) {
-            try {
-
-                for (Location descriptorLocation : descriptorLocations) {
-                    sendMessages(descriptorLocation);
-                }
+        sendMessages(descriptorLocations);
+
+        // UDA 1.0 is silent about this but UDA 1.1 recomments "a few hundred milliseconds"
+        // between repetitions, they are scheduled instead of sleeping
+        for (int i = 1; i < getBulkRepeat(); i++) {
+            long delay = (long) i * getBulkIntervalMilliseconds();
+			if (log.isTraceEnabled()) {
+				log.trace("Scheduling repetition in " + delay + " milliseconds");
+			}
+			if (!getUpnpService().getConfiguration().getProtocolScheduler().schedule(() -> repeat(descriptorLocations), delay)) {
+                log.debug("Protocol scheduler shut down, not repeating notifications");
+                break;
+            }
+        }
+    }
 
-                // UDA 1.0 is silent about this but UDA 1.1 recomments "a few hundred milliseconds"
-				if (log.isTraceEnabled()) {
-					log.trace("Sleeping " + getBulkIntervalMilliseconds() + " milliseconds");
-				}
-				Thread.sleep(getBulkIntervalMilliseconds());
+    protected void repeat(List<Location> descriptorLocations) {
+        if (!isRepeatable()) {
+            log.debug("Notifications are obsolete, not repeating them");
+            return;
+        }
+        try {
+            sendMessages(descriptorLocations);
+        } catch (RouterException ex) {
+            if (log.isWarnEnabled()) log.warn("Repeating notifications failed: ", ex);
+        }
+    }
 
-            } catch (InterruptedException ex) {
-                if (log.isWarnEnabled()) log.warn("Advertisement thread was interrupted: ", ex);
-            }
+    protected void sendMessages(List<Location> descriptorLocations) throws RouterException {
+        for (Location descriptorLocation : descriptorLocations) {
+            sendMessages(descriptorLocation);
         }
     }
 
+    /**
+     * @return <code>false</code> if the scheduled repetitions must not be sent anymore.
+     * @since 1.5.0
+     */
+    protected boolean isRepeatable() {
+        return true;
+    }
+
     protected int getBulkRepeat() {
         return 3; // UDA 1.0 says maximum 3 times for alive messages, let's just do it for all
     }
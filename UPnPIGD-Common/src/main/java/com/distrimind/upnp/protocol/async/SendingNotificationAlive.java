@@ -18,8 +18,12 @@ package com.distrimind.upnp.protocol.async;
 import com.distrimind.upnp.transport.RouterException;
 import com.distrimind.upnp.UpnpService;
 import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.Location;
 import com.distrimind.upnp.model.types.NotificationSubtype;
 
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -32,6 +36,8 @@ public class SendingNotificationAlive extends SendingNotification {
 
     final private static DMLogger log = Log.getLogger(SendingNotificationAlive.class);
 
+    private volatile boolean registered;
+
     public SendingNotificationAlive(UpnpService upnpService, LocalDevice<?> device) {
         super(upnpService, device);
     }
@@ -41,7 +47,51 @@ public class SendingNotificationAlive extends SendingNotification {
 		if (log.isDebugEnabled()) {
             log.debug("Sending alive messages ("+getBulkRepeat()+" times) for: " + getDevice());
 		}
-		super.execute();
+        // Not through isRegistered(), the registry lock must not be acquired while holding this one
+        Lock lock = getUpnpService().getRegistry().lockLocalDeviceAdvertisement(getDevice().getIdentity().getUdn());
+        registered = lock != null;
+        try {
+            super.execute();
+        } finally {
+            if (lock != null) {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Repetitions of a device removed from the registry in the meantime would be
+     * sent after its <em>BYEBYE</em> messages.
+     */
+    @Override
+    protected boolean isRepeatable() {
+        return !registered || isRegistered();
+    }
+
+    /**
+     * The messages of a registered device are sent while it can't be removed from the
+     * registry, so that they don't race with its <em>BYEBYE</em> messages.
+     */
+    @Override
+    protected void sendMessages(List<Location> descriptorLocations) throws RouterException {
+        if (!registered) {
+            super.sendMessages(descriptorLocations);
+            return;
+        }
+        Lock lock = getUpnpService().getRegistry().lockLocalDeviceAdvertisement(getDevice().getIdentity().getUdn());
+        if (lock == null) {
+            log.debug("Local device was removed, not sending alive messages");
+            return;
+        }
+        try {
+            super.sendMessages(descriptorLocations);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    protected boolean isRegistered() {
+        return getUpnpService().getRegistry().getLocalDevice(getDevice().getIdentity().getUdn(), true) != null;
     }
 
     @Override
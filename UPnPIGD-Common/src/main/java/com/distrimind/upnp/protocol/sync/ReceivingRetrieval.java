@@ -31,6 +31,7 @@ import com.distrimind.upnp.model.message.header.UpnpHeader;
 import com.distrimind.upnp.model.meta.Icon;
 import com.distrimind.upnp.model.meta.LocalDevice;
 import com.distrimind.upnp.model.meta.LocalService;
+import com.distrimind.upnp.model.resource.DescriptorCache;
 import com.distrimind.upnp.model.resource.DeviceDescriptorResource;
 import com.distrimind.upnp.model.resource.IconResource;
 import com.distrimind.upnp.model.resource.Resource;
@@ -38,6 +39,8 @@ import com.distrimind.upnp.model.resource.ServiceDescriptorResource;
 import com.distrimind.upnp.util.Exceptions;
 
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -45,7 +48,9 @@ import com.distrimind.upnp.Log;
  * Handles reception of device/service descriptor and icon retrieval messages.
  *
  * <p>
- * Requested device and service XML descriptors are generated on-the-fly for every request.
+ * Requested device and service XML descriptors are generated on-the-fly for the first request,
+ * then served from the {@link DescriptorCache} of their resource, with <code>ETag</code> and
+ * <code>Last-Modified</code> validators for conditional requests.
  * </p>
  * <p>
  * Descriptor XML is dynamically generated depending on the control point - some control
@@ -102,17 +107,20 @@ public class ReceivingRetrieval extends ReceivingSync<StreamRequestMessage, Stre
 				}
 				LocalDevice<?> device = (LocalDevice<?>) resource.getModel();
 
-                DeviceDescriptorBinder deviceDescriptorBinder =
-                        getUpnpService().getConfiguration().getDeviceDescriptorBinderUDA10();
-                String deviceDescriptor = deviceDescriptorBinder.generate(
-                        device,
-                        getRemoteClientInfo(),
-                        getUpnpService().getConfiguration().getNamespace()
-                );
-                response = new StreamResponseMessage(
-                        deviceDescriptor,
-                        new ContentTypeHeader(ContentTypeHeader.DEFAULT_CONTENT_TYPE)
-                );
+                DescriptorCache cache = ((DeviceDescriptorResource<?>) resource).getDescriptorCache();
+                Object variant = getDescriptorVariant(device);
+                DescriptorCache.Descriptor descriptor = cache.get(variant);
+                if (descriptor == null) {
+                    DeviceDescriptorBinder deviceDescriptorBinder =
+                            getUpnpService().getConfiguration().getDeviceDescriptorBinderUDA10();
+                    String deviceDescriptor = deviceDescriptorBinder.generate(
+                            device,
+                            getRemoteClientInfo(),
+                            getUpnpService().getConfiguration().getNamespace()
+                    );
+                    descriptor = cache.put(variant, deviceDescriptor);
+                }
+                response = createDescriptorResponse(descriptor);
             } else if (ServiceDescriptorResource.class.isAssignableFrom(resource.getClass())) {
 
 
@@ -121,13 +129,14 @@ public class ReceivingRetrieval extends ReceivingSync<StreamRequestMessage, Stre
 				}
 				LocalService<?> service = (LocalService<?>) resource.getModel();
 
-                ServiceDescriptorBinder serviceDescriptorBinder =
-                        getUpnpService().getConfiguration().getServiceDescriptorBinderUDA10();
-                String serviceDescriptor = serviceDescriptorBinder.generate(service);
-                response = new StreamResponseMessage(
-                        serviceDescriptor,
-                        new ContentTypeHeader(ContentTypeHeader.DEFAULT_CONTENT_TYPE)
-                );
+                DescriptorCache cache = ((ServiceDescriptorResource<?>) resource).getDescriptorCache();
+                DescriptorCache.Descriptor descriptor = cache.get(service);
+                if (descriptor == null) {
+                    ServiceDescriptorBinder serviceDescriptorBinder =
+                            getUpnpService().getConfiguration().getServiceDescriptorBinderUDA10();
+                    descriptor = cache.put(service, serviceDescriptorBinder.generate(service));
+                }
+                response = createDescriptorResponse(descriptor);
 
             } else if (IconResource.class.isAssignableFrom(resource.getClass())) {
 
@@ -158,6 +167,47 @@ public class ReceivingRetrieval extends ReceivingSync<StreamRequestMessage, Stre
         return response;
     }
 
+    /**
+     * A device descriptor depends on the details provided for the requesting control point, see
+     * {@link LocalDevice#getDetails(com.distrimind.upnp.model.profile.RemoteClientInfo)}.
+     *
+     * @return The key of the cached descriptor matching the requesting control point.
+     * @since 1.5.0
+     */
+    protected Object getDescriptorVariant(LocalDevice<?> device) {
+        List<Object> variant = new ArrayList<>();
+        variant.add(getUpnpService().getConfiguration().getNamespace());
+        variant.add(device.getDetails(getRemoteClientInfo()));
+        for (LocalDevice<?> embeddedDevice : device.findEmbeddedDevices()) {
+            variant.add(embeddedDevice.getDetails(getRemoteClientInfo()));
+        }
+        return variant;
+    }
+
+    /**
+     * @return The encoded descriptor, or an empty response if the validators of the request match.
+     * @since 1.5.0
+     */
+    protected StreamResponseMessage createDescriptorResponse(DescriptorCache.Descriptor descriptor) {
+        StreamResponseMessage response;
+        if (descriptor.isNotModified(
+                getInputMessage().getHeaders().getFirstHeader(DescriptorCache.HEADER_IF_NONE_MATCH),
+                getInputMessage().getHeaders().getFirstHeader(DescriptorCache.HEADER_IF_MODIFIED_SINCE))) {
+            if (log.isDebugEnabled()) {
+                log.debug("Descriptor not modified since last retrieval: " + getInputMessage());
+            }
+            response = new StreamResponseMessage(UpnpResponse.Status.NOT_MODIFIED);
+        } else {
+            response = new StreamResponseMessage(
+                    descriptor.getData(),
+                    new ContentTypeHeader(ContentTypeHeader.DEFAULT_CONTENT_TYPE)
+            );
+        }
+        response.getHeaders().add(DescriptorCache.HEADER_ETAG, descriptor.getETag());
+        response.getHeaders().add(DescriptorCache.HEADER_LAST_MODIFIED, descriptor.getLastModified());
+        return response;
+    }
+
     /**
      * Called if the {@link Registry} had no result.
      *
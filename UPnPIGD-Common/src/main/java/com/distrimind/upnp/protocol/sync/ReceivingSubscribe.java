@@ -15,6 +15,7 @@
 
 package com.distrimind.upnp.protocol.sync;
 
+import com.distrimind.upnp.protocol.GENAEventDispatcher;
 import com.distrimind.upnp.protocol.ReceivingSync;
 import com.distrimind.upnp.transport.RouterException;
 import com.distrimind.upnp.UpnpService;
@@ -175,9 +176,7 @@ public class ReceivingSubscribe extends ReceivingSync<StreamRequestMessage, Outg
                 @Override
 				public void eventReceived() {
                     // The only thing we are interested in, sending an event when the state changes
-                    getUpnpService().getConfiguration().getSyncProtocolExecutorService().execute(
-                            getUpnpService().getProtocolFactory().createSendingEvent(this)
-                    );
+                    sendEvent(this);
                 }
             };
         } catch (Exception ex) {
@@ -201,19 +200,14 @@ public class ReceivingSubscribe extends ReceivingSync<StreamRequestMessage, Outg
                 && !responseMessage.getOperation().isFailed()
                 && subscription.getCurrentSequence().getValue() == 0) { // Note that renewals should not have 0
 
-            // This is a minor concurrency issue: If we now register on the service and henceforth send a new
-            // event message whenever the state of the service changes, there is still a chance that the initial
-            // event message arrives later than the first on-change event message. Shouldn't be a problem as the
-            // subscriber is supposed to figure out what to do with out-of-sequence messages. I would be
-            // surprised though if actual implementations won't crash!
+            // The initial event is queued before registering on the service, so that it is sent before
+            // the first on-change event message, with the sequence number 0
             log.debug("Establishing subscription");
-            subscription.registerOnService();
             subscription.establish();
 
             log.debug("Response to subscription sent successfully, now sending initial event asynchronously");
-            getUpnpService().getConfiguration().getAsyncProtocolExecutor().execute(
-                    getUpnpService().getProtocolFactory().createSendingEvent(subscription)
-            );
+            sendEvent(subscription);
+            subscription.registerOnService();
 
         } else if (subscription.getCurrentSequence().getValue() == 0) {
             log.debug("Subscription request's response aborted, not sending initial event");
@@ -239,4 +233,19 @@ public class ReceivingSubscribe extends ReceivingSync<StreamRequestMessage, Outg
 		}
 		getUpnpService().getRegistry().removeLocalSubscription(subscription);
     }
-}
\ No newline at end of file
+
+    /**
+     * Queues an event with the current values of the subscription, see {@link GENAEventDispatcher}. Without
+     * dispatcher, the event is sent by a protocol of the synchronous protocol executor.
+     */
+    protected void sendEvent(LocalGENASubscription<?> subscription) {
+        GENAEventDispatcher dispatcher = getUpnpService().getRegistry().getEventDispatcher();
+        if (dispatcher != null) {
+            dispatcher.dispatch(subscription);
+        } else {
+            getUpnpService().getConfiguration().getSyncProtocolExecutorService().execute(
+                    getUpnpService().getProtocolFactory().createSendingEvent(subscription)
+            );
+        }
+    }
+}
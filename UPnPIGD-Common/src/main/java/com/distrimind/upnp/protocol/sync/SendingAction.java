@@ -32,6 +32,8 @@ import com.distrimind.upnp.model.UnsupportedDataException;
 import com.distrimind.upnp.util.Exceptions;
 
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -65,25 +67,75 @@ public class SendingAction extends SendingSync<OutgoingActionRequestMessage, Inc
         return invokeRemote(getInputMessage());
     }
 
+    @Override
+    public CompletableFuture<IncomingActionResponseMessage> executeAsync() {
+        return invokeRemoteAsync(getInputMessage()).thenApply(this::setOutputMessage);
+    }
+
     protected IncomingActionResponseMessage invokeRemote(OutgoingActionRequestMessage requestMessage) throws RouterException {
-        Device<?, ?, ?> device = actionInvocation.getAction().getService().getDevice();
+        logInvocation();
+        StreamResponseMessage streamResponse;
+        try {
+            streamResponse = sendRemoteRequest(requestMessage);
+        } catch (ActionException ex) {
+            return handleActionException(ex, null);
+        }
+        return handleStreamResponse(streamResponse);
+    }
 
+    /**
+     * Same as {@link #invokeRemote(OutgoingActionRequestMessage)}, without blocking the calling thread
+     * while waiting for the response.
+     *
+     * @since 1.5.0
+     */
+    protected CompletableFuture<IncomingActionResponseMessage> invokeRemoteAsync(OutgoingActionRequestMessage requestMessage) {
+        logInvocation();
+        try {
+            writeRequestBody(requestMessage);
+        } catch (ActionException ex) {
+            return CompletableFuture.completedFuture(handleActionException(ex, null));
+        }
+        log.debug("Sending SOAP body of message as asynchronous stream to remote device");
+        // The response is read on a protocol thread, not on the thread of the transport completing it
+        return getUpnpService().getRouter().sendAsync(requestMessage).handleAsync((streamResponse, t) -> {
+            if (t == null) {
+                return handleStreamResponse(streamResponse);
+            }
+            Throwable cause = Exceptions.unwrap(t);
+            if (cause instanceof InterruptedException) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Sending action request message was interrupted: ", cause);
+                }
+                return handleActionException(new ActionCancelledException((InterruptedException) cause), null);
+            }
+            throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+        }, getUpnpService().getConfiguration().getAsyncProtocolExecutor());
+    }
+
+    private void logInvocation() {
 		if (log.isDebugEnabled()) {
+            Device<?, ?, ?> device = actionInvocation.getAction().getService().getDevice();
             log.debug("Sending outgoing action call '" + actionInvocation.getAction().getName() + "' to remote service of: " + device);
 		}
-		IncomingActionResponseMessage responseMessage = null;
-        try {
-
-            StreamResponseMessage streamResponse = sendRemoteRequest(requestMessage);
-
-            if (streamResponse == null) {
-                log.debug("No connection or no no response received, returning null");
-                actionInvocation.setFailure(new ActionException(ErrorCode.ACTION_FAILED, "Connection error or no response received"));
-                return null;
-            }
+    }
 
-            responseMessage = new IncomingActionResponseMessage(streamResponse);
+    /**
+     * Reads the received response into the action invocation.
+     *
+     * @param streamResponse The received response, or <code>null</code> if no response was received.
+     * @return The response message, or <code>null</code> if no response was received.
+     * @since 1.5.0
+     */
+    protected IncomingActionResponseMessage handleStreamResponse(StreamResponseMessage streamResponse) {
+        if (streamResponse == null) {
+            log.debug("No connection or no no response received, returning null");
+            actionInvocation.setFailure(new ActionException(ErrorCode.ACTION_FAILED, "Connection error or no response received"));
+            return null;
+        }
 
+        IncomingActionResponseMessage responseMessage = new IncomingActionResponseMessage(streamResponse);
+        try {
             if (responseMessage.isFailedNonRecoverable()) {
 				if (log.isDebugEnabled()) {
 					log.debug("Response was a non-recoverable failure: " + responseMessage);
@@ -99,29 +151,28 @@ public class SendingAction extends SendingSync<OutgoingActionRequestMessage, Inc
 
             return responseMessage;
 
-
         } catch (ActionException ex) {
-			if (log.isDebugEnabled()) {
-				log.debug("Remote action invocation failed, returning Internal Server Error message: ", ex);
-			}
-			actionInvocation.setFailure(ex);
-            if (responseMessage == null || !responseMessage.getOperation().isFailed()) {
-                return new IncomingActionResponseMessage(new UpnpResponse(UpnpResponse.Status.INTERNAL_SERVER_ERROR));
-            } else {
-                return responseMessage;
-            }
+            return handleActionException(ex, responseMessage);
+        }
+    }
+
+    protected IncomingActionResponseMessage handleActionException(ActionException ex, IncomingActionResponseMessage responseMessage) {
+		if (log.isDebugEnabled()) {
+			log.debug("Remote action invocation failed, returning Internal Server Error message: ", ex);
+		}
+		actionInvocation.setFailure(ex);
+        if (responseMessage == null || !responseMessage.getOperation().isFailed()) {
+            return new IncomingActionResponseMessage(new UpnpResponse(UpnpResponse.Status.INTERNAL_SERVER_ERROR));
+        } else {
+            return responseMessage;
         }
     }
 
     protected StreamResponseMessage sendRemoteRequest(OutgoingActionRequestMessage requestMessage)
         throws ActionException, RouterException {
 
+        writeRequestBody(requestMessage);
         try {
-			if (log.isDebugEnabled()) {
-				log.debug("Writing SOAP request body of: " + requestMessage);
-			}
-			getUpnpService().getConfiguration().getSoapActionProcessor().writeBody(requestMessage, actionInvocation);
-
             log.debug("Sending SOAP body of message as stream to remote device");
             return getUpnpService().getRouter().send(requestMessage);
         } catch (RouterException ex) {
@@ -133,6 +184,15 @@ public class SendingAction extends SendingSync<OutgoingActionRequestMessage, Inc
                 throw new ActionCancelledException((InterruptedException)cause);
             }
             throw ex;
+        }
+    }
+
+    protected void writeRequestBody(OutgoingActionRequestMessage requestMessage) throws ActionException {
+        try {
+			if (log.isDebugEnabled()) {
+				log.debug("Writing SOAP request body of: " + requestMessage);
+			}
+			getUpnpService().getConfiguration().getSoapActionProcessor().writeBody(requestMessage, actionInvocation);
         } catch (UnsupportedDataException ex) {
             if (log.isDebugEnabled()) {
                 log.debug("Error writing SOAP body: ", ex);
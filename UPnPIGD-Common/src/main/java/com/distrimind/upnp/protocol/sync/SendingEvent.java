@@ -26,9 +26,12 @@ import com.distrimind.upnp.UpnpService;
 import com.distrimind.upnp.model.gena.LocalGENASubscription;
 import com.distrimind.upnp.model.message.StreamResponseMessage;
 import com.distrimind.upnp.model.message.gena.OutgoingEventRequestMessage;
+import com.distrimind.upnp.model.state.StateVariableValue;
 import com.distrimind.upnp.model.types.UnsignedIntegerFourBytes;
 
 import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 
 /**
  * Sending GENA event messages to remote subscribers.
@@ -51,24 +54,44 @@ public class SendingEvent extends SendingSync<OutgoingEventRequestMessage, Strea
     final protected UnsignedIntegerFourBytes currentSequence;
 
     public SendingEvent(UpnpService upnpService, LocalGENASubscription<?> subscription) {
-        super(upnpService, null); // Special case, we actually need to send several messages to each callback URL
-
         // TODO: Ugly design! It is critical (concurrency) that we prepare the event messages here, in the constructor thread!
+        this(upnpService, subscription, subscription.getCurrentSequence(), subscription.getCurrentValues().values());
+
+        // Always increment sequence now, as (its value) has already been set on the headers and the
+        // next event will use the incremented value
+        subscription.incrementSequence();
+    }
+
+    /**
+     * Prepares the event messages carrying the given values. The sequence of the subscription
+     * is not incremented, the caller assigns the sequence numbers.
+     *
+     * @param sequence The sequence number of this event.
+     * @param values The state variable values of this event.
+     * @since 1.5.0
+     */
+    public SendingEvent(UpnpService upnpService, LocalGENASubscription<?> subscription,
+                        UnsignedIntegerFourBytes sequence, Collection<? extends StateVariableValue<?>> values) {
+        super(upnpService, null); // Special case, we actually need to send several messages to each callback URL
 
         subscriptionId = subscription.getSubscriptionId();
 
+        // The body is the same for all callback URLs, it is only serialized for the first one
         requestMessages = new ArrayList<>(subscription.getCallbackURLs().size());
+        OutgoingEventRequestMessage first = null;
         for (URL url : subscription.getCallbackURLs()) {
-            OutgoingEventRequestMessage o = new OutgoingEventRequestMessage(subscription, url);
-            getUpnpService().getConfiguration().getGenaEventProcessor().writeBody(o);
+            OutgoingEventRequestMessage o = new OutgoingEventRequestMessage(subscription, url, sequence, values);
+            if (first == null) {
+                getUpnpService().getConfiguration().getGenaEventProcessor().writeBody(o);
+                first = o;
+            } else {
+                o.setBody(first.getBodyType(), first.getBody());
+            }
             requestMessages.add(o);
         }
 
-        currentSequence = subscription.getCurrentSequence();
-
-        // Always increment sequence now, as (its value) has already been set on the headers and the
-        // next event will use the incremented value
-        subscription.incrementSequence();
+        // Pass by value, the sequence of the subscription is incremented afterward
+        currentSequence = new UnsignedIntegerFourBytes(sequence.getValue());
     }
 
     @Override
@@ -81,17 +104,7 @@ public class SendingEvent extends SendingSync<OutgoingEventRequestMessage, Strea
 		StreamResponseMessage lastResponse = null;
 
         for (OutgoingEventRequestMessage requestMessage : requestMessages) {
-
-            if (currentSequence.getValue() == 0) {
-				if (log.isDebugEnabled()) {
-					log.debug("Sending initial event message to callback URL: " + requestMessage.getUri());
-				}
-			} else {
-				if (log.isDebugEnabled()) {
-					log.debug("Sending event message '"+currentSequence+"' to callback URL: " + requestMessage.getUri());
-				}
-			}
-
+            logSending(requestMessage);
 
             // Send request
             lastResponse = getUpnpService().getRouter().send(requestMessage);
@@ -106,4 +119,43 @@ public class SendingEvent extends SendingSync<OutgoingEventRequestMessage, Strea
         return lastResponse;
 
     }
+
+    /**
+     * Sends the messages to the callback URLs one after the other, like {@link #executeSync()},
+     * without blocking the calling thread.
+     */
+    @Override
+    public CompletableFuture<StreamResponseMessage> executeAsync() {
+
+		if (log.isDebugEnabled()) {
+            log.debug("Sending asynchronous event for subscription: " + subscriptionId);
+		}
+
+        // The next messages and the completion aren't handled on the thread of the transport completing a response,
+        // nor on the asynchronous protocol executor which may drop tasks when overloaded
+        Executor executor = getUpnpService().getConfiguration().getSyncProtocolExecutorService();
+        CompletableFuture<StreamResponseMessage> lastResponse = CompletableFuture.completedFuture(null);
+        for (OutgoingEventRequestMessage requestMessage : requestMessages) {
+            lastResponse = lastResponse.thenComposeAsync(previous -> {
+                logSending(requestMessage);
+                return getUpnpService().getRouter().sendAsync(requestMessage);
+            }, executor).thenApply(response -> {
+                if (log.isDebugEnabled()) {
+                    log.debug("Received event callback response: " + response);
+                }
+                return response;
+            });
+        }
+        return lastResponse.thenApplyAsync(this::setOutputMessage, executor);
+    }
+
+    private void logSending(OutgoingEventRequestMessage requestMessage) {
+        if (log.isDebugEnabled()) {
+            if (currentSequence.getValue() == 0) {
+                log.debug("Sending initial event message to callback URL: " + requestMessage.getUri());
+            } else {
+                log.debug("Sending event message '" + currentSequence + "' to callback URL: " + requestMessage.getUri());
+            }
+        }
+    }
 }
\ No newline at end of file
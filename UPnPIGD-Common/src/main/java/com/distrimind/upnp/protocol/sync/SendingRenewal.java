@@ -28,6 +28,9 @@ import com.distrimind.upnp.model.message.gena.OutgoingRenewalRequestMessage;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
 /**
  * Renewing a GENA event subscription with a remote host.
  * <p>
@@ -71,6 +74,33 @@ public class SendingRenewal extends SendingSync<OutgoingRenewalRequestMessage, I
             throw ex;
         }
 
+        return handleResponse(response);
+    }
+
+    @Override
+    public CompletableFuture<IncomingSubscribeResponseMessage> executeAsync() {
+		if (log.isDebugEnabled()) {
+            log.debug("Sending asynchronous subscription renewal request: " + getInputMessage());
+		}
+
+        return getUpnpService().getRouter().sendAsync(getInputMessage())
+            .handle((response, t) -> {
+                if (t != null) {
+                    onRenewalFailure();
+                    throw t instanceof CompletionException ? (CompletionException) t : new CompletionException(t);
+                }
+                return setOutputMessage(handleResponse(response));
+            });
+    }
+
+    /**
+     * Updates or ends the subscription.
+     *
+     * @param response The received response, or <code>null</code> if no response was received.
+     * @return The response message, or <code>null</code> if no response was received.
+     * @since 1.5.0
+     */
+    protected IncomingSubscribeResponseMessage handleResponse(StreamResponseMessage response) {
         if (response == null) {
             onRenewalFailure();
             return null;
@@ -26,6 +26,7 @@ import com.distrimind.upnp.model.message.gena.OutgoingSubscribeRequestMessage;
 import com.distrimind.upnp.UpnpService;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -73,13 +74,8 @@ public class SendingSubscribe extends SendingSync<OutgoingSubscribeRequestMessag
     @Override
 	protected IncomingSubscribeResponseMessage executeSync() throws RouterException {
 
-        if (!getInputMessage().hasCallbackURLs()) {
-            log.debug("Subscription failed, no active local callback URLs available (network disabled?)");
-            getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
-					() -> subscription.fail(null)
-			);
+        if (!hasCallbackURLs())
             return null;
-        }
 
 		if (log.isDebugEnabled()) {
             log.debug("Sending subscription request: " + getInputMessage());
@@ -97,45 +93,91 @@ public class SendingSubscribe extends SendingSync<OutgoingSubscribeRequestMessag
                 onSubscriptionFailure();
                 return null;
             }
+            return handleResponse(response);
+        } finally {
+            getUpnpService().getRegistry().unregisterPendingRemoteSubscription(subscription);
+        }
+    }
 
-            if (response == null) {
-                onSubscriptionFailure();
-                return null;
-            }
+    @Override
+    public CompletableFuture<IncomingSubscribeResponseMessage> executeAsync() {
 
-            final IncomingSubscribeResponseMessage responseMessage = new IncomingSubscribeResponseMessage(response);
-
-            if (response.getOperation().isFailed()) {
-				if (log.isDebugEnabled()) {
-					log.debug("Subscription failed, response was: " + responseMessage);
-				}
-				getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
-						() -> subscription.fail(responseMessage.getOperation())
-				);
-            } else if (!responseMessage.isValidHeaders()) {
-                log.error("Subscription failed, invalid or missing (SID, Timeout) response headers");
-                getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
-						() -> subscription.fail(responseMessage.getOperation())
-				);
-            } else {
-
-				if (log.isDebugEnabled()) {
-					log.debug("Subscription established, adding to registry, response was: " + response);
-				}
-				subscription.setSubscriptionId(responseMessage.getSubscriptionId());
-                subscription.setActualSubscriptionDurationSeconds(responseMessage.getSubscriptionDurationSeconds());
-
-                getUpnpService().getRegistry().addRemoteSubscription(subscription);
-
-                getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
-						subscription::establish
-				);
+        if (!hasCallbackURLs())
+            return CompletableFuture.completedFuture(null);
+
+		if (log.isDebugEnabled()) {
+            log.debug("Sending asynchronous subscription request: " + getInputMessage());
+		}
+
+        getUpnpService().getRegistry().registerPendingRemoteSubscription(subscription);
+        return getUpnpService().getRouter().sendAsync(getInputMessage())
+            .handle((response, t) -> {
+                try {
+                    if (t != null) {
+                        onSubscriptionFailure();
+                        return setOutputMessage(null);
+                    }
+                    return setOutputMessage(handleResponse(response));
+                } finally {
+                    getUpnpService().getRegistry().unregisterPendingRemoteSubscription(subscription);
+                }
+            });
+    }
+
+    private boolean hasCallbackURLs() {
+        if (!getInputMessage().hasCallbackURLs()) {
+            log.debug("Subscription failed, no active local callback URLs available (network disabled?)");
+            getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
+					() -> subscription.fail(null)
+			);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Establishes or fails the subscription, must be called while the subscription is pending.
+     *
+     * @param response The received response, or <code>null</code> if no response was received.
+     * @return The response message, or <code>null</code> if no response was received.
+     * @since 1.5.0
+     */
+    protected IncomingSubscribeResponseMessage handleResponse(StreamResponseMessage response) {
+        if (response == null) {
+            onSubscriptionFailure();
+            return null;
+        }
+
+        final IncomingSubscribeResponseMessage responseMessage = new IncomingSubscribeResponseMessage(response);
+
+        if (response.getOperation().isFailed()) {
+			if (log.isDebugEnabled()) {
+				log.debug("Subscription failed, response was: " + responseMessage);
+			}
+			getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
+					() -> subscription.fail(responseMessage.getOperation())
+			);
+        } else if (!responseMessage.isValidHeaders()) {
+            log.error("Subscription failed, invalid or missing (SID, Timeout) response headers");
+            getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
+					() -> subscription.fail(responseMessage.getOperation())
+			);
+        } else {
+
+			if (log.isDebugEnabled()) {
+				log.debug("Subscription established, adding to registry, response was: " + response);
+			}
+			subscription.setSubscriptionId(responseMessage.getSubscriptionId());
+            subscription.setActualSubscriptionDurationSeconds(responseMessage.getSubscriptionDurationSeconds());
+
+            getUpnpService().getRegistry().addRemoteSubscription(subscription);
+
+            getUpnpService().getConfiguration().getRegistryListenerExecutor().execute(
+					subscription::establish
+			);
 
-            }
-            return responseMessage;
-        } finally {
-            getUpnpService().getRegistry().unregisterPendingRemoteSubscription(subscription);
         }
+        return responseMessage;
     }
 
     protected void onSubscriptionFailure() {
@@ -0,0 +1,55 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import java.util.List;
+
+/**
+ * A registry listener notified of device events in batches.
+ * <p>
+ * The events queued for this listener while it was busy, or during the batch delay, are delivered
+ * with one call of {@link #registryEventsReceived(Registry, List)} instead of the individual methods
+ * of {@link RegistryListener}. The methods {@link #beforeShutdown(Registry)} and {@link #afterShutdown()}
+ * are still called individually.
+ * </p>
+ *
+ * @see RegistryListenerDispatcher
+ * @since 1.5.0
+ */
+public interface BatchingRegistryListener extends RegistryListener {
+
+	/**
+	 * @param registry The UPnPIGD registry of all devices and services know to the local UPnP stack.
+	 * @param events The events in the order they occurred, never empty.
+	 */
+	void registryEventsReceived(Registry registry, List<RegistryEvent> events);
+
+	/**
+	 * @return The delay in milliseconds between the first event of a burst and the delivery of the batch,
+	 * so that the following events of the burst are delivered with it. Defaults to 0.
+	 */
+	default long getBatchDelayMillis() {
+		return 0;
+	}
+
+	/**
+	 * @return The maximum number of events delivered with one call. Defaults to 256.
+	 */
+	default int getMaxBatchSize() {
+		return 256;
+	}
+}
@@ -0,0 +1,152 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import com.distrimind.upnp.UpnpService;
+import com.distrimind.upnp.model.ServiceReference;
+import com.distrimind.upnp.model.meta.Device;
+import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
+import com.distrimind.upnp.model.meta.Service;
+import com.distrimind.upnp.model.types.DeviceType;
+import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.model.types.UDN;
+
+import jakarta.enterprise.inject.Alternative;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Implementation of {@link Registry} whose device lookups don't lock.
+ * <p>
+ * Registered devices are indexed by the UDN of root and embedded devices, by device type, by
+ * service type and by descriptor URL, and these indexes are concurrent maps. Device lookups,
+ * listener lookups and expiration updates of remote devices received with every <code>NOTIFY</code>
+ * message don't contend on the registry lock anymore, they see a weakly consistent state of the registry.
+ * Registration and removal of devices, resources and subscriptions remain serialized by the registry lock.
+ * </p>
+ * <p>
+ * Enable this registry with the system property
+ * {@link com.distrimind.upnp.UpnpServiceImpl#SYSTEM_PROPERTY_CONCURRENT_REGISTRY}, or by overriding
+ * {@link com.distrimind.upnp.UpnpServiceImpl#createRegistry(com.distrimind.upnp.protocol.ProtocolFactory)}.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+@Alternative
+public class ConcurrentRegistryImpl extends RegistryImpl {
+
+	public ConcurrentRegistryImpl() {
+	}
+
+	public ConcurrentRegistryImpl(UpnpService upnpService) {
+		super(upnpService);
+	}
+
+	@Override
+	public Collection<RegistryListener> getListeners() {
+		return Collections.unmodifiableCollection(registryListeners);
+	}
+
+	@Override
+	public boolean notifyDiscoveryStart(final RemoteDevice device) {
+		if (device.getIdentity() == null || getRemoteDevice(device.getIdentity().getUdn(), true) != null)
+			return false;
+		notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_DISCOVERY_STARTED, device));
+		return true;
+	}
+
+	@Override
+	public void notifyDiscoveryFailure(final RemoteDevice device, final Exception ex) {
+		notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_DISCOVERY_FAILED, device, ex));
+	}
+
+	@Override
+	public boolean update(RemoteDeviceIdentity rdIdentity) {
+		return remoteItems.update(rdIdentity);
+	}
+
+	@Override
+	public Device<?, ?, ?> getDevice(UDN udn, boolean rootOnly) {
+		Device<?, ?, ?> device;
+		if ((device = localItems.get(udn, rootOnly)) != null) return device;
+		return remoteItems.get(udn, rootOnly);
+	}
+
+	@Override
+	public LocalDevice<?> getLocalDevice(UDN udn, boolean rootOnly) {
+		return localItems.get(udn, rootOnly);
+	}
+
+	@Override
+	public RemoteDevice getRemoteDevice(UDN udn, boolean rootOnly) {
+		return remoteItems.get(udn, rootOnly);
+	}
+
+	@Override
+	public RemoteDevice getRemoteDevice(URL descriptorURL) {
+		return remoteItems.get(descriptorURL);
+	}
+
+	@Override
+	public Collection<LocalDevice<?>> getLocalDevices() {
+		return Collections.unmodifiableCollection(localItems.get());
+	}
+
+	@Override
+	public Collection<RemoteDevice> getRemoteDevices() {
+		return Collections.unmodifiableCollection(remoteItems.get());
+	}
+
+	@Override
+	public Collection<Device<?, ?, ?>> getDevices() {
+		Set<Device<?, ?, ?>> all = new HashSet<>();
+		all.addAll(localItems.get());
+		all.addAll(remoteItems.get());
+		return Collections.unmodifiableCollection(all);
+	}
+
+	@Override
+	public Collection<Device<?, ?, ?>> getDevices(DeviceType deviceType) {
+		Collection<Device<?, ?, ?>> devices = new HashSet<>();
+		devices.addAll(localItems.get(deviceType));
+		devices.addAll(remoteItems.get(deviceType));
+		return Collections.unmodifiableCollection(devices);
+	}
+
+	@Override
+	public Collection<Device<?, ?, ?>> getDevices(ServiceType serviceType) {
+		Collection<Device<?, ?, ?>> devices = new HashSet<>();
+		devices.addAll(localItems.get(serviceType));
+		devices.addAll(remoteItems.get(serviceType));
+		return Collections.unmodifiableCollection(devices);
+	}
+
+	@Override
+	public Service<?, ?, ?> getService(ServiceReference serviceReference) {
+		Device<?, ?, ?> device;
+		if ((device = getDevice(serviceReference.getUdn(), false)) != null) {
+			return device.findService(serviceReference.getServiceId());
+		}
+		return null;
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Internal class, required by {@link RegistryImpl}.
+ * <p>
+ * Priority queue of the next maintenance deadline of registry items, so that the {@link RegistryMaintainer}
+ * only handles the items which are due. Only the earliest deadline of a key is kept. When an item is refreshed,
+ * its deadline is not moved, the maintenance code checks the item when the former deadline is reached and
+ * schedules it again if it has not expired.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+class DeadlineQueue<K> {
+
+	private static final class Deadline<K> implements Comparable<Deadline<K>> {
+		final K key;
+		final long deadlineMillis;
+
+		Deadline(K key, long deadlineMillis) {
+			this.key = key;
+			this.deadlineMillis = deadlineMillis;
+		}
+
+		@Override
+		public int compareTo(Deadline<K> o) {
+			return Long.compare(deadlineMillis, o.deadlineMillis);
+		}
+	}
+
+	private final RegistryImpl registry;
+	// Updates of remote devices don't hold the registry lock
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Queue<Deadline<K>> queue = new PriorityQueue<>();
+	private final Map<K, Long> deadlines = new HashMap<>();
+
+	DeadlineQueue(RegistryImpl registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Schedules the maintenance of the given key, unless it is already scheduled earlier.
+	 * The registry maintainer is woken up if this deadline is the earliest of this queue.
+	 *
+	 * @param key The key of the registry item.
+	 * @param deadlineMillis The time in milliseconds since the epoch, {@link Long#MAX_VALUE} for never.
+	 */
+	void schedule(K key, long deadlineMillis) {
+		if (deadlineMillis == Long.MAX_VALUE)
+			return;
+		boolean earliest;
+		lock.lock();
+		try {
+			Long scheduled = deadlines.get(key);
+			if (scheduled != null && scheduled <= deadlineMillis)
+				return;
+			Deadline<K> head = peek();
+			earliest = head == null || deadlineMillis < head.deadlineMillis;
+			deadlines.put(key, deadlineMillis);
+			queue.add(new Deadline<>(key, deadlineMillis));
+		} finally {
+			lock.unlock();
+		}
+		if (earliest)
+			registry.wakeUpMaintainer(deadlineMillis);
+	}
+
+	void cancel(K key) {
+		lock.lock();
+		try {
+			// The queued deadline is discarded when it reaches the head of the queue
+			deadlines.remove(key);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * @param nowMillis The current time in milliseconds since the epoch.
+	 * @return The keys whose deadline has been reached, they are no longer scheduled.
+	 */
+	List<K> pollExpired(long nowMillis) {
+		List<K> expired = new ArrayList<>();
+		lock.lock();
+		try {
+			Deadline<K> head;
+			while ((head = peek()) != null && head.deadlineMillis <= nowMillis) {
+				queue.poll();
+				deadlines.remove(head.key);
+				expired.add(head.key);
+			}
+		} finally {
+			lock.unlock();
+		}
+		return expired;
+	}
+
+	/**
+	 * @return The earliest deadline in milliseconds since the epoch, {@link Long#MAX_VALUE} if nothing is scheduled.
+	 */
+	long getNextDeadline() {
+		lock.lock();
+		try {
+			Deadline<K> head = peek();
+			return head == null ? Long.MAX_VALUE : head.deadlineMillis;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	int size() {
+		lock.lock();
+		try {
+			return deadlines.size();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	void clear() {
+		lock.lock();
+		try {
+			queue.clear();
+			deadlines.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	private Deadline<K> peek() {
+		Deadline<K> head;
+		// Discard cancelled and superseded deadlines
+		while ((head = queue.peek()) != null) {
+			Long scheduled = deadlines.get(head.key);
+			if (scheduled != null && scheduled == head.deadlineMillis)
+				return head;
+			queue.poll();
+		}
+		return null;
+	}
+}
@@ -0,0 +1,253 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import com.distrimind.upnp.model.meta.Device;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.meta.Service;
+import com.distrimind.upnp.model.types.DeviceType;
+import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.model.types.UDN;
+
+import java.net.URL;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Internal class, required by {@link RegistryImpl}.
+ * <p>
+ * Registered root devices, with secondary indexes on the UDN of their root and embedded devices,
+ * on their device types, on their service types and on the descriptor URL of remote root devices.
+ * Lookups never lock and see a weakly consistent state, modifications are expected to be serialized
+ * by the registry lock, except {@link #replace(RegistryItem, RegistryItem)} which is atomic on its own.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+class DeviceItems<D extends Device<?, ?, ?>> implements Iterable<RegistryItem<UDN, D>> {
+
+	private final ConcurrentMap<UDN, RegistryItem<UDN, D>> items = new ConcurrentHashMap<>();
+	private final ConcurrentMap<UDN, D> devicesByUDN = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<D>> devicesByType = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, Set<D>> devicesByServiceType = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, D> devicesByDescriptorURL = new ConcurrentHashMap<>();
+
+	/**
+	 * @param item The root device item to register.
+	 * @return <code>false</code> if a root device with the same UDN is already registered, the given item is then ignored.
+	 */
+	boolean add(RegistryItem<UDN, D> item) {
+		if (items.putIfAbsent(item.getKey(), item) != null)
+			return false;
+		index(item.getItem());
+		return true;
+	}
+
+	/**
+	 * @param item The item whose key is the UDN of the root device to remove.
+	 * @return <code>true</code> if a root device was registered under this UDN.
+	 */
+	boolean remove(RegistryItem<UDN, ?> item) {
+		RegistryItem<UDN, D> removed = items.remove(item.getKey());
+		if (removed == null)
+			return false;
+		unindex(removed.getItem());
+		return true;
+	}
+
+	/**
+	 * Atomically replaces the item of a registered root device, typically to update its expiration details.
+	 *
+	 * @param previous The item currently registered.
+	 * @param item The new item, holding the same device instance.
+	 * @return <code>false</code> if <code>previous</code> is no longer the registered item, nothing is then changed.
+	 */
+	@SuppressWarnings("PMD.CompareObjectsWithEquals")
+	boolean replace(RegistryItem<UDN, D> previous, RegistryItem<UDN, D> item) {
+		if (previous.getItem() != item.getItem() || !previous.getKey().equals(item.getKey()))
+			throw new IllegalArgumentException("The replacing item must hold the same device: " + item);
+		// Same device graph, the secondary indexes remain valid
+		return items.computeIfPresent(item.getKey(), (udn, current) -> current == previous ? item : current) == item;
+	}
+
+	RegistryItem<UDN, D> getItem(UDN udn) {
+		return items.get(udn);
+	}
+
+	boolean contains(UDN udn) {
+		return items.containsKey(udn);
+	}
+
+	boolean isEmpty() {
+		return items.isEmpty();
+	}
+
+	@Override
+	public Iterator<RegistryItem<UDN, D>> iterator() {
+		return items.values().iterator();
+	}
+
+	/**
+	 * @see RegistryItems#get(UDN, boolean)
+	 */
+	D get(UDN udn, boolean rootOnly) {
+		if (rootOnly) {
+			RegistryItem<UDN, D> item = items.get(udn);
+			return item == null ? null : item.getItem();
+		}
+		return devicesByUDN.get(udn);
+	}
+
+	/**
+	 * @see RegistryItems#get(DeviceType)
+	 */
+	Collection<D> get(DeviceType deviceType) {
+		Collection<D> devices = new HashSet<>();
+		Set<D> candidates = devicesByType.get(getTypeKey(deviceType.getNamespace(), deviceType.getType()));
+		if (candidates != null) {
+			for (D device : candidates) {
+				if (device.getType().implementsVersion(deviceType))
+					devices.add(device);
+			}
+		}
+		return devices;
+	}
+
+	/**
+	 * @see RegistryItems#get(ServiceType)
+	 */
+	Collection<D> get(ServiceType serviceType) {
+		Collection<D> devices = new HashSet<>();
+		Set<D> candidates = devicesByServiceType.get(getTypeKey(serviceType.getNamespace(), serviceType.getType()));
+		if (candidates != null) {
+			for (D device : candidates) {
+				for (Service<?, ?, ?> service : device.getServices()) {
+					if (service.getServiceType().implementsVersion(serviceType)) {
+						devices.add(device);
+						break;
+					}
+				}
+			}
+		}
+		return devices;
+	}
+
+	/**
+	 * @param descriptorURL The URL of the device descriptor of a remote root device.
+	 * @return The registered remote root device described by this URL, or <code>null</code>.
+	 */
+	D get(URL descriptorURL) {
+		return devicesByDescriptorURL.get(descriptorURL.toString());
+	}
+
+	Collection<D> get() {
+		Collection<D> devices = new HashSet<>();
+		for (RegistryItem<UDN, D> item : items.values()) {
+			devices.add(item.getItem());
+		}
+		return devices;
+	}
+
+	private void index(D root) {
+		String descriptorURL = getDescriptorURL(root);
+		if (descriptorURL != null)
+			devicesByDescriptorURL.put(descriptorURL, root);
+		index(root, true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void index(D device, boolean root) {
+		UDN udn = device.getIdentity() == null ? null : device.getIdentity().getUdn();
+		if (udn != null)
+			devicesByUDN.putIfAbsent(udn, device);
+		// Type might be null if the device has not been hydrated
+		if (device.getType() != null)
+			addToIndex(devicesByType, getTypeKey(device.getType().getNamespace(), device.getType().getType()), device);
+		// Same as Device#findDevices(ServiceType), embedded devices without UDN are ignored
+		if ((root || udn != null) && device.hasServices()) {
+			for (Service<?, ?, ?> service : device.getServices()) {
+				ServiceType serviceType = service.getServiceType();
+				addToIndex(devicesByServiceType, getTypeKey(serviceType.getNamespace(), serviceType.getType()), device);
+			}
+		}
+		if (device.hasEmbeddedDevices()) {
+			for (D embeddedDevice : (List<D>) device.getEmbeddedDevices()) {
+				index(embeddedDevice, false);
+			}
+		}
+	}
+
+	private void unindex(D root) {
+		String descriptorURL = getDescriptorURL(root);
+		if (descriptorURL != null)
+			devicesByDescriptorURL.remove(descriptorURL, root);
+		unindex(root, true);
+	}
+
+	@SuppressWarnings("unchecked")
+	private void unindex(D device, boolean root) {
+		UDN udn = device.getIdentity() == null ? null : device.getIdentity().getUdn();
+		if (udn != null)
+			devicesByUDN.remove(udn, device);
+		if (device.getType() != null)
+			removeFromIndex(devicesByType, getTypeKey(device.getType().getNamespace(), device.getType().getType()), device);
+		if ((root || udn != null) && device.hasServices()) {
+			for (Service<?, ?, ?> service : device.getServices()) {
+				ServiceType serviceType = service.getServiceType();
+				removeFromIndex(devicesByServiceType, getTypeKey(serviceType.getNamespace(), serviceType.getType()), device);
+			}
+		}
+		if (device.hasEmbeddedDevices()) {
+			for (D embeddedDevice : (List<D>) device.getEmbeddedDevices()) {
+				unindex(embeddedDevice, false);
+			}
+		}
+	}
+
+	private static <D> void addToIndex(ConcurrentMap<String, Set<D>> index, String key, D device) {
+		index.compute(key, (k, devices) -> {
+			Set<D> result = devices == null ? ConcurrentHashMap.newKeySet() : devices;
+			result.add(device);
+			return result;
+		});
+	}
+
+	private static <D> void removeFromIndex(ConcurrentMap<String, Set<D>> index, String key, D device) {
+		index.computeIfPresent(key, (k, devices) -> {
+			devices.remove(device);
+			return devices.isEmpty() ? null : devices;
+		});
+	}
+
+	private static String getTypeKey(String namespace, String type) {
+		return namespace + ':' + type;
+	}
+
+	private static String getDescriptorURL(Device<?, ?, ?> device) {
+		if (device instanceof RemoteDevice) {
+			URL descriptorURL = ((RemoteDevice) device).getIdentity().getDescriptorURL();
+			// URL#equals() and URL#hashCode() may resolve host names, the textual form is used as key
+			return descriptorURL == null ? null : descriptorURL.toString();
+		}
+		return null;
+	}
+}
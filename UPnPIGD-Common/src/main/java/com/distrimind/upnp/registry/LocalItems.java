@@ -16,6 +16,7 @@
 package com.distrimind.upnp.registry;
 
 import com.distrimind.upnp.model.DiscoveryOptions;
+import com.distrimind.upnp.model.ExpirationDetails;
 import com.distrimind.upnp.model.resource.Resource;
 import com.distrimind.upnp.model.gena.CancelReason;
 import com.distrimind.upnp.model.gena.LocalGENASubscription;
@@ -28,9 +29,11 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.locks.Lock;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -55,6 +58,9 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
             this.discoveryOptions.put(udn, options);
         else
             this.discoveryOptions.remove(udn);
+        RegistryItem<UDN, LocalDevice<?>> localItem = getDeviceItems().getItem(udn);
+        if (localItem != null && isAdvertised(udn))
+            scheduleAdvertisement(localItem, false);
     }
 
     protected DiscoveryOptions getDiscoveryOptions(UDN udn) {
@@ -123,15 +129,13 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
 		if (isByeByeBeforeFirstAlive(localItem.getKey()))
             advertiseByebye(localDevice, true);
 
-        if (isAdvertised(localItem.getKey()))
-             advertiseAlive(localDevice);
-
-        for (final RegistryListener listener : registry.getListeners()) {
-            registry.getConfiguration().getRegistryListenerExecutor().execute(
-					() -> listener.localDeviceAdded(registry, localDevice)
-			);
+        if (isAdvertised(localItem.getKey())) {
+            advertiseAlive(localDevice);
+            scheduleAdvertisement(localItem, true);
         }
 
+        registry.notifyListeners(new RegistryEvent(RegistryEvent.Type.LOCAL_DEVICE_ADDED, localDevice));
+
     }
 
     @Override
@@ -157,7 +161,14 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
 			}
 
 			setDiscoveryOptions(localDevice.getIdentity().getUdn(), null);
-            getDeviceItems().remove(new RegistryItem<UDN, LocalDevice<?>>(localDevice.getIdentity().getUdn()));
+            // Waits for the ALIVE messages being sent, they must not follow the BYEBYE messages
+            registry.advertisementLock.writeLock().lock();
+            try {
+                getDeviceItems().remove(new RegistryItem<UDN, LocalDevice<?>>(localDevice.getIdentity().getUdn()));
+            } finally {
+                registry.advertisementLock.writeLock().unlock();
+            }
+            deviceDeadlines.cancel(localDevice.getIdentity().getUdn());
 
             for (Resource<?> deviceResource : getResources(localDevice)) {
                 if (registry.removeResource(deviceResource)) {
@@ -180,6 +191,8 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
 						log.debug("Removing incoming subscription: " + incomingSubscription.getKey());
 					}
 					it.remove();
+                    subscriptionDeadlines.cancel(incomingSubscription.getKey());
+                    registry.getEventDispatcher().remove(incomingSubscription.getItem());
                     if (!shuttingDown) {
                         registry.getConfiguration().getRegistryListenerExecutor().execute(
 								() -> incomingSubscription.getItem().end(CancelReason.DEVICE_WAS_REMOVED)
@@ -192,11 +205,7 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
          		advertiseByebye(localDevice, !shuttingDown);
 
             if (!shuttingDown) {
-                for (final RegistryListener listener : registry.getListeners()) {
-                    registry.getConfiguration().getRegistryListenerExecutor().execute(
-							() -> listener.localDeviceRemoved(registry, localDevice)
-					);
-                }
+                registry.notifyListeners(new RegistryEvent(RegistryEvent.Type.LOCAL_DEVICE_REMOVED, localDevice));
             }
 
             return true;
@@ -228,34 +237,37 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
     /* ############################################################################################################ */
     
     @Override
-	void maintain() {
-
-    	if(getDeviceItems().isEmpty()) return ;
+	long maintain(long nowMillis) {
 
         Set<RegistryItem<UDN, LocalDevice<?>>> expiredLocalItems = new HashSet<>();
+        List<UDN> dueDevices = deviceDeadlines.pollExpired(nowMillis);
+        long nextDeadline = Long.MAX_VALUE;
 
         // "Flooding" is enabled, check if we need to send advertisements for all devices
         int aliveIntervalMillis = registry.getConfiguration().getAliveIntervalMillis();
         if(aliveIntervalMillis > 0) {
-        	long now = System.currentTimeMillis();
-        	if(now - lastAliveIntervalTimestamp > aliveIntervalMillis) {
-        		lastAliveIntervalTimestamp = now;
-                for (RegistryItem<UDN, LocalDevice<?>> localItem : getDeviceItems()) {
-                    if (isAdvertised(localItem.getKey())) {
-						if (log.isTraceEnabled()) {
-							log.trace("Flooding advertisement of local item: " + localItem);
-						}
-						expiredLocalItems.add(localItem);
+            if (!getDeviceItems().isEmpty()) {
+                if(nowMillis - lastAliveIntervalTimestamp > aliveIntervalMillis) {
+                    lastAliveIntervalTimestamp = nowMillis;
+                    for (RegistryItem<UDN, LocalDevice<?>> localItem : getDeviceItems()) {
+                        if (isAdvertised(localItem.getKey())) {
+                            if (log.isTraceEnabled()) {
+                                log.trace("Flooding advertisement of local item: " + localItem);
+                            }
+                            expiredLocalItems.add(localItem);
+                        }
                     }
                 }
-        	}
+                nextDeadline = lastAliveIntervalTimestamp + aliveIntervalMillis + 1;
+            }
         } else {
             // Reset, the configuration might dynamically switch the alive interval
             lastAliveIntervalTimestamp = 0;
 
-            // Alive interval is not enabled, regular expiration check of all devices
-            for (RegistryItem<UDN, LocalDevice<?>> localItem : getDeviceItems()) {
-                if (isAdvertised(localItem.getKey()) && localItem.getExpirationDetails().hasExpired(true)) {
+            // Alive interval is not enabled, regular expiration check of the due devices
+            for (UDN udn : dueDevices) {
+                RegistryItem<UDN, LocalDevice<?>> localItem = getDeviceItems().getItem(udn);
+                if (localItem != null && isAdvertised(udn) && localItem.getExpirationDetails().hasExpired(true)) {
 					if (log.isTraceEnabled()) {
 						log.trace("Local item has expired: " + localItem);
 					}
@@ -273,27 +285,58 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
             expiredLocalItem.getExpirationDetails().stampLastRefresh();
         }
 
+        // Devices refreshed meanwhile or by a flood are checked again at their new deadline
+        for (UDN udn : dueDevices) {
+            RegistryItem<UDN, LocalDevice<?>> localItem = getDeviceItems().getItem(udn);
+            if (localItem != null && isAdvertised(udn))
+                scheduleAdvertisement(localItem, false);
+        }
+
         // Expire incoming subscriptions
-        Set<RegistryItem<String, LocalGENASubscription<?>>> expiredIncomingSubscriptions = new HashSet<>();
-        for (RegistryItem<String, LocalGENASubscription<?>> item : getSubscriptionItems()) {
-            if (item.getExpirationDetails().hasExpired(false)) {
-                expiredIncomingSubscriptions.add(item);
+        for (RegistryItem<String, LocalGENASubscription<?>> subscription : pollDueSubscriptions(nowMillis)) {
+            if (subscription.getExpirationDetails().hasExpired(false)) {
+			    if (log.isDebugEnabled()) {
+				    log.debug("Removing expired: " + subscription);
+			    }
+			    registry.getEventDispatcher().remove(subscription.getItem());
+			    removeSubscription(subscription.getItem());
+                subscription.getItem().end(CancelReason.EXPIRED);
+            } else {
+                subscriptionDeadlines.schedule(subscription.getKey(), getSubscriptionDeadline(subscription.getExpirationDetails()));
             }
         }
-        for (RegistryItem<String, LocalGENASubscription<?>> subscription : expiredIncomingSubscriptions) {
-			if (log.isDebugEnabled()) {
-				log.debug("Removing expired: " + subscription);
-			}
-			removeSubscription(subscription.getItem());
-            subscription.getItem().end(CancelReason.EXPIRED);
-        }
 
+        return Math.min(nextDeadline, Math.min(deviceDeadlines.getNextDeadline(), subscriptionDeadlines.getNextDeadline()));
+    }
+
+    /**
+     * Incoming subscriptions are removed when their duration has elapsed.
+     */
+    @Override
+    long getSubscriptionDeadline(ExpirationDetails expirationDetails) {
+        return expirationDetails.getExpirationMillis(false);
+    }
+
+    /**
+     * Schedules the next alive advertisement of the local device, when half of its maximum age has elapsed.
+     *
+     * @param immediately <code>true</code> to check the device at the next maintenance, e.g. to send the
+     *                    first flooding advertisements.
+     */
+    protected void scheduleAdvertisement(RegistryItem<UDN, LocalDevice<?>> localItem, boolean immediately) {
+        deviceDeadlines.schedule(
+                localItem.getKey(),
+                immediately && registry.getConfiguration().getAliveIntervalMillis() > 0
+                        ? System.currentTimeMillis()
+                        : localItem.getExpirationDetails().getExpirationMillis(true)
+        );
     }
 
     @Override
 	void shutdown() {
         log.debug("Clearing all registered subscriptions to local devices during shutdown");
         getSubscriptionItems().clear();
+        subscriptionDeadlines.clear();
 
         log.debug("Removing all local devices from registry during shutdown");
         removeAll(true);
@@ -311,7 +354,19 @@ class LocalItems extends RegistryItems<LocalDevice<?>, LocalGENASubscription<?>>
 			} catch (InterruptedException ex) {
 				if (log.isErrorEnabled()) log.error("Background execution interrupted: ",  ex);
 			}
-			registry.getProtocolFactory().createSendingNotificationAlive(localDevice).run();
+			// Pending executions are run before the local devices are removed on shutdown
+			Lock lock = registry.lockLocalDeviceAdvertisement(localDevice.getIdentity().getUdn());
+			if (lock == null) {
+				if (log.isDebugEnabled()) {
+					log.debug("Local device is being removed, not advertising it: " + localDevice);
+				}
+				return;
+			}
+			try {
+				registry.getProtocolFactory().createSendingNotificationAlive(localDevice).run();
+			} finally {
+				lock.unlock();
+			}
 		});
     }
 
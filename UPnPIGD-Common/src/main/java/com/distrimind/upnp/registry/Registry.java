@@ -31,10 +31,14 @@ import com.distrimind.upnp.model.meta.Service;
 import com.distrimind.upnp.model.types.DeviceType;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.model.types.UDN;
+import com.distrimind.upnp.protocol.GENAEventDispatcher;
+import com.distrimind.upnp.protocol.RemoteDescriptorRetrievals;
 import com.distrimind.upnp.protocol.ProtocolFactory;
 
 import java.net.URI;
+import java.net.URL;
 import java.util.Collection;
+import java.util.concurrent.locks.Lock;
 
 /**
  * The core of the UPnP stack, keeping track of known devices and resources.
@@ -276,6 +280,22 @@ public interface Registry {
      */
 	RemoteDevice getRemoteDevice(UDN udn, boolean rootOnly);
 
+    /**
+     * @param descriptorURL The URL of the device descriptor of a remote root device.
+     * @return The registered remote root device described by this URL, or <code>null</code>. The
+     *         default implementation iterates over {@link #getRemoteDevices()}.
+     * @since 1.5.0
+     */
+	default RemoteDevice getRemoteDevice(URL descriptorURL) {
+		// Not with URL.equals(), it resolves the host names
+		String url = descriptorURL.toString();
+		for (RemoteDevice device : getRemoteDevices()) {
+			if (device.isRoot() && url.equals(device.getIdentity().getDescriptorURL().toString()))
+				return device;
+		}
+		return null;
+	}
+
     /**
      * @return All locally registered device metadata, in no particular order, or an empty collection.
      */
@@ -389,6 +409,28 @@ public interface Registry {
      */
 	boolean removeLocalSubscription(LocalGENASubscription<?> subscription);
 
+    /**
+     * Called internally by the UPnP stack, during GENA protocol execution.
+     *
+     * @return The dispatcher delivering the events of the local subscriptions, or <code>null</code> (default)
+     *         if each event is sent by its own {@link com.distrimind.upnp.protocol.sync.SendingEvent}.
+     * @since 1.5.0
+     */
+	default GENAEventDispatcher getEventDispatcher() {
+		return null;
+	}
+
+    /**
+     * Called internally by the UPnP stack, during discovery.
+     *
+     * @return The descriptor retrievals of the remote devices in progress, or <code>null</code> (default) to
+     *         share between all registries retrievals which don't back off failed descriptor URLs.
+     * @since 1.5.0
+     */
+	default RemoteDescriptorRetrievals getDescriptorRetrievals() {
+		return null;
+	}
+
     /**
      * Called internally by the UPnP stack, during GENA protocol execution.
      */
@@ -450,4 +492,19 @@ public interface Registry {
      */
 	void advertiseLocalDevices();
 
+    /**
+     * Prevents the removal of a registered local device, and the sending of its <em>BYEBYE</em>
+     * messages, until the returned lock is released. <em>ALIVE</em> messages sent while holding
+     * it can't follow the <em>BYEBYE</em> messages of the device.
+     *
+     * @param udn The identifier of a local device.
+     * @return The held lock, <code>null</code> if the local device isn't registered or if the
+     *         registry is shutting down. The default implementation always returns <code>null</code>,
+     *         the <em>ALIVE</em> messages are then sent without synchronization with the removal of the device.
+     * @since 1.5.0
+     */
+    default Lock lockLocalDeviceAdvertisement(UDN udn) {
+        return null;
+    }
+
 }
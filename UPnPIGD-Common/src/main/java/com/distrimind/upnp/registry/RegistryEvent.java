@@ -0,0 +1,123 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import com.distrimind.upnp.model.meta.Device;
+import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+
+/**
+ * A registry change queued for a {@link RegistryListener}.
+ *
+ * @see RegistryListenerDispatcher
+ * @see BatchingRegistryListener
+ * @since 1.5.0
+ */
+public class RegistryEvent {
+
+	public enum Type {
+		REMOTE_DEVICE_DISCOVERY_STARTED,
+		REMOTE_DEVICE_DISCOVERY_FAILED,
+		REMOTE_DEVICE_ADDED,
+		REMOTE_DEVICE_UPDATED,
+		REMOTE_DEVICE_REMOVED,
+		LOCAL_DEVICE_ADDED,
+		LOCAL_DEVICE_REMOVED
+	}
+
+	private final Type type;
+	private final Device<?, ?, ?> device;
+	private final Exception exception;
+	private final long timestampMillis = System.currentTimeMillis();
+
+	public RegistryEvent(Type type, RemoteDevice device) {
+		this(type, device, null);
+	}
+
+	public RegistryEvent(Type type, RemoteDevice device, Exception exception) {
+		this.type = type;
+		this.device = device;
+		this.exception = exception;
+	}
+
+	public RegistryEvent(Type type, LocalDevice<?> device) {
+		this.type = type;
+		this.device = device;
+		this.exception = null;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	public Device<?, ?, ?> getDevice() {
+		return device;
+	}
+
+	/**
+	 * @return The reason of a failed discovery, or <code>null</code>.
+	 */
+	public Exception getException() {
+		return exception;
+	}
+
+	/**
+	 * @return The time in milliseconds since the epoch when the event occurred.
+	 */
+	public long getTimestampMillis() {
+		return timestampMillis;
+	}
+
+	/**
+	 * Calls the listener method matching this event.
+	 *
+	 * @param registry The registry where the event occurred.
+	 * @param listener The listener to notify.
+	 */
+	public void deliverTo(Registry registry, RegistryListener listener) {
+		switch (type) {
+			case REMOTE_DEVICE_DISCOVERY_STARTED:
+				listener.remoteDeviceDiscoveryStarted(registry, (RemoteDevice) device);
+				break;
+			case REMOTE_DEVICE_DISCOVERY_FAILED:
+				listener.remoteDeviceDiscoveryFailed(registry, (RemoteDevice) device, exception);
+				break;
+			case REMOTE_DEVICE_ADDED:
+				listener.remoteDeviceAdded(registry, (RemoteDevice) device);
+				break;
+			case REMOTE_DEVICE_UPDATED:
+				listener.remoteDeviceUpdated(registry, (RemoteDevice) device);
+				break;
+			case REMOTE_DEVICE_REMOVED:
+				listener.remoteDeviceRemoved(registry, (RemoteDevice) device);
+				break;
+			case LOCAL_DEVICE_ADDED:
+				listener.localDeviceAdded(registry, (LocalDevice<?>) device);
+				break;
+			case LOCAL_DEVICE_REMOVED:
+				listener.localDeviceRemoved(registry, (LocalDevice<?>) device);
+				break;
+			default:
+				throw new IllegalStateException("Unknown registry event type: " + type);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "(" + getClass().getSimpleName() + ") " + type + " " + device;
+	}
+}
@@ -31,19 +31,30 @@ import com.distrimind.upnp.model.resource.Resource;
 import com.distrimind.upnp.model.types.DeviceType;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.model.types.UDN;
+import com.distrimind.upnp.protocol.GENAEventDispatcher;
+import com.distrimind.upnp.protocol.RemoteDescriptorRetrievals;
 import com.distrimind.upnp.protocol.ProtocolFactory;
 
 import jakarta.enterprise.context.ApplicationScoped;
 import jakarta.inject.Inject;
 
 import java.net.URI;
+import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -58,9 +69,26 @@ public class RegistryImpl implements Registry {
     final private static DMLogger log = Log.getLogger(RegistryImpl.class);
 
     protected UpnpService upnpService;
-    protected RegistryMaintainer registryMaintainer;
+    protected volatile RegistryMaintainer registryMaintainer;
+    protected volatile boolean shuttingDown;
     protected final Set<RemoteGENASubscription> pendingSubscriptionsLock = new HashSet<>();
 
+    /**
+     * Guards all registry state. A {@link ReentrantLock} rather than monitors, so that a virtual
+     * thread blocked while holding it (e.g. notifying listeners with a caller-runs executor) doesn't
+     * pin its carrier thread.
+     */
+    protected final ReentrantLock lock = new ReentrantLock();
+    protected final Condition pendingSubscriptionsChanged = lock.newCondition();
+
+    /**
+     * Shared while <em>ALIVE</em> messages are sent, exclusive while a local device is removed.
+     * Separate from {@link #lock}, so that sending messages doesn't block the registry.
+     *
+     * @since 1.5.0
+     */
+    protected final ReentrantReadWriteLock advertisementLock = new ReentrantReadWriteLock();
+
     public RegistryImpl() {
     }
 
@@ -97,17 +125,57 @@ public class RegistryImpl implements Registry {
         return getUpnpService().getProtocolFactory();
     }
 
+    /**
+     * @return The background maintenance, <code>null</code> if the configuration has no
+     *         {@link UpnpServiceConfiguration#getRegistryMaintainerExecutor() executor} for it.
+     */
     protected RegistryMaintainer createRegistryMaintainer() {
+        if (getConfiguration().getRegistryMaintainerExecutor() == null)
+            return null;
         return new RegistryMaintainer(
                 this,
                 getConfiguration().getRegistryMaintenanceIntervalMillis()
         );
     }
 
+    /**
+     * @return The dispatcher delivering the registry events to the listeners, see {@link #notifyListeners(RegistryEvent)}.
+     * @since 1.5.0
+     */
+    protected RegistryListenerDispatcher createListenerDispatcher() {
+        return new RegistryListenerDispatcher(this);
+    }
+
+    /**
+     * @return The dispatcher delivering the events of the local subscriptions, see {@link #getEventDispatcher()}.
+     * @since 1.5.0
+     */
+    protected GENAEventDispatcher createEventDispatcher() {
+        return new GENAEventDispatcher(this);
+    }
+
+    /**
+     * @return The descriptor retrievals of the remote devices, see {@link #getDescriptorRetrievals()}.
+     * @since 1.5.0
+     */
+    protected RemoteDescriptorRetrievals createDescriptorRetrievals() {
+        return new RemoteDescriptorRetrievals();
+    }
+
     // #################################################################################################
 
-    protected final Set<RegistryListener> registryListeners = new HashSet<>();
-    final Set<RegistryItem<URI, Resource<?>>> resourceItems = new HashSet<>();
+    // Created on first use rather than by the constructors, the overridden factory methods may use fields of subclasses
+    private volatile RegistryListenerDispatcher listenerDispatcher;
+    private volatile GENAEventDispatcher eventDispatcher;
+    private volatile RemoteDescriptorRetrievals descriptorRetrievals;
+    protected final Set<RegistryListener> registryListeners = new CopyOnWriteArraySet<>();
+    // Indexed by path and query, the key of each item
+    final Map<URI, RegistryItem<URI, Resource<?>>> resourceItems = new HashMap<>();
+    // Resources overriding Resource#matches(), they are matched against each looked up URI
+    final Set<URI> matchingResources = new HashSet<>();
+    final DeadlineQueue<URI> resourceDeadlines = new DeadlineQueue<>(this);
+    // Resources overriding Resource#maintain(), they are maintained periodically
+    final Set<URI> maintainedResources = new HashSet<>();
     protected final List<Runnable> pendingExecutions = new ArrayList<>();
 
     final RemoteItems remoteItems = new RemoteItems(this);
@@ -116,413 +184,827 @@ public class RegistryImpl implements Registry {
     // #################################################################################################
 
     @Override
-	synchronized public void addListener(RegistryListener listener) {
-        registryListeners.add(listener);
+	public void addListener(RegistryListener listener) {
+        lock.lock();
+        try {
+            if (registryListeners.add(listener))
+                getListenerDispatcher().addListener(listener);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void removeListener(RegistryListener listener) {
-        registryListeners.remove(listener);
+	public void removeListener(RegistryListener listener) {
+        lock.lock();
+        try {
+            if (registryListeners.remove(listener))
+                getListenerDispatcher().removeListener(listener);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<RegistryListener> getListeners() {
-        return Collections.unmodifiableCollection(registryListeners);
+	public Collection<RegistryListener> getListeners() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableCollection(registryListeners);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean notifyDiscoveryStart(final RemoteDevice device) {
-        // Exit if we have it already, this is atomic inside this method, finally
-		if (device.getIdentity()!=null && getUpnpService()!=null && getUpnpService().getRegistry()!=null && getUpnpService().getRegistry().getRemoteDevice(device.getIdentity().getUdn(), true) != null)
-			return false;
-        if (getUpnpService().getRegistry().getRemoteDevice(device.getIdentity().getUdn(), true) != null) {
-			if (log.isTraceEnabled()) {
-				log.trace("Not notifying listeners, already registered: " + device);
-			}
-			return false;
-        }
-        for (final RegistryListener listener : getListeners()) {
-            getConfiguration().getRegistryListenerExecutor().execute(
-					() -> listener.remoteDeviceDiscoveryStarted(RegistryImpl.this, device)
-			);
+	public boolean notifyDiscoveryStart(final RemoteDevice device) {
+        lock.lock();
+        try {
+            // Exit if we have it already, this is atomic inside this method, finally
+			if (device.getIdentity()!=null && getUpnpService()!=null && getUpnpService().getRegistry()!=null && getUpnpService().getRegistry().getRemoteDevice(device.getIdentity().getUdn(), true) != null)
+				return false;
+            if (getUpnpService().getRegistry().getRemoteDevice(device.getIdentity().getUdn(), true) != null) {
+				if (log.isTraceEnabled()) {
+					log.trace("Not notifying listeners, already registered: " + device);
+				}
+				return false;
+            }
+            notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_DISCOVERY_STARTED, device));
+            return true;
+        } finally {
+            lock.unlock();
         }
-        return true;
     }
 
     @Override
-	synchronized public void notifyDiscoveryFailure(final RemoteDevice device, final Exception ex) {
-        for (final RegistryListener listener : getListeners()) {
-            getConfiguration().getRegistryListenerExecutor().execute(
-					() -> listener.remoteDeviceDiscoveryFailed(RegistryImpl.this, device, ex)
-			);
+	public void notifyDiscoveryFailure(final RemoteDevice device, final Exception ex) {
+        lock.lock();
+        try {
+            notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_DISCOVERY_FAILED, device, ex));
+        } finally {
+            lock.unlock();
         }
     }
 
+    /**
+     * Queues the event for all registered listeners, each listener receives its events in order.
+     *
+     * @param event The event to deliver.
+     * @since 1.5.0
+     */
+    public void notifyListeners(RegistryEvent event) {
+        getListenerDispatcher().dispatch(event);
+    }
+
+    /**
+     * @return The dispatcher reporting the pending and dropped events of each listener.
+     * @since 1.5.0
+     */
+    public RegistryListenerDispatcher getListenerDispatcher() {
+        RegistryListenerDispatcher dispatcher = listenerDispatcher;
+        if (dispatcher == null) {
+            lock.lock();
+            try {
+                if ((dispatcher = listenerDispatcher) == null)
+                    listenerDispatcher = dispatcher = createListenerDispatcher();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return dispatcher;
+    }
+
     // #################################################################################################
 
     @Override
-	synchronized public void addDevice(LocalDevice<?> localDevice) {
-        localItems.add(localDevice);
+	public void addDevice(LocalDevice<?> localDevice) {
+        lock.lock();
+        try {
+            localItems.add(localDevice);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void addDevice(LocalDevice<?> localDevice, DiscoveryOptions options) {
-        localItems.add(localDevice, options);
+	public void addDevice(LocalDevice<?> localDevice, DiscoveryOptions options) {
+        lock.lock();
+        try {
+            localItems.add(localDevice, options);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void setDiscoveryOptions(UDN udn, DiscoveryOptions options) {
-        localItems.setDiscoveryOptions(udn, options);
+	public void setDiscoveryOptions(UDN udn, DiscoveryOptions options) {
+        lock.lock();
+        try {
+            localItems.setDiscoveryOptions(udn, options);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public DiscoveryOptions getDiscoveryOptions(UDN udn) {
-        return localItems.getDiscoveryOptions(udn);
+	public DiscoveryOptions getDiscoveryOptions(UDN udn) {
+        lock.lock();
+        try {
+            return localItems.getDiscoveryOptions(udn);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void addDevice(RemoteDevice remoteDevice) {
-        remoteItems.add(remoteDevice);
+	public void addDevice(RemoteDevice remoteDevice) {
+        lock.lock();
+        try {
+            remoteItems.add(remoteDevice);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean update(RemoteDeviceIdentity rdIdentity) {
-        return remoteItems.update(rdIdentity);
+	public boolean update(RemoteDeviceIdentity rdIdentity) {
+        lock.lock();
+        try {
+            return remoteItems.update(rdIdentity);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean removeDevice(LocalDevice<?> localDevice) {
-        return localItems.remove(localDevice);
+	public boolean removeDevice(LocalDevice<?> localDevice) {
+        lock.lock();
+        try {
+            return localItems.remove(localDevice);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean removeDevice(RemoteDevice remoteDevice) {
-        return remoteItems.remove(remoteDevice);
+	public boolean removeDevice(RemoteDevice remoteDevice) {
+        lock.lock();
+        try {
+            return remoteItems.remove(remoteDevice);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void removeAllLocalDevices() {
-        localItems.removeAll();
+	public void removeAllLocalDevices() {
+        lock.lock();
+        try {
+            localItems.removeAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void removeAllRemoteDevices() {
-        remoteItems.removeAll();
+	public void removeAllRemoteDevices() {
+        lock.lock();
+        try {
+            remoteItems.removeAll();
+        } finally {
+            lock.unlock();
+        }
     }
 
 	@Override
-	synchronized public boolean removeDevice(UDN udn) {
-        Device<?, ?, ?> device = getDevice(udn, true);
-        if (device instanceof LocalDevice)
-            return removeDevice((LocalDevice<?>) device);
-        if (device instanceof RemoteDevice)
-            return removeDevice((RemoteDevice) device);
-        return false;
+	public boolean removeDevice(UDN udn) {
+        lock.lock();
+        try {
+            Device<?, ?, ?> device = getDevice(udn, true);
+            if (device instanceof LocalDevice)
+                return removeDevice((LocalDevice<?>) device);
+            if (device instanceof RemoteDevice)
+                return removeDevice((RemoteDevice) device);
+            return false;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Device<?, ?, ?> getDevice(UDN udn, boolean rootOnly) {
-        Device<?, ?, ?> device;
-        if ((device = localItems.get(udn, rootOnly)) != null) return device;
-        if ((device = remoteItems.get(udn, rootOnly)) != null) return device;
-        return null;
+	public Device<?, ?, ?> getDevice(UDN udn, boolean rootOnly) {
+        lock.lock();
+        try {
+            Device<?, ?, ?> device;
+            if ((device = localItems.get(udn, rootOnly)) != null) return device;
+            if ((device = remoteItems.get(udn, rootOnly)) != null) return device;
+            return null;
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public LocalDevice<?> getLocalDevice(UDN udn, boolean rootOnly) {
-        return localItems.get(udn, rootOnly);
+	public LocalDevice<?> getLocalDevice(UDN udn, boolean rootOnly) {
+        lock.lock();
+        try {
+            return localItems.get(udn, rootOnly);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public RemoteDevice getRemoteDevice(UDN udn, boolean rootOnly) {
-        return remoteItems.get(udn, rootOnly);
+	public RemoteDevice getRemoteDevice(UDN udn, boolean rootOnly) {
+        lock.lock();
+        try {
+            return remoteItems.get(udn, rootOnly);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<LocalDevice<?>> getLocalDevices() {
-        return Collections.unmodifiableCollection(localItems.get());
+	public RemoteDevice getRemoteDevice(URL descriptorURL) {
+        lock.lock();
+        try {
+            return remoteItems.get(descriptorURL);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+	public Collection<LocalDevice<?>> getLocalDevices() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableCollection(localItems.get());
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<RemoteDevice> getRemoteDevices() {
-        return Collections.unmodifiableCollection(remoteItems.get());
+	public Collection<RemoteDevice> getRemoteDevices() {
+        lock.lock();
+        try {
+            return Collections.unmodifiableCollection(remoteItems.get());
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<Device<?, ?, ?>> getDevices() {
-        Set<Device<?, ?, ?>> all = new HashSet<>();
-        all.addAll(localItems.get());
-        all.addAll(remoteItems.get());
-        return Collections.unmodifiableCollection(all);
+	public Collection<Device<?, ?, ?>> getDevices() {
+        lock.lock();
+        try {
+            Set<Device<?, ?, ?>> all = new HashSet<>();
+            all.addAll(localItems.get());
+            all.addAll(remoteItems.get());
+            return Collections.unmodifiableCollection(all);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<Device<?, ?, ?>> getDevices(DeviceType deviceType) {
-        Collection<Device<?, ?, ?>> devices = new HashSet<>();
+	public Collection<Device<?, ?, ?>> getDevices(DeviceType deviceType) {
+        lock.lock();
+        try {
+            Collection<Device<?, ?, ?>> devices = new HashSet<>();
 
-        devices.addAll(localItems.get(deviceType));
-        devices.addAll(remoteItems.get(deviceType));
+            devices.addAll(localItems.get(deviceType));
+            devices.addAll(remoteItems.get(deviceType));
 
-        return Collections.unmodifiableCollection(devices);
+            return Collections.unmodifiableCollection(devices);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Collection<Device<?, ?, ?>> getDevices(ServiceType serviceType) {
-        Collection<Device<?, ?, ?>> devices = new HashSet<>();
+	public Collection<Device<?, ?, ?>> getDevices(ServiceType serviceType) {
+        lock.lock();
+        try {
+            Collection<Device<?, ?, ?>> devices = new HashSet<>();
 
-        devices.addAll(localItems.get(serviceType));
-        devices.addAll(remoteItems.get(serviceType));
+            devices.addAll(localItems.get(serviceType));
+            devices.addAll(remoteItems.get(serviceType));
 
-        return Collections.unmodifiableCollection(devices);
+            return Collections.unmodifiableCollection(devices);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public Service<?, ?, ?> getService(ServiceReference serviceReference) {
-        Device<?, ?, ?> device;
-        if ((device = getDevice(serviceReference.getUdn(), false)) != null) {
-            return device.findService(serviceReference.getServiceId());
+	public Service<?, ?, ?> getService(ServiceReference serviceReference) {
+        lock.lock();
+        try {
+            Device<?, ?, ?> device;
+            if ((device = getDevice(serviceReference.getUdn(), false)) != null) {
+                return device.findService(serviceReference.getServiceId());
+            }
+            return null;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     // #################################################################################################
 
     @Override
-	synchronized public Resource<?> getResource(URI pathQuery) throws IllegalArgumentException {
-        if (pathQuery.isAbsolute()) {
-            throw new IllegalArgumentException("Resource URI can not be absolute, only path and query:" + pathQuery);
-        }
-
-        // Note: Uses field access on resourceItems for performance reasons
+	public Resource<?> getResource(URI pathQuery) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            if (pathQuery.isAbsolute()) {
+                throw new IllegalArgumentException("Resource URI can not be absolute, only path and query:" + pathQuery);
+            }
 
-		for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-        	Resource<?> resource = resourceItem.getItem();
-        	if (resource.matches(pathQuery)) {
+            Resource<?> resource = findResource(pathQuery);
+            if (resource != null) {
                 return resource;
             }
-        }
 
-        // TODO: UPNP VIOLATION: Fuppes on my ReadyNAS thinks it's a cool idea to add a slash at the end of the callback URI...
-        // It also cuts off any query parameters in the callback URL - nice!
-        if (pathQuery.getPath().endsWith("/")) {
-            URI pathQueryWithoutSlash = URI.create(pathQuery.toString().substring(0, pathQuery.toString().length() - 1));
-
- 			for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-            	Resource<?> resource = resourceItem.getItem();
-            	if (resource.matches(pathQueryWithoutSlash)) {
-                    return resource;
-                }
+            // TODO: UPNP VIOLATION: Fuppes on my ReadyNAS thinks it's a cool idea to add a slash at the end of the callback URI...
+            // It also cuts off any query parameters in the callback URL - nice!
+            if (pathQuery.getPath().endsWith("/")) {
+                URI pathQueryWithoutSlash = URI.create(pathQuery.toString().substring(0, pathQuery.toString().length() - 1));
+                return findResource(pathQueryWithoutSlash);
             }
+
+            return null;
+        } finally {
+            lock.unlock();
         }
+    }
 
+    /**
+     * Looks up the resource registered with the given path and query, then the resources
+     * overriding {@link Resource#matches(URI)}.
+     */
+    private Resource<?> findResource(URI pathQuery) {
+        RegistryItem<URI, Resource<?>> resourceItem = resourceItems.get(pathQuery);
+        if (resourceItem != null && resourceItem.getItem().matches(pathQuery)) {
+            return resourceItem.getItem();
+        }
+        for (URI key : matchingResources) {
+            Resource<?> resource = resourceItems.get(key).getItem();
+            if (resource.matches(pathQuery)) {
+                return resource;
+            }
+        }
         return null;
     }
 
     @Override
 	@SuppressWarnings("unchecked")
-	synchronized public <T extends Resource<?>> T getResource(Class<T> resourceType, URI pathQuery) throws IllegalArgumentException {
-        Resource<?> resource = getResource(pathQuery);
-        if (resource != null && resourceType.isAssignableFrom(resource.getClass())) {
-            return (T) resource;
+	public <T extends Resource<?>> T getResource(Class<T> resourceType, URI pathQuery) throws IllegalArgumentException {
+        lock.lock();
+        try {
+            Resource<?> resource = getResource(pathQuery);
+            if (resource != null && resourceType.isAssignableFrom(resource.getClass())) {
+                return (T) resource;
+            }
+            return null;
+        } finally {
+            lock.unlock();
         }
-        return null;
     }
 
     @Override
-	synchronized public Collection<Resource<?>> getResources() {
-        Collection<Resource<?>> s = new HashSet<>();
-        for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-            s.add(resourceItem.getItem());
+	public Collection<Resource<?>> getResources() {
+        lock.lock();
+        try {
+            Collection<Resource<?>> s = new HashSet<>();
+            for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems.values()) {
+                s.add(resourceItem.getItem());
+            }
+            return s;
+        } finally {
+            lock.unlock();
         }
-        return s;
     }
 
     @Override
 	@SuppressWarnings("unchecked")
-	synchronized public <T extends Resource<?>> Collection<T> getResources(Class<T> resourceType) {
-        Collection<T> s = new HashSet<>();
-        for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-            if (resourceType.isAssignableFrom(resourceItem.getItem().getClass()))
-                s.add((T) resourceItem.getItem());
+	public <T extends Resource<?>> Collection<T> getResources(Class<T> resourceType) {
+        lock.lock();
+        try {
+            Collection<T> s = new HashSet<>();
+            for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems.values()) {
+                if (resourceType.isAssignableFrom(resourceItem.getItem().getClass()))
+                    s.add((T) resourceItem.getItem());
+            }
+            return s;
+        } finally {
+            lock.unlock();
         }
-        return s;
     }
 
     @Override
-	synchronized public void addResource(Resource<?> resource) {
-        addResource(resource, ExpirationDetails.UNLIMITED_AGE);
+	public void addResource(Resource<?> resource) {
+        lock.lock();
+        try {
+            addResource(resource, ExpirationDetails.UNLIMITED_AGE);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void addResource(Resource<?> resource, int maxAgeSeconds) {
-        RegistryItem<URI, Resource<?>> resourceItem = new RegistryItem<>(resource.getPathQuery(), resource, maxAgeSeconds);
-        resourceItems.remove(resourceItem);
-        resourceItems.add(resourceItem);
+	public void addResource(Resource<?> resource, int maxAgeSeconds) {
+        lock.lock();
+        try {
+            RegistryItem<URI, Resource<?>> resourceItem = new RegistryItem<>(resource.getPathQuery(), resource, maxAgeSeconds);
+            resourceItems.put(resourceItem.getKey(), resourceItem);
+            if (isMatching(resource)) {
+                matchingResources.add(resourceItem.getKey());
+            } else {
+                matchingResources.remove(resourceItem.getKey());
+            }
+            if (isMaintained(resource)) {
+                maintainedResources.add(resourceItem.getKey());
+                wakeUpMaintainer(System.currentTimeMillis());
+            } else {
+                maintainedResources.remove(resourceItem.getKey());
+            }
+            resourceDeadlines.cancel(resourceItem.getKey());
+            resourceDeadlines.schedule(resourceItem.getKey(), resourceItem.getExpirationDetails().getExpirationMillis(false));
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean removeResource(Resource<?> resource) {
-        return resourceItems.remove(new RegistryItem<URI, Resource<?>>(resource.getPathQuery()));
+	public boolean removeResource(Resource<?> resource) {
+        lock.lock();
+        try {
+            resourceDeadlines.cancel(resource.getPathQuery());
+            maintainedResources.remove(resource.getPathQuery());
+            matchingResources.remove(resource.getPathQuery());
+            return resourceItems.remove(resource.getPathQuery()) != null;
+        } finally {
+            lock.unlock();
+        }
     }
 
     // #################################################################################################
 
     @Override
-	synchronized public void addLocalSubscription(LocalGENASubscription<?> subscription) {
-        localItems.addSubscription(subscription);
+	public void addLocalSubscription(LocalGENASubscription<?> subscription) {
+        lock.lock();
+        try {
+            localItems.addSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+	public LocalGENASubscription<?> getLocalSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            return localItems.getSubscription(subscriptionId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+	public boolean updateLocalSubscription(LocalGENASubscription<?> subscription) {
+        lock.lock();
+        try {
+            return localItems.updateSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public LocalGENASubscription<?> getLocalSubscription(String subscriptionId) {
-        return localItems.getSubscription(subscriptionId);
+	public boolean removeLocalSubscription(LocalGENASubscription<?> subscription) {
+        lock.lock();
+        try {
+            getEventDispatcher().remove(subscription);
+            return localItems.removeSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public boolean updateLocalSubscription(LocalGENASubscription<?> subscription) {
-        return localItems.updateSubscription(subscription);
+	public GENAEventDispatcher getEventDispatcher() {
+        GENAEventDispatcher dispatcher = eventDispatcher;
+        if (dispatcher == null) {
+            lock.lock();
+            try {
+                if ((dispatcher = eventDispatcher) == null)
+                    eventDispatcher = dispatcher = createEventDispatcher();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return dispatcher;
     }
 
     @Override
-	synchronized public boolean removeLocalSubscription(LocalGENASubscription<?> subscription) {
-        return localItems.removeSubscription(subscription);
+	public RemoteDescriptorRetrievals getDescriptorRetrievals() {
+        RemoteDescriptorRetrievals retrievals = descriptorRetrievals;
+        if (retrievals == null) {
+            lock.lock();
+            try {
+                if ((retrievals = descriptorRetrievals) == null)
+                    descriptorRetrievals = retrievals = createDescriptorRetrievals();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return retrievals;
     }
 
     @Override
-	synchronized public void addRemoteSubscription(RemoteGENASubscription subscription) {
-        remoteItems.addSubscription(subscription);
+	public void addRemoteSubscription(RemoteGENASubscription subscription) {
+        lock.lock();
+        try {
+            remoteItems.addSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public RemoteGENASubscription getRemoteSubscription(String subscriptionId) {
-        return remoteItems.getSubscription(subscriptionId);
+	public RemoteGENASubscription getRemoteSubscription(String subscriptionId) {
+        lock.lock();
+        try {
+            return remoteItems.getSubscription(subscriptionId);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void updateRemoteSubscription(RemoteGENASubscription subscription) {
-        remoteItems.updateSubscription(subscription);
+	public void updateRemoteSubscription(RemoteGENASubscription subscription) {
+        lock.lock();
+        try {
+            remoteItems.updateSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
-	synchronized public void removeRemoteSubscription(RemoteGENASubscription subscription) {
-        remoteItems.removeSubscription(subscription);
+	public void removeRemoteSubscription(RemoteGENASubscription subscription) {
+        lock.lock();
+        try {
+            remoteItems.removeSubscription(subscription);
+        } finally {
+            lock.unlock();
+        }
     }
 
     /* ############################################################################################################ */
 
    	@Override
-	synchronized public void advertiseLocalDevices() {
-   		localItems.advertiseLocalDevices();
+	public void advertiseLocalDevices() {
+   	    lock.lock();
+   	    try {
+       		localItems.advertiseLocalDevices();
+   	    } finally {
+   	        lock.unlock();
+   	    }
    	}
 
+    @Override
+    public Lock lockLocalDeviceAdvertisement(UDN udn) {
+        Lock readLock = advertisementLock.readLock();
+        readLock.lock();
+        // Not through the registry lock, it's held while waiting for the advertisements to be sent
+        if (!shuttingDown && localItems.getDeviceItems().getItem(udn) != null) {
+            return readLock;
+        }
+        readLock.unlock();
+        return null;
+    }
+
     /* ############################################################################################################ */
 
     // When you call this, make sure you have the Router lock before this lock is obtained!
     @Override
-	synchronized public void shutdown() {
-        log.debug("Shutting down registry...");
-
-        if (registryMaintainer != null)
-            registryMaintainer.stop();
+	public void shutdown() {
+        lock.lock();
+        try {
+            log.debug("Shutting down registry...");
+            shuttingDown = true;
+
+            if (registryMaintainer != null)
+                registryMaintainer.stop();
         
-        // Final cleanup run to flush out pending executions which might
-        // not have been caught by the maintainer before it stopped
-		if (log.isTraceEnabled()) {
-			log.trace("Executing final pending operations on shutdown: " + pendingExecutions.size());
-		}
-		runPendingExecutions(false);
+            // Final cleanup run to flush out pending executions which might
+            // not have been caught by the maintainer before it stopped
+			if (log.isTraceEnabled()) {
+				log.trace("Executing final pending operations on shutdown: " + pendingExecutions.size());
+			}
+			runPendingExecutions(false);
 
-        for (RegistryListener listener : registryListeners) {
-            listener.beforeShutdown(this);
-        }
+            for (RegistryListener listener : registryListeners) {
+                listener.beforeShutdown(this);
+            }
 
-        for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-            resourceItem.getItem().shutdown();
-        }
+            for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems.values()) {
+                resourceItem.getItem().shutdown();
+            }
 
-        remoteItems.shutdown();
-        localItems.shutdown();
+            remoteItems.shutdown();
+            localItems.shutdown();
 
-        for (RegistryListener listener : registryListeners) {
-            listener.afterShutdown();
+            // Send the scheduled repetitions of the last notifications while the router is still running
+            if (upnpService != null)
+                getConfiguration().getProtocolScheduler().flush();
+
+            for (RegistryListener listener : registryListeners) {
+                listener.afterShutdown();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-	synchronized public void pause() {
-        if (registryMaintainer != null) {
-            log.debug("Pausing registry maintenance");
-            runPendingExecutions(true);
-            registryMaintainer.stop();
-            registryMaintainer = null;
+	public void pause() {
+        lock.lock();
+        try {
+            if (registryMaintainer != null) {
+                log.debug("Pausing registry maintenance");
+                runPendingExecutions(true);
+                registryMaintainer.stop();
+                registryMaintainer = null;
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-	synchronized public void resume() {
-        if (registryMaintainer == null) {
-            log.debug("Resuming registry maintenance");
-            remoteItems.resume();
-            registryMaintainer = createRegistryMaintainer();
-            if (registryMaintainer != null) {
-                getConfiguration().getRegistryMaintainerExecutor().execute(registryMaintainer);
+	public void resume() {
+        lock.lock();
+        try {
+            if (registryMaintainer == null) {
+                log.debug("Resuming registry maintenance");
+                remoteItems.resume();
+                registryMaintainer = createRegistryMaintainer();
+                if (registryMaintainer != null) {
+                    getConfiguration().getRegistryMaintainerExecutor().execute(registryMaintainer);
+                }
             }
+        } finally {
+            lock.unlock();
         }
     }
 
+    boolean isShuttingDown() {
+        return shuttingDown;
+    }
+
     @Override
-	synchronized public boolean isPaused() {
-        return registryMaintainer == null;
+	public boolean isPaused() {
+        lock.lock();
+        try {
+            return registryMaintainer == null;
+        } finally {
+            lock.unlock();
+        }
     }
 
     /* ############################################################################################################ */
 
-    synchronized void maintain() {
+    /**
+     * Handles the registry items whose maintenance deadline has been reached.
+     *
+     * @return The next maintenance deadline in milliseconds since the epoch, {@link Long#MAX_VALUE} if
+     *         nothing has to be maintained until a new item is registered.
+     */
+    long maintain() {
+        lock.lock();
+        try {
+            if (log.isTraceEnabled())
+                log.trace("Maintaining registry...");
+            long now = System.currentTimeMillis();
+
+            // Remove expired resources
+            Set<URI> dueResources = new HashSet<>(resourceDeadlines.pollExpired(now));
+            if (!dueResources.isEmpty()) {
+                Iterator<RegistryItem<URI, Resource<?>>> it = resourceItems.values().iterator();
+                while (it.hasNext()) {
+                    RegistryItem<URI, Resource<?>> item = it.next();
+                    if (!dueResources.contains(item.getKey()))
+                        continue;
+                    if (item.getExpirationDetails().hasExpired()) {
+                        if (log.isTraceEnabled())
+                            log.trace("Removing expired resource: " + item);
+                        maintainedResources.remove(item.getKey());
+                        matchingResources.remove(item.getKey());
+                        it.remove();
+                    } else {
+                        resourceDeadlines.schedule(item.getKey(), item.getExpirationDetails().getExpirationMillis(false));
+                    }
+                }
+            }
 
-        if (log.isTraceEnabled())
-            log.trace("Maintaining registry...");
+            // Let each resource do its own maintenance
+            if (!maintainedResources.isEmpty()) {
+                for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems.values()) {
+                    if (maintainedResources.contains(resourceItem.getKey())) {
+                        resourceItem.getItem().maintain(
+                                pendingExecutions,
+                                resourceItem.getExpirationDetails()
+                        );
+                    }
+                }
+            }
 
-        // Remove expired resources
-        Iterator<RegistryItem<URI, Resource<?>>> it = resourceItems.iterator();
-        while (it.hasNext()) {
-            RegistryItem<URI, Resource<?>> item = it.next();
-            if (item.getExpirationDetails().hasExpired()) {
-                if (log.isTraceEnabled())
-                    log.trace("Removing expired resource: " + item);
-                it.remove();
+            // These add all their operations to the pendingExecutions queue
+            long nextDeadline = Math.min(remoteItems.maintain(now), localItems.maintain(now));
+            nextDeadline = Math.min(nextDeadline, resourceDeadlines.getNextDeadline());
+            if (!maintainedResources.isEmpty()) {
+                // As soon as the maintenance interval allows it
+                nextDeadline = now;
             }
-        }
 
-        // Let each resource do its own maintenance
-        for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
-            resourceItem.getItem().maintain(
-                    pendingExecutions,
-                    resourceItem.getExpirationDetails()
-            );
+            // We now run the queue asynchronously so the maintenance thread can continue its loop undisturbed
+            runPendingExecutions(true);
+            return nextDeadline;
+        } finally {
+            lock.unlock();
         }
+    }
+
+    /**
+     * Wakes up the registry maintainer if it sleeps beyond the given deadline.
+     *
+     * @param deadlineMillis The time in milliseconds since the epoch.
+     */
+    void wakeUpMaintainer(long deadlineMillis) {
+        RegistryMaintainer maintainer = registryMaintainer;
+        if (maintainer != null)
+            maintainer.wakeUp(deadlineMillis);
+    }
 
-        // These add all their operations to the pendingExecutions queue
-        remoteItems.maintain();
-        localItems.maintain();
+    private static final Map<Class<?>, Boolean> maintainedResourceClasses = new ConcurrentHashMap<>();
 
-        // We now run the queue asynchronously so the maintenance thread can continue its loop undisturbed
-        runPendingExecutions(true);
+    /**
+     * @return <code>true</code> if the resource overrides {@link Resource#maintain(List, ExpirationDetails)}.
+     */
+    static boolean isMaintained(Resource<?> resource) {
+        return maintainedResourceClasses.computeIfAbsent(resource.getClass(), c -> {
+            try {
+                return c.getMethod("maintain", List.class, ExpirationDetails.class).getDeclaringClass() != Resource.class;
+            } catch (NoSuchMethodException ex) {
+                return true;
+            }
+        });
     }
 
-    synchronized void executeAsyncProtocol(Runnable runnable) {
-        pendingExecutions.add(runnable);
+    private static final Map<Class<?>, Boolean> matchingResourceClasses = new ConcurrentHashMap<>();
+
+    /**
+     * @return <code>true</code> if the resource overrides {@link Resource#matches(URI)}.
+     */
+    static boolean isMatching(Resource<?> resource) {
+        return matchingResourceClasses.computeIfAbsent(resource.getClass(), c -> {
+            try {
+                return c.getMethod("matches", URI.class).getDeclaringClass() != Resource.class;
+            } catch (NoSuchMethodException ex) {
+                return true;
+            }
+        });
     }
 
-    synchronized void runPendingExecutions(boolean async) {
-        if (log.isTraceEnabled())
-            log.trace("Executing pending operations: " + pendingExecutions.size());
-        for (Runnable pendingExecution : pendingExecutions) {
-            if (async)
-                getConfiguration().getAsyncProtocolExecutor().execute(pendingExecution);
-            else
-                pendingExecution.run();
+    void executeAsyncProtocol(Runnable runnable) {
+        lock.lock();
+        try {
+            pendingExecutions.add(runnable);
+        } finally {
+            lock.unlock();
         }
-        if (!pendingExecutions.isEmpty()) {
-            pendingExecutions.clear();
+        // Pending executions are run by the next maintenance
+        wakeUpMaintainer(System.currentTimeMillis());
+    }
+
+    void runPendingExecutions(boolean async) {
+        lock.lock();
+        try {
+            if (log.isTraceEnabled())
+                log.trace("Executing pending operations: " + pendingExecutions.size());
+            for (Runnable pendingExecution : pendingExecutions) {
+                if (async)
+                    getConfiguration().getAsyncProtocolExecutor().execute(pendingExecution);
+                else
+                    pendingExecution.run();
+            }
+            if (!pendingExecutions.isEmpty()) {
+                pendingExecutions.clear();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
@@ -544,7 +1026,7 @@ public class RegistryImpl implements Registry {
 
             log.debug("====================================  RESOURCES  ================================================");
 
-            for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems) {
+            for (RegistryItem<URI, Resource<?>> resourceItem : resourceItems.values()) {
                 log.debug(resourceItem.toString());
             }
 
@@ -556,33 +1038,44 @@ public class RegistryImpl implements Registry {
 
  	@Override
 	public void registerPendingRemoteSubscription(RemoteGENASubscription subscription) {
-		synchronized (pendingSubscriptionsLock) {
+        lock.lock();
+        try {
             pendingSubscriptionsLock.add(subscription);
+        } finally {
+            lock.unlock();
         }
 	}
 	
 	@Override
 	public void unregisterPendingRemoteSubscription(RemoteGENASubscription subscription) {
-        synchronized (pendingSubscriptionsLock) {
+        lock.lock();
+        try {
             if(pendingSubscriptionsLock.remove(subscription)) {
-                pendingSubscriptionsLock.notifyAll();
+                pendingSubscriptionsChanged.signalAll();
             }
+        } finally {
+            lock.unlock();
         }
 	}
 
     @Override
     public RemoteGENASubscription getWaitRemoteSubscription(String subscriptionId) {
-        synchronized (pendingSubscriptionsLock) {
+        lock.lock();
+        try {
             RemoteGENASubscription subscription = getRemoteSubscription(subscriptionId);
             while (subscription == null && !pendingSubscriptionsLock.isEmpty()) {
                 try {
                     log.trace("Subscription not found, waiting for pending subscription procedure to terminate.");
-                    pendingSubscriptionsLock.wait();
-                } catch (InterruptedException ignored) {
+                    pendingSubscriptionsChanged.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return null;
                 }
                 subscription = getRemoteSubscription(subscriptionId);
             }
             return subscription;
+        } finally {
+            lock.unlock();
         }
     }
 
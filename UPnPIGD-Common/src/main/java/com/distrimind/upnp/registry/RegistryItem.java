@@ -17,6 +17,8 @@ package com.distrimind.upnp.registry;
 
 import com.distrimind.upnp.model.ExpirationDetails;
 
+import java.net.URL;
+
 /**
  * Internal class, required by {@link RegistryImpl}.
  *
@@ -27,6 +29,8 @@ class RegistryItem<K, I> {
     private final K key;
     private I item;
     private ExpirationDetails expirationDetails = new ExpirationDetails();
+    private long lastNotificationMillis = Long.MIN_VALUE;
+    private String lastDescriptorURL;
 
     RegistryItem(K key) {
         if (key==null)
@@ -54,6 +58,55 @@ class RegistryItem<K, I> {
         return expirationDetails;
     }
 
+    /**
+     * Records a notification of the registry listeners about this item, unless the previous one
+     * is too recent.
+     *
+     * @param nowMillis The current time in milliseconds.
+     * @param minIntervalMillis The minimum time between two notifications, <code>0</code> to always notify.
+     * @return <code>true</code> if the listeners should be notified.
+     * @since 1.5.0
+     */
+    synchronized boolean stampNotification(long nowMillis, long minIntervalMillis) {
+        if (minIntervalMillis > 0 && lastNotificationMillis != Long.MIN_VALUE
+                && nowMillis - lastNotificationMillis < minIntervalMillis)
+            return false;
+        lastNotificationMillis = nowMillis;
+        return true;
+    }
+
+    /**
+     * Records the descriptor URL announced for this item. The external forms are compared,
+     * {@link URL#equals(Object)} resolves host names.
+     *
+     * @param announcedURL The announced URL, <code>null</code> if none has been announced, which is not a change.
+     * @param registeredURL The URL the item has been registered with, compared if no URL has been recorded yet.
+     * @return <code>true</code> if the announced URL differs from the previously announced one.
+     * @since 1.5.0
+     */
+    synchronized boolean stampDescriptorURL(URL announcedURL, URL registeredURL) {
+        if (announcedURL == null)
+            return false;
+        String previousURL = lastDescriptorURL != null
+                ? lastDescriptorURL
+                : registeredURL != null ? registeredURL.toExternalForm() : null;
+        lastDescriptorURL = announcedURL.toExternalForm();
+        return !lastDescriptorURL.equals(previousURL);
+    }
+
+    /**
+     * Takes over the notification and descriptor URL stamps of the item replaced by this one,
+     * before this one is registered.
+     *
+     * @since 1.5.0
+     */
+    void takeOverStamps(RegistryItem<K, I> replacedItem) {
+        synchronized (replacedItem) {
+            lastNotificationMillis = replacedItem.lastNotificationMillis;
+            lastDescriptorURL = replacedItem.lastDescriptorURL;
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -15,6 +15,7 @@
 
 package com.distrimind.upnp.registry;
 
+import com.distrimind.upnp.model.ExpirationDetails;
 import com.distrimind.upnp.model.resource.Resource;
 import com.distrimind.upnp.model.ValidationException;
 import com.distrimind.upnp.model.meta.Device;
@@ -23,9 +24,10 @@ import com.distrimind.upnp.model.types.DeviceType;
 import com.distrimind.upnp.model.types.ServiceType;
 import com.distrimind.upnp.model.types.UDN;
 
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
-import java.util.Set;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Internal class, required by {@link RegistryImpl}.
@@ -36,26 +38,42 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
 
     protected final RegistryImpl registry;
 
-    protected final Set<RegistryItem<UDN, D>> deviceItems = new HashSet<>();
-    protected final Set<RegistryItem<String, S>> subscriptionItems = new HashSet<>();
+    protected final DeviceItems<D> deviceItems = new DeviceItems<>();
+    protected final Map<String, RegistryItem<String, S>> subscriptionItems = new HashMap<>();
+    protected final DeadlineQueue<UDN> deviceDeadlines;
+    protected final DeadlineQueue<String> subscriptionDeadlines;
 
     RegistryItems(RegistryImpl registry) {
         this.registry = registry;
+        this.deviceDeadlines = new DeadlineQueue<>(registry);
+        this.subscriptionDeadlines = new DeadlineQueue<>(registry);
     }
 
-    Set<RegistryItem<UDN, D>> getDeviceItems() {
+    DeviceItems<D> getDeviceItems() {
         return deviceItems;
     }
 
-    Set<RegistryItem<String, S>> getSubscriptionItems() {
-        return subscriptionItems;
+    Collection<RegistryItem<String, S>> getSubscriptionItems() {
+        return subscriptionItems.values();
     }
 
     abstract void add(D device);
     abstract boolean remove(final D device);
     abstract void removeAll();
 
-    abstract void maintain();
+    /**
+     * Handles the devices and subscriptions whose maintenance deadline has been reached.
+     *
+     * @param nowMillis The current time in milliseconds since the epoch.
+     * @return The next maintenance deadline in milliseconds since the epoch, {@link Long#MAX_VALUE} if none.
+     */
+    abstract long maintain(long nowMillis);
+
+    /**
+     * @param expirationDetails The expiration details of a subscription.
+     * @return The time in milliseconds since the epoch when the subscription has to be maintained.
+     */
+    abstract long getSubscriptionDeadline(ExpirationDetails expirationDetails);
     abstract void shutdown();
 
     /**
@@ -67,17 +85,7 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
      *         no device with the given UDN has been registered.
      */
     D get(UDN udn, boolean rootOnly) {
-        for (RegistryItem<UDN, D> item : deviceItems) {
-            D device = item.getItem();
-            if (device.getIdentity().getUdn().equals(udn)) {
-                return device;
-            }
-            if (!rootOnly) {
-                @SuppressWarnings("unchecked") D foundDevice = (D)item.getItem().findDevice(udn);
-                if (foundDevice != null) return foundDevice;
-            }
-        }
-        return null;
+        return deviceItems.get(udn, rootOnly);
     }
 
     /**
@@ -90,14 +98,7 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
      * @return Any registered root or embedded device with a compatible type.
      */
     Collection<D> get(DeviceType deviceType) {
-        Collection<D> devices = new HashSet<>();
-        for (RegistryItem<UDN, D> item : deviceItems) {
-            @SuppressWarnings("unchecked") Collection<D> d = (Collection<D>) item.getItem().findDevices(deviceType);
-            if (d != null) {
-                devices.addAll(d);
-            }
-        }
-        return devices;
+        return deviceItems.get(deviceType);
     }
 
     /**
@@ -107,22 +108,11 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
      * @return Any registered root or embedded device with at least one matching service.
      */
     Collection<D> get(ServiceType serviceType) {
-        Collection<D> devices = new HashSet<>();
-        for (RegistryItem<UDN, D> item : deviceItems) {
-            @SuppressWarnings("unchecked") Collection<D> d = (Collection<D>) item.getItem().findDevices(serviceType);
-            if (d != null) {
-                devices.addAll(d);
-            }
-        }
-        return devices;
+        return deviceItems.get(serviceType);
     }
 
     Collection<D> get() {
-        Collection<D> devices = new HashSet<>();
-        for (RegistryItem<UDN, D> item : deviceItems) {
-            devices.add(item.getItem());
-        }
-        return devices;
+        return deviceItems.get();
     }
 
     boolean contains(D device) {
@@ -130,7 +120,7 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
     }
 
     boolean contains(UDN udn) {
-        return deviceItems.contains(new RegistryItem<UDN, D>(udn));
+        return deviceItems.contains(udn);
     }
 
     void addSubscription(S subscription) {
@@ -142,7 +132,12 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
                         subscription.getActualDurationSeconds()
                 );
 
-        subscriptionItems.add(subscriptionItem);
+        if (subscriptionItems.putIfAbsent(subscriptionItem.getKey(), subscriptionItem) == null) {
+            subscriptionDeadlines.schedule(
+                    subscriptionItem.getKey(),
+                    getSubscriptionDeadline(subscriptionItem.getExpirationDetails())
+            );
+        }
     }
 
     boolean updateSubscription(S subscription) {
@@ -154,16 +149,26 @@ abstract class RegistryItems<D extends Device<?, ?, ?>, S extends GENASubscripti
     }
 
     boolean removeSubscription(S subscription) {
-        return subscriptionItems.remove(new RegistryItem<String, S>(subscription.getSubscriptionId()));
+        subscriptionDeadlines.cancel(subscription.getSubscriptionId());
+        return subscriptionItems.remove(subscription.getSubscriptionId()) != null;
     }
 
     S getSubscription(String subscriptionId) {
-        for (RegistryItem<String, S> registryItem : subscriptionItems) {
-            if (registryItem.getKey().equals(subscriptionId)) {
-                return registryItem.getItem();
-            }
+        RegistryItem<String, S> registryItem = subscriptionItems.get(subscriptionId);
+        return registryItem == null ? null : registryItem.getItem();
+    }
+
+    /**
+     * @return The subscription items whose maintenance deadline has been reached, in no particular order.
+     */
+    Collection<RegistryItem<String, S>> pollDueSubscriptions(long nowMillis) {
+        Collection<RegistryItem<String, S>> due = new ArrayList<>();
+        for (String subscriptionId : subscriptionDeadlines.pollExpired(nowMillis)) {
+            RegistryItem<String, S> registryItem = subscriptionItems.get(subscriptionId);
+            if (registryItem != null)
+                due.add(registryItem);
         }
-        return null;
+        return due;
     }
 
     Collection<Resource<?>> getResources(Device<?, ?, ?> device) throws RegistrationException {
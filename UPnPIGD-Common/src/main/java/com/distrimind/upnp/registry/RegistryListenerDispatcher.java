@@ -0,0 +1,293 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.registry;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Delivers the registry events to each {@link RegistryListener} through its own ordered queue.
+ * <p>
+ * Every listener receives the events in the order they were dispatched, and never concurrently:
+ * a single drain task per listener runs on the
+ * {@link com.distrimind.upnp.UpnpServiceConfiguration#getRegistryListenerExecutor()}. A slow listener
+ * therefore only delays its own events, not the ones of the other listeners. A
+ * {@link BatchingRegistryListener} receives all its pending events with one call.
+ * </p>
+ * <p>
+ * The queues are bounded for device updates only: when a listener lags more than
+ * {@link #getMaxPendingEvents()} events behind, further {@link RegistryEvent.Type#REMOTE_DEVICE_UPDATED}
+ * events are dropped for this listener and counted, see {@link #getDroppedEventCount(RegistryListener)}.
+ * Discovery, addition and removal events are never dropped.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class RegistryListenerDispatcher {
+
+	final private static DMLogger log = Log.getLogger(RegistryListenerDispatcher.class);
+
+	public static final int DEFAULT_MAX_PENDING_EVENTS = 1024;
+
+	protected final RegistryImpl registry;
+	protected final int maxPendingEvents;
+	private final ReentrantLock lock = new ReentrantLock();
+	private final List<ListenerQueue> queues = new CopyOnWriteArrayList<>();
+
+	public RegistryListenerDispatcher(RegistryImpl registry) {
+		this(registry, DEFAULT_MAX_PENDING_EVENTS);
+	}
+
+	public RegistryListenerDispatcher(RegistryImpl registry, int maxPendingEvents) {
+		if (maxPendingEvents < 1)
+			throw new IllegalArgumentException("maxPendingEvents must be strictly positive");
+		this.registry = registry;
+		this.maxPendingEvents = maxPendingEvents;
+	}
+
+	public int getMaxPendingEvents() {
+		return maxPendingEvents;
+	}
+
+	public void addListener(RegistryListener listener) {
+		lock.lock();
+		try {
+			if (getQueue(listener) == null)
+				queues.add(new ListenerQueue(listener));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Stops the delivery to the given listener, its pending events are discarded.
+	 *
+	 * @param listener The listener to remove.
+	 */
+	public void removeListener(RegistryListener listener) {
+		lock.lock();
+		try {
+			ListenerQueue queue = getQueue(listener);
+			if (queue != null) {
+				queues.remove(queue);
+				queue.discard();
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Queues the event for all listeners. Call it while holding the lock guarding the change
+	 * if the listeners must receive the events in the order of the changes.
+	 *
+	 * @param event The event to deliver.
+	 */
+	public void dispatch(RegistryEvent event) {
+		for (ListenerQueue queue : queues) {
+			queue.add(event);
+		}
+	}
+
+	/**
+	 * @param listener A registered listener.
+	 * @return The number of events not yet delivered to the listener.
+	 */
+	public int getPendingEventCount(RegistryListener listener) {
+		ListenerQueue queue = getQueue(listener);
+		return queue == null ? 0 : queue.size();
+	}
+
+	/**
+	 * @param listener A registered listener.
+	 * @return The age in milliseconds of the oldest event not yet delivered to the listener, 0 if
+	 *         the listener is up-to-date.
+	 */
+	public long getLagMillis(RegistryListener listener) {
+		ListenerQueue queue = getQueue(listener);
+		return queue == null ? 0 : queue.getLagMillis(System.currentTimeMillis());
+	}
+
+	/**
+	 * @param listener A registered listener.
+	 * @return The number of update events dropped because the listener lagged behind.
+	 */
+	public long getDroppedEventCount(RegistryListener listener) {
+		ListenerQueue queue = getQueue(listener);
+		return queue == null ? 0 : queue.getDroppedCount();
+	}
+
+	private ListenerQueue getQueue(RegistryListener listener) {
+		for (ListenerQueue queue : queues) {
+			if (queue.listener.equals(listener))
+				return queue;
+		}
+		return null;
+	}
+
+	private final class ListenerQueue implements Runnable {
+
+		final RegistryListener listener;
+		private final ReentrantLock queueLock = new ReentrantLock();
+		private final Deque<RegistryEvent> events = new ArrayDeque<>();
+		private boolean scheduled;
+		private boolean discarded;
+		private boolean overflowing;
+		private long droppedCount;
+
+		ListenerQueue(RegistryListener listener) {
+			this.listener = listener;
+		}
+
+		void add(RegistryEvent event) {
+			queueLock.lock();
+			try {
+				if (discarded)
+					return;
+				if (events.size() >= maxPendingEvents && event.getType() == RegistryEvent.Type.REMOTE_DEVICE_UPDATED) {
+					droppedCount++;
+					if (!overflowing) {
+						overflowing = true;
+						if (log.isWarnEnabled())
+							log.warn("Registry listener lags " + events.size() + " events behind, dropping device updates: " + listener);
+					}
+					return;
+				}
+				events.addLast(event);
+				if (scheduled)
+					return;
+				scheduled = true;
+			} finally {
+				queueLock.unlock();
+			}
+			long delay = listener instanceof BatchingRegistryListener
+					? ((BatchingRegistryListener) listener).getBatchDelayMillis()
+					: 0;
+			// The timer thread hands the queue over to the registry listener executor itself: the asynchronous
+			// protocol executor may be overloaded, and the queue would stay scheduled without being delivered
+			if (delay <= 0 || !registry.getConfiguration().getProtocolScheduler().schedule(this::submit, delay, Runnable::run))
+				submit();
+		}
+
+		void discard() {
+			queueLock.lock();
+			try {
+				discarded = true;
+				events.clear();
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		int size() {
+			queueLock.lock();
+			try {
+				return events.size();
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		long getLagMillis(long nowMillis) {
+			queueLock.lock();
+			try {
+				RegistryEvent oldest = events.peekFirst();
+				return oldest == null ? 0 : Math.max(0, nowMillis - oldest.getTimestampMillis());
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		long getDroppedCount() {
+			queueLock.lock();
+			try {
+				return droppedCount;
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		private void submit() {
+			try {
+				registry.getConfiguration().getRegistryListenerExecutor().execute(this);
+			} catch (RejectedExecutionException ex) {
+				queueLock.lock();
+				try {
+					if (log.isDebugEnabled())
+						log.debug("Registry listener executor rejected delivery, discarding " + events.size() + " events: " + listener);
+					events.clear();
+					scheduled = false;
+				} finally {
+					queueLock.unlock();
+				}
+			}
+		}
+
+		@Override
+		public void run() {
+			// Not resubmitted between events, a caller-runs executor would otherwise recurse
+			List<RegistryEvent> batch;
+			while (!(batch = poll()).isEmpty()) {
+				deliver(batch);
+			}
+		}
+
+		/**
+		 * @return The next events to deliver, empty once the queue is drained.
+		 */
+		private List<RegistryEvent> poll() {
+			queueLock.lock();
+			try {
+				if (events.isEmpty()) {
+					scheduled = false;
+					overflowing = false;
+					return Collections.emptyList();
+				}
+				int max = listener instanceof BatchingRegistryListener
+						? Math.max(1, ((BatchingRegistryListener) listener).getMaxBatchSize())
+						: 1;
+				List<RegistryEvent> batch = new ArrayList<>(Math.min(max, events.size()));
+				while (batch.size() < max && !events.isEmpty())
+					batch.add(events.pollFirst());
+				return batch;
+			} finally {
+				queueLock.unlock();
+			}
+		}
+
+		private void deliver(List<RegistryEvent> batch) {
+			try {
+				if (listener instanceof BatchingRegistryListener)
+					((BatchingRegistryListener) listener).registryEventsReceived(registry, batch);
+				else
+					batch.get(0).deliverTo(registry, listener);
+			} catch (RuntimeException ex) {
+				if (log.isWarnEnabled())
+					log.warn("Registry listener failed handling " + batch.size() + " events: " + listener, ex);
+			}
+		}
+	}
+}
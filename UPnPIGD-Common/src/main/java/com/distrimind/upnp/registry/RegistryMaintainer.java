@@ -18,8 +18,19 @@ package com.distrimind.upnp.registry;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
 /**
- * Runs periodically and calls {@link RegistryImpl#maintain()}.
+ * Calls {@link RegistryImpl#maintain()} when the next registry item is due.
+ * <p>
+ * Expirations, alive advertisements and subscription renewals are kept in deadline queues,
+ * this maintainer sleeps until the earliest deadline and is woken up when an earlier deadline
+ * is scheduled. The sleep interval is the minimum delay between two maintenance runs, and the
+ * period of the maintenance of resources overriding
+ * {@link com.distrimind.upnp.model.resource.Resource#maintain(java.util.List, com.distrimind.upnp.model.ExpirationDetails)}.
+ * </p>
  *
  * @author Christian Bauer
  */
@@ -30,7 +41,10 @@ public class RegistryMaintainer implements Runnable {
     final private RegistryImpl registry;
     final private int sleepIntervalMillis;
 
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wakeUpCondition = lock.newCondition();
     private volatile boolean stopped = false;
+    private long wakeUpDeadlineMillis = Long.MAX_VALUE;
 
     public RegistryMaintainer(RegistryImpl registry, int sleepIntervalMillis) {
         this.registry = registry;
@@ -41,18 +55,43 @@ public class RegistryMaintainer implements Runnable {
         if (log.isDebugEnabled())
             log.debug("Setting stopped status on thread");
         stopped = true;
+        lock.lock();
+        try {
+            wakeUpCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Makes the maintenance run at the given deadline if it was sleeping longer.
+     *
+     * @param deadlineMillis The time in milliseconds since the epoch.
+     * @since 1.5.0
+     */
+    public void wakeUp(long deadlineMillis) {
+        lock.lock();
+        try {
+            if (deadlineMillis < wakeUpDeadlineMillis) {
+                wakeUpDeadlineMillis = deadlineMillis;
+                wakeUpCondition.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     @Override
 	public void run() {
         stopped = false;
         if (log.isDebugEnabled())
-            log.debug("Running registry maintenance loop every milliseconds: " + sleepIntervalMillis);
+            log.debug("Running registry maintenance loop, at most every milliseconds: " + sleepIntervalMillis);
         while (!stopped) {
 
             try {
-                registry.maintain();
-                Thread.sleep(sleepIntervalMillis);
+                long lastRunMillis = System.currentTimeMillis();
+                long nextDeadlineMillis = registry.maintain();
+                awaitNextRun(lastRunMillis, nextDeadlineMillis);
             } catch (InterruptedException ex) {
                 stopped = true;
             }
@@ -61,4 +100,24 @@ public class RegistryMaintainer implements Runnable {
         log.debug("Stopped status on thread received, ending maintenance loop");
     }
 
-}
\ No newline at end of file
+    private void awaitNextRun(long lastRunMillis, long nextDeadlineMillis) throws InterruptedException {
+        lock.lock();
+        try {
+            while (!stopped) {
+                long nextRunMillis = Math.max(
+                        Math.min(nextDeadlineMillis, wakeUpDeadlineMillis),
+                        lastRunMillis + sleepIntervalMillis
+                );
+                long delayMillis = nextRunMillis - System.currentTimeMillis();
+                if (delayMillis <= 0)
+                    break;
+                if (log.isTraceEnabled())
+                    log.trace("Next registry maintenance in milliseconds: " + delayMillis);
+                wakeUpCondition.await(delayMillis, TimeUnit.MILLISECONDS);
+            }
+            wakeUpDeadlineMillis = Long.MAX_VALUE;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -15,14 +15,17 @@
 
 package com.distrimind.upnp.registry;
 
+import com.distrimind.upnp.model.ExpirationDetails;
 import com.distrimind.upnp.model.resource.Resource;
 import com.distrimind.upnp.model.gena.CancelReason;
 import com.distrimind.upnp.model.gena.RemoteGENASubscription;
-import com.distrimind.upnp.model.meta.LocalDevice;
 import com.distrimind.upnp.model.meta.RemoteDevice;
 import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.types.UDN;
+import com.distrimind.upnp.protocol.sync.SendingRenewal;
+import com.distrimind.upnp.util.Exceptions;
 
+import java.net.URL;
 import java.util.*;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
@@ -91,6 +94,7 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
 							 + item.getExpirationDetails().getMaxAgeSeconds() + " seconds expiration: " + device);
 		}
 		getDeviceItems().add(item);
+        deviceDeadlines.schedule(item.getKey(), item.getExpirationDetails().getExpirationMillis(false));
 
         if (log.isTraceEnabled()) {
             StringBuilder sb = new StringBuilder();
@@ -107,21 +111,25 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
 		if (log.isDebugEnabled()) {
             log.debug("Completely hydrated remote device graph available, calling listeners: " + device);
 		}
-		for (final RegistryListener listener : registry.getListeners()) {
-            registry.getConfiguration().getRegistryListenerExecutor().execute(
-					() -> listener.remoteDeviceAdded(registry, device)
-			);
-        }
+		registry.notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_ADDED, device));
 
     }
 
+    /**
+     * Updates the expiration details of the registered root device containing the given device.
+     * <p>
+     * This method doesn't require the registry lock, the registered item is replaced atomically.
+     * </p>
+     *
+     * @param rdIdentity The identity of a root or embedded remote device that has been announced again.
+     * @return <code>true</code> if the device is registered, <code>false</code> if it should be retrieved.
+     */
+    @SuppressWarnings("PMD.CompareObjectsWithEquals")
     boolean update(RemoteDeviceIdentity rdIdentity) {
 
-        for (LocalDevice<?> localDevice : registry.getLocalDevices()) {
-            if (localDevice.findDevice(rdIdentity.getUdn()) != null) {
-                log.debug("Ignoring update, a local device graph contains UDN");
-                return true;
-            }
+        if (registry.getLocalDevice(rdIdentity.getUdn(), false) != null) {
+            log.debug("Ignoring update, a local device graph contains UDN");
+            return true;
         }
 
         RemoteDevice registeredRemoteDevice = get(rdIdentity.getUdn(), false);
@@ -134,28 +142,73 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
 				registeredRemoteDevice = registeredRemoteDevice.getRoot();
             }
 
-            // Override the device's maximum age if configured (systems without multicast support)
-            final RegistryItem<UDN, RemoteDevice> item = new RegistryItem<>(
-                    registeredRemoteDevice.getIdentity().getUdn(),
-                    registeredRemoteDevice,
-                    registry.getConfiguration().getRemoteDeviceMaxAgeSeconds() != null
-                            ? registry.getConfiguration().getRemoteDeviceMaxAgeSeconds()
-                            : rdIdentity.getMaxAgeSeconds()
-            );
-
 			if (log.isDebugEnabled()) {
 				log.debug("Updating expiration of: " + registeredRemoteDevice);
 			}
-			getDeviceItems().remove(item);
-            getDeviceItems().add(item);
+            // Override the device's maximum age if configured (systems without multicast support)
+            int maxAgeSeconds = registry.getConfiguration().getRemoteDeviceMaxAgeSeconds() != null
+                    ? registry.getConfiguration().getRemoteDeviceMaxAgeSeconds()
+                    : rdIdentity.getMaxAgeSeconds();
+            RegistryItem<UDN, RemoteDevice> item = getDeviceItems().getItem(registeredRemoteDevice.getIdentity().getUdn());
+            if (item == null || item.getItem() != registeredRemoteDevice) {
+                // Removed or replaced concurrently
+                return false;
+            }
+            // Compared with the URL announced last, the registered identity keeps the URL the device has been retrieved from
+            boolean changed = item.stampDescriptorURL(
+                    rdIdentity.getDescriptorURL(),
+                    registeredRemoteDevice.getIdentity().getDescriptorURL()
+            );
+            if (item.getExpirationDetails().getMaxAgeSeconds() == maxAgeSeconds) {
+                // The scheduled deadline is not later than the new expiration, the maintainer reschedules it when due
+                item.getExpirationDetails().stampLastRefresh();
+                RegistryItem<UDN, RemoteDevice> registeredItem = getDeviceItems().getItem(item.getKey());
+                if (registeredItem == null || registeredItem.getItem() != registeredRemoteDevice) {
+                    // Removed or replaced concurrently, the refresh of the removed item is lost
+                    return false;
+                }
+            } else {
+                changed = true;
+                final RegistryItem<UDN, RemoteDevice> newItem = new RegistryItem<>(
+                        item.getKey(),
+                        registeredRemoteDevice,
+                        maxAgeSeconds
+                );
+                RegistryItem<UDN, RemoteDevice> registeredItem;
+                do {
+                    registeredItem = getDeviceItems().getItem(newItem.getKey());
+                    if (registeredItem == null || registeredItem.getItem() != registeredRemoteDevice) {
+                        // Removed or replaced concurrently
+                        return false;
+                    }
+                    newItem.takeOverStamps(registeredItem);
+                } while (!getDeviceItems().replace(registeredItem, newItem));
+                item = newItem;
+                // Only scheduled if earlier than the current deadline, i.e. if the maximum age has been reduced
+                deviceDeadlines.schedule(item.getKey(), item.getExpirationDetails().getExpirationMillis(false));
+            }
 
-			if (log.isDebugEnabled()) {
-				log.debug("Remote device updated, calling listeners: " + registeredRemoteDevice);
-			}
-			for (final RegistryListener listener : registry.getListeners()) {
-                registry.getConfiguration().getRegistryListenerExecutor().execute(
-						() -> listener.remoteDeviceUpdated(registry, item.getItem())
-				);
+            if (!item.stampNotification(System.currentTimeMillis(),
+                    changed ? 0 : registry.getConfiguration().getRemoteDeviceUpdateNotificationIntervalMillis())) {
+                if (log.isTraceEnabled()) {
+                    log.trace("Remote device refreshed, skipping notification of listeners: " + registeredRemoteDevice);
+                }
+                return true;
+            }
+            // Dispatched while holding the lock the removal is dispatched with, and only if the device is
+            // still registered, so that the update can't follow the removal of the device
+            registry.lock.lock();
+            try {
+                RegistryItem<UDN, RemoteDevice> registeredItem = getDeviceItems().getItem(item.getKey());
+                if (registeredItem == null || registeredItem.getItem() != registeredRemoteDevice) {
+                    return false;
+                }
+				if (log.isDebugEnabled()) {
+					log.debug("Remote device updated, calling listeners: " + registeredRemoteDevice);
+				}
+				registry.notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_UPDATED, item.getItem()));
+            } finally {
+                registry.lock.unlock();
             }
 
             return true;
@@ -164,6 +217,14 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
         return false;
     }
 
+    /**
+     * @param descriptorURL The URL of the device descriptor of a remote root device.
+     * @return The registered remote root device described by this URL, or <code>null</code>.
+     */
+    RemoteDevice get(URL descriptorURL) {
+        return getDeviceItems().get(descriptorURL);
+    }
+
     /**
      * Removes the given device from the registry and notifies registry listeners.
      *
@@ -205,6 +266,7 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
 						log.debug("Removing outgoing subscription: " + outgoingSubscription.getKey());
 					}
 					it.remove();
+                    subscriptionDeadlines.cancel(outgoingSubscription.getKey());
                     if (!shuttingDown) {
                         registry.getConfiguration().getRegistryListenerExecutor().execute(
 								() -> outgoingSubscription.getItem().end(CancelReason.DEVICE_WAS_REMOVED, null)
@@ -215,15 +277,12 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
 
             // Only notify listeners if we are NOT in the process of shutting down the registry
             if (!shuttingDown) {
-                for (final RegistryListener listener : registry.getListeners()) {
-                    registry.getConfiguration().getRegistryListenerExecutor().execute(
-							() -> listener.remoteDeviceRemoved(registry, registeredDevice)
-					);
-                }
+                registry.notifyListeners(new RegistryEvent(RegistryEvent.Type.REMOTE_DEVICE_REMOVED, registeredDevice));
             }
 
             // Finally, remove the device from the registry
             getDeviceItems().remove(new RegistryItem<UDN, RemoteDevice>(registeredDevice.getIdentity().getUdn()));
+            deviceDeadlines.cancel(registeredDevice.getIdentity().getUdn());
 
             return true;
         }
@@ -249,38 +308,49 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
     }
 
     @Override
-	void maintain() {
+	long maintain(long nowMillis) {
 
-        if (getDeviceItems().isEmpty()) return;
-
-        // Remove expired remote devices
-        Map<UDN, RemoteDevice> expiredRemoteDevices = new HashMap<>();
-        for (RegistryItem<UDN, RemoteDevice> remoteItem : getDeviceItems()) {
-            if (log.isTraceEnabled())
-                log.trace("Device '" + remoteItem.getItem() + "' expires in seconds: "
-                                   + remoteItem.getExpirationDetails().getSecondsUntilExpiration());
+        // Remove expired remote devices, the others have been updated since they were scheduled
+        for (UDN udn : deviceDeadlines.pollExpired(nowMillis)) {
+            RegistryItem<UDN, RemoteDevice> remoteItem = getDeviceItems().getItem(udn);
+            if (remoteItem == null)
+                continue;
             if (remoteItem.getExpirationDetails().hasExpired(false)) {
-                expiredRemoteDevices.put(remoteItem.getKey(), remoteItem.getItem());
+                if (log.isDebugEnabled())
+                    log.debug("Removing expired: " + remoteItem.getItem());
+                remove(remoteItem.getItem());
+            } else {
+                if (log.isTraceEnabled())
+                    log.trace("Device '" + remoteItem.getItem() + "' expires in seconds: "
+                                       + remoteItem.getExpirationDetails().getSecondsUntilExpiration());
+                deviceDeadlines.schedule(udn, remoteItem.getExpirationDetails().getExpirationMillis(false));
             }
         }
-        for (RemoteDevice remoteDevice : expiredRemoteDevices.values()) {
-            if (log.isDebugEnabled())
-                log.debug("Removing expired: " + remoteDevice);
-            remove(remoteDevice);
-        }
 
         // Renew outgoing subscriptions
-        Set<RemoteGENASubscription> expiredOutgoingSubscriptions = new HashSet<>();
-        for (RegistryItem<String, RemoteGENASubscription> item : getSubscriptionItems()) {
+        for (RegistryItem<String, RemoteGENASubscription> item : pollDueSubscriptions(nowMillis)) {
             if (item.getExpirationDetails().hasExpired(true)) {
-                expiredOutgoingSubscriptions.add(item.getItem());
+                if (log.isDebugEnabled())
+                    log.debug("Renewing outgoing subscription: " + item.getItem());
+                renewOutgoingSubscription(item.getItem());
+                // Renewed once more when the subscription expires, if this renewal doesn't update it
+                long expirationMillis = item.getExpirationDetails().getExpirationMillis(false);
+                if (expirationMillis > nowMillis)
+                    subscriptionDeadlines.schedule(item.getKey(), expirationMillis);
+            } else {
+                subscriptionDeadlines.schedule(item.getKey(), getSubscriptionDeadline(item.getExpirationDetails()));
             }
         }
-        for (RemoteGENASubscription subscription : expiredOutgoingSubscriptions) {
-            if (log.isDebugEnabled())
-                log.debug("Renewing outgoing subscription: " + subscription);
-            renewOutgoingSubscription(subscription);
-        }
+
+        return Math.min(deviceDeadlines.getNextDeadline(), subscriptionDeadlines.getNextDeadline());
+    }
+
+    /**
+     * Outgoing subscriptions are renewed when half of their duration has elapsed.
+     */
+    @Override
+    long getSubscriptionDeadline(ExpirationDetails expirationDetails) {
+        return expirationDetails.getExpirationMillis(true);
     }
 
     public void resume() {
@@ -315,8 +385,14 @@ class RemoteItems extends RegistryItems<RemoteDevice, RemoteGENASubscription> {
     /* ############################################################################################################ */
 
     protected void renewOutgoingSubscription(final RemoteGENASubscription subscription) {
+        // The executing thread is released as soon as the request has been handed to the stream client
+        final SendingRenewal sendingRenewal = registry.getProtocolFactory().createSendingRenewal(subscription);
         registry.executeAsyncProtocol(
-                registry.getProtocolFactory().createSendingRenewal(subscription)
+                () -> sendingRenewal.executeAsync().whenComplete((response, ex) -> {
+                    if (ex != null && log.isDebugEnabled()) {
+                        log.debug("Subscription renewal failed: " + subscription, Exceptions.unwrap(ex));
+                    }
+                })
         );
     }
 }
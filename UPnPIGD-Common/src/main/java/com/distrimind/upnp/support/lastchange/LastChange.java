@@ -21,6 +21,7 @@ import java.beans.PropertyChangeSupport;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Collects all state changes per logical instance.
@@ -46,6 +47,7 @@ public class LastChange {
 
     final private Event event;
     final private LastChangeParser parser;
+    final private ReentrantLock lock = new ReentrantLock();
     private String previousValue;
     @SuppressWarnings("PMD.UnusedFormalParameter")
     public LastChange(String s) {
@@ -70,59 +72,104 @@ public class LastChange {
         this.parser = parser;
     }
 
-    synchronized public void reset() {
-        previousValue = toString();
-        event.clear();
+    public void reset() {
+        lock.lock();
+        try {
+            previousValue = toString();
+            event.clear();
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public void setEventedValue(int instanceID, EventedValue<?>... ev) {
-        setEventedValue(new UnsignedIntegerFourBytes(instanceID), ev);
+    public void setEventedValue(int instanceID, EventedValue<?>... ev) {
+        lock.lock();
+        try {
+            setEventedValue(new UnsignedIntegerFourBytes(instanceID), ev);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public void setEventedValue(UnsignedIntegerFourBytes instanceID, EventedValue<?>... ev) {
-        for (EventedValue<?> eventedValue : ev) {
-            if (eventedValue != null)
-                event.setEventedValue(instanceID, eventedValue);
+    public void setEventedValue(UnsignedIntegerFourBytes instanceID, EventedValue<?>... ev) {
+        lock.lock();
+        try {
+            for (EventedValue<?> eventedValue : ev) {
+                if (eventedValue != null)
+                    event.setEventedValue(instanceID, eventedValue);
 
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
-    synchronized public List<UnsignedIntegerFourBytes> getInstanceIDs() {
-        List<UnsignedIntegerFourBytes> list = new ArrayList<>();
-        for (InstanceID instanceID : event.getInstanceIDs()) {
-            list.add(instanceID.getId());
+    public List<UnsignedIntegerFourBytes> getInstanceIDs() {
+        lock.lock();
+        try {
+            List<UnsignedIntegerFourBytes> list = new ArrayList<>();
+            for (InstanceID instanceID : event.getInstanceIDs()) {
+                list.add(instanceID.getId());
+            }
+            return list;
+        } finally {
+            lock.unlock();
         }
-        return list;
     }
 
-    synchronized List<EventedValue<?>> getEventedValues(UnsignedIntegerFourBytes instanceID) {
-        InstanceID inst = event.getInstanceID(instanceID);
-        return inst != null ? Collections.unmodifiableList(inst.getValues()) : null;
+    List<EventedValue<?>> getEventedValues(UnsignedIntegerFourBytes instanceID) {
+        lock.lock();
+        try {
+            InstanceID inst = event.getInstanceID(instanceID);
+            return inst != null ? Collections.unmodifiableList(inst.getValues()) : null;
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public <EV extends EventedValue<?>> EV getEventedValue(int instanceID, Class<EV> type) {
-        return getEventedValue(new UnsignedIntegerFourBytes(instanceID), type);
+    public <EV extends EventedValue<?>> EV getEventedValue(int instanceID, Class<EV> type) {
+        lock.lock();
+        try {
+            return getEventedValue(new UnsignedIntegerFourBytes(instanceID), type);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public <EV extends EventedValue<?>> EV getEventedValue(UnsignedIntegerFourBytes id, Class<EV> type) {
-        return event.getEventedValue(id, type);
+    public <EV extends EventedValue<?>> EV getEventedValue(UnsignedIntegerFourBytes id, Class<EV> type) {
+        lock.lock();
+        try {
+            return event.getEventedValue(id, type);
+        } finally {
+            lock.unlock();
+        }
     }
 
-    synchronized public void fire(PropertyChangeSupport propertyChangeSupport) {
-        String lastChanges = toString();
-        if (lastChanges != null && !lastChanges.isEmpty()) {
-            propertyChangeSupport.firePropertyChange("LastChange", previousValue, lastChanges);
-            reset();
+    public void fire(PropertyChangeSupport propertyChangeSupport) {
+        lock.lock();
+        try {
+            String lastChanges = toString();
+            if (lastChanges != null && !lastChanges.isEmpty()) {
+                propertyChangeSupport.firePropertyChange("LastChange", previousValue, lastChanges);
+                reset();
+            }
+        } finally {
+            lock.unlock();
         }
     }
 
     @Override
-    synchronized public String toString() {
-        if (!event.hasChanges()) return "";
+    public String toString() {
+        lock.lock();
         try {
-            return parser.generate(event);
-        } catch (Exception ex) {
-            throw new RuntimeException(ex);
+            if (!event.hasChanges()) return "";
+            try {
+                return parser.generate(event);
+            } catch (Exception ex) {
+                throw new RuntimeException(ex);
+            }
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -67,7 +67,7 @@ public class LastChangeAwareServiceManager<T extends LastChangeDelegator> extend
 
         // We need to obtain locks in the right order to avoid deadlocks:
         // 1. The lock() of the DefaultServiceManager
-        // 2. The monitor/synchronized of the LastChange.fire() method
+        // 2. The lock of the LastChange.fire() method
 
     	lock();
     	try {
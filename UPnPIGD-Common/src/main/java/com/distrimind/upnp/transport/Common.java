@@ -41,9 +41,12 @@ import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
 import java.net.Inet6Address;
 import java.net.InetAddress;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -55,16 +58,24 @@ import java.util.Set;
 @SuppressWarnings("PMD.UseEnumCollections")
 public class Common {
 	private static final Set<UpnpHeader.Type> allowedUpnpHeaders=new HashSet<>(Arrays.asList(UpnpHeader.Type.EXT, UpnpHeader.Type.ST, UpnpHeader.Type.SERVER, UpnpHeader.Type.USN, UpnpHeader.Type.LOCATION, UpnpHeader.Type.MAX_AGE));
-	static boolean isNotValidRemoteAddress(URL u, NetworkAddressFactory networkAddressFactory)
+	public static boolean isNotValidRemoteAddress(URL u, NetworkAddressFactory networkAddressFactory)
 	{
 		if (u==null)
 			return false;
 		return isNotValidRemoteAddress(u.getHost(), networkAddressFactory);
 	}
+	/**
+	 * Never blocks on a name service lookup, see {@link HostAddressResolver#getAddress(String)}.
+	 *
+	 * @return <code>true</code> if the host is not reachable through a local network interface, or
+	 *         if it is a host name which has not been resolved yet.
+	 */
 	public static boolean isNotValidRemoteAddress(String host, NetworkAddressFactory networkAddressFactory)
 	{
 		try {
-			InetAddress ia = InetAddress.getByName(host);
+			InetAddress ia = HostAddressResolver.getAddress(host);
+			if (ia == null)
+				return true;
 			ia = networkAddressFactory.getLocalAddress(
 					null,
 					ia instanceof Inet6Address,
@@ -79,45 +90,50 @@ public class Common {
 	}
 	public static IncomingDatagramMessage<?> getValidIncomingDatagramMessage(IncomingDatagramMessage<?> idm, NetworkAddressFactory networkAddressFactory)
 	{
-		for (UpnpHeader.Type t : UpnpHeader.Type.values()) {
-			if (allowedUpnpHeaders.contains(t))
+		// Work on the raw headers, the typed headers are only parsed for datagrams that are accepted
+		for (Map.Entry<String, List<String>> entry : idm.getHeaders().entrySet()) {
+			UpnpHeader.Type t = UpnpHeader.Type.getByHttpName(entry.getKey());
+			if (t == null || allowedUpnpHeaders.contains(t))
 				continue;
-			if (idm.getHeaders().containsKey(t))
+			if (!parseHeaders(t, entry.getValue()).isEmpty())
 				return null;
 		}
-		List<UpnpHeader<?>> luh=idm.getHeaders().get(UpnpHeader.Type.CALLBACK);
-
-		if (luh!=null) {
-			for (UpnpHeader<?> uh : luh) {
-				if (CallbackHeader.class.isAssignableFrom(uh.getClass())) {
-					CallbackHeader ch = (CallbackHeader) uh;
-					for (URL u : ch.getValue()) {
-						if (isNotValidRemoteAddress(u, networkAddressFactory))
-							return null;
-					}
+		for (UpnpHeader<?> uh : parseHeaders(UpnpHeader.Type.CALLBACK, idm.getHeaders().get(UpnpHeader.Type.CALLBACK.getHttpName()))) {
+			if (CallbackHeader.class.isAssignableFrom(uh.getClass())) {
+				CallbackHeader ch = (CallbackHeader) uh;
+				for (URL u : ch.getValue()) {
+					if (isNotValidRemoteAddress(u, networkAddressFactory))
+						return null;
 				}
 			}
 		}
-		luh=idm.getHeaders().get(UpnpHeader.Type.HOST);
-		if (luh!=null) {
-			for (UpnpHeader<?> uh : luh) {
-				if (HostHeader.class.isAssignableFrom(uh.getClass())) {
-					HostHeader hh = (HostHeader) uh;
-					if (isNotValidRemoteAddress(hh.getValue().getHost(), networkAddressFactory))
-						return null;
-				}
+		for (UpnpHeader<?> uh : parseHeaders(UpnpHeader.Type.HOST, idm.getHeaders().get(UpnpHeader.Type.HOST.getHttpName()))) {
+			if (HostHeader.class.isAssignableFrom(uh.getClass())) {
+				HostHeader hh = (HostHeader) uh;
+				if (isNotValidRemoteAddress(hh.getValue().getHost(), networkAddressFactory))
+					return null;
 			}
 		}
-		luh=idm.getHeaders().get(UpnpHeader.Type.LOCATION);
-		if (luh!=null) {
-			for (UpnpHeader<?> uh : luh) {
-				if (LocationHeader.class.isAssignableFrom(uh.getClass())) {
-					LocationHeader hh = (LocationHeader) uh;
-					if (isNotValidRemoteAddress(hh.getValue().getHost(), networkAddressFactory))
-						return null;
-				}
+		for (UpnpHeader<?> uh : parseHeaders(UpnpHeader.Type.LOCATION, idm.getHeaders().get(UpnpHeader.Type.LOCATION.getHttpName()))) {
+			if (LocationHeader.class.isAssignableFrom(uh.getClass())) {
+				LocationHeader hh = (LocationHeader) uh;
+				if (isNotValidRemoteAddress(hh.getValue().getHost(), networkAddressFactory))
+					return null;
 			}
 		}
 		return idm;
 	}
+
+	private static List<UpnpHeader<?>> parseHeaders(UpnpHeader.Type type, List<String> values)
+	{
+		if (values == null)
+			return Collections.emptyList();
+		List<UpnpHeader<?>> res = new ArrayList<>(values.size());
+		for (String value : values) {
+			UpnpHeader<?> upnpHeader = UpnpHeader.newInstance(type, value);
+			if (upnpHeader != null && upnpHeader.getValue() != null)
+				res.add(upnpHeader);
+		}
+		return res;
+	}
 }
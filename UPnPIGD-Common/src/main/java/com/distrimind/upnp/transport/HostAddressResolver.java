@@ -0,0 +1,219 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.platform.UpnpIGDThreadFactory;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves the hosts of the URLs received from remote devices without blocking the calling thread.
+ * <p>
+ * Literal IPv4 and IPv6 addresses, by far the most frequent in UPnP messages, are parsed without name
+ * service lookup. Host names are resolved in the background by a few threads, and the results are cached
+ * for {@link #POSITIVE_TTL_MILLIS}, or {@link #NEGATIVE_TTL_MILLIS} if the resolution failed.
+ * </p>
+ * <p>
+ * Until the resolution of a host name has completed, {@link #getAddress(String)} reports the host as
+ * unresolved: a datagram is ignored, and the next announcement of the device will find the resolved address.
+ * Callers which can wait without holding a thread, like the retrieval of the descriptors of a device,
+ * continue with the future returned by {@link #resolve(String)} instead.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public final class HostAddressResolver {
+
+	final private static DMLogger log = Log.getLogger(HostAddressResolver.class);
+
+	public static final long POSITIVE_TTL_MILLIS = 60000;
+	public static final long NEGATIVE_TTL_MILLIS = 10000;
+
+	private static final int MAX_CACHED_HOSTS = 1024;
+	private static final int MAX_PENDING_RESOLUTIONS = 64;
+
+	private static final ConcurrentMap<String, Resolution> resolutions = new ConcurrentHashMap<>();
+	private static final ThreadPoolExecutor resolver = createResolver();
+
+	private HostAddressResolver() {
+	}
+
+	/**
+	 * @param host A host name, or a literal IPv4 or IPv6 address, possibly enclosed in brackets.
+	 * @return The address of the host, <code>null</code> if the host could not be resolved, or if its
+	 *         resolution has been started and has not completed yet.
+	 */
+	public static InetAddress getAddress(String host) {
+		if (host == null || host.isEmpty())
+			return null;
+		InetAddress address = getLiteralAddress(host);
+		if (address != null || isLiteralIPv6(host))
+			return address;
+		return resolveHostName(host).getNow(null);
+	}
+
+	/**
+	 * Starts the resolution of the host if it is not cached, never blocks the calling thread.
+	 *
+	 * @param host A host name, or a literal IPv4 or IPv6 address, possibly enclosed in brackets.
+	 * @return The future address of the host, completed with <code>null</code> if the host could not
+	 *         be resolved. It is already completed if the host is a literal address or if its resolution
+	 *         is cached. It is completed by a resolver thread otherwise.
+	 */
+	public static CompletableFuture<InetAddress> resolve(String host) {
+		if (host == null || host.isEmpty())
+			return CompletableFuture.completedFuture(null);
+		InetAddress address = getLiteralAddress(host);
+		if (address != null || isLiteralIPv6(host))
+			return CompletableFuture.completedFuture(address);
+		return resolveHostName(host);
+	}
+
+	private static CompletableFuture<InetAddress> resolveHostName(String host) {
+		long now = System.nanoTime();
+		Resolution resolution = resolutions.get(host);
+		if (resolution != null && (resolution.isPending() || now - resolution.expirationNanos < 0))
+			return resolution.address;
+		if (resolutions.size() >= MAX_CACHED_HOSTS)
+			resolutions.values().removeIf(r -> !r.isPending() && now - r.expirationNanos >= 0);
+		Resolution pending = new Resolution(new CompletableFuture<>(), 0);
+		if (resolution == null ? resolutions.putIfAbsent(host, pending) == null : resolutions.replace(host, resolution, pending)) {
+			try {
+				resolver.execute(() -> resolve(host, pending));
+			} catch (RejectedExecutionException ex) {
+				resolutions.remove(host, pending);
+				if (log.isDebugEnabled()) {
+					log.debug("Too many pending host name resolutions, ignoring: " + host);
+				}
+				pending.address.complete(null);
+			}
+			return pending.address;
+		}
+		// Started concurrently by another thread
+		resolution = resolutions.get(host);
+		return resolution == null ? CompletableFuture.completedFuture(null) : resolution.address;
+	}
+
+	/**
+	 * Parses a literal address, never looks up the name service.
+	 *
+	 * @param host A literal IPv4 or IPv6 address, possibly enclosed in brackets, or a host name.
+	 * @return The address, <code>null</code> if the host is not a valid literal address.
+	 */
+	public static InetAddress getLiteralAddress(String host) {
+		if (host == null || host.isEmpty())
+			return null;
+		if (isLiteralIPv6(host)) {
+			try {
+				// Brackets make sure no name service lookup is done if the address is invalid
+				return InetAddress.getByName(host.charAt(0) == '[' ? host : "[" + host + "]");
+			} catch (UnknownHostException ex) {
+				return null;
+			}
+		}
+		byte[] bytes = parseIPv4(host);
+		if (bytes == null)
+			return null;
+		try {
+			return InetAddress.getByAddress(bytes);
+		} catch (UnknownHostException ex) {
+			return null;
+		}
+	}
+
+	private static boolean isLiteralIPv6(String host) {
+		return host.charAt(0) == '[' || host.indexOf(':') >= 0;
+	}
+
+	@SuppressWarnings("PMD.ReturnEmptyCollectionRatherThanNull")
+	private static byte[] parseIPv4(String host) {
+		byte[] bytes = new byte[4];
+		int part = 0;
+		int value = -1;
+		for (int i = 0; i < host.length(); i++) {
+			char c = host.charAt(i);
+			if (c >= '0' && c <= '9') {
+				value = value < 0 ? c - '0' : value * 10 + (c - '0');
+				if (value > 255)
+					return null;
+			} else if (c == '.' && value >= 0 && part < 3) {
+				bytes[part++] = (byte) value;
+				value = -1;
+			} else {
+				return null;
+			}
+		}
+		if (part != 3 || value < 0)
+			return null;
+		bytes[3] = (byte) value;
+		return bytes;
+	}
+
+	private static void resolve(String host, Resolution pending) {
+		InetAddress address = null;
+		try {
+			address = InetAddress.getByName(host);
+		} catch (UnknownHostException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Could not resolve host: " + host);
+			}
+		} catch (RuntimeException ex) {
+			if (log.isWarnEnabled()) log.warn("Resolution of host failed: " + host, ex);
+		}
+		long ttlMillis = address == null ? NEGATIVE_TTL_MILLIS : POSITIVE_TTL_MILLIS;
+		// Cached before the waiting callers continue, they find the address with getAddress()
+		resolutions.replace(host, pending, new Resolution(pending.address, System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(ttlMillis)));
+		pending.address.complete(address);
+	}
+
+	private static ThreadPoolExecutor createResolver() {
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(
+				2, 2, 10, TimeUnit.SECONDS,
+				new ArrayBlockingQueue<>(MAX_PENDING_RESOLUTIONS),
+				// Platform threads, the lookup is a blocking native call
+				new UpnpIGDThreadFactory("resolver", false),
+				new ThreadPoolExecutor.AbortPolicy()
+		);
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	private static final class Resolution {
+
+		final CompletableFuture<InetAddress> address;
+		final long expirationNanos;
+
+		Resolution(CompletableFuture<InetAddress> address, long expirationNanos) {
+			this.address = address;
+			this.expirationNanos = expirationNanos;
+		}
+
+		boolean isPending() {
+			return !address.isDone();
+		}
+	}
+}
@@ -27,6 +27,7 @@ import com.distrimind.upnp.transport.spi.UpnpStream;
 
 import java.net.InetAddress;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Interface of the network transport layer.
@@ -149,6 +150,28 @@ public interface Router {
      */
 	StreamResponseMessage send(StreamRequestMessage msg) throws RouterException;
 
+    /**
+     * <p>
+     * Call this method to send a TCP (HTTP) stream message without blocking the calling thread.
+     * </p>
+     * <p>
+     * The returned future completes with the response received from the server, with <code>null</code>
+     * if no response has been received, or exceptionally with a {@link RouterException}. This default
+     * implementation delegates to the blocking {@link #send(StreamRequestMessage)}.
+     * </p>
+     *
+     * @param msg The TCP (HTTP) stream message to send.
+     * @return The future response.
+     * @since 1.5.0
+     */
+	default CompletableFuture<StreamResponseMessage> sendAsync(StreamRequestMessage msg) {
+		try {
+			return CompletableFuture.completedFuture(send(msg));
+		} catch (RouterException ex) {
+			return CompletableFuture.failedFuture(ex);
+		}
+	}
+
     /**
      * <p>
      * Call this method to broadcast a UDP message to all hosts on the network.
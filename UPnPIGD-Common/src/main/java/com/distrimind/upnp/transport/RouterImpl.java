@@ -48,6 +48,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -375,6 +376,40 @@ public class RouterImpl implements Router {
         }
     }
 
+    /**
+     * Hands the message to the {@link StreamClient}'s asynchronous API, the read lock is
+     * only held until the request has been started.
+     */
+    @Override
+	public CompletableFuture<StreamResponseMessage> sendAsync(StreamRequestMessage msg) {
+        try {
+            lock(readLock);
+        } catch (RouterException ex) {
+            return CompletableFuture.failedFuture(ex);
+        }
+        try {
+            if (enabled) {
+                if (streamClient == null) {
+					if (log.isDebugEnabled()) {
+						log.debug("No StreamClient available, not sending: " + msg);
+					}
+					return CompletableFuture.completedFuture(null);
+                }
+				if (log.isDebugEnabled()) {
+					log.debug("Sending asynchronously via TCP unicast stream: " + msg);
+				}
+				return streamClient.sendRequestAsync(msg);
+            } else {
+				if (log.isDebugEnabled()) {
+					log.debug("Router disabled, not sending stream request: " + msg);
+				}
+				return CompletableFuture.completedFuture(null);
+            }
+        } finally {
+            unlock(readLock);
+        }
+    }
+
     /**
      * Sends the given bytes as a broadcast on all bound {@link DatagramIO}s,
      * using source port 9.
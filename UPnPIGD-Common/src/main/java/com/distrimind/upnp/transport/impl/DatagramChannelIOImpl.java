@@ -0,0 +1,254 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.model.UnsupportedDataException;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.model.message.OutgoingDatagramMessage;
+import com.distrimind.upnp.transport.Common;
+import com.distrimind.upnp.transport.Router;
+import com.distrimind.upnp.transport.spi.DatagramIO;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
+import com.distrimind.upnp.transport.spi.DatagramProcessor;
+import com.distrimind.upnp.transport.spi.InitializationException;
+import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Unicast datagram I/O polled by a shared {@link DatagramChannelSelector}.
+ * <p>
+ * Contrary to {@link DatagramIOImpl}, the <code>run()</code> method doesn't block
+ * the calling thread in a receiving loop, unless it is the one hosting the selector loop.
+ * Multicast datagrams are sent on the network interface of the bind address. Datagrams which
+ * don't fit in the send buffer, e.g. during a burst of notifications, are queued and sent by the
+ * selector when the channel is writable again.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class DatagramChannelIOImpl implements DatagramIO<DatagramIOConfigurationImpl>, DatagramChannelSelector.Handler {
+
+	final private static DMLogger log = Log.getLogger(DatagramChannelIOImpl.class);
+
+	/**
+	 * Maximum number of datagrams waiting for room in the send buffer, further datagrams are dropped.
+	 */
+	private static final int MAX_PENDING_DATAGRAMS = 256;
+
+	final protected DatagramIOConfigurationImpl configuration;
+	final protected DatagramChannelSelector selector;
+
+	protected Router router;
+	protected DatagramProcessor datagramProcessor;
+	protected DatagramFilter datagramFilter;
+	protected NetworkAddressFactory networkAddressFactory;
+	protected InetSocketAddress localAddress;
+	protected DatagramChannel channel; // For sending unicast & multicast, and receiving unicast
+	// Datagrams which didn't fit in the send buffer, sent by the selector when the channel is writable
+	protected final Queue<DatagramPacket> pendingDatagrams = new ConcurrentLinkedQueue<>();
+	private final AtomicInteger pendingDatagramCount = new AtomicInteger();
+
+	public DatagramChannelIOImpl(DatagramIOConfigurationImpl configuration, DatagramChannelSelector selector) {
+		this.configuration = configuration;
+		this.selector = selector;
+	}
+
+	@Override
+	public DatagramIOConfigurationImpl getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	synchronized public void init(NetworkAddressFactory networkAddressFactory, InetAddress bindAddress, Router router, DatagramProcessor datagramProcessor) throws InitializationException {
+
+		this.router = router;
+		this.networkAddressFactory = networkAddressFactory;
+		this.datagramProcessor = datagramProcessor;
+		this.datagramFilter = router.getConfiguration().getDatagramFilter();
+
+		try {
+			// Ephemeral port, see DatagramIOImpl
+			if (log.isInfoEnabled()) log.info("Creating bound channel (for datagram input/output) on: " + bindAddress);
+			channel = DatagramChannel.open(bindAddress instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, configuration.getTimeToLive());
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 262144); // Keep a backlog of incoming datagrams if we are not fast enough
+			NetworkInterface networkInterface = NetworkInterface.getByInetAddress(bindAddress);
+			if (networkInterface != null) {
+				channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+			}
+			channel.bind(new InetSocketAddress(bindAddress, 0));
+			channel.configureBlocking(false);
+			localAddress = (InetSocketAddress) channel.getLocalAddress();
+		} catch (Exception ex) {
+			throw new InitializationException("Could not initialize " + getClass().getSimpleName() + ": " + ex);
+		}
+	}
+
+	@Override
+	synchronized public void stop() {
+		if (channel != null && channel.isOpen()) {
+			selector.cancel(this);
+		}
+	}
+
+	@Override
+	public void run() {
+		if (log.isDebugEnabled()) {
+			log.debug("Registering unicast channel " + localAddress + " with the datagram selector");
+		}
+		try {
+			selector.serve(this);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public int getMaxDatagramBytes() {
+		return getConfiguration().getMaxDatagramBytes();
+	}
+
+	@Override
+	public void received(DatagramPacket datagram) {
+		if (datagramFilter != null && !datagramFilter.isAccepted(datagram.getData(), datagram.getOffset(), datagram.getLength()))
+			return;
+		try {
+			InetAddress receivedOnLocalAddress =
+					networkAddressFactory.getLocalAddress(
+							null,
+							datagram.getAddress() instanceof Inet6Address,
+							datagram.getAddress()
+					);
+			if (receivedOnLocalAddress == null)
+				return;
+			if (log.isDebugEnabled()) {
+				log.debug(
+						"UDP datagram received from: "
+								+ datagram.getAddress().getHostAddress()
+								+ ":" + datagram.getPort()
+								+ " on: " + localAddress
+				);
+			}
+
+			IncomingDatagramMessage<?> idm = Common.getValidIncomingDatagramMessage(datagramProcessor.read(localAddress.getAddress(), datagram), networkAddressFactory);
+			if (idm == null)
+				return;
+			router.received(idm);
+		} catch (UnsupportedDataException ex) {
+			if (log.isInfoEnabled()) log.info("Could not read datagram: ", ex);
+		}
+	}
+
+	@Override
+	public void send(OutgoingDatagramMessage<?> message) {
+		if (log.isDebugEnabled()) {
+			log.debug("Sending message from address: " + localAddress);
+		}
+		DatagramPacket packet = datagramProcessor.write(message);
+
+		if (log.isDebugEnabled()) {
+			log.debug("Sending UDP datagram packet to: " + message.getDestinationAddress() + ":" + message.getDestinationPort());
+		}
+
+		send(packet);
+	}
+
+	@Override
+	public void send(DatagramPacket datagram) {
+		try {
+			// Don't overtake the datagrams waiting for room in the send buffer
+			if (pendingDatagramCount.get() == 0 && send(ByteBuffer.wrap(datagram.getData(), datagram.getOffset(), datagram.getLength()), datagram.getSocketAddress()) > 0) {
+				return;
+			}
+			if (pendingDatagramCount.incrementAndGet() > MAX_PENDING_DATAGRAMS) {
+				pendingDatagramCount.decrementAndGet();
+				if (log.isWarnEnabled()) {
+					log.warn("Send buffer full and too many pending datagrams, dropping datagram to: " + datagram.getAddress());
+				}
+				return;
+			}
+			if (log.isDebugEnabled()) {
+				log.debug("Send buffer full, queuing datagram to: " + datagram.getAddress());
+			}
+			pendingDatagrams.add(new DatagramPacket(
+					Arrays.copyOfRange(datagram.getData(), datagram.getOffset(), datagram.getOffset() + datagram.getLength()),
+					datagram.getLength(),
+					datagram.getSocketAddress()
+			));
+			selector.requestWrite(this);
+		} catch (ClosedChannelException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Channel closed, aborting datagram send to: " + datagram.getAddress());
+			}
+		} catch (RuntimeException ex) {
+			throw ex;
+		} catch (Exception ex) {
+			if (log.isErrorEnabled()) log.error("Exception sending datagram to: " + datagram.getAddress() + ": ", ex);
+		}
+	}
+
+	@Override
+	public boolean writable() {
+		DatagramPacket datagram;
+		while ((datagram = pendingDatagrams.peek()) != null) {
+			try {
+				if (send(ByteBuffer.wrap(datagram.getData(), datagram.getOffset(), datagram.getLength()), datagram.getSocketAddress()) == 0) {
+					return false;
+				}
+			} catch (ClosedChannelException ex) {
+				pendingDatagrams.clear();
+				pendingDatagramCount.set(0);
+				return true;
+			} catch (IOException ex) {
+				if (log.isWarnEnabled()) log.warn("Exception sending pending datagram to: " + datagram.getAddress() + ": ", ex);
+			}
+			pendingDatagrams.poll();
+			pendingDatagramCount.decrementAndGet();
+		}
+		return true;
+	}
+
+	/**
+	 * @return The number of bytes sent, <code>0</code> if there was no room in the send buffer.
+	 */
+	protected int send(ByteBuffer data, SocketAddress target) throws IOException {
+		return channel.send(data, target);
+	}
+}
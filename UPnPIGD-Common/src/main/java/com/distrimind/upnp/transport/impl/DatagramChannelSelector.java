@@ -0,0 +1,304 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop multiplexing the datagram channels of all {@link MulticastChannelReceiverImpl}
+ * and {@link DatagramChannelIOImpl} instances sharing it.
+ * <p>
+ * The loop runs on the thread of the first transport whose <code>run()</code> method finds it
+ * idle, the other transports only register their channel and return immediately. Whatever the
+ * number of network interfaces and bind addresses, only one thread is blocked waiting for
+ * datagrams. The loop terminates when the last registered channel has been closed, and is
+ * restarted by the next registration.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class DatagramChannelSelector {
+
+	final private static DMLogger log = Log.getLogger(DatagramChannelSelector.class);
+
+	/**
+	 * Maximum number of datagrams read from one channel before the other ready channels are served.
+	 */
+	private static final int MAX_DATAGRAMS_PER_CHANNEL_AND_ROUND = 64;
+
+	/**
+	 * A transport registered with this selector.
+	 */
+	public interface Handler {
+
+		/**
+		 * @return The non-blocking channel to poll.
+		 */
+		DatagramChannel getChannel();
+
+		/**
+		 * @return The maximum size of the datagrams received on this channel.
+		 */
+		int getMaxDatagramBytes();
+
+		/**
+		 * Called on the selector thread for each received datagram. Implementations must not block.
+		 * The datagram and its data are reused for the next datagram, they must not be referenced
+		 * after this method returns.
+		 *
+		 * @param datagram The received datagram.
+		 */
+		void received(DatagramPacket datagram);
+
+		/**
+		 * Called on the selector thread when the channel can be written again, after
+		 * {@link #requestWrite(Handler)}. Implementations must not block.
+		 *
+		 * @return <code>true</code> if all pending datagrams have been sent, <code>false</code> to be
+		 *         called again when the channel is writable.
+		 */
+		default boolean writable() {
+			return true;
+		}
+	}
+
+	private final Object lock = new Object();
+	private final Queue<Handler> pendingRegistrations = new ConcurrentLinkedQueue<>();
+	private final Queue<Handler> pendingWriteRequests = new ConcurrentLinkedQueue<>();
+	private Selector selector;
+	private boolean running;
+
+	/**
+	 * Registers the handler's channel and runs the event loop on the calling thread if
+	 * it is not already running. Returns immediately if another thread runs the loop.
+	 *
+	 * @param handler The transport to serve.
+	 * @throws IOException If the selector could not be opened.
+	 */
+	@SuppressWarnings("PMD.CloseResource")
+	public void serve(Handler handler) throws IOException {
+		Selector s;
+		synchronized (lock) {
+			if (selector == null || !selector.isOpen()) {
+				selector = Selector.open();
+			}
+			pendingRegistrations.add(handler);
+			selector.wakeup();
+			if (running) {
+				return;
+			}
+			running = true;
+			s = selector;
+		}
+		loop(s);
+	}
+
+	/**
+	 * Closes the handler's channel, its registration is dropped by the event loop.
+	 *
+	 * @param handler The transport to stop serving.
+	 */
+	public void cancel(Handler handler) {
+		try {
+			handler.getChannel().close();
+		} catch (IOException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Could not close datagram channel: ", ex);
+			}
+		}
+		synchronized (lock) {
+			if (selector != null) {
+				selector.wakeup();
+			}
+		}
+	}
+
+	/**
+	 * Calls {@link Handler#writable()} on the selector thread as soon as the handler's channel
+	 * can be written, e.g. after a datagram could not be sent because the send buffer was full.
+	 *
+	 * @param handler The registered transport with pending datagrams.
+	 */
+	public void requestWrite(Handler handler) {
+		pendingWriteRequests.add(handler);
+		synchronized (lock) {
+			if (selector != null) {
+				selector.wakeup();
+			}
+		}
+	}
+
+	public boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	protected void loop(Selector s) {
+		log.debug("Entering selector loop, listening for UDP datagrams on all registered channels");
+		ByteBuffer buffer = null;
+		DatagramPacket datagram = null;
+		try {
+			while (true) {
+				registerPendingHandlers(s);
+				registerPendingWrites(s);
+				synchronized (lock) {
+					if (!hasValidKey(s) && pendingRegistrations.isEmpty()) {
+						log.debug("No more datagram channel registered, leaving selector loop");
+						running = false;
+						selector = null;
+						closeSelector(s);
+						return;
+					}
+				}
+				s.select();
+				Iterator<SelectionKey> it = s.selectedKeys().iterator();
+				while (it.hasNext()) {
+					SelectionKey key = it.next();
+					it.remove();
+					if (!key.isValid()) {
+						continue;
+					}
+					Handler handler = (Handler) key.attachment();
+					if (key.isWritable()) {
+						write(key, handler);
+					}
+					if (!key.isValid() || !key.isReadable()) {
+						continue;
+					}
+					if (buffer == null || buffer.capacity() < handler.getMaxDatagramBytes()) {
+						buffer = ByteBuffer.allocate(handler.getMaxDatagramBytes());
+						datagram = new DatagramPacket(buffer.array(), buffer.capacity());
+					}
+					read(handler, buffer, datagram);
+				}
+			}
+		} catch (IOException | ClosedSelectorException ex) {
+			if (log.isWarnEnabled()) log.warn("Datagram selector loop terminated: ", ex);
+		} finally {
+			synchronized (lock) {
+				if (running && s.equals(selector)) {
+					running = false;
+					selector = null;
+					closeSelector(s);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("PMD.CloseResource")
+	protected void read(Handler handler, ByteBuffer buffer, DatagramPacket datagram) {
+		DatagramChannel channel = handler.getChannel();
+		for (int i = 0; i < MAX_DATAGRAMS_PER_CHANNEL_AND_ROUND; i++) {
+			SocketAddress source;
+			buffer.clear();
+			buffer.limit(handler.getMaxDatagramBytes());
+			try {
+				source = channel.receive(buffer);
+			} catch (ClosedChannelException ex) {
+				log.debug("Datagram channel closed");
+				return;
+			} catch (IOException ex) {
+				if (log.isDebugEnabled()) {
+					log.debug("Could not receive datagram: ", ex);
+				}
+				return;
+			}
+			if (source == null) {
+				return;
+			}
+			datagram.setData(buffer.array(), 0, buffer.position());
+			datagram.setSocketAddress(source);
+			try {
+				handler.received(datagram);
+			} catch (RuntimeException ex) {
+				if (log.isWarnEnabled()) log.warn("Handling received datagram failed: ", ex);
+			}
+		}
+	}
+
+	protected void write(SelectionKey key, Handler handler) {
+		boolean flushed;
+		try {
+			flushed = handler.writable();
+		} catch (RuntimeException ex) {
+			if (log.isWarnEnabled()) log.warn("Sending pending datagrams failed: ", ex);
+			flushed = true;
+		}
+		if (flushed && key.isValid()) {
+			key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * The key of a closed channel is removed from the key set by the next selection operation only. A channel
+	 * closed while a selection operation returns may consume its wakeup, so its key must not keep the loop alive.
+	 */
+	private static boolean hasValidKey(Selector s) {
+		for (SelectionKey key : s.keys()) {
+			if (key.isValid()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void registerPendingHandlers(Selector s) {
+		Handler handler;
+		while ((handler = pendingRegistrations.poll()) != null) {
+			try {
+				handler.getChannel().register(s, SelectionKey.OP_READ, handler);
+			} catch (ClosedChannelException ex) {
+				log.debug("Datagram channel closed before its registration, ignoring it");
+			}
+		}
+	}
+
+	private void registerPendingWrites(Selector s) {
+		Handler handler;
+		while ((handler = pendingWriteRequests.poll()) != null) {
+			SelectionKey key = handler.getChannel().keyFor(s);
+			if (key != null && key.isValid()) {
+				key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+			}
+		}
+	}
+
+	private static void closeSelector(Selector s) {
+		try {
+			s.close();
+		} catch (IOException ex) {
+			if (log.isDebugEnabled()) {
+				log.debug("Could not close selector: ", ex);
+			}
+		}
+	}
+}
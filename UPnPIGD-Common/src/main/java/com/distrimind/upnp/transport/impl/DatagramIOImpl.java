@@ -20,6 +20,7 @@ import com.distrimind.upnp.transport.Common;
 import com.distrimind.upnp.transport.Router;
 import com.distrimind.upnp.model.message.OutgoingDatagramMessage;
 import com.distrimind.upnp.transport.spi.DatagramIO;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
 import com.distrimind.upnp.transport.spi.DatagramProcessor;
 import com.distrimind.upnp.transport.spi.InitializationException;
 import com.distrimind.upnp.model.UnsupportedDataException;
@@ -58,6 +59,7 @@ public class DatagramIOImpl implements DatagramIO<DatagramIOConfigurationImpl> {
 
     protected Router router;
     protected DatagramProcessor datagramProcessor;
+    protected DatagramFilter datagramFilter;
     protected NetworkAddressFactory networkAddressFactory;
     protected InetSocketAddress localAddress;
     protected MulticastSocket socket; // For sending unicast & multicast, and reveiving unicast
@@ -77,6 +79,7 @@ public class DatagramIOImpl implements DatagramIO<DatagramIOConfigurationImpl> {
         this.router = router;
         this.networkAddressFactory = networkAddressFactory;
         this.datagramProcessor = datagramProcessor;
+        this.datagramFilter = router.getConfiguration().getDatagramFilter();
 
         try {
 
@@ -106,13 +109,16 @@ public class DatagramIOImpl implements DatagramIO<DatagramIOConfigurationImpl> {
             log.debug("Entering blocking receiving loop, listening for UDP datagrams on: " + socket.getLocalAddress());
 		}
 
+		// The datagram is entirely parsed before the next receive, so the buffer can be reused
+		byte[] buf = new byte[getConfiguration().getMaxDatagramBytes()];
+		DatagramPacket datagram = new DatagramPacket(buf, buf.length);
 		while (true) {
 
             try {
-                byte[] buf = new byte[getConfiguration().getMaxDatagramBytes()];
-                DatagramPacket datagram = new DatagramPacket(buf, buf.length);
-
+                datagram.setLength(buf.length);
                 socket.receive(datagram);
+                if (datagramFilter != null && !datagramFilter.isAccepted(datagram.getData(), datagram.getOffset(), datagram.getLength()))
+                    continue;
                 InetAddress receivedOnLocalAddress =
                         networkAddressFactory.getLocalAddress(
                                 null,
@@ -156,7 +162,7 @@ public class DatagramIOImpl implements DatagramIO<DatagramIOConfigurationImpl> {
     }
 
     @Override
-	synchronized public void send(OutgoingDatagramMessage<?> message) {
+	public void send(OutgoingDatagramMessage<?> message) {
         if (log.isDebugEnabled()) {
             log.debug("Sending message from address: " + localAddress);
         }
@@ -170,11 +176,13 @@ public class DatagramIOImpl implements DatagramIO<DatagramIOConfigurationImpl> {
     }
 
     @Override
-	synchronized public void send(DatagramPacket datagram) {
+	public void send(DatagramPacket datagram) {
         if (log.isDebugEnabled()) {
             log.debug("Sending message from address: " + localAddress);
         }
-            
+
+        // Not synchronized, the socket is thread-safe and sending on a virtual thread
+        // shouldn't pin its carrier
         try {
             socket.send(datagram);
         } catch (SocketException ex) {
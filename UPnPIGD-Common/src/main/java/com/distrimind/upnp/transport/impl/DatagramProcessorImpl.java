@@ -25,9 +25,9 @@ import com.distrimind.upnp.transport.spi.DatagramProcessor;
 import com.distrimind.upnp.model.UnsupportedDataException;
 import com.distrimind.upnp.http.Headers;
 
-import java.io.ByteArrayInputStream;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
+import java.util.Arrays;
 import java.util.Locale;
 
 /**
@@ -45,25 +45,39 @@ public class DatagramProcessorImpl implements DatagramProcessor {
         {
             throw new UnsupportedDataException("Datagram length is higher than "+Constants.MAX_HEADER_LENGTH_IN_BYTES+" bytes");
         }
+        byte[] data = datagram.getData();
+        int offset = datagram.getOffset();
+        int end = offset + datagram.getLength();
         try {
 
             if (log.isTraceEnabled()) {
 				log.trace("===================================== DATAGRAM BEGIN ============================================");
-                log.trace(new String(datagram.getData(), StandardCharsets.UTF_8));
+                log.trace(new String(data, offset, datagram.getLength(), StandardCharsets.UTF_8));
                 log.trace("-===================================== DATAGRAM END =============================================");
             }
 
-            ByteArrayInputStream is = new ByteArrayInputStream(datagram.getData());
-
-            String[] startLine = Headers.readLine(is).split(" ");
-            if (startLine[0].startsWith("HTTP/1.")) {
-                return readResponseMessage(receivedOnAddress, datagram, is, Integer.parseInt(startLine[1]), startLine[2], startLine[0]);
+            // Parse the start line and the headers in place, the receive buffer is reused by the transport
+            int startLineEnd = Headers.findLineEnd(data, offset, end);
+            int headersStart = startLineEnd < end ? startLineEnd + 1 : end;
+            if (startLineEnd > offset && data[startLineEnd - 1] == '\r')
+                startLineEnd--;
+            int firstSpace = indexOf(data, ' ', offset, startLineEnd);
+            int secondSpace = indexOf(data, ' ', firstSpace + 1, startLineEnd);
+            if (secondSpace >= startLineEnd)
+                throw new UnsupportedDataException("Invalid start line");
+            String first = new String(data, offset, firstSpace - offset, StandardCharsets.ISO_8859_1);
+            String second = new String(data, firstSpace + 1, secondSpace - firstSpace - 1, StandardCharsets.ISO_8859_1);
+            String third = new String(data, secondSpace + 1, indexOf(data, ' ', secondSpace + 1, startLineEnd) - secondSpace - 1, StandardCharsets.ISO_8859_1);
+
+            IUpnpHeaders headers = new UpnpHeaders(data, headersStart, end - headersStart);
+            if (first.startsWith("HTTP/1.")) {
+                return readResponseMessage(receivedOnAddress, datagram, headers, Integer.parseInt(second), third, first);
             } else {
-                return readRequestMessage(receivedOnAddress, datagram, is, startLine[0], startLine[2]);
+                return readRequestMessage(receivedOnAddress, datagram, headers, first, third);
             }
 
         } catch (Exception ex) {
-            throw new UnsupportedDataException("Could not parse headers: " + ex, ex, datagram.getData());
+            throw new UnsupportedDataException("Could not parse headers: " + ex, ex, Arrays.copyOfRange(data, offset, end));
         }
     }
 
@@ -117,13 +131,10 @@ public class DatagramProcessorImpl implements DatagramProcessor {
 
     protected IncomingDatagramMessage<UpnpRequest> readRequestMessage(InetAddress receivedOnAddress,
                                                          DatagramPacket datagram,
-                                                         ByteArrayInputStream is,
+                                                         IUpnpHeaders headers,
                                                          String requestMethod,
                                                          String httpProtocol) throws Exception {
 
-        // Headers
-        IUpnpHeaders headers = new UpnpHeaders(is);
-
         // Assemble message
         IncomingDatagramMessage<UpnpRequest> requestMessage;
         UpnpRequest upnpRequest = new UpnpRequest(UpnpRequest.Method.getByHttpName(requestMethod));
@@ -137,14 +148,11 @@ public class DatagramProcessorImpl implements DatagramProcessor {
 
     protected IncomingDatagramMessage<?> readResponseMessage(InetAddress receivedOnAddress,
                                                           DatagramPacket datagram,
-                                                          ByteArrayInputStream is,
+                                                          IUpnpHeaders headers,
                                                           int statusCode,
                                                           String statusMessage,
                                                           String httpProtocol) throws Exception {
 
-        // Headers
-        IUpnpHeaders headers = new UpnpHeaders(is);
-
         // Assemble the message
         IncomingDatagramMessage<?> responseMessage;
         UpnpResponse upnpResponse = new UpnpResponse(statusCode, statusMessage);
@@ -156,5 +164,12 @@ public class DatagramProcessorImpl implements DatagramProcessor {
         return responseMessage;
     }
 
+    private static int indexOf(byte[] data, char c, int offset, int end) {
+        for (int i = offset; i < end; i++) {
+            if (data[i] == c)
+                return i;
+        }
+        return end;
+    }
 
 }
@@ -33,6 +33,8 @@ import com.distrimind.flexilogxml.xml.IXmlReader;
 import com.distrimind.flexilogxml.xml.IXmlWriter;
 
 import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Default implementation based on the <em>W3C DOM</em> XML processing API.
@@ -44,6 +46,12 @@ public class GENAEventProcessorImpl implements GENAEventProcessor, XMLUtil.Error
 
     final private static DMLogger log = Log.getLogger(GENAEventProcessorImpl.class);
 
+    /**
+     * The last written body. A state change is fanned out to every subscriber of the
+     * service with the same state variable value instances, only the SID and SEQ headers
+     * differ, so the body is serialized once and shared by the following messages.
+     */
+    final private AtomicReference<SerializedBody> lastWrittenBody = new AtomicReference<>();
 
     @Override
 	public void writeBody(OutgoingEventRequestMessage requestMessage) throws UnsupportedDataException {
@@ -52,20 +60,26 @@ public class GENAEventProcessorImpl implements GENAEventProcessor, XMLUtil.Error
 		}
 
 		try {
+            Collection<? extends StateVariableValue<?>> values = requestMessage.getStateVariableValues();
+            SerializedBody serializedBody = lastWrittenBody.get();
+            byte[] d;
+            if (serializedBody != null && serializedBody.isBodyOf(values)) {
+                log.debug("Reusing the body serialized for the same state variable values");
+                d = serializedBody.body;
+            } else {
+                d = XMLUtil.generateXMLToBytes(xmlStreamWriter -> {
+                    xmlStreamWriter.writeStartElement("e", "propertyset", Constants.NS_UPNP_EVENT_10);
+                    writeProperties(xmlStreamWriter, requestMessage);
+                    xmlStreamWriter.writeEndElement();
+                });
+                lastWrittenBody.set(new SerializedBody(values, d));
+            }
 
-
-
-            String d= XMLUtil.generateXMLToString(xmlStreamWriter -> {
-                xmlStreamWriter.writeStartElement("e", "propertyset", Constants.NS_UPNP_EVENT_10);
-                writeProperties(xmlStreamWriter, requestMessage);
-                xmlStreamWriter.writeEndElement();
-            });
-
-            requestMessage.setBody(UpnpMessage.BodyType.STRING, d);
+            requestMessage.setBody(UpnpMessage.BodyType.BYTES, d);
 
             if (log.isTraceEnabled()) {
 				log.trace("===================================== GENA BODY BEGIN ============================================");
-                log.trace(requestMessage.getBody().toString());
+                log.trace(requestMessage.getBodyString());
                 log.trace("====================================== GENA BODY END =============================================");
             }
 
@@ -82,7 +96,7 @@ public class GENAEventProcessorImpl implements GENAEventProcessor, XMLUtil.Error
 		}
 		if (log.isTraceEnabled()) {
             log.trace("===================================== GENA BODY BEGIN ============================================");
-            log.trace(requestMessage.getBody() != null ? requestMessage.getBody().toString() : "null");
+            log.trace(requestMessage.hasBody() ? requestMessage.getBodyString() : "null");
             log.trace("-===================================== GENA BODY END ============================================");
         }
 
@@ -186,5 +200,37 @@ public class GENAEventProcessorImpl implements GENAEventProcessor, XMLUtil.Error
 	public void fatalError(XMLStreamException e) throws XMLStreamException {
         throw e;
     }
-}
 
+    /**
+     * An immutable serialized body, with the state variable values it was written from.
+     */
+    private static final class SerializedBody {
+
+        final private StateVariableValue<?>[] values;
+        final private byte[] body;
+
+        @SuppressWarnings("PMD.ArrayIsStoredDirectly")
+        SerializedBody(Collection<? extends StateVariableValue<?>> values, byte[] body) {
+            this.values = values.toArray(new StateVariableValue<?>[0]);
+            this.body = body;
+        }
+
+        /**
+         * Values are compared by identity, they are immutable and the subscriptions of a
+         * service receive the same instances.
+         */
+        @SuppressWarnings("PMD.CompareObjectsWithEquals")
+        boolean isBodyOf(Collection<? extends StateVariableValue<?>> other) {
+            if (other.size() != values.length) {
+                return false;
+            }
+            Iterator<? extends StateVariableValue<?>> it = other.iterator();
+            for (StateVariableValue<?> value : values) {
+                if (value != it.next()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.http.Headers;
+import com.distrimind.upnp.model.types.DeviceType;
+import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Accepts the NOTIFY messages and search responses announcing one of the configured types.
+ * <p>
+ * Only the <code>NT</code>, <code>ST</code> and <code>USN</code> header lines are scanned. A datagram
+ * is accepted if the value of one of them starts with one of the prefixes, the <code>uuid:...::</code>
+ * part of the <code>USN</code> being ignored. Other requests, for example M-SEARCH, and datagrams
+ * without any of these headers are always accepted, they are validated by the usual parsing.
+ * </p>
+ * <p>
+ * The comparison is ASCII case-insensitive. For example, a control point only interested in
+ * port mappings could use:
+ * </p>
+ * <pre>{@code
+ * new HeaderPrefixDatagramFilter(
+ *     "urn:schemas-upnp-org:device:InternetGatewayDevice:",
+ *     "urn:schemas-upnp-org:device:WANDevice:",
+ *     "urn:schemas-upnp-org:device:WANConnectionDevice:",
+ *     "urn:schemas-upnp-org:service:WANIPConnection:",
+ *     "urn:schemas-upnp-org:service:WANPPPConnection:"
+ * )
+ * }</pre>
+ *
+ * @since 1.5.0
+ */
+public class HeaderPrefixDatagramFilter implements DatagramFilter {
+
+	final private static DMLogger log = Log.getLogger(HeaderPrefixDatagramFilter.class);
+
+	private static final byte[] HTTP = "HTTP/".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NOTIFY = "NOTIFY ".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] NT = "NT".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ST = "ST".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] USN = "USN".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] USN_SEPARATOR = "::".getBytes(StandardCharsets.US_ASCII);
+
+	final private byte[][] prefixes;
+
+	public HeaderPrefixDatagramFilter(String... prefixes) {
+		this.prefixes = new byte[prefixes.length][];
+		for (int i = 0; i < prefixes.length; i++) {
+			this.prefixes[i] = prefixes[i].getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * @param deviceTypes The accepted device types, whatever their version.
+	 * @param serviceTypes The accepted service types, whatever their version.
+	 * @return A filter accepting the announcements of the given types.
+	 */
+	public static HeaderPrefixDatagramFilter of(DeviceType[] deviceTypes, ServiceType[] serviceTypes) {
+		List<String> prefixes = new ArrayList<>(deviceTypes.length + serviceTypes.length);
+		for (DeviceType deviceType : deviceTypes) {
+			prefixes.add("urn:" + deviceType.getNamespace() + ":device:" + deviceType.getType() + ":");
+		}
+		for (ServiceType serviceType : serviceTypes) {
+			prefixes.add("urn:" + serviceType.getNamespace() + ":service:" + serviceType.getType() + ":");
+		}
+		return new HeaderPrefixDatagramFilter(prefixes.toArray(new String[0]));
+	}
+
+	@Override
+	public boolean isAccepted(byte[] data, int offset, int length) {
+		int end = offset + length;
+		if (!startsWith(data, offset, end, HTTP) && !startsWith(data, offset, end, NOTIFY)) {
+			return true;
+		}
+		boolean typeFound = false;
+		int lineStart = offset;
+		while (lineStart < end) {
+			int lineEnd = Headers.findLineEnd(data, lineStart, end);
+			int nextLine = lineEnd + 1;
+			if (lineEnd > lineStart && data[lineEnd - 1] == '\r')
+				lineEnd--;
+			if (lineEnd == lineStart && lineStart > offset)
+				break; // End of headers
+			int colon = indexOf(data, lineStart, lineEnd);
+			if (colon > 0) {
+				int nameEnd = colon;
+				while (nameEnd > lineStart && isSpace(data[nameEnd - 1]))
+					nameEnd--;
+				boolean usn = equalsIgnoreCase(data, lineStart, nameEnd, USN);
+				if (usn || equalsIgnoreCase(data, lineStart, nameEnd, NT) || equalsIgnoreCase(data, lineStart, nameEnd, ST)) {
+					typeFound = true;
+					int valueStart = colon + 1;
+					while (valueStart < lineEnd && isSpace(data[valueStart]))
+						valueStart++;
+					if (usn) {
+						int separator = indexOf(data, valueStart, lineEnd, USN_SEPARATOR);
+						if (separator >= 0)
+							valueStart = separator + USN_SEPARATOR.length;
+					}
+					if (matches(data, valueStart, lineEnd))
+						return true;
+				}
+			}
+			lineStart = nextLine;
+		}
+		if (typeFound && log.isTraceEnabled()) {
+			log.trace("Dropping datagram announcing an uninteresting type");
+		}
+		return !typeFound;
+	}
+
+	private boolean matches(byte[] data, int offset, int end) {
+		for (byte[] prefix : prefixes) {
+			if (startsWith(data, offset, end, prefix))
+				return true;
+		}
+		return false;
+	}
+
+	private static boolean startsWith(byte[] data, int offset, int end, byte[] prefix) {
+		return end - offset >= prefix.length && equalsIgnoreCase(data, offset, offset + prefix.length, prefix);
+	}
+
+	private static boolean equalsIgnoreCase(byte[] data, int offset, int end, byte[] value) {
+		if (end - offset != value.length)
+			return false;
+		for (int i = 0; i < value.length; i++) {
+			if (toLowerCase(data[offset + i]) != toLowerCase(value[i]))
+				return false;
+		}
+		return true;
+	}
+
+	private static byte toLowerCase(byte b) {
+		return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+	}
+
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t';
+	}
+
+	private static int indexOf(byte[] data, int offset, int end) {
+		for (int i = offset; i < end; i++) {
+			if (data[i] == ':')
+				return i;
+		}
+		return -1;
+	}
+
+	private static int indexOf(byte[] data, int offset, int end, byte[] value) {
+		for (int i = offset; i <= end - value.length; i++) {
+			if (startsWith(data, i, end, value))
+				return i;
+		}
+		return -1;
+	}
+}
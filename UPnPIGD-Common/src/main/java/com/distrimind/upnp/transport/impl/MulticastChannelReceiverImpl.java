@@ -0,0 +1,171 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.model.UnsupportedDataException;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.transport.Common;
+import com.distrimind.upnp.transport.Router;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
+import com.distrimind.upnp.transport.spi.DatagramProcessor;
+import com.distrimind.upnp.transport.spi.InitializationException;
+import com.distrimind.upnp.transport.spi.MulticastReceiver;
+import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+
+/**
+ * Multicast receiver polled by a shared {@link DatagramChannelSelector}.
+ * <p>
+ * Contrary to {@link MulticastReceiverImpl}, the <code>run()</code> method doesn't block
+ * the calling thread in a receiving loop, unless it is the one hosting the selector loop.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class MulticastChannelReceiverImpl implements MulticastReceiver<MulticastReceiverConfigurationImpl>, DatagramChannelSelector.Handler {
+
+	final private static DMLogger log = Log.getLogger(MulticastChannelReceiverImpl.class);
+
+	final protected MulticastReceiverConfigurationImpl configuration;
+	final protected DatagramChannelSelector selector;
+
+	protected Router router;
+	protected NetworkAddressFactory networkAddressFactory;
+	protected DatagramProcessor datagramProcessor;
+	protected DatagramFilter datagramFilter;
+
+	protected NetworkInterface multicastInterface;
+	protected InetSocketAddress multicastAddress;
+	protected DatagramChannel channel;
+	protected MembershipKey membershipKey;
+
+	public MulticastChannelReceiverImpl(MulticastReceiverConfigurationImpl configuration, DatagramChannelSelector selector) {
+		this.configuration = configuration;
+		this.selector = selector;
+	}
+
+	@Override
+	public MulticastReceiverConfigurationImpl getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	synchronized public void init(NetworkInterface networkInterface,
+								  Router router,
+								  NetworkAddressFactory networkAddressFactory,
+								  DatagramProcessor datagramProcessor) throws InitializationException {
+
+		this.router = router;
+		this.networkAddressFactory = networkAddressFactory;
+		this.datagramProcessor = datagramProcessor;
+		this.datagramFilter = router.getConfiguration().getDatagramFilter();
+		this.multicastInterface = networkInterface;
+
+		try {
+			if (log.isInfoEnabled()) log.info("Creating wildcard channel (for receiving multicast datagrams) on port: " + configuration.getPort());
+			multicastAddress = new InetSocketAddress(configuration.getGroup(), configuration.getPort());
+
+			channel = DatagramChannel.open(configuration.getGroup() instanceof Inet6Address ? StandardProtocolFamily.INET6 : StandardProtocolFamily.INET);
+			channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+			channel.setOption(StandardSocketOptions.SO_RCVBUF, 32768); // Keep a backlog of incoming datagrams if we are not fast enough
+			channel.bind(new InetSocketAddress(configuration.getPort()));
+			channel.configureBlocking(false);
+
+			if (log.isInfoEnabled()) log.info("Joining multicast group: " + multicastAddress + " on network interface: " + multicastInterface.getDisplayName());
+			membershipKey = channel.join(configuration.getGroup(), multicastInterface);
+
+		} catch (Exception ex) {
+			throw new InitializationException("Could not initialize " + getClass().getSimpleName() + ": " + ex);
+		}
+	}
+
+	@Override
+	synchronized public void stop() {
+		if (channel != null && channel.isOpen()) {
+			if (membershipKey != null) {
+				log.debug("Leaving multicast group");
+				membershipKey.drop();
+			}
+			selector.cancel(this);
+		}
+	}
+
+	@Override
+	public void run() {
+		if (log.isDebugEnabled()) {
+			log.debug("Registering multicast channel of interface " + multicastInterface.getDisplayName() + " with the datagram selector");
+		}
+		try {
+			selector.serve(this);
+		} catch (IOException ex) {
+			throw new RuntimeException(ex);
+		}
+	}
+
+	@Override
+	public DatagramChannel getChannel() {
+		return channel;
+	}
+
+	@Override
+	public int getMaxDatagramBytes() {
+		return getConfiguration().getMaxDatagramBytes();
+	}
+
+	@Override
+	public void received(DatagramPacket datagram) {
+		if (datagramFilter != null && !datagramFilter.isAccepted(datagram.getData(), datagram.getOffset(), datagram.getLength()))
+			return;
+		try {
+			InetAddress receivedOnLocalAddress =
+					networkAddressFactory.getLocalAddress(
+							multicastInterface,
+							multicastAddress.getAddress() instanceof Inet6Address,
+							datagram.getAddress()
+					);
+			if (receivedOnLocalAddress == null)
+				return;
+			if (log.isDebugEnabled()) {
+				log.debug(
+						"UDP datagram received from: " + datagram.getAddress().getHostAddress()
+								+ ":" + datagram.getPort()
+								+ " on local interface: " + multicastInterface.getDisplayName()
+								+ " and address: " + receivedOnLocalAddress.getHostAddress()
+				);
+			}
+
+			IncomingDatagramMessage<?> idm = Common.getValidIncomingDatagramMessage(datagramProcessor.read(receivedOnLocalAddress, datagram), networkAddressFactory);
+			if (idm == null)
+				return;
+			router.received(idm);
+		} catch (UnsupportedDataException ex) {
+			if (log.isInfoEnabled()) log.info("Could not read datagram: ", ex);
+		}
+	}
+}
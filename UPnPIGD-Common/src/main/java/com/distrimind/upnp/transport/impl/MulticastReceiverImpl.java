@@ -18,6 +18,7 @@ package com.distrimind.upnp.transport.impl;
 import com.distrimind.upnp.model.message.IncomingDatagramMessage;
 import com.distrimind.upnp.transport.Common;
 import com.distrimind.upnp.transport.Router;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
 import com.distrimind.upnp.transport.spi.DatagramProcessor;
 import com.distrimind.upnp.transport.spi.InitializationException;
 import com.distrimind.upnp.transport.spi.MulticastReceiver;
@@ -51,6 +52,7 @@ public class MulticastReceiverImpl implements MulticastReceiver<MulticastReceive
     protected Router router;
     protected NetworkAddressFactory networkAddressFactory;
     protected DatagramProcessor datagramProcessor;
+    protected DatagramFilter datagramFilter;
 
     protected NetworkInterface multicastInterface;
     protected InetSocketAddress multicastAddress;
@@ -74,6 +76,7 @@ public class MulticastReceiverImpl implements MulticastReceiver<MulticastReceive
         this.router = router;
         this.networkAddressFactory = networkAddressFactory;
         this.datagramProcessor = datagramProcessor;
+        this.datagramFilter = router.getConfiguration().getDatagramFilter();
         this.multicastInterface = networkInterface;
 
         try {
@@ -116,13 +119,16 @@ public class MulticastReceiverImpl implements MulticastReceiver<MulticastReceive
 		if (log.isDebugEnabled()) {
             log.debug("Entering blocking receiving loop, listening for UDP datagrams on: " + socket.getLocalAddress());
 		}
+		// The datagram is entirely parsed before the next receive, so the buffer can be reused
+		byte[] buf = new byte[getConfiguration().getMaxDatagramBytes()];
+		DatagramPacket datagram = new DatagramPacket(buf, buf.length);
 		while (true) {
 
             try {
-                byte[] buf = new byte[getConfiguration().getMaxDatagramBytes()];
-                DatagramPacket datagram = new DatagramPacket(buf, buf.length);
-
+                datagram.setLength(buf.length);
                 socket.receive(datagram);
+                if (datagramFilter != null && !datagramFilter.isAccepted(datagram.getData(), datagram.getOffset(), datagram.getLength()))
+                    continue;
 
                 InetAddress receivedOnLocalAddress =
                         networkAddressFactory.getLocalAddress(
@@ -51,6 +51,9 @@ public class NetworkAddressFactoryImpl implements NetworkAddressFactory {
     protected int streamListenPort;
     private final int multicastPort;
 
+    // Replaced as a whole when the network interfaces or bind addresses change, read without locking
+    private volatile SubnetIndex subnetIndex;
+
     /**
      * Defaults to an ephemeral port.
      */
@@ -76,6 +79,7 @@ public class NetworkAddressFactoryImpl implements NetworkAddressFactory {
 
         discoverNetworkInterfaces();
         discoverBindAddresses();
+        updateSubnetIndex();
 
         if ((networkInterfaces.isEmpty() || bindAddresses.isEmpty())) {
             log.warn("No usable network interface or addresses found");
@@ -142,6 +146,7 @@ public class NetworkAddressFactoryImpl implements NetworkAddressFactory {
 			protected void synchronizedRemove(int index) {
 				synchronized (networkInterfaces) {
 					networkInterfaces.remove(index);
+					updateSubnetIndex();
 				}
 			}
 		};
@@ -155,6 +160,7 @@ public class NetworkAddressFactoryImpl implements NetworkAddressFactory {
 				synchronized (bindAddresses) {
 					bindAddresses.remove(index);
 				}
+				updateSubnetIndex();
 			}
 		};
     }
@@ -248,28 +254,39 @@ public class NetworkAddressFactoryImpl implements NetworkAddressFactory {
     }
 
     protected InetAddress getBindAddressInSubnetOf(InetAddress inetAddress) {
+        SubnetIndex index = subnetIndex;
+        return index != null ? index.getBindAddress(inetAddress) : null;
+    }
+
+    /**
+     * Rebuilds the subnet index used by {@link #getBindAddressInSubnetOf(InetAddress)} from the
+     * current network interfaces and bind addresses.
+     * <p>
+     * Called after the discovery and after each removal of a network interface or bind address.
+     * Subclasses modifying these lists otherwise must call this method afterwards.
+     * </p>
+     *
+     * @since 1.5.0
+     */
+    protected void updateSubnetIndex() {
+        SubnetIndex.Builder builder = new SubnetIndex.Builder();
         synchronized (networkInterfaces) {
             for (NetworkInterface iface : networkInterfaces) {
                 for (InterfaceAddress ifaceAddress : getInterfaceAddresses(iface)) {
-
+                    if (ifaceAddress == null) {
+                        continue;
+                    }
                     synchronized (bindAddresses) {
-                        if (ifaceAddress == null || !bindAddresses.contains(ifaceAddress.getAddress())) {
+                        if (!bindAddresses.contains(ifaceAddress.getAddress())) {
                             continue;
                         }
                     }
-
-                    if (isInSubnet(
-                            inetAddress.getAddress(),
-                            ifaceAddress.getAddress().getAddress(),
-                            ifaceAddress.getNetworkPrefixLength())
-                            ) {
-                        return ifaceAddress.getAddress();
-                    }
+                    builder.add(ifaceAddress.getAddress(), ifaceAddress.getNetworkPrefixLength());
                 }
-
             }
+            // Published while holding the lock, so that a concurrent update can't publish an older index
+            subnetIndex = builder.build();
         }
-        return null;
     }
 
     protected boolean isInSubnet(byte[] ip, byte[] network, short _prefix) {
@@ -0,0 +1,76 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.upnp.transport.spi.AbstractStreamClientConfiguration;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Settings for the {@link PooledStreamClientImpl}.
+ * <p>
+ * The timeout of {@link #getTimeoutSeconds()} applies to connecting, to waiting for a free
+ * connection of the host's pool, and to each read of the response.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class PooledStreamClientConfigurationImpl extends AbstractStreamClientConfiguration {
+
+	public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 4;
+	public static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 10;
+
+	private int maxConnectionsPerHost = DEFAULT_MAX_CONNECTIONS_PER_HOST;
+	private int idleTimeoutSeconds = DEFAULT_IDLE_TIMEOUT_SECONDS;
+
+	public PooledStreamClientConfigurationImpl(ExecutorService requestExecutorService) {
+		super(requestExecutorService);
+	}
+
+	public PooledStreamClientConfigurationImpl(ExecutorService requestExecutorService, int timeoutSeconds) {
+		super(requestExecutorService, timeoutSeconds);
+	}
+
+	/**
+	 * @return The maximum number of connections opened to the same host and port, requests beyond
+	 * this limit wait for a connection to be released. Defaults to {@value #DEFAULT_MAX_CONNECTIONS_PER_HOST}.
+	 */
+	public int getMaxConnectionsPerHost() {
+		return maxConnectionsPerHost;
+	}
+
+	public void setMaxConnectionsPerHost(int maxConnectionsPerHost) {
+		if (maxConnectionsPerHost < 1)
+			throw new IllegalArgumentException("maxConnectionsPerHost must be strictly positive");
+		this.maxConnectionsPerHost = maxConnectionsPerHost;
+	}
+
+	/**
+	 * @return The number of seconds an idle connection is kept open for the next request. Keep it below
+	 * the keep-alive timeout of the remote servers, embedded devices often close idle connections after
+	 * a few seconds. Defaults to {@value #DEFAULT_IDLE_TIMEOUT_SECONDS}.
+	 */
+	public int getIdleTimeoutSeconds() {
+		return idleTimeoutSeconds;
+	}
+
+	public void setIdleTimeoutSeconds(int idleTimeoutSeconds) {
+		if (idleTimeoutSeconds < 0)
+			throw new IllegalArgumentException("idleTimeoutSeconds must be positive");
+		this.idleTimeoutSeconds = idleTimeoutSeconds;
+	}
+}
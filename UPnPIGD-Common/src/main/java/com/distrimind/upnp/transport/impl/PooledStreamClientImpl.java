@@ -0,0 +1,678 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.message.IUpnpHeaders;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpHeaders;
+import com.distrimind.upnp.model.message.UpnpMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.platform.UpnpIGDThreadFactory;
+import com.distrimind.upnp.transport.spi.StreamClient;
+import com.distrimind.upnp.util.Exceptions;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * HTTP/1.1 client keeping connections alive in a bounded pool per host.
+ * <p>
+ * Contrary to {@link StreamClientImpl}, consecutive requests to the same device reuse the same
+ * TCP connection, without changing the JVM-wide <code>http.keepAlive</code> setting. Requests are
+ * not pipelined: a connection carries one request at a time, at most
+ * {@link PooledStreamClientConfigurationImpl#getMaxConnectionsPerHost()} connections are opened
+ * to the same host, and idle connections are closed by a timer after
+ * {@link PooledStreamClientConfigurationImpl#getIdleTimeoutSeconds()}.
+ * </p>
+ * <p>
+ * A request failing on a reused connection before any response byte was received, usually because
+ * the server closed the idle connection, is sent again once on a new connection if it is
+ * {@link StreamRequestMessage#isIdempotent() idempotent}, or if it couldn't be written. Before
+ * other requests, e.g. SOAP actions the server might execute twice, a reused connection is checked
+ * to not have been closed by the server.
+ * </p>
+ * <p>
+ * The request is executed on the calling thread, only plain <code>http</code> URLs are supported.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class PooledStreamClientImpl implements StreamClient<PooledStreamClientConfigurationImpl> {
+
+	final private static DMLogger log = Log.getLogger(PooledStreamClientImpl.class);
+
+	private static final int MAX_RESPONSE_HEADER_BYTES = 16384;
+
+	final protected PooledStreamClientConfigurationImpl configuration;
+	private final ConcurrentMap<String, HostPool> pools = new ConcurrentHashMap<>();
+	private final ScheduledExecutorService evictionTimer;
+	private volatile boolean stopped;
+
+	public PooledStreamClientImpl(PooledStreamClientConfigurationImpl configuration) {
+		this.configuration = configuration;
+		ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, new UpnpIGDThreadFactory("pooled-stream-client"));
+		timer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+		long periodMillis = Math.max(1000L, configuration.getIdleTimeoutSeconds() * 1000L);
+		timer.scheduleWithFixedDelay(this::evictIdleConnections, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+		this.evictionTimer = timer;
+	}
+
+	@Override
+	public PooledStreamClientConfigurationImpl getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public StreamResponseMessage sendRequest(StreamRequestMessage requestMessage) throws InterruptedException {
+		UpnpRequest requestOperation = requestMessage.getOperation();
+		URI uri = requestOperation.getURI();
+		if (uri == null || !"http".equalsIgnoreCase(uri.getScheme()) || uri.getHost() == null) {
+			if (log.isWarnEnabled()) log.warn("HTTP request failed, unsupported URI: " + requestMessage);
+			return null;
+		}
+		int port = uri.getPort() == -1 ? 80 : uri.getPort();
+		if (log.isDebugEnabled()) {
+			log.debug("Preparing HTTP request message with method '" + requestOperation.getHttpMethodName() + "': " + requestMessage);
+		}
+
+		// Counted as used while the request runs, so that the eviction doesn't drop it
+		HostPool pool = pools.compute(uri.getHost() + ":" + port, (key, hostPool) -> {
+			HostPool used = hostPool == null ? new HostPool(uri.getHost(), port) : hostPool;
+			used.users.incrementAndGet();
+			return used;
+		});
+		try {
+			return sendRequest(requestMessage, pool, createRequest(requestMessage, uri, port));
+		} finally {
+			pool.users.decrementAndGet();
+		}
+	}
+
+	protected StreamResponseMessage sendRequest(StreamRequestMessage requestMessage, HostPool pool, byte[] request) throws InterruptedException {
+		boolean head = "HEAD".equals(requestMessage.getOperation().getHttpMethodName());
+		boolean idempotent = requestMessage.isIdempotent();
+		boolean resent = false;
+		while (true) {
+			PooledConnection connection;
+			try {
+				connection = pool.acquire();
+			} catch (IOException ex) {
+				if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
+				return null;
+			}
+			if (connection == null) {
+				if (log.isInfoEnabled()) log.info(
+						"Timeout of " + getConfiguration().getTimeoutSeconds()
+								+ " seconds while waiting for a free connection, aborting: " + requestMessage
+				);
+				return null;
+			}
+			if (connection.reused && !idempotent && connection.isStale()) {
+				log.debug("Idle connection closed by the server, not reusing it");
+				pool.release(connection, false);
+				continue;
+			}
+			boolean reusable = false;
+			try {
+				if (log.isDebugEnabled()) {
+					log.debug("Sending HTTP request on " + (connection.reused ? "reused" : "new") + " connection: " + requestMessage);
+				}
+				connection.send(request);
+				StreamResponseMessage response = readResponse(connection, head);
+				reusable = connection.keepAlive && !stopped;
+				return response;
+			} catch (SocketTimeoutException ex) {
+				if (log.isInfoEnabled()) log.info(
+						"Timeout of " + getConfiguration().getTimeoutSeconds()
+								+ " seconds while waiting for HTTP request to complete, aborting: " + requestMessage
+				);
+				return null;
+			} catch (IOException ex) {
+				// Not sent again if the server might have executed it, e.g. a SOAP action
+				if (!resent && connection.reused && !connection.responseStarted && (idempotent || !connection.requestSent)) {
+					if (log.isDebugEnabled()) {
+						log.debug("Reused connection closed by the server, sending request again: " + ex);
+					}
+					resent = true;
+					continue;
+				}
+				if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
+				return null;
+			} catch (RuntimeException ex) {
+				if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
+				return null;
+			} finally {
+				pool.release(connection, reusable);
+			}
+		}
+	}
+
+	@Override
+	public void stop() {
+		stopped = true;
+		evictionTimer.shutdownNow();
+		for (HostPool pool : pools.values()) {
+			pool.closeIdleConnections(true);
+		}
+		pools.clear();
+	}
+
+	/**
+	 * Closes the connections idle for longer than the configured timeout, and drops the pools
+	 * of the hosts without connections. Called periodically by a timer.
+	 */
+	public void evictIdleConnections() {
+		for (Map.Entry<String, HostPool> entry : pools.entrySet()) {
+			entry.getValue().closeIdleConnections(false);
+			pools.computeIfPresent(entry.getKey(), (key, pool) -> pool.isUnused() ? null : pool);
+		}
+	}
+
+	/**
+	 * @return The number of hosts with a pool of connections.
+	 */
+	public int getPoolCount() {
+		return pools.size();
+	}
+
+	/**
+	 * @return The number of open connections, leased or idle, to the given host and port.
+	 */
+	public int getConnectionCount(String host, int port) {
+		HostPool pool = pools.get(host + ":" + port);
+		return pool == null ? 0 : pool.getConnectionCount();
+	}
+
+	protected byte[] createRequest(StreamRequestMessage requestMessage, URI uri, int port) {
+		String target = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+		if (uri.getRawQuery() != null)
+			target += "?" + uri.getRawQuery();
+
+		byte[] body = null;
+		if (requestMessage.hasBody()) {
+			if (requestMessage.getBodyType().equals(UpnpMessage.BodyType.STRING))
+				body = requestMessage.getBodyString().getBytes(StandardCharsets.UTF_8);
+			else
+				body = requestMessage.getBodyBytes();
+		}
+
+		StringBuilder sb = new StringBuilder(256);
+		sb.append(requestMessage.getOperation().getHttpMethodName()).append(' ').append(target).append(" HTTP/1.1\r\n");
+		sb.append("Host: ").append(uri.getHost());
+		if (port != 80)
+			sb.append(':').append(port);
+		sb.append("\r\n");
+		if (!requestMessage.getHeaders().containsKey(UpnpHeader.Type.USER_AGENT)) {
+			appendHeader(sb, UpnpHeader.Type.USER_AGENT.getHttpName(),
+					getConfiguration().getUserAgentValue(requestMessage.getUdaMajorVersion(), requestMessage.getUdaMinorVersion()));
+		}
+		for (Map.Entry<String, List<String>> entry : requestMessage.getHeaders().entrySet()) {
+			String name = entry.getKey();
+			// Managed by this client
+			if ("Host".equalsIgnoreCase(name) || "Content-Length".equalsIgnoreCase(name)
+					|| "Connection".equalsIgnoreCase(name) || "Transfer-Encoding".equalsIgnoreCase(name))
+				continue;
+			for (String value : entry.getValue()) {
+				appendHeader(sb, name, value);
+			}
+		}
+		if (body != null)
+			appendHeader(sb, "Content-Length", Integer.toString(body.length));
+		sb.append("\r\n");
+
+		byte[] head = sb.toString().getBytes(StandardCharsets.ISO_8859_1);
+		if (body == null || body.length == 0)
+			return head;
+		byte[] request = new byte[head.length + body.length];
+		System.arraycopy(head, 0, request, 0, head.length);
+		System.arraycopy(body, 0, request, head.length, body.length);
+		return request;
+	}
+
+	private static void appendHeader(StringBuilder sb, String name, String value) {
+		sb.append(name).append(": ").append(value).append("\r\n");
+	}
+
+	@SuppressWarnings("PMD.CloseResource")
+	protected StreamResponseMessage readResponse(PooledConnection connection, boolean head) throws IOException {
+		InputStream in = connection.in;
+		int[] headerBytes = {0};
+
+		String statusLine;
+		int statusCode;
+		boolean http11;
+		for (;;) {
+			statusLine = readLine(in, headerBytes, connection);
+			if (statusLine == null)
+				throw new EOFException("Connection closed before response");
+			if (!statusLine.startsWith("HTTP/1."))
+				throw new IOException("Invalid HTTP status line: " + statusLine);
+			http11 = !statusLine.startsWith("HTTP/1.0");
+			int codeStart = statusLine.indexOf(' ');
+			if (codeStart < 0 || statusLine.length() < codeStart + 4)
+				throw new IOException("Invalid HTTP status line: " + statusLine);
+			try {
+				statusCode = Integer.parseInt(statusLine.substring(codeStart + 1, codeStart + 4));
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid HTTP status line: " + statusLine, ex);
+			}
+			IUpnpHeaders headers = readHeaders(in, headerBytes, connection);
+			if (statusCode >= 200) {
+				String reason = statusLine.length() > codeStart + 5 ? statusLine.substring(codeStart + 5) : "";
+				return createResponse(connection, new UpnpResponse(statusCode, reason), headers, http11, head);
+			}
+			// Ignore interim responses, e.g. 100 Continue
+		}
+	}
+
+	protected StreamResponseMessage createResponse(PooledConnection connection, UpnpResponse responseOperation,
+												   IUpnpHeaders headers, boolean http11, boolean head) throws IOException {
+		if (log.isDebugEnabled()) {
+			log.debug("Received response: " + responseOperation);
+		}
+		StreamResponseMessage responseMessage = new StreamResponseMessage(responseOperation);
+		responseMessage.setHeaders(headers);
+
+		String connectionHeader = headers.getFirstHeader("Connection");
+		connection.keepAlive = connectionHeader == null
+				? http11
+				: !connectionHeader.toLowerCase(Locale.ROOT).contains("close")
+				&& (http11 || connectionHeader.toLowerCase(Locale.ROOT).contains("keep-alive"));
+
+		int statusCode = responseOperation.getStatusCode();
+		byte[] bodyBytes = null;
+		if (!head && statusCode != 204 && statusCode != 304) {
+			String transferEncoding = headers.getFirstHeader("Transfer-Encoding");
+			String contentLength = headers.getFirstHeader("Content-Length");
+			if (transferEncoding != null && transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+				bodyBytes = readChunkedBody(connection);
+			} else if (contentLength != null) {
+				bodyBytes = readBody(connection.in, parseContentLength(contentLength));
+			} else {
+				// Delimited by the end of the connection
+				connection.keepAlive = false;
+				bodyBytes = readBody(connection.in, -1);
+			}
+		}
+
+		if (bodyBytes != null && bodyBytes.length > 0 && responseMessage.isContentTypeMissingOrText()) {
+			log.debug("Response contains textual entity body, converting then setting string on message");
+			responseMessage.setBodyCharacters(bodyBytes);
+		} else if (bodyBytes != null && bodyBytes.length > 0) {
+			log.debug("Response contains binary entity body, setting bytes on message");
+			responseMessage.setBody(UpnpMessage.BodyType.BYTES, bodyBytes);
+		} else {
+			log.debug("Response did not contain entity body");
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Response message complete: " + responseMessage);
+		}
+		return responseMessage;
+	}
+
+	private static int parseContentLength(String value) throws IOException {
+		try {
+			int length = Integer.parseInt(value.trim());
+			if (length < 0)
+				throw new IOException("Invalid content length: " + value);
+			return length;
+		} catch (NumberFormatException ex) {
+			throw new IOException("Invalid content length: " + value, ex);
+		}
+	}
+
+	private static IOException createTooLongException() {
+		return new IOException("Reach maximum input stream length : " + Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES + " bytes");
+	}
+
+	private static IUpnpHeaders readHeaders(InputStream in, int[] headerBytes, PooledConnection connection) throws IOException {
+		IUpnpHeaders headers = new UpnpHeaders();
+		String lastName = null;
+		String line;
+		while ((line = readLine(in, headerBytes, connection)) != null && !line.isEmpty()) {
+			char first = line.charAt(0);
+			if (lastName != null && (first == ' ' || first == '\t')) {
+				// Obsolete line folding
+				List<String> values = headers.get(lastName);
+				int last = values.size() - 1;
+				values.set(last, values.get(last) + " " + line.trim());
+				continue;
+			}
+			int colon = line.indexOf(':');
+			if (colon <= 0)
+				throw new IOException("Invalid HTTP header line: " + line);
+			lastName = line.substring(0, colon).trim();
+			headers.add(lastName, line.substring(colon + 1).trim());
+		}
+		if (line == null)
+			throw new EOFException("Connection closed while reading response headers");
+		return headers;
+	}
+
+	/**
+	 * @return The line without its terminator, or <code>null</code> if the stream ended before the first byte.
+	 */
+	private static String readLine(InputStream in, int[] headerBytes, PooledConnection connection) throws IOException {
+		ByteArrayOutputStream line = new ByteArrayOutputStream(64);
+		int b;
+		while ((b = in.read()) != -1) {
+			connection.responseStarted = true;
+			if (++headerBytes[0] > MAX_RESPONSE_HEADER_BYTES)
+				throw new IOException("HTTP response headers exceed " + MAX_RESPONSE_HEADER_BYTES + " bytes");
+			if (b == '\n') {
+				byte[] bytes = line.toByteArray();
+				int length = bytes.length > 0 && bytes[bytes.length - 1] == '\r' ? bytes.length - 1 : bytes.length;
+				return new String(bytes, 0, length, StandardCharsets.ISO_8859_1);
+			}
+			line.write(b);
+		}
+		if (line.size() == 0)
+			return null;
+		throw new EOFException("Connection closed in the middle of a line");
+	}
+
+	/**
+	 * @param length The number of bytes to read, or <code>-1</code> to read until the end of the stream.
+	 */
+	private static byte[] readBody(InputStream in, int length) throws IOException {
+		if (length > Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES)
+			throw createTooLongException();
+		if (length >= 0) {
+			byte[] body = new byte[length];
+			int read = 0;
+			while (read < length) {
+				int r = in.read(body, read, length - read);
+				if (r == -1)
+					throw new EOFException("Connection closed after " + read + " of " + length + " body bytes");
+				read += r;
+			}
+			return body;
+		}
+		ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+		byte[] buffer = new byte[4096];
+		int r;
+		while ((r = in.read(buffer)) != -1) {
+			body.write(buffer, 0, r);
+			if (body.size() > Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES)
+				throw createTooLongException();
+		}
+		return body.toByteArray();
+	}
+
+	@SuppressWarnings("PMD.CloseResource")
+	private static byte[] readChunkedBody(PooledConnection connection) throws IOException {
+		InputStream in = connection.in;
+		ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+		int[] lineBytes = {0};
+		while (true) {
+			lineBytes[0] = 0;
+			String sizeLine = readLine(in, lineBytes, connection);
+			if (sizeLine == null)
+				throw new EOFException("Connection closed while reading chunk size");
+			int extension = sizeLine.indexOf(';');
+			int size;
+			try {
+				size = Integer.parseInt((extension < 0 ? sizeLine : sizeLine.substring(0, extension)).trim(), 16);
+			} catch (NumberFormatException ex) {
+				throw new IOException("Invalid chunk size: " + sizeLine, ex);
+			}
+			if (size < 0 || body.size() + size > Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES)
+				throw createTooLongException();
+			if (size == 0)
+				break;
+			body.write(readBody(in, size));
+			lineBytes[0] = 0;
+			if (!"".equals(readLine(in, lineBytes, connection)))
+				throw new IOException("Missing chunk terminator");
+		}
+		// Trailers
+		readHeaders(in, lineBytes, connection);
+		return body.toByteArray();
+	}
+
+	/**
+	 * A connection of a {@link HostPool}, used by one request at a time.
+	 */
+	protected static class PooledConnection {
+
+		final Socket socket;
+		final InputStream in;
+		final OutputStream out;
+		long lastUsedMillis;
+		boolean reused;
+		boolean requestSent;
+		boolean responseStarted;
+		boolean keepAlive;
+
+		PooledConnection(Socket socket) throws IOException {
+			this.socket = socket;
+			this.in = new BufferedInputStream(socket.getInputStream());
+			this.out = new BufferedOutputStream(socket.getOutputStream());
+		}
+
+		// Still false if writing fails
+		@SuppressWarnings("PMD.UnusedAssignment")
+		void send(byte[] request) throws IOException {
+			requestSent = false;
+			responseStarted = false;
+			keepAlive = false;
+			out.write(request);
+			out.flush();
+			requestSent = true;
+		}
+
+		/**
+		 * @return <code>true</code> if the server closed the idle connection, or sent unexpected data on it.
+		 */
+		boolean isStale() {
+			try {
+				int timeoutMillis = socket.getSoTimeout();
+				socket.setSoTimeout(1);
+				try {
+					// End of stream, or data without request
+					in.read();
+					return true;
+				} catch (SocketTimeoutException ex) {
+					return false;
+				} finally {
+					socket.setSoTimeout(timeoutMillis);
+				}
+			} catch (IOException ex) {
+				return true;
+			}
+		}
+
+		boolean isIdleFor(long nowMillis, long idleTimeoutMillis) {
+			return socket.isClosed() || nowMillis - lastUsedMillis >= idleTimeoutMillis;
+		}
+
+		void close() {
+			try {
+				socket.close();
+			} catch (IOException ex) {
+				if (log.isDebugEnabled())
+					log.debug("Could not close connection: " + ex);
+			}
+		}
+	}
+
+	/**
+	 * The connections to one host and port.
+	 */
+	protected class HostPool {
+
+		final String host;
+		final int port;
+		// Requests using this pool, it isn't dropped while used
+		final AtomicInteger users = new AtomicInteger();
+		private final ReentrantLock lock = new ReentrantLock();
+		private final Condition released = lock.newCondition();
+		private final Deque<PooledConnection> idle = new ArrayDeque<>();
+		private int leased;
+
+		HostPool(String host, int port) {
+			this.host = host;
+			this.port = port;
+		}
+
+		/**
+		 * @return An idle or a new connection, or <code>null</code> if none was released before the timeout.
+		 */
+		@SuppressWarnings("PMD.CloseResource")
+		PooledConnection acquire() throws InterruptedException, IOException {
+			int timeoutMillis = getConfiguration().getTimeoutSeconds() * 1000;
+			long remainingNanos = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+			lock.lock();
+			try {
+				while (true) {
+					if (stopped)
+						throw new IOException("Stream client stopped");
+					long now = System.currentTimeMillis();
+					PooledConnection connection;
+					// Most recently used first, it is the least likely to have been closed by the server
+					while ((connection = idle.pollLast()) != null) {
+						if (!connection.isIdleFor(now, getIdleTimeoutMillis())) {
+							leased++;
+							connection.reused = true;
+							return connection;
+						}
+						connection.close();
+					}
+					if (leased < getConfiguration().getMaxConnectionsPerHost()) {
+						leased++;
+						break;
+					}
+					if (remainingNanos <= 0)
+						return null;
+					remainingNanos = released.awaitNanos(remainingNanos);
+				}
+			} finally {
+				lock.unlock();
+			}
+
+			// Connect outside the lock, the slot is reserved
+			Socket socket = new Socket();
+			try {
+				socket.setTcpNoDelay(true);
+				socket.setSoTimeout(timeoutMillis);
+				socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+				return new PooledConnection(socket);
+			} catch (IOException | RuntimeException ex) {
+				try {
+					socket.close();
+				} catch (IOException ignored) {
+					// Already failing
+				}
+				release(null, false);
+				throw ex;
+			}
+		}
+
+		void release(PooledConnection connection, boolean reusable) {
+			lock.lock();
+			try {
+				leased--;
+				if (connection != null) {
+					if (reusable && !stopped) {
+						connection.lastUsedMillis = System.currentTimeMillis();
+						idle.addLast(connection);
+					} else {
+						connection.close();
+					}
+				}
+				released.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		void closeIdleConnections(boolean all) {
+			List<PooledConnection> expired = new ArrayList<>();
+			lock.lock();
+			try {
+				long now = System.currentTimeMillis();
+				idle.removeIf(connection -> {
+					if (all || connection.isIdleFor(now, getIdleTimeoutMillis())) {
+						expired.add(connection);
+						return true;
+					}
+					return false;
+				});
+				if (all)
+					released.signalAll();
+			} finally {
+				lock.unlock();
+			}
+			for (PooledConnection connection : expired) {
+				connection.close();
+			}
+		}
+
+		boolean isUnused() {
+			lock.lock();
+			try {
+				return users.get() == 0 && leased == 0 && idle.isEmpty();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		int getConnectionCount() {
+			lock.lock();
+			try {
+				return idle.size() + leased;
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		private long getIdleTimeoutMillis() {
+			return getConfiguration().getIdleTimeoutSeconds() * 1000L;
+		}
+	}
+}
@@ -57,7 +57,7 @@ public class PullGENAEventProcessorImpl extends GENAEventProcessorImpl {
 		}
 		if (log.isTraceEnabled()) {
             log.trace("===================================== GENA BODY BEGIN ============================================");
-            log.trace(requestMessage.getBody() != null ? requestMessage.getBody().toString() : null);
+            log.trace(requestMessage.hasBody() ? requestMessage.getBodyString() : null);
             log.trace("-===================================== GENA BODY END ============================================");
         }
 
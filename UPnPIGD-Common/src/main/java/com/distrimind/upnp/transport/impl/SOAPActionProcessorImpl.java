@@ -26,6 +26,7 @@ import com.distrimind.upnp.model.XMLUtil;
 import com.distrimind.upnp.model.action.ActionArgumentValue;
 import com.distrimind.upnp.model.action.ActionException;
 import com.distrimind.upnp.model.action.ActionInvocation;
+import com.distrimind.upnp.model.message.UpnpMessage;
 import com.distrimind.upnp.model.message.control.ActionMessage;
 import com.distrimind.upnp.model.message.control.ActionRequestMessage;
 import com.distrimind.upnp.model.message.control.ActionResponseMessage;
@@ -62,7 +63,7 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 		}
 
         try {
-            String d= XMLUtil.generateXMLToString(xmlStreamWriter -> {
+            byte[] d= XMLUtil.generateXMLToBytes(xmlStreamWriter -> {
                 writeStartBodyElement(xmlStreamWriter);
 
                 writeBodyRequest(xmlStreamWriter, requestMessage, actionInvocation);
@@ -71,7 +72,7 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 
                 writeEndBodyElement(xmlStreamWriter);
             });
-            requestMessage.setBody(d);
+            requestMessage.setBody(UpnpMessage.BodyType.BYTES, d);
 
             if (log.isTraceEnabled()) {
 				log.trace(SOAP_BODY_BEGIN);
@@ -92,7 +93,7 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 		}
 
         try {
-            String d= XMLUtil.generateXMLToString(xmlStreamWriter -> {
+            byte[] d= XMLUtil.generateXMLToBytes(xmlStreamWriter -> {
                 writeStartBodyElement(xmlStreamWriter);
 
                 if (actionInvocation.getFailure() != null) {
@@ -103,7 +104,7 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 
                 writeEndBodyElement(xmlStreamWriter);
             });
-            responseMessage.setBody(d);
+            responseMessage.setBody(UpnpMessage.BodyType.BYTES, d);
 
 
 
@@ -159,38 +160,14 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 
         String body = getMessageBody(responseMsg);
         try {
-            try {
-                class C{
-                    ActionException failure=null;
-                }
-                C c=new C();
-                XMLUtil.readXML(xmlReader -> {
-                    readXML(xmlReader, xmlReader2 -> {
-                        c.failure = readBodyFailure(xmlReader2);
-                        return null;
-                    });
+            // A single pass, the first child element of the body is either a fault or the action response
+            XMLUtil.readXML(xmlReader -> {
+                readXML(xmlReader, xmlReader2 -> {
+                    readBodyResponse(xmlReader2, actionInvocation);
                     return null;
-                }, this, body);
-                if (c.failure==null)
-                {
-                    XMLUtil.readXML(xmlReader -> {
-                        readXML(xmlReader, xmlReader2 -> {
-                            readBodyResponse(xmlReader2, actionInvocation);
-                            return null;
-                        });
-                        return null;
-                    }, this, body);
-                }
-                else
-                    actionInvocation.setFailure(c.failure);
-
-
-            } catch (Exception ex) {
-                throw new UnsupportedDataException(CAN_T_TRANSFORM_MESSAGE_PAYLOAD + ex, ex, body);
-            }
-
-
-
+                });
+                return null;
+            }, this, body);
         } catch (Exception ex) {
             throw new UnsupportedDataException(CAN_T_TRANSFORM_MESSAGE_PAYLOAD + ex, ex, body);
         }
@@ -346,16 +323,27 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 
     }
 
+    /**
+     * Reads the children of the body element, a <code>Fault</code> element sets the failure of the
+     * action invocation, an action response element sets its output arguments. Only the first of
+     * them is read.
+     */
     protected <S extends Service<?, ?, ?>> void readActionResponseElement(IXmlReader xmlReader, ActionInvocation<S> actionInvocation) throws XMLStreamException, DescriptorBindingException {
         class B
         {
             boolean found =true;
         }
         B b=new B();
+        String responseElementName = actionInvocation.getAction().getName() + "Response";
         XMLUtil.readElements(xmlReader, reader -> {
+            if (!b.found)
+                return;
             String bodyChild = getUnprefixedNodeName(xmlReader);
 
-            if (bodyChild.equals(actionInvocation.getAction().getName() + "Response")) {
+            if ("Fault".equals(bodyChild)) {
+                b.found =false;
+                actionInvocation.setFailure(readFaultDetails(xmlReader));
+            } else if (bodyChild.equals(responseElementName)) {
                 log.debug(() -> "Reading action response element: " + bodyChild);
                 b.found =false;
                 readActionOutputArguments(xmlReader, actionInvocation);
@@ -447,66 +435,69 @@ public class SOAPActionProcessorImpl implements SOAPActionProcessor, XMLUtil.Err
 
     protected ActionException readFaultElement(IXmlReader xmlReader) throws XMLStreamException, DescriptorBindingException {
         class C {
-            boolean receivedFaultElement = false;
-            String errorCode = null;
-            String errorDescription = null;
+            ActionException failure = null;
         }
         C c=new C();
 
-
         XMLUtil.readElements(xmlReader, reader -> {
-            String bodyChild = getUnprefixedNodeName(reader);
-
-
-            if ("Fault".equals(bodyChild)) {
+            if ("Fault".equals(getUnprefixedNodeName(reader)))
+                c.failure = readFaultDetails(reader);
+        }, this);
+        return c.failure;
+    }
 
-                c.receivedFaultElement = true;
+    /**
+     * @param xmlReader The reader positioned on the <code>Fault</code> element.
+     * @return The failure described by the fault.
+     * @since 1.5.0
+     */
+    protected ActionException readFaultDetails(IXmlReader xmlReader) throws XMLStreamException, DescriptorBindingException {
+        class C {
+            String errorCode = null;
+            String errorDescription = null;
+        }
+        C c=new C();
 
-                XMLUtil.readElements(xmlReader, reader2 -> {
-                    String faultChild = getUnprefixedNodeName(reader2);
+        XMLUtil.readElements(xmlReader, reader2 -> {
+            String faultChild = getUnprefixedNodeName(reader2);
 
-                    if ("detail".equals(faultChild)) {
+            if ("detail".equals(faultChild)) {
 
-                        XMLUtil.readElements(xmlReader, reader3 -> {
-                            String detailChild = getUnprefixedNodeName(reader3);
+                XMLUtil.readElements(xmlReader, reader3 -> {
+                    String detailChild = getUnprefixedNodeName(reader3);
 
-                            if ("UPnPError".equals(detailChild)) {
+                    if ("UPnPError".equals(detailChild)) {
 
-                                XMLUtil.readElements(xmlReader, reader4 -> {
-                                    String errorChild = getUnprefixedNodeName(reader4);
+                        XMLUtil.readElements(xmlReader, reader4 -> {
+                            String errorChild = getUnprefixedNodeName(reader4);
 
-                                    if ("errorCode".equals(errorChild))
-                                        c.errorCode = XMLUtil.getTextContent(xmlReader, SOAPActionProcessorImpl.this);
+                            if ("errorCode".equals(errorChild))
+                                c.errorCode = XMLUtil.getTextContent(xmlReader, SOAPActionProcessorImpl.this);
 
-                                    if ("errorDescription".equals(errorChild))
-                                        c.errorDescription = XMLUtil.getTextContent(xmlReader, SOAPActionProcessorImpl.this);
-                                }, this);
-                            }
+                            if ("errorDescription".equals(errorChild))
+                                c.errorDescription = XMLUtil.getTextContent(xmlReader, SOAPActionProcessorImpl.this);
                         }, this);
                     }
                 }, this);
             }
         }, this);
 
-        if (c.errorCode != null) {
-            try {
-                int numericCode = Integer.parseInt(c.errorCode);
-                ErrorCode standardErrorCode = ErrorCode.getByCode(numericCode);
-                String ed=c.errorDescription;
-                if (standardErrorCode != null) {
-                    log.debug(() -> "Reading fault element: " + standardErrorCode.getCode() + " - " + ed);
-                    return new ActionException(standardErrorCode, c.errorDescription, false);
-                } else {
-                    log.debug(() -> "Reading fault element: " + numericCode + " - " + ed);
-                    return new ActionException(numericCode, c.errorDescription);
-                }
-            } catch (NumberFormatException ex) {
-                throw new RuntimeException("Error code was not a number");
-            }
-        } else if (c.receivedFaultElement) {
+        if (c.errorCode == null)
             throw new RuntimeException("Received fault element but no error code");
+        try {
+            int numericCode = Integer.parseInt(c.errorCode);
+            ErrorCode standardErrorCode = ErrorCode.getByCode(numericCode);
+            String ed=c.errorDescription;
+            if (standardErrorCode != null) {
+                log.debug(() -> "Reading fault element: " + standardErrorCode.getCode() + " - " + ed);
+                return new ActionException(standardErrorCode, c.errorDescription, false);
+            } else {
+                log.debug(() -> "Reading fault element: " + numericCode + " - " + ed);
+                return new ActionException(numericCode, c.errorDescription);
+            }
+        } catch (NumberFormatException ex) {
+            throw new RuntimeException("Error code was not a number");
         }
-        return null;
     }
 
 
@@ -0,0 +1,147 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.impl;
+
+import java.net.InetAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Immutable binary prefix tree of the subnets of the local bind addresses, see
+ * {@link NetworkAddressFactoryImpl#getLocalAddress(java.net.NetworkInterface, boolean, InetAddress)}.
+ * <p>
+ * IPv4 and IPv6 subnets are stored in separate trees. A lookup walks one bit of the remote address
+ * per level, without locking, and returns the bind address of the longest matching subnet. When
+ * several bind addresses share the same subnet, the first one added wins. The results of the last
+ * looked up remote addresses are cached, datagrams usually come from a small set of hosts.
+ * </p>
+ * <p>
+ * Instances are built with a {@link Builder} and replaced as a whole when the network interfaces change.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public final class SubnetIndex {
+
+	// Above this number of cached remote addresses, the cache is cleared
+	private static final int MAX_CACHED_ADDRESSES = 256;
+
+	private static final Node NO_MATCH = new Node();
+
+	private final Node ipv4Root;
+	private final Node ipv6Root;
+	private final ConcurrentMap<InetAddress, Node> cache = new ConcurrentHashMap<>();
+
+	private SubnetIndex(Node ipv4Root, Node ipv6Root) {
+		this.ipv4Root = ipv4Root;
+		this.ipv6Root = ipv6Root;
+	}
+
+	/**
+	 * @param remoteAddress The address of a remote host.
+	 * @return The bind address of the longest subnet containing the remote address, or <code>null</code> if
+	 *         the remote host isn't on a local subnet.
+	 */
+	public InetAddress getBindAddress(InetAddress remoteAddress) {
+		Node match = cache.get(remoteAddress);
+		if (match == null) {
+			match = lookup(remoteAddress.getAddress());
+			if (cache.size() >= MAX_CACHED_ADDRESSES) {
+				cache.clear();
+			}
+			cache.put(remoteAddress, match);
+		}
+		return match.bindAddress;
+	}
+
+	private Node lookup(byte[] address) {
+		Node node = address.length == 4 ? ipv4Root : address.length == 16 ? ipv6Root : null;
+		Node match = NO_MATCH;
+		for (int bit = 0; node != null; bit++) {
+			if (node.bindAddress != null) {
+				match = node;
+			}
+			if (bit == address.length * 8) {
+				break;
+			}
+			node = isSet(address, bit) ? node.one : node.zero;
+		}
+		return match;
+	}
+
+	private static boolean isSet(byte[] address, int bit) {
+		return (address[bit >>> 3] & (0x80 >>> (bit & 7))) != 0;
+	}
+
+	private static final class Node {
+		Node zero;
+		Node one;
+		InetAddress bindAddress;
+	}
+
+	/**
+	 * Collects the subnets of an index, not thread-safe.
+	 */
+	public static final class Builder {
+
+		private final Node ipv4Root = new Node();
+		private final Node ipv6Root = new Node();
+
+		/**
+		 * Adds the subnet of a bind address. Prefix lengths are interpreted like the ones reported by
+		 * {@link java.net.InterfaceAddress#getNetworkPrefixLength()}: a negative length (unknown) matches
+		 * all addresses, a length exceeding the address by a whole byte or more (reported by some systems
+		 * for IPv4 addresses) is ignored, a smaller excess matches the bind address only.
+		 *
+		 * @param bindAddress The local address.
+		 * @param networkPrefixLength The length of the subnet prefix, in bits.
+		 * @return This builder.
+		 */
+		public Builder add(InetAddress bindAddress, int networkPrefixLength) {
+			byte[] address = bindAddress.getAddress();
+			if (networkPrefixLength / 8 > address.length) {
+				return this;
+			}
+			int prefixLength = Math.max(0, Math.min(networkPrefixLength, address.length * 8));
+			Node node = address.length == 4 ? ipv4Root : ipv6Root;
+			for (int bit = 0; bit < prefixLength; bit++) {
+				if (isSet(address, bit)) {
+					if (node.one == null) {
+						node.one = new Node();
+					}
+					node = node.one;
+				} else {
+					if (node.zero == null) {
+						node.zero = new Node();
+					}
+					node = node.zero;
+				}
+			}
+			if (node.bindAddress == null) {
+				node.bindAddress = bindAddress;
+			}
+			return this;
+		}
+
+		/**
+		 * @return The index of the subnets added so far. The builder must not be used anymore.
+		 */
+		public SubnetIndex build() {
+			return new SubnetIndex(ipv4Root, ipv6Root);
+		}
+	}
+}
@@ -20,10 +20,13 @@ import com.distrimind.upnp.model.message.StreamResponseMessage;
 import com.distrimind.upnp.util.Exceptions;
 
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
 import com.distrimind.flexilogxml.log.DMLogger;
 import com.distrimind.upnp.Log;
 
@@ -68,13 +71,7 @@ public abstract class AbstractStreamClient<C extends StreamClientConfiguration,
                 future.get(getConfiguration().getTimeoutSeconds(), TimeUnit.SECONDS);
 
             // Log a warning if it took too long
-            long elapsed = System.currentTimeMillis() - start;
-            if (log.isTraceEnabled())
-                log.trace("Got HTTP response in " + elapsed + "ms: " + requestMessage);
-            if (getConfiguration().getLogWarningSeconds() > 0
-                && elapsed > getConfiguration().getLogWarningSeconds()* 1000L) {
-                if (log.isWarnEnabled()) log.warn("HTTP request took a long time (" + elapsed + "ms): " + requestMessage);
-            }
+            logElapsedTime(requestMessage, start);
 
             return response;
 
@@ -106,6 +103,85 @@ public abstract class AbstractStreamClient<C extends StreamClientConfiguration,
         }
     }
 
+    /**
+     * Submits the request callable once and completes the returned future from the request thread,
+     * no other thread waits for the response. The request is aborted when the configured timeout
+     * elapses or when the returned future is cancelled.
+     */
+    @Override
+    public CompletableFuture<StreamResponseMessage> sendRequestAsync(StreamRequestMessage requestMessage) {
+
+        if (log.isDebugEnabled())
+            log.debug("Preparing asynchronous HTTP request: " + requestMessage);
+
+        final REQUEST request = createRequest(requestMessage);
+        if (request == null)
+            return CompletableFuture.completedFuture(null);
+
+        final Callable<StreamResponseMessage> callable = createCallable(requestMessage, request);
+        final long start = System.currentTimeMillis();
+        final AtomicBoolean finished = new AtomicBoolean();
+        final CompletableFuture<StreamResponseMessage> future = new CompletableFuture<>();
+        getConfiguration().getRequestExecutorService().execute(() -> {
+            if (future.isDone())
+                return;
+            try {
+                future.complete(callable.call());
+            } catch (Exception ex) {
+                future.completeExceptionally(ex);
+            }
+        });
+        future.orTimeout(getConfiguration().getTimeoutSeconds(), TimeUnit.SECONDS);
+
+        CompletableFuture<StreamResponseMessage> result = future.handle((response, t) -> {
+            if (!finished.compareAndSet(false, true))
+                return null;
+            try {
+                if (t == null) {
+                    logElapsedTime(requestMessage, start);
+                    return response;
+                }
+                Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+                if (cause instanceof TimeoutException) {
+                    if (log.isInfoEnabled()) log.info(
+                        "Timeout of " + getConfiguration().getTimeoutSeconds()
+                        + " seconds while waiting for HTTP request to complete, aborting: " + requestMessage
+                    );
+                    abort(request);
+                } else if (!logExecutionException(cause)) {
+                    if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(cause));
+                }
+                return null;
+            } finally {
+                onFinally(request);
+            }
+        });
+        // Cancelling the returned future aborts the request
+        result.whenComplete((response, t) -> {
+            if (result.isCancelled() && finished.compareAndSet(false, true)) {
+                if (log.isDebugEnabled())
+                    log.debug("Cancellation, aborting request: " + requestMessage);
+                future.cancel(true);
+                try {
+                    abort(request);
+                } finally {
+                    onFinally(request);
+                }
+            }
+        });
+        return result;
+    }
+
+    protected void logElapsedTime(StreamRequestMessage requestMessage, long start) {
+        long elapsed = System.currentTimeMillis() - start;
+        if (log.isTraceEnabled())
+            log.trace("Got HTTP response in " + elapsed + "ms: " + requestMessage);
+        if (getConfiguration().getLogWarningSeconds() > 0
+            && elapsed > getConfiguration().getLogWarningSeconds() * 1000L) {
+            if (log.isWarnEnabled()) log.warn("HTTP request took a long time (" + elapsed + "ms): " + requestMessage);
+        }
+    }
+
     /**
      * Create a proprietary representation of this request, log warnings and
      * return <code>null</code> if creation fails.
@@ -0,0 +1,42 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.transport.spi;
+
+/**
+ * Decides if a received datagram deserves to be parsed, before any message is created.
+ * <p>
+ * The filter is consulted by the {@link MulticastReceiver} and {@link DatagramIO} receiving loops,
+ * on the raw bytes of each datagram. Only the headers that matter to the decision should be
+ * scanned, datagrams that are not accepted are silently dropped.
+ * </p>
+ * <p>
+ * An implementation of this interface has to be thread-safe.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public interface DatagramFilter {
+
+    /**
+     * @param data The buffer holding the datagram, it is reused once this method returned.
+     * @param offset The offset of the datagram in the buffer.
+     * @param length The length of the datagram.
+     * @return <code>true</code> if the datagram has to be parsed and handled.
+     */
+	boolean isAccepted(byte[] data, int offset, int length);
+
+}
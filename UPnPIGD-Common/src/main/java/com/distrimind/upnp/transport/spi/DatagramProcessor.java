@@ -43,7 +43,7 @@ public interface DatagramProcessor {
    
      *
      * @param receivedOnAddress The address of the socket on which this datagram was received.
-     * @param datagram The received UDP datagram.
+     * @param datagram The received UDP datagram, its buffer is reused by the transport once this method returned.
      * @return The populated instance.
      * @throws UnsupportedDataException If the datagram could not be read, or didn't contain required data.
      */
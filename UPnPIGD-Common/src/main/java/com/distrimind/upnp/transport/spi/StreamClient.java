@@ -18,6 +18,8 @@ package com.distrimind.upnp.transport.spi;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.StreamResponseMessage;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Service for sending TCP (HTTP) stream request messages.
  * 
@@ -69,6 +71,34 @@ public interface StreamClient<C extends StreamClientConfiguration> {
      */
 	StreamResponseMessage sendRequest(StreamRequestMessage message) throws InterruptedException;
 
+    /**
+     * Sends the given request without blocking the calling thread.
+     * <p>
+     * The returned future completes with the response, or with <code>null</code> if no response
+     * has been received or an error occurred, exactly like {@link #sendRequest(StreamRequestMessage)}.
+     * It never completes exceptionally, except when it is cancelled by the caller.
+     * </p>
+     * <p>
+     * This default implementation runs the blocking {@link #sendRequest(StreamRequestMessage)} on the
+     * configured request executor. Implementations built on a non-blocking transport should
+     * override it, so that no thread is held while waiting for the response.
+     * </p>
+     *
+     * @param message The message to send.
+     * @return The future response.
+     * @since 1.5.0
+     */
+	default CompletableFuture<StreamResponseMessage> sendRequestAsync(StreamRequestMessage message) {
+		return CompletableFuture.supplyAsync(() -> {
+			try {
+				return sendRequest(message);
+			} catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+				return null;
+			}
+		}, getConfiguration().getRequestExecutorService());
+	}
+
     /**
      * Stops the service, closes any connection pools etc.
      */
@@ -19,6 +19,8 @@ import com.distrimind.upnp.transport.Router;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.StreamResponseMessage;
 import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.platform.ExecutionPriority;
 import com.distrimind.upnp.protocol.ProtocolCreationException;
 import com.distrimind.upnp.protocol.ProtocolFactory;
 import com.distrimind.upnp.protocol.ReceivingSync;
@@ -57,6 +59,28 @@ public abstract class UpnpStream implements Runnable {
         return protocolFactory;
     }
 
+    /**
+     * Called when the stream is submitted to the executor, before the request message is read.
+     *
+     * @return {@link ExecutionPriority#CONTROL} for an action invocation, {@link ExecutionPriority#DEFAULT} otherwise.
+     * @since 1.5.0
+     */
+    public ExecutionPriority getExecutionPriority() {
+        return getRequestHeader(UpnpHeader.Type.SOAPACTION.getHttpName()) != null
+                ? ExecutionPriority.CONTROL
+                : ExecutionPriority.DEFAULT;
+    }
+
+    /**
+     * @param name The name of an HTTP header.
+     * @return The first value of the header in the received request, <code>null</code> if it
+     *         is missing or if the transport can't read it before the request message.
+     * @since 1.5.0
+     */
+    protected String getRequestHeader(String name) {
+        return null;
+    }
+
     /**
      * Selects a UPnP protocol, runs it within the calling thread, returns the response.
      * <p>
@@ -128,21 +128,53 @@
 
 package com.distrimind.upnp.desktop.platform;
 
+import com.distrimind.upnp.desktop.transport.impl.HttpClientStreamClientImpl;
 import com.distrimind.upnp.desktop.transport.impl.StreamServerImpl;
 import com.distrimind.upnp.platform.DefaultPlatformUpnpServiceConfiguration;
 import com.distrimind.upnp.transport.impl.*;
 import com.distrimind.upnp.transport.spi.*;
 
+import java.util.concurrent.ExecutorService;
+
 /**
  * @author Jason Mahdjoub
  * @since 1.2.0
  */
 public class DesktopPlatformUpnpServiceConfiguration extends DefaultPlatformUpnpServiceConfiguration {
 
+	/**
+	 * Set this system property to <code>true</code> to send HTTP requests with a
+	 * {@link HttpClientStreamClientImpl}, completing asynchronous requests without holding a thread.
+	 * @since 1.5.0
+	 */
+	public static final String SYSTEM_PROPERTY_HTTP_CLIENT_STREAM_CLIENT = "com.distrimind.upnp.transport.useHttpClientStreamClient";
+
 	public DesktopPlatformUpnpServiceConfiguration() {
 	}
 
 
+	/**
+	 * @return <code>true</code> if {@link #createStreamClient(ExecutorService, int)} creates a client built on
+	 * the non-blocking JDK HTTP client. Defaults to the value of the system property
+	 * {@link #SYSTEM_PROPERTY_HTTP_CLIENT_STREAM_CLIENT}.
+	 * @since 1.5.0
+	 */
+	public boolean isHttpClientStreamClientEnabled() {
+		return Boolean.getBoolean(SYSTEM_PROPERTY_HTTP_CLIENT_STREAM_CLIENT);
+	}
+
+	@Override
+	public StreamClient<?> createStreamClient(ExecutorService syncProtocolExecutorService, int timeoutSeconds) {
+		if (!isHttpClientStreamClientEnabled() || isPooledStreamClientEnabled())
+			return super.createStreamClient(syncProtocolExecutorService, timeoutSeconds);
+		return new HttpClientStreamClientImpl(
+				new StreamClientConfigurationImpl(
+						syncProtocolExecutorService,
+						timeoutSeconds
+				)
+		);
+	}
+
 	@Override
 	public StreamServer<?> createStreamServer(int streamServerPort) {
 		return new StreamServerImpl(
@@ -0,0 +1,366 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.desktop.transport.impl;
+
+import com.distrimind.flexilogxml.log.DMLogger;
+import com.distrimind.upnp.Log;
+import com.distrimind.upnp.http.IHeaders;
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.message.IUpnpHeaders;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpHeaders;
+import com.distrimind.upnp.model.message.UpnpMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.transport.impl.StreamClientConfigurationImpl;
+import com.distrimind.upnp.transport.spi.StreamClient;
+import com.distrimind.upnp.util.Exceptions;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Flow;
+
+/**
+ * Non-blocking implementation based on the JDK's <code>java.net.http.HttpClient</code>.
+ * <p>
+ * Requests are multiplexed by the client's selector thread, {@link #sendRequestAsync(StreamRequestMessage)}
+ * doesn't hold any thread while waiting for the response, and the configured request executor
+ * only runs the completion handlers. Connections are kept alive and reused by the client's own pool.
+ * </p>
+ * <p>
+ * Response bodies longer than {@link Constants#MAX_INPUT_STREAM_SIZE_IN_BYTES} are not read, the request fails.
+ * Stopping the client cancels the requests in flight.
+ * </p>
+ * <p>
+ * The headers managed by the client, such as <code>Host</code>, <code>Connection</code> or
+ * <code>Content-Length</code>, are not copied from the request message.
+ * </p>
+ * <p>
+ * This implementation <em>DOES NOT WORK</em> on Android.
+ * </p>
+ *
+ * @since 1.5.0
+ */
+public class HttpClientStreamClientImpl implements StreamClient<StreamClientConfigurationImpl> {
+
+	final private static DMLogger log = Log.getLogger(HttpClientStreamClientImpl.class);
+
+	/**
+	 * Headers the JDK client refuses to set, depending on its version.
+	 */
+	private static final Set<String> RESTRICTED_HEADERS = Set.of(
+			"connection", "content-length", "date", "expect", "from", "host",
+			"origin", "referer", "upgrade", "via", "warning"
+	);
+
+	final protected StreamClientConfigurationImpl configuration;
+	final protected HttpClient client;
+	private final Set<CompletableFuture<?>> exchanges = ConcurrentHashMap.newKeySet();
+	private volatile boolean stopped;
+
+	public HttpClientStreamClientImpl(StreamClientConfigurationImpl configuration) {
+		this.configuration = configuration;
+		this.client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_1_1)
+				.followRedirects(HttpClient.Redirect.NEVER)
+				.connectTimeout(Duration.ofSeconds(configuration.getTimeoutSeconds()))
+				.executor(configuration.getRequestExecutorService())
+				.build();
+	}
+
+	@Override
+	public StreamClientConfigurationImpl getConfiguration() {
+		return configuration;
+	}
+
+	@Override
+	public StreamResponseMessage sendRequest(StreamRequestMessage requestMessage) throws InterruptedException {
+		CompletableFuture<StreamResponseMessage> future = sendRequestAsync(requestMessage);
+		try {
+			return future.get();
+		} catch (InterruptedException ex) {
+			if (log.isDebugEnabled())
+				log.debug("Interruption, aborting request: " + requestMessage);
+			future.cancel(true);
+			throw new InterruptedException("HTTP request interrupted and aborted");
+		} catch (ExecutionException ex) {
+			if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(ex));
+			return null;
+		}
+	}
+
+	@Override
+	public CompletableFuture<StreamResponseMessage> sendRequestAsync(StreamRequestMessage requestMessage) {
+		final UpnpRequest requestOperation = requestMessage.getOperation();
+		if (log.isDebugEnabled()) {
+			log.debug("Preparing HTTP request message with method '" + requestOperation.getHttpMethodName() + "': " + requestMessage);
+		}
+
+		HttpRequest request;
+		try {
+			request = createRequest(requestMessage);
+		} catch (UnsupportedEncodingException | IllegalArgumentException ex) {
+			if (log.isWarnEnabled()) log.warn("Could not create request: " + requestMessage, Exceptions.unwrap(ex));
+			return CompletableFuture.completedFuture(null);
+		}
+
+		if (stopped) {
+			if (log.isDebugEnabled())
+				log.debug("Stream client stopped, not sending HTTP request: " + requestMessage);
+			return CompletableFuture.completedFuture(null);
+		}
+		if (log.isDebugEnabled()) {
+			log.debug("Sending HTTP request: " + requestMessage);
+		}
+		CompletableFuture<HttpResponse<byte[]>> exchange = client.sendAsync(request, createBodyHandler());
+		exchanges.add(exchange);
+		exchange.whenComplete((response, t) -> exchanges.remove(exchange));
+		// Stopped while sending
+		if (stopped)
+			exchange.cancel(true);
+		return exchange
+				.handle((response, t) -> {
+					if (t == null) {
+						try {
+							return createResponse(response);
+						} catch (UnsupportedEncodingException ex) {
+							if (log.isWarnEnabled()) log.warn("Could not read response: " + requestMessage, ex);
+							return null;
+						}
+					}
+					Throwable cause = t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
+					if (cause instanceof HttpTimeoutException) {
+						if (log.isInfoEnabled()) log.info(
+								"Timeout of " + getConfiguration().getTimeoutSeconds()
+										+ " seconds while waiting for HTTP request to complete, aborting: " + requestMessage
+						);
+					} else if (cause instanceof CancellationException) {
+						if (log.isDebugEnabled())
+							log.debug("HTTP request cancelled: " + requestMessage);
+					} else {
+						if (log.isWarnEnabled()) log.warn("HTTP request failed: " + requestMessage, Exceptions.unwrap(cause));
+					}
+					return null;
+				});
+	}
+
+	/**
+	 * Cancels the requests in flight, the client's resources are released when it is no longer referenced.
+	 */
+	@Override
+	public void stop() {
+		stopped = true;
+		for (CompletableFuture<?> exchange : exchanges) {
+			exchange.cancel(true);
+		}
+		exchanges.clear();
+	}
+
+	/**
+	 * @return The number of requests in flight.
+	 */
+	public int getExchangeCount() {
+		return exchanges.size();
+	}
+
+	/**
+	 * @return The handler reading the response body, failing if it is longer than
+	 * {@link Constants#MAX_INPUT_STREAM_SIZE_IN_BYTES}.
+	 */
+	protected HttpResponse.BodyHandler<byte[]> createBodyHandler() {
+		return responseInfo -> new LimitedBodySubscriber(
+				responseInfo.headers().firstValueAsLong("Content-Length").orElse(-1L),
+				Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES
+		);
+	}
+
+	protected HttpRequest createRequest(StreamRequestMessage requestMessage) throws UnsupportedEncodingException {
+		UpnpRequest requestOperation = requestMessage.getOperation();
+		HttpRequest.Builder builder = HttpRequest.newBuilder(requestOperation.getURI())
+				.timeout(Duration.ofSeconds(getConfiguration().getTimeoutSeconds()))
+				.method(requestOperation.getHttpMethodName(), createBodyPublisher(requestMessage));
+
+		// Add the default user agent if not already set on the message
+		if (!requestMessage.getHeaders().containsKey(UpnpHeader.Type.USER_AGENT)) {
+			builder.header(
+					UpnpHeader.Type.USER_AGENT.getHttpName(),
+					getConfiguration().getUserAgentValue(requestMessage.getUdaMajorVersion(), requestMessage.getUdaMinorVersion())
+			);
+		}
+
+		applyHeaders(builder, requestMessage.getHeaders());
+		return builder.build();
+	}
+
+	protected void applyHeaders(HttpRequest.Builder builder, IHeaders headers) {
+		if (log.isDebugEnabled()) {
+			log.debug("Writing headers on HttpRequest: " + headers.size());
+		}
+		for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
+			String headerName = entry.getKey();
+			if (RESTRICTED_HEADERS.contains(headerName.toLowerCase(Locale.ROOT))) {
+				continue;
+			}
+			for (String v : entry.getValue()) {
+				if (log.isDebugEnabled()) {
+					log.debug("Setting header '" + headerName + "': " + v);
+				}
+				builder.header(headerName, v);
+			}
+		}
+	}
+
+	protected HttpRequest.BodyPublisher createBodyPublisher(StreamRequestMessage requestMessage) throws UnsupportedEncodingException {
+		if (!requestMessage.hasBody()) {
+			return HttpRequest.BodyPublishers.noBody();
+		}
+		if (requestMessage.getBodyType() == UpnpMessage.BodyType.STRING) {
+			String charset = requestMessage.getContentTypeCharset() != null
+					? requestMessage.getContentTypeCharset()
+					: StandardCharsets.UTF_8.name();
+			return HttpRequest.BodyPublishers.ofByteArray(requestMessage.getBodyString().getBytes(charset));
+		}
+		return HttpRequest.BodyPublishers.ofByteArray(requestMessage.getBodyBytes());
+	}
+
+	protected StreamResponseMessage createResponse(HttpResponse<byte[]> response) throws UnsupportedEncodingException {
+
+		// Status, the JDK client doesn't expose the reason phrase
+		UpnpResponse.Status status = UpnpResponse.Status.getByStatusCode(response.statusCode());
+		UpnpResponse responseOperation = new UpnpResponse(response.statusCode(), status != null ? status.getStatusMsg() : "");
+
+		if (log.isDebugEnabled()) {
+			log.debug("Received response: " + responseOperation);
+		}
+
+		// Message
+		StreamResponseMessage responseMessage = new StreamResponseMessage(responseOperation);
+
+		// Headers, the client's lists are immutable
+		IUpnpHeaders headers = new UpnpHeaders();
+		for (Map.Entry<String, List<String>> entry : response.headers().map().entrySet()) {
+			headers.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+		}
+		responseMessage.setHeaders(headers);
+
+		// Body
+		byte[] bodyBytes = response.body();
+		if (bodyBytes != null && bodyBytes.length > 0 && responseMessage.isContentTypeMissingOrText()) {
+
+			log.debug("Response contains textual entity body, converting then setting string on message");
+			responseMessage.setBodyCharacters(bodyBytes);
+
+		} else if (bodyBytes != null && bodyBytes.length > 0) {
+
+			log.debug("Response contains binary entity body, setting bytes on message");
+			responseMessage.setBody(UpnpMessage.BodyType.BYTES, bodyBytes);
+
+		} else {
+			log.debug("Response did not contain entity body");
+		}
+
+		if (log.isDebugEnabled()) {
+			log.debug("Response message complete: " + responseMessage);
+		}
+		return responseMessage;
+	}
+
+	/**
+	 * Collects the body in memory, and cancels the subscription as soon as the declared or
+	 * received length exceeds the maximum.
+	 */
+	private static final class LimitedBodySubscriber implements HttpResponse.BodySubscriber<byte[]> {
+
+		private final CompletableFuture<byte[]> body = new CompletableFuture<>();
+		private final long declaredLength;
+		private final int maxLength;
+		private final ByteArrayOutputStream out;
+		private Flow.Subscription subscription;
+
+		private LimitedBodySubscriber(long declaredLength, int maxLength) {
+			this.declaredLength = declaredLength;
+			this.maxLength = maxLength;
+			this.out = new ByteArrayOutputStream(declaredLength >= 0 && declaredLength <= maxLength ? (int) declaredLength : 1024);
+		}
+
+		@Override
+		public CompletionStage<byte[]> getBody() {
+			return body;
+		}
+
+		@Override
+		public void onSubscribe(Flow.Subscription subscription) {
+			this.subscription = subscription;
+			if (declaredLength > maxLength)
+				fail();
+			else
+				subscription.request(Long.MAX_VALUE);
+		}
+
+		@Override
+		public void onNext(List<ByteBuffer> items) {
+			if (body.isDone())
+				return;
+			for (ByteBuffer item : items) {
+				int length = item.remaining();
+				if (out.size() + (long) length > maxLength) {
+					fail();
+					return;
+				}
+				byte[] bytes = new byte[length];
+				item.get(bytes);
+				out.write(bytes, 0, length);
+			}
+		}
+
+		@Override
+		public void onError(Throwable throwable) {
+			body.completeExceptionally(throwable);
+		}
+
+		@Override
+		public void onComplete() {
+			body.complete(out.toByteArray());
+		}
+
+		private void fail() {
+			subscription.cancel();
+			body.completeExceptionally(new IOException("Reach maximum input stream length : " + maxLength + " bytes"));
+		}
+	}
+}
@@ -75,6 +75,11 @@ public abstract class HttpExchangeUpnpStream extends UpnpStream {
         return httpExchange;
     }
 
+    @Override
+    protected String getRequestHeader(String name) {
+        return getHttpExchange().getRequestHeaders().getFirst(name);
+    }
+
     @Override
 	public void run() {
 
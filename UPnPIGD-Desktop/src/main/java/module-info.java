@@ -18,6 +18,7 @@ module UPnPIGD_Desktop {
 	requires FlexiLogXML_Desktop;
 	requires FlexiLogXML_Common;
 	requires static jdk.httpserver;
+	requires java.net.http;
 	exports com.distrimind.upnp.desktop.platform;
 	exports com.distrimind.upnp.desktop.transport.impl;
 }
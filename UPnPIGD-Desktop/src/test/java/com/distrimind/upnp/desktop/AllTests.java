@@ -34,15 +34,23 @@
 package com.distrimind.upnp.desktop;
 
 import com.distrimind.flexilogxml.FlexiLogXML;
+import com.distrimind.flexilogxml.TestGroup;
 import com.distrimind.flexilogxml.Tests;
 import com.distrimind.flexilogxml.log.Level;
+import com.distrimind.upnp.desktop.transport.AsyncStreamClientTest;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.List;
 
 public class AllTests extends com.distrimind.upnp.test.AllTests {
 	public static Tests getTests()
 	{
+		additionalTestGroups=List.of(
+				new TestGroup("testDesktopTransport", List.of(
+						AsyncStreamClientTest.class
+				))
+		);
 		return com.distrimind.upnp.test.AllTests.getTests();
 	}
 	public static void main(String[] args) throws IOException {
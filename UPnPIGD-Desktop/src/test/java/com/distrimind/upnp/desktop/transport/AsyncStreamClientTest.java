@@ -0,0 +1,233 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.desktop.transport;
+
+import com.distrimind.upnp.desktop.transport.impl.HttpClientStreamClientImpl;
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.transport.impl.StreamClientConfigurationImpl;
+import com.distrimind.upnp.transport.spi.AbstractStreamClient;
+import com.distrimind.upnp.transport.spi.AbstractStreamClientConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.testng.Assert.*;
+
+public class AsyncStreamClientTest {
+
+    protected HttpServer server;
+    protected ExecutorService serverExecutor;
+
+    @BeforeMethod
+    public void startServer() throws IOException {
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+        server.setExecutor(serverExecutor);
+        server.createContext("/", exchange -> {
+            try {
+                if (exchange.getRequestURI().getPath().equals("/slow"))
+                    Thread.sleep(300);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (exchange.getRequestURI().getPath().equals("/large")) {
+                // Chunked, the length is not declared
+                exchange.sendResponseHeaders(200, 0);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(new byte[Constants.MAX_INPUT_STREAM_SIZE_IN_BYTES + 1]);
+                } catch (IOException ignored) {
+                    // Closed by the client
+                }
+                return;
+            }
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            byte[] response = (exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath() + " "
+                    + exchange.getRequestHeaders().getFirst("NT") + " "
+                    + new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain; charset=\"utf-8\"");
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(response);
+            }
+        });
+        server.start();
+    }
+
+    @AfterMethod
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    @Test
+    public void sendWithoutHoldingThreads() throws Exception {
+        // A single thread only runs the completion handlers
+        ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+        HttpClientStreamClientImpl client = new HttpClientStreamClientImpl(new StreamClientConfigurationImpl(requestExecutor, 10));
+        try {
+            long start = System.currentTimeMillis();
+            List<CompletableFuture<StreamResponseMessage>> responses = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                StreamRequestMessage request = new StreamRequestMessage(UpnpRequest.Method.NOTIFY, getURI("/slow"), "body" + i);
+                request.getHeaders().add(UpnpHeader.Type.NT.getHttpName(), "upnp:event");
+                // Managed by the client, must be ignored
+                request.getHeaders().add(UpnpHeader.Type.HOST.getHttpName(), "127.0.0.1");
+                responses.add(client.sendRequestAsync(request));
+            }
+            for (int i = 0; i < responses.size(); i++) {
+                StreamResponseMessage response = responses.get(i).get(5, TimeUnit.SECONDS);
+                assertNotNull(response);
+                assertEquals(response.getOperation().getStatusCode(), 200);
+                assertEquals(response.getBodyString(), "NOTIFY /slow upnp:event body" + i);
+            }
+            // The requests ran concurrently, not one after the other on the single request thread
+            assertTrue(System.currentTimeMillis() - start < 10 * 300);
+
+            StreamResponseMessage response = client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml")));
+            assertNotNull(response);
+            assertEquals(response.getBodyString(), "GET /desc.xml null ");
+        } finally {
+            client.stop();
+            requestExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void limitResponseLength() throws Exception {
+        ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+        HttpClientStreamClientImpl client = new HttpClientStreamClientImpl(new StreamClientConfigurationImpl(requestExecutor, 10));
+        try {
+            assertNull(client.sendRequestAsync(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/large")))
+                    .get(5, TimeUnit.SECONDS));
+            // Still usable
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+        } finally {
+            client.stop();
+            requestExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void cancelOnStop() throws Exception {
+        ExecutorService requestExecutor = Executors.newSingleThreadExecutor();
+        HttpClientStreamClientImpl client = new HttpClientStreamClientImpl(new StreamClientConfigurationImpl(requestExecutor, 10));
+        try {
+            CompletableFuture<StreamResponseMessage> response =
+                    client.sendRequestAsync(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/slow")));
+            assertEquals(client.getExchangeCount(), 1);
+            client.stop();
+            // Completed without waiting for the slow response
+            assertNull(response.get(100, TimeUnit.MILLISECONDS));
+            assertEquals(client.getExchangeCount(), 0);
+            assertNull(client.sendRequestAsync(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml")))
+                    .get(100, TimeUnit.MILLISECONDS));
+        } finally {
+            requestExecutor.shutdown();
+        }
+    }
+
+    @Test
+    public void abortOnTimeout() throws Exception {
+        ExecutorService requestExecutor = Executors.newCachedThreadPool();
+        AtomicBoolean aborted = new AtomicBoolean();
+        AtomicBoolean finished = new AtomicBoolean();
+        AbstractStreamClient<AbstractStreamClientConfiguration, Thread[]> client = new AbstractStreamClient<>() {
+            final AbstractStreamClientConfiguration configuration = new AbstractStreamClientConfiguration(requestExecutor, 1) {
+            };
+
+            @Override
+            protected Thread[] createRequest(StreamRequestMessage requestMessage) {
+                return new Thread[1];
+            }
+
+            @Override
+            protected Callable<StreamResponseMessage> createCallable(StreamRequestMessage requestMessage, Thread[] request) {
+                return () -> {
+                    synchronized (request) {
+                        request[0] = Thread.currentThread();
+                    }
+                    Thread.sleep(10000);
+                    return new StreamResponseMessage("too late");
+                };
+            }
+
+            @Override
+            protected void abort(Thread[] request) {
+                aborted.set(true);
+                synchronized (request) {
+                    if (request[0] != null)
+                        request[0].interrupt();
+                }
+            }
+
+            @Override
+            protected boolean logExecutionException(Throwable t) {
+                return true;
+            }
+
+            @Override
+            protected void onFinally(Thread[] request) {
+                finished.set(true);
+            }
+
+            @Override
+            public void stop() {
+            }
+
+            @Override
+            public AbstractStreamClientConfiguration getConfiguration() {
+                return configuration;
+            }
+        };
+        try {
+            long start = System.currentTimeMillis();
+            CompletableFuture<StreamResponseMessage> response =
+                    client.sendRequestAsync(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml")));
+            assertFalse(response.isDone());
+            assertNull(response.get(5, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - start < 5000);
+            assertTrue(aborted.get());
+            assertTrue(finished.get());
+        } finally {
+            requestExecutor.shutdownNow();
+        }
+    }
+
+    protected URI getURI(String path) {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+}
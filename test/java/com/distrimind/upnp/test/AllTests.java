@@ -44,6 +44,7 @@ import com.distrimind.upnp.test.model.*;
 import com.distrimind.upnp.test.resources.*;
 import com.distrimind.upnp.test.ssdp.*;
 import com.distrimind.upnp.test.control.*;
+import com.distrimind.upnp.test.gena.EventDeliveryTest;
 import com.distrimind.upnp.test.gena.EventXMLProcessingTest;
 import com.distrimind.upnp.test.gena.IncomingSubscriptionLifecycleTest;
 import com.distrimind.upnp.test.gena.OutgoingSubscriptionFailureTest;
@@ -51,9 +52,17 @@ import com.distrimind.upnp.test.gena.OutgoingSubscriptionLifecycleTest;
 import com.distrimind.upnp.test.local.*;
 import com.distrimind.upnp.test.model.*;
 import com.distrimind.upnp.test.model.profile.DeviceDetailsProviderTest;
+import com.distrimind.upnp.test.protocol.ProtocolExecutorTest;
+import com.distrimind.upnp.test.protocol.ProtocolSchedulerTest;
+import com.distrimind.upnp.test.protocol.RemoteDescriptorCacheTest;
+import com.distrimind.upnp.test.protocol.RetrieveRemoteDescriptorsTest;
+import com.distrimind.upnp.test.protocol.VirtualThreadPinningTest;
 import com.distrimind.upnp.test.protocol.ProtocolFactoryTest;
 import com.distrimind.upnp.test.resources.*;
 import com.distrimind.upnp.test.ssdp.*;
+import com.distrimind.upnp.test.transport.HostAddressResolverTest;
+import com.distrimind.upnp.test.transport.SubnetIndexTest;
+import com.distrimind.upnp.test.transport.PooledStreamClientTest;
 import example.binarylight.BinaryLightTest;
 import example.controlpoint.*;
 import example.igd.ConnectionInfoTest;
@@ -76,6 +85,7 @@ public class AllTests {
 						InvalidActionXMLProcessingTest.class
 				)),
 				new TestGroup("testGena", List.of(
+						EventDeliveryTest.class,
 						EventXMLProcessingTest.class,
 						IncomingSubscriptionLifecycleTest.class,
 						InvalidActionXMLProcessingTest.class,
@@ -101,6 +111,11 @@ public class AllTests {
 						UtilTest.class
 				)),
 				new TestGroup("testProtocol", List.of(
+						ProtocolExecutorTest.class,
+						ProtocolSchedulerTest.class,
+						RemoteDescriptorCacheTest.class,
+						RetrieveRemoteDescriptorsTest.class,
+						VirtualThreadPinningTest.class,
 						ProtocolFactoryTest.class
 				)),
 				new TestGroup("testResources", List.of(
@@ -112,12 +127,21 @@ public class AllTests {
 				)),
 				new TestGroup("testSSDP", List.of(
 						AdvertisementTest.class,
+						DatagramChannelSelectorTest.class,
+						DatagramFilterTest.class,
 						NotifyAliveConcurrentTest.class,
 						NotifyTest.class,
 						RegistryExpirationTest.class,
+						ConcurrentRegistryTest.class,
+						RegistryListenerDispatchTest.class,
 						SearchReceivedTest.class,
 						SearchResponseTest.class
 				)),
+				new TestGroup("testTransport", List.of(
+						PooledStreamClientTest.class,
+						HostAddressResolverTest.class,
+						SubnetIndexTest.class
+				)),
 				new TestGroup("binary_light", List.of(
 						BinaryLightTest.class
 				)),
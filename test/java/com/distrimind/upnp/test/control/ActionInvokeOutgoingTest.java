@@ -49,6 +49,9 @@ import org.testng.annotations.Test;
 
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.testng.Assert.*;
 
@@ -284,6 +287,66 @@ public class ActionInvokeOutgoingTest {
 
     }
 
+    @Test
+    public void callRemoteGetAsync() throws Exception {
+
+        MockUpnpService upnpService = new MockUpnpService() {
+            @Override
+            protected MockRouter createRouter() {
+                return new MockRouter(getConfiguration(), getProtocolFactory()) {
+
+                    @Override
+                    public CompletableFuture<StreamResponseMessage> sendAsync(StreamRequestMessage msg) {
+                        // The response arrives later, on another thread
+                        return CompletableFuture.supplyAsync(() -> {
+                            try {
+                                return send(msg);
+                            } catch (RouterException ex) {
+                                throw new CompletionException(ex);
+                            }
+                        }, CompletableFuture.delayedExecutor(200, TimeUnit.MILLISECONDS));
+                    }
+
+                    @Override
+                    public List<StreamResponseMessage> getStreamResponseMessages() {
+                        return List.of(
+                            new StreamResponseMessage(RESPONSE_SUCCESSFUL)
+                        );
+                    }
+                };
+            }
+        };
+
+        RemoteDevice device = SampleData.createRemoteDevice();
+        RemoteService service = SampleData.getFirstService(device);
+        upnpService.getRegistry().addDevice(device);
+
+        ActionInvocation<?> actionInvocation = new ActionInvocation<>(service.getAction(GET_TARGET));
+
+        final boolean[] assertions = new boolean[1];
+        ActionCallback callback = new ActionCallback(actionInvocation) {
+            @Override
+            public void success(ActionInvocation<?> invocation) {
+                assertions[0] = true;
+            }
+
+            @Override
+            public void failure(ActionInvocation<?> invocation, UpnpResponse operation, String defaultMsg) {
+                assertions[0] = false;
+            }
+        };
+
+        CompletableFuture<Void> result = upnpService.getControlPoint().executeAsync(callback);
+        assertFalse(result.isDone());
+        result.get(5, TimeUnit.SECONDS);
+
+        assertNull(actionInvocation.getFailure());
+        assertTrue(assertions[0]);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1);
+        assertEquals(actionInvocation.getOutput().size(), 1);
+        assertEquals(actionInvocation.getOutput().iterator().next().toString(), "0");
+    }
+
     @Test
     public void callRemoteGetFailure() throws Exception {
 
@@ -18,6 +18,7 @@ package com.distrimind.upnp.test.control;
 
 import com.distrimind.upnp.mock.MockUpnpService;
 import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.UnsupportedDataException;
 import com.distrimind.upnp.model.action.ActionException;
 import com.distrimind.upnp.model.action.ActionInvocation;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
@@ -46,6 +47,7 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.net.URI;
+import java.nio.charset.StandardCharsets;
 
 import static org.testng.Assert.*;
 
@@ -72,6 +74,22 @@ public class ActionXMLProcessingTest {
             "     </u:SetSomeValue>\n" +
             "   </s:Body>\n" +
             " </s:Envelope>";
+    public static final String FAULT_WITHOUT_ERROR_CODE_RESPONSE = "<?xml version=\"1.0\"?>\n" +
+            " <s:Envelope\n" +
+            "     xmlns:s=\"https://schemas.xmlsoap.org/soap/envelope/\"\n" +
+            "     s:encodingStyle=\"https://schemas.xmlsoap.org/soap/encoding/\">\n" +
+            "   <s:Body>\n" +
+            "     <s:Fault>\n" +
+            "       <faultcode>s:Client</faultcode>\n" +
+            "       <faultstring>UPnPError</faultstring>\n" +
+            "       <detail>\n" +
+            "         <UPnPError xmlns=\"urn:schemas-upnp-org:control-1-0\">\n" +
+            "           <errorDescription>No code</errorDescription>\n" +
+            "         </UPnPError>\n" +
+            "       </detail>\n" +
+            "     </s:Fault>\n" +
+            "   </s:Body>\n" +
+            " </s:Envelope>";
     public static final String PROCESSORS = "processors";
 
     @DataProvider(name = PROCESSORS)
@@ -178,6 +196,29 @@ public class ActionXMLProcessingTest {
         assertEquals(actionInvocation.getFailure().getMessage(), ErrorCode.ACTION_FAILED.getDescription() + ". A test string.");
     }
 
+    @Test(dataProvider = PROCESSORS)
+    public void readFailureWithoutErrorCode(final SOAPActionProcessor processor) throws Exception {
+
+        LocalDevice<?> ld = ActionSampleData.createTestDevice(ActionSampleData.LocalTestServiceExtended.class);
+        LocalService<?> svc = ld.getServices().iterator().next();
+
+        Action<?> action = svc.getAction("GetTarget");
+        ActionInvocation<?> actionInvocation = new ActionInvocation<>(action);
+
+        StreamResponseMessage incomingStream = new StreamResponseMessage(UpnpResponse.Status.INTERNAL_SERVER_ERROR);
+        incomingStream.setBody(UpnpMessage.BodyType.STRING, FAULT_WITHOUT_ERROR_CODE_RESPONSE);
+        IncomingActionResponseMessage incomingCall = new IncomingActionResponseMessage(incomingStream);
+
+        try {
+            processor.readBody(incomingCall, actionInvocation);
+            fail("A fault without error code must be rejected");
+        } catch (UnsupportedDataException ex) {
+            // Expected
+        }
+        assertNull(actionInvocation.getFailure());
+        assertTrue(actionInvocation.getOutput().isEmpty());
+    }
+
     @Test(dataProvider = PROCESSORS)
     public void readEncodedRequest(final SOAPActionProcessor processor) throws Exception {
 
@@ -283,4 +324,29 @@ public class ActionXMLProcessingTest {
         // Note that quotes are not encoded because this text is not an XML attribute value!
         assertTrue(response.getBodyString().contains("<SomeValue>This is decoded: &amp;&lt;&gt;'\"</SomeValue>"));
     }
+
+    @Test(dataProvider = PROCESSORS)
+    public void writeReadEncodedBytesResponse(final SOAPActionProcessor processor) throws Exception {
+
+        LocalDevice<?> ld = ActionSampleData.createTestDevice(ActionSampleData.LocalTestServiceExtended.class);
+        LocalService<?> svc = ld.getServices().iterator().next();
+
+        Action<?> action = svc.getAction("GetSomeValue");
+        ActionInvocation<?> actionInvocation = new ActionInvocation<>(action);
+        String value = "D\u00e9j\u00e0 vu \u2713 & <more>";
+        actionInvocation.setOutput("SomeValue", value);
+
+        OutgoingActionResponseMessage outgoingCall = new OutgoingActionResponseMessage(action);
+        processor.writeBody(outgoingCall, actionInvocation);
+
+        // Serialized straight to UTF-8, without intermediate string
+        assertEquals(outgoingCall.getBodyType(), UpnpMessage.BodyType.BYTES);
+        assertTrue(new String(outgoingCall.getBodyBytes(), StandardCharsets.UTF_8).contains("D\u00e9j\u00e0 vu \u2713 &amp; &lt;more&gt;"));
+
+        IncomingActionResponseMessage incomingCall = new IncomingActionResponseMessage(new StreamResponseMessage(outgoingCall));
+        actionInvocation = new ActionInvocation<>(action);
+        processor.readBody(incomingCall, actionInvocation);
+
+        assertEquals(actionInvocation.getOutput("SomeValue").toString(), value);
+    }
 }
@@ -0,0 +1,67 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.data;
+
+import com.distrimind.upnp.UpnpService;
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.registry.Registry;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Helpers shared by the tests blocking on latches or replacing the registry of the mock service.
+ */
+public final class TestSupport {
+
+    public static final long AWAIT_TIMEOUT_SECONDS = 5;
+
+    private TestSupport() {
+    }
+
+    /**
+     * Waits for the latch without throwing a checked exception, so it can be called from listeners and tasks.
+     */
+    public static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(AWAIT_TIMEOUT_SECONDS, TimeUnit.SECONDS), "Latch not released");
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Creates a mock service not sending alive messages, using the given registry.
+     * <p>
+     * The registry is not maintained if the configuration does not maintain it.
+     * </p>
+     */
+    public static MockUpnpService createUpnpService(MockUpnpServiceConfiguration configuration,
+                                                    final Function<UpnpService, Registry> registryFactory) throws IOException {
+        return new MockUpnpService(false, configuration) {
+            @Override
+            protected Registry createRegistry(MockUpnpServiceConfiguration configuration) {
+                return registryFactory.apply(this);
+            }
+        };
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.gena;
+
+import com.distrimind.upnp.mock.MockPendingRouter;
+import com.distrimind.upnp.mock.MockRouter;
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.model.gena.CancelReason;
+import com.distrimind.upnp.model.gena.LocalGENASubscription;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.EventSequenceHeader;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.meta.LocalService;
+import com.distrimind.upnp.model.state.StateVariableValue;
+import com.distrimind.upnp.protocol.GENAEventDispatcher;
+import com.distrimind.upnp.test.data.SampleData;
+import org.testng.annotations.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.testng.Assert.*;
+
+public class EventDeliveryTest {
+
+    @Test
+    public void coalesceEventsOfSlowSubscriber() throws Exception {
+        DeliveryService upnpService = new DeliveryService();
+        LocalService<GenaSampleData.LocalTestService> service = upnpService.addTestDevice();
+        TestSubscription subscription = upnpService.addSubscription(service);
+        GENAEventDispatcher dispatcher = new GENAEventDispatcher(upnpService.getRegistry(), 1, 8, 0);
+
+        dispatcher.dispatch(subscription);
+        assertEquals(upnpService.getRouter().getPendingRequestCount(), 1);
+        assertEquals(dispatcher.getInFlightCount(), 1);
+
+        // The subscriber didn't answer yet, the next events are merged
+        setStatus(subscription, service, true);
+        dispatcher.dispatch(subscription);
+        setStatus(subscription, service, false);
+        dispatcher.dispatch(subscription);
+        assertEquals(upnpService.getRouter().getPendingRequestCount(), 1);
+        assertEquals(dispatcher.getCoalescedEventCount(subscription), 1);
+
+        upnpService.respond(UpnpResponse.Status.OK);
+        assertEquals(upnpService.getRouter().getPendingRequestCount(), 1);
+        upnpService.respond(UpnpResponse.Status.OK);
+        assertEquals(dispatcher.getInFlightCount(), 0);
+
+        List<StreamRequestMessage> sent = upnpService.getRouter().getSentStreamRequestMessages();
+        assertEquals(sent.size(), 2);
+        assertEquals(getSequence(sent.get(0)), 0);
+        assertEquals(getSequence(sent.get(1)), 1);
+        // Latest value wins
+        assertTrue(sent.get(1).getBodyString().contains("<Status>0</Status>"));
+        assertEquals(subscription.getCurrentSequence().getValue(), Long.valueOf(2));
+    }
+
+    @Test
+    public void limitEventsInFlight() throws Exception {
+        DeliveryService upnpService = new DeliveryService();
+        LocalService<GenaSampleData.LocalTestService> service = upnpService.addTestDevice();
+        TestSubscription first = upnpService.addSubscription(service);
+        TestSubscription second = upnpService.addSubscription(service);
+        GENAEventDispatcher dispatcher = new GENAEventDispatcher(upnpService.getRegistry(), 1, 1, 0);
+
+        dispatcher.dispatch(first);
+        dispatcher.dispatch(second);
+        assertEquals(upnpService.getRouter().getPendingRequestCount(), 1);
+
+        upnpService.respond(UpnpResponse.Status.OK);
+        assertEquals(upnpService.getRouter().getPendingRequestCount(), 1);
+        upnpService.respond(UpnpResponse.Status.OK);
+
+        List<StreamRequestMessage> sent = upnpService.getRouter().getSentStreamRequestMessages();
+        assertEquals(sent.size(), 2);
+        assertEquals(sent.get(0).getHeaders().getFirstHeader(UpnpHeader.Type.SID).getString(), first.getSubscriptionId());
+        assertEquals(sent.get(1).getHeaders().getFirstHeader(UpnpHeader.Type.SID).getString(), second.getSubscriptionId());
+    }
+
+    @Test
+    public void removeFailingSubscription() throws Exception {
+        DeliveryService upnpService = new DeliveryService();
+        LocalService<GenaSampleData.LocalTestService> service = upnpService.addTestDevice();
+        TestSubscription subscription = upnpService.addSubscription(service);
+        GENAEventDispatcher dispatcher = new GENAEventDispatcher(upnpService.getRegistry(), 1, 8, 2);
+
+        dispatcher.dispatch(subscription);
+        upnpService.respond(UpnpResponse.Status.INTERNAL_SERVER_ERROR);
+        dispatcher.dispatch(subscription);
+        upnpService.respond(UpnpResponse.Status.OK);
+        dispatcher.dispatch(subscription);
+        upnpService.respond(UpnpResponse.Status.INTERNAL_SERVER_ERROR);
+        assertNotNull(upnpService.getRegistry().getLocalSubscription(subscription.getSubscriptionId()));
+        assertNull(subscription.cancelReason);
+
+        dispatcher.dispatch(subscription);
+        upnpService.respond(UpnpResponse.Status.INTERNAL_SERVER_ERROR);
+        assertNull(upnpService.getRegistry().getLocalSubscription(subscription.getSubscriptionId()));
+        assertEquals(subscription.cancelReason, CancelReason.EVENT_DELIVERY_FAILED);
+
+        // Nothing is sent to a removed subscription
+        dispatcher.dispatch(subscription);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 4);
+        assertEquals(dispatcher.getInFlightCount(), 0);
+    }
+
+    @Test
+    public void releaseEventWithoutResponse() throws Exception {
+        DeliveryService upnpService = new DeliveryService();
+        LocalService<GenaSampleData.LocalTestService> service = upnpService.addTestDevice();
+        TestSubscription subscription = upnpService.addSubscription(service);
+        GENAEventDispatcher dispatcher = new GENAEventDispatcher(upnpService.getRegistry(), 1, 1, 0) {
+            @Override
+            protected long getEventTimeoutMillis() {
+                return 100;
+            }
+        };
+
+        // Never completed, as if its completion had been lost
+        dispatcher.dispatch(subscription);
+        assertEquals(dispatcher.getInFlightCount(), 1);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (dispatcher.getInFlightCount() > 0 && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        assertEquals(dispatcher.getInFlightCount(), 0);
+
+        // The permit has been released, the next event is sent
+        dispatcher.dispatch(subscription);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 2);
+        assertEquals(dispatcher.getInFlightCount(), 1);
+    }
+
+    @Test
+    public void dropQueueOfRemovedSubscription() throws Exception {
+        DeliveryService upnpService = new DeliveryService(true);
+        try {
+            LocalService<GenaSampleData.LocalTestService> service = upnpService.addTestDevice();
+            TestSubscription subscription = upnpService.addSubscription(service, 1);
+            GENAEventDispatcher dispatcher = upnpService.getRegistry().getEventDispatcher();
+            dispatcher.dispatch(subscription);
+            upnpService.respond(UpnpResponse.Status.OK);
+            assertEquals(dispatcher.getQueueCount(), 1);
+
+            // Removed by the registry maintenance
+            long deadline = System.currentTimeMillis() + 10000;
+            while (subscription.cancelReason == null && System.currentTimeMillis() < deadline)
+                Thread.sleep(50);
+            assertEquals(subscription.cancelReason, CancelReason.EXPIRED);
+            assertEquals(dispatcher.getQueueCount(), 0);
+
+            // Removed with its device
+            subscription = upnpService.addSubscription(service, 1800);
+            dispatcher.dispatch(subscription);
+            upnpService.respond(UpnpResponse.Status.OK);
+            assertEquals(dispatcher.getQueueCount(), 1);
+            upnpService.getRegistry().removeDevice(service.getDevice());
+            assertEquals(dispatcher.getQueueCount(), 0);
+        } finally {
+            upnpService.shutdown();
+        }
+    }
+
+    private static long getSequence(StreamRequestMessage message) {
+        return message.getHeaders().getFirstHeader(UpnpHeader.Type.SEQ, EventSequenceHeader.class).getValue().getValue();
+    }
+
+    private static void setStatus(TestSubscription subscription, LocalService<GenaSampleData.LocalTestService> service, boolean status) throws Exception {
+        subscription.getCurrentValues().put(
+                "Status",
+                new StateVariableValue<>(service.getStateVariable("Status"), status)
+        );
+    }
+
+    /**
+     * Keeps the event requests waiting until {@link #respond(UpnpResponse.Status)} is called.
+     */
+    static class DeliveryService extends MockUpnpService {
+
+        DeliveryService() throws Exception {
+        }
+
+        DeliveryService(boolean maintainsRegistry) throws Exception {
+            super(false, maintainsRegistry);
+        }
+
+        @Override
+        protected MockRouter createRouter() {
+            return new MockPendingRouter(getConfiguration(), getProtocolFactory());
+        }
+
+        @Override
+        public MockPendingRouter getRouter() {
+            return (MockPendingRouter) super.getRouter();
+        }
+
+        LocalService<GenaSampleData.LocalTestService> addTestDevice() throws Exception {
+            LocalDevice<GenaSampleData.LocalTestService> device = GenaSampleData.createTestDevice(GenaSampleData.LocalTestService.class);
+            getRegistry().addDevice(device);
+            return device.getServices().iterator().next();
+        }
+
+        TestSubscription addSubscription(LocalService<GenaSampleData.LocalTestService> service) throws Exception {
+            return addSubscription(service, 1800);
+        }
+
+        TestSubscription addSubscription(LocalService<GenaSampleData.LocalTestService> service, int durationSeconds) throws Exception {
+            TestSubscription subscription = new TestSubscription(service, durationSeconds);
+            getRegistry().addLocalSubscription(subscription);
+            return subscription;
+        }
+
+        void respond(UpnpResponse.Status status) {
+            getRouter().respond(new StreamResponseMessage(status));
+        }
+    }
+
+    static class TestSubscription extends LocalGENASubscription<GenaSampleData.LocalTestService> {
+
+        volatile CancelReason cancelReason;
+
+        TestSubscription(LocalService<GenaSampleData.LocalTestService> service, int durationSeconds) throws Exception {
+            super(service, durationSeconds, Collections.singletonList(SampleData.getLocalBaseURL()));
+        }
+
+        @Override
+        public void established() {
+        }
+
+        @Override
+        public void ended(CancelReason reason) {
+            cancelReason = reason;
+        }
+
+        @Override
+        public void eventReceived() {
+        }
+    }
+}
@@ -23,6 +23,7 @@ import com.distrimind.upnp.model.gena.LocalGENASubscription;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.gena.IncomingEventRequestMessage;
 import com.distrimind.upnp.model.message.gena.OutgoingEventRequestMessage;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
 import com.distrimind.upnp.model.meta.LocalDevice;
 import com.distrimind.upnp.model.meta.LocalService;
 import com.distrimind.upnp.model.meta.RemoteDevice;
@@ -40,6 +41,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 
@@ -125,7 +128,38 @@ public class EventXMLProcessingTest {
         assertTrue(gotValueOne && gotValueTwo);
     }
 
+    @Test
+    public void shareBodyOfSameValues() throws Exception {
+        GENAEventProcessor processor = new GENAEventProcessorImpl();
+
+        LocalDevice<GenaSampleData.LocalTestService> localDevice = GenaSampleData.createTestDevice(GenaSampleData.LocalTestService.class);
+        LocalService<GenaSampleData.LocalTestService> localService = localDevice.getServices().iterator().next();
+
+        OutgoingEventRequestMessage first = getOutgoingEventRequestMessage(localService);
+        processor.writeBody(first);
+
+        // Another subscriber notified of the same state change
+        LocalGENASubscription<GenaSampleData.LocalTestService> subscription = getSubscription(localService);
+        OutgoingEventRequestMessage second = new OutgoingEventRequestMessage(
+                subscription, SampleData.getLocalBaseURL(), subscription.getCurrentSequence(), first.getStateVariableValues()
+        );
+        processor.writeBody(second);
+        assertSame(second.getBody(), first.getBody());
+        assertEquals(second.getHeaders().getFirstHeader(UpnpHeader.Type.SID).getString(), subscription.getSubscriptionId());
+
+        // New values are serialized again
+        OutgoingEventRequestMessage third = getOutgoingEventRequestMessage(localService);
+        processor.writeBody(third);
+        assertNotSame(third.getBody(), first.getBody());
+        assertEquals(third.getBody(), first.getBody());
+    }
+
     private static OutgoingEventRequestMessage getOutgoingEventRequestMessage(LocalService<GenaSampleData.LocalTestService> localService) throws Exception {
+        LocalGENASubscription<GenaSampleData.LocalTestService> subscription = getSubscription(localService);
+		return new OutgoingEventRequestMessage(subscription, subscription.getCallbackURLs().get(0));
+    }
+
+    private static LocalGENASubscription<GenaSampleData.LocalTestService> getSubscription(LocalService<GenaSampleData.LocalTestService> localService) throws Exception {
         List<URL> urls = new ArrayList<>() {
             private static final long serialVersionUID = 1L;
 
@@ -134,8 +168,7 @@ public class EventXMLProcessingTest {
             }
         };
 
-        LocalGENASubscription<GenaSampleData.LocalTestService> subscription =
-                new LocalGENASubscription<>(localService, 1800, urls) {
+        return new LocalGENASubscription<>(localService, 1800, urls) {
 
                     @Override
 					public void ended(CancelReason reason) {
@@ -152,8 +185,6 @@ public class EventXMLProcessingTest {
 
                     }
                 };
-
-		return new OutgoingEventRequestMessage(subscription, subscription.getCallbackURLs().get(0));
     }
 
 
@@ -32,6 +32,7 @@ import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
 import com.distrimind.upnp.model.DiscoveryOptions;
 import com.distrimind.upnp.model.Namespace;
 import com.distrimind.upnp.model.ServerClientTokens;
+import com.distrimind.upnp.model.message.OutgoingDatagramMessage;
 import com.distrimind.upnp.model.message.UpnpMessage;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
 import com.distrimind.upnp.model.meta.DeviceDetails;
@@ -44,6 +45,8 @@ import com.distrimind.upnp.test.data.SampleData;
 import com.distrimind.upnp.util.URIUtil;
 import org.testng.annotations.Test;
 
+import java.util.List;
+
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
@@ -119,9 +122,16 @@ public class LocalDeviceBindingAdvertisementTest {
 
         upnpService.shutdown();
 
-        // Check correct byebye
-        assertTrue(upnpService.getRouter().getOutgoingDatagramMessages().size() >= 30);
-        for (UpnpMessage<?> msg : upnpService.getRouter().getOutgoingDatagramMessages()) {
+        // Check correct byebye, only refreshes already being sent when shutting down may precede it
+        List<OutgoingDatagramMessage<?>> msgs = upnpService.getRouter().getOutgoingDatagramMessages();
+        int firstByebye = 0;
+        while (firstByebye < msgs.size()
+                && msgs.get(firstByebye).getHeaders().getFirstHeader(UpnpHeader.Type.NTS).getValue() != NotificationSubtype.BYEBYE) {
+            assertAliveMsgBasics(upnpService.getConfiguration().getNamespace(), msgs.get(firstByebye), ld, 1);
+            firstByebye++;
+        }
+        assertTrue(msgs.size() - firstByebye >= 30);
+        for (UpnpMessage<?> msg : msgs.subList(firstByebye, msgs.size())) {
             assertByeByeMsgBasics(upnpService.getConfiguration().getNamespace(), msg, ld, 1);
         }
     }
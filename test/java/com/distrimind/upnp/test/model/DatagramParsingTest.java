@@ -43,6 +43,7 @@ import org.testng.annotations.Test;
 import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.util.Arrays;
 
 import static org.testng.Assert.*;
 
@@ -80,6 +81,30 @@ public class DatagramParsingTest {
 
     }
 
+    @Test
+    public void readSliceOfReusedBuffer() throws Exception {
+        DatagramProcessor processor = new DefaultUpnpServiceConfiguration().getDatagramProcessor();
+        DatagramPacket source = getDatagramPacket();
+
+        // Stale bytes of a previous and longer datagram follow the received one
+        byte[] buffer = new byte[source.getLength() + 64];
+        Arrays.fill(buffer, (byte) 'X');
+        System.arraycopy(source.getData(), 0, buffer, 16, source.getLength() - 4);
+        DatagramPacket packet = new DatagramPacket(buffer, 16, source.getLength() - 4, source.getSocketAddress());
+
+        UpnpMessage<?> msg = processor.read(InetAddress.getByName("127.0.0.1"), packet);
+        assertEquals(msg.getHeaders().getFirstHeader(UpnpHeader.Type.MAX_AGE, MaxAgeHeader.class).getValue().toString(), "2000");
+        assertEquals(
+            msg.getHeaders().getFirstHeader(UpnpHeader.Type.USN, USNRootDeviceHeader.class).getValue().getIdentifierString(),
+            SampleDeviceRoot.getRootUDN().getIdentifierString()
+        );
+        assertFalse(msg.getHeaders().containsKey("XXXX"));
+
+        // Parsed messages don't depend on the receive buffer
+        Arrays.fill(buffer, (byte) 0);
+        assertEquals(msg.getHeaders().getFirstHeader(UpnpHeader.Type.SERVER, ServerHeader.class).getValue().getProductName(), "bar");
+    }
+
     private static DatagramPacket getDatagramPacket() {
         String source = "NOTIFY * HTTP/1.1\r\n" +
                         "HOST: 239.255.255.250:1900\r\n" +
@@ -47,6 +47,36 @@ public class HeaderParsingTest {
     public static final String ABC = "abc";
     public static final String MY_SERVICE_TYPE = "MyServiceType";
 
+    /**
+     * The headers of an alive notification of a service, of a search response for a device type and of
+     * a search request.
+     */
+    protected static final Object[][] MESSAGES = {
+            {
+                    UpnpHeader.Type.HOST, "239.255.255.250:1900",
+                    UpnpHeader.Type.MAX_AGE, "max-age=1800",
+                    UpnpHeader.Type.LOCATION, "http://192.168.1.1:5000/rootDesc.xml",
+                    UpnpHeader.Type.SERVER, "Linux/5.4 UPnP/1.1 MiniUPnPd/2.2",
+                    UpnpHeader.Type.NT, "urn:schemas-upnp-org:service:WANIPConnection:1",
+                    UpnpHeader.Type.NTS, "ssdp:alive",
+                    UpnpHeader.Type.USN, "uuid:6f7f1a20-1dd2-11b2-8a2e-000c29a1b2c3::urn:schemas-upnp-org:service:WANIPConnection:1"
+            },
+            {
+                    UpnpHeader.Type.MAX_AGE, "max-age=1800",
+                    UpnpHeader.Type.EXT, "",
+                    UpnpHeader.Type.LOCATION, "http://192.168.1.1:5000/rootDesc.xml",
+                    UpnpHeader.Type.SERVER, "Linux/5.4 UPnP/1.1 MiniUPnPd/2.2",
+                    UpnpHeader.Type.ST, "urn:schemas-upnp-org:device:InternetGatewayDevice:1",
+                    UpnpHeader.Type.USN, "uuid:6f7f1a20-1dd2-11b2-8a2e-000c29a1b2c3::urn:schemas-upnp-org:device:InternetGatewayDevice:1"
+            },
+            {
+                    UpnpHeader.Type.HOST, "239.255.255.250:1900",
+                    UpnpHeader.Type.MAN, "\"ssdp:discover\"",
+                    UpnpHeader.Type.MX, "3",
+                    UpnpHeader.Type.ST, "uuid:6f7f1a20-1dd2-11b2-8a2e-000c29a1b2c3"
+            }
+    };
+
     @Test
     public void parseContentTypeHeader() {
         ContentTypeHeader header = new ContentTypeHeader(MimeType.valueOf("foo/bar;charset=\"utf-8\""));
@@ -542,4 +572,81 @@ public class HeaderParsingTest {
         assertEquals(header.getValue().getValue(),"value");
         assertEquals(header.getString(), "token=\"value\"");
     }
+
+    @Test
+    public void classifyHeaderValues() {
+        Object[][] values = {
+                {UpnpHeader.Type.NT, "upnp:rootdevice", RootDeviceHeader.class},
+                {UpnpHeader.Type.NT, "UPnP:RootDevice", RootDeviceHeader.class},
+                {UpnpHeader.Type.NT, "upnp:event", NTEventHeader.class},
+                {UpnpHeader.Type.NT, "uuid:MY-UUID-1234", UDNHeader.class},
+                {UpnpHeader.Type.NT, URN_SCHEMAS_UPNP_ORG_DEVICE_MY_DEVICE_TYPE_123, UDADeviceTypeHeader.class},
+                {UpnpHeader.Type.NT, URN_SCHEMAS_UPNP_ORG_SERVICE_MY_SERVICE_TYPE_123, UDAServiceTypeHeader.class},
+                {UpnpHeader.Type.NT, "urn:foo-bar:device:MyDeviceType:123", DeviceTypeHeader.class},
+                {UpnpHeader.Type.NT, "urn:foo-bar:service:MyServiceType:123", ServiceTypeHeader.class},
+                {UpnpHeader.Type.NT, "urn:schemas-opencable-com:serviceId:dri2:debug:1", ServiceTypeHeader.class},
+                {UpnpHeader.Type.NT, "urn:schemas-upnp-org:device::1", DeviceTypeHeader.class},
+                {UpnpHeader.Type.NT, "urn:foo-bar:device:My Device Type:123", DeviceTypeHeader.class},
+                {UpnpHeader.Type.NT, "ssdp:all", null},
+                {UpnpHeader.Type.NT, "foo", null},
+                {UpnpHeader.Type.ST, "ssdp:all", STAllHeader.class},
+                {UpnpHeader.Type.ST, "upnp:rootdevice", RootDeviceHeader.class},
+                {UpnpHeader.Type.ST, "upnp:event", null},
+                {UpnpHeader.Type.ST, "uuid:MY-UUID-1234", UDNHeader.class},
+                {UpnpHeader.Type.ST, URN_SCHEMAS_UPNP_ORG_SERVICE_MY_SERVICE_TYPE_123, UDAServiceTypeHeader.class},
+                {UpnpHeader.Type.USN, "uuid:MY-UUID-1234::upnp:rootdevice", USNRootDeviceHeader.class},
+                {UpnpHeader.Type.USN, "uuid:MY-UUID-1234::" + URN_SCHEMAS_UPNP_ORG_DEVICE_MY_DEVICE_TYPE_123, DeviceUSNHeader.class},
+                {UpnpHeader.Type.USN, "uuid:MY-UUID-1234::urn:foo-bar:service:MyServiceType:123", ServiceUSNHeader.class},
+                {UpnpHeader.Type.USN, "uuid:MY-UUID-1234", UDNHeader.class},
+                {UpnpHeader.Type.USN, "uuid:MY-UUID-1234::urn:foo-bar:other:Foo:1", null},
+                {UpnpHeader.Type.MAX_AGE, "max-age=1800", MaxAgeHeader.class},
+                {UpnpHeader.Type.EXT, "", EXTHeader.class},
+        };
+        for (Object[] value : values) {
+            UpnpHeader.Type type = (UpnpHeader.Type) value[0];
+            String string = (String) value[1];
+            UpnpHeader<?> header = UpnpHeader.newInstance(type, string);
+            UpnpHeader<?> probed = probe(type, string);
+            assertEquals(header == null ? null : header.getClass(), value[2], string);
+            // Same result as when trying each candidate in turn
+            assertEquals(header == null ? null : header.getClass(), probed == null ? null : probed.getClass(), string);
+            if (header != null)
+                assertEquals(header.getString(), probed.getString(), string);
+        }
+    }
+
+    @Test
+    public void parseMessageHeadersLikeReflectiveProbing() {
+        for (Object[] message : MESSAGES) {
+            for (int i = 0; i < message.length; i += 2) {
+                UpnpHeader.Type type = (UpnpHeader.Type) message[i];
+                String string = (String) message[i + 1];
+                UpnpHeader<?> header = UpnpHeader.newInstance(type, string);
+                UpnpHeader<?> probed = probe(type, string);
+                assertEquals(header.getClass(), probed.getClass(), string);
+                assertEquals(header.getString(), probed.getString(), string);
+            }
+        }
+    }
+
+    /**
+     * The former implementation of {@link UpnpHeader#newInstance(UpnpHeader.Type, String)}, instantiating
+     * each candidate subtype by reflection until one doesn't throw an {@link InvalidHeaderException}.
+     */
+    protected static UpnpHeader<?> probe(UpnpHeader.Type type, String headerValue) {
+        for (Class<? extends UpnpHeader<?>> headerClass : type.getHeaderTypes()) {
+            try {
+                UpnpHeader<?> upnpHeader = headerClass.getConstructor().newInstance();
+                if (headerValue != null && !headerValue.trim().isEmpty()) {
+                    upnpHeader.setString(headerValue);
+                }
+                return upnpHeader;
+            } catch (InvalidHeaderException ex) {
+                // Try the next candidate
+            } catch (Exception ex) {
+                // Ignored, like the former implementation which only logged it
+            }
+        }
+        return null;
+    }
 }
@@ -0,0 +1,238 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.protocol;
+
+import com.distrimind.upnp.controlpoint.ActionCallback;
+import com.distrimind.upnp.model.action.ActionInvocation;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.platform.BoundedUpnpIGDExecutor;
+import com.distrimind.upnp.platform.OverloadPolicy;
+import com.distrimind.upnp.protocol.async.ReceivingSearch;
+import com.distrimind.upnp.test.data.TestSupport;
+import com.distrimind.upnp.transport.spi.UpnpStream;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class ProtocolExecutorTest {
+
+    @Test
+    public void controlBeforeDiscovery() throws Exception {
+        BoundedUpnpIGDExecutor executor = new BoundedUpnpIGDExecutor("test", 1, 16, OverloadPolicy.DROP_OLDEST);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> TestSupport.await(blocked));
+
+            executor.execute(new Discovery(executed, "search1"));
+            executor.execute(() -> executed.add("default"));
+            executor.execute(new Discovery(executed, "search2"));
+            Future<?> control = executor.submit(new Control(executed, "action"));
+            assertEquals(executor.getQueueDepth(), 4);
+
+            blocked.countDown();
+            control.get(5, TimeUnit.SECONDS);
+            awaitIdle(executor);
+            assertEquals(executed, List.of("action", "default", "search1", "search2"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void actionStreamBeforeDiscovery() throws Exception {
+        BoundedUpnpIGDExecutor executor = new BoundedUpnpIGDExecutor("test", 1, 16, OverloadPolicy.DROP_OLDEST);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> TestSupport.await(blocked));
+
+            executor.execute(new Discovery(executed, "search"));
+            executor.execute(new Stream(executed, "retrieval", null));
+            executor.execute(new Stream(executed, "action", "\"urn:schemas-upnp-org:service:WANIPConnection:1#AddPortMapping\""));
+            Future<String> callable = executor.submit(() -> "callable");
+            assertEquals(executor.getQueueDepth(), 4);
+
+            blocked.countDown();
+            assertEquals(callable.get(5, TimeUnit.SECONDS), "callable");
+            awaitIdle(executor);
+            assertEquals(executed, List.of("action", "retrieval", "search"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void dropOldestDiscovery() throws Exception {
+        BoundedUpnpIGDExecutor executor = new BoundedUpnpIGDExecutor("test", 1, 2, OverloadPolicy.DROP_OLDEST);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> TestSupport.await(blocked));
+
+            executor.execute(new Discovery(executed, "search1"));
+            executor.execute(new Discovery(executed, "search2"));
+            executor.execute(new Discovery(executed, "search3"));
+            Future<?> control = executor.submit(new Control(executed, "action"));
+            // A discovery message never replaces a control message
+            executor.execute(new Discovery(executed, "search4"));
+            assertEquals(executor.getQueueDepth(), 2);
+            assertEquals(executor.getDroppedTaskCount(), 3);
+
+            blocked.countDown();
+            control.get(5, TimeUnit.SECONDS);
+            awaitIdle(executor);
+            assertEquals(executed, List.of("action", "search4"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void neverDropOtherThanDiscovery() throws Exception {
+        BoundedUpnpIGDExecutor executor = new BoundedUpnpIGDExecutor("test", 1, 1, OverloadPolicy.DROP_OLDEST);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> TestSupport.await(blocked));
+
+            executor.execute(() -> executed.add("default"));
+            // No discovery task can make room, the continuation is run by the caller
+            CompletableFuture<String> continuation = CompletableFuture.completedFuture("continuation")
+                    .thenApplyAsync(s -> s, executor);
+            assertEquals(continuation.getNow(null), "continuation");
+            assertEquals(executor.getCallerRunsTaskCount(), 1);
+            executor.execute(new Discovery(executed, "search"));
+            assertEquals(executor.getDroppedTaskCount(), 1);
+            assertEquals(executor.getQueueDepth(), 1);
+
+            blocked.countDown();
+            awaitIdle(executor);
+            assertEquals(executed, List.of("default"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void callerRunsControl() throws Exception {
+        BoundedUpnpIGDExecutor executor = new BoundedUpnpIGDExecutor("test", 1, 1, OverloadPolicy.CALLER_RUNS);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch blocked = new CountDownLatch(1);
+            executor.execute(() -> TestSupport.await(blocked));
+
+            executor.execute(new Control(executed, "action1"));
+            Thread caller = Thread.currentThread();
+            executor.execute(() -> executed.add(Thread.currentThread() == caller ? "caller" : "pool"));
+            assertEquals(executed, List.of("caller"));
+            assertEquals(executor.getCallerRunsTaskCount(), 1);
+            assertEquals(executor.getDroppedTaskCount(), 0);
+
+            blocked.countDown();
+            awaitIdle(executor);
+            assertEquals(executed, List.of("caller", "action1"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    protected static void awaitIdle(BoundedUpnpIGDExecutor executor) throws InterruptedException {
+        for (int i = 0; i < 500 && (executor.getQueueDepth() > 0 || executor.getActiveCount() > 0); i++)
+            Thread.sleep(10);
+        assertEquals(executor.getQueueDepth(), 0);
+        assertEquals(executor.getActiveCount(), 0);
+    }
+
+    static class Discovery extends ReceivingSearch {
+        final List<String> executed;
+        final String name;
+
+        Discovery(List<String> executed, String name) throws Exception {
+            super(null, new IncomingDatagramMessage<>(
+                    new UpnpRequest(UpnpRequest.Method.MSEARCH),
+                    InetAddress.getByName("127.0.0.1"), 1900,
+                    InetAddress.getByName("127.0.0.1")
+            ));
+            this.executed = executed;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+    }
+
+    static class Stream extends UpnpStream {
+        final List<String> executed;
+        final String name;
+        final String soapAction;
+
+        Stream(List<String> executed, String name, String soapAction) {
+            super(null);
+            this.executed = executed;
+            this.name = name;
+            this.soapAction = soapAction;
+        }
+
+        @Override
+        protected String getRequestHeader(String name) {
+            return UpnpHeader.Type.SOAPACTION.getHttpName().equalsIgnoreCase(name) ? soapAction : null;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+    }
+
+    static class Control extends ActionCallback {
+        final List<String> executed;
+        final String name;
+
+        Control(List<String> executed, String name) {
+            super(null);
+            this.executed = executed;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            executed.add(name);
+        }
+
+        @Override
+        public void success(ActionInvocation<?> invocation) {
+        }
+
+        @Override
+        public void failure(ActionInvocation<?> invocation, UpnpResponse operation, String defaultMsg) {
+        }
+    }
+}
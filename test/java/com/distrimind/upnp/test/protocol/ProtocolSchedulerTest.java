@@ -0,0 +1,185 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.protocol;
+
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.discovery.IncomingSearchRequest;
+import com.distrimind.upnp.model.message.header.HostHeader;
+import com.distrimind.upnp.model.message.header.MANHeader;
+import com.distrimind.upnp.model.message.header.MXHeader;
+import com.distrimind.upnp.model.message.header.RootDeviceHeader;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.model.types.NotificationSubtype;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
+import com.distrimind.upnp.protocol.async.ReceivingSearch;
+import com.distrimind.upnp.test.data.SampleData;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class ProtocolSchedulerTest {
+
+    @Test
+    public void delayedExecution() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ProtocolScheduler scheduler = new ProtocolScheduler("test-scheduler", executor);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(2);
+            long start = System.nanoTime();
+            assertTrue(scheduler.schedule(() -> {
+                executed.add("second");
+                done.countDown();
+            }, 200));
+            assertTrue(scheduler.schedule(() -> {
+                executed.add("first");
+                done.countDown();
+            }, 100));
+            assertEquals(scheduler.getPendingTaskCount(), 2);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(200));
+            assertEquals(executed, List.of("first", "second"));
+            assertEquals(scheduler.getPendingTaskCount(), 0);
+        } finally {
+            scheduler.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void coalesceIdenticalTasks() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        ProtocolScheduler scheduler = new ProtocolScheduler("test-scheduler", executor);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            assertTrue(scheduler.schedule("key", () -> {
+                executed.add("first");
+                done.countDown();
+            }, 100));
+            assertFalse(scheduler.schedule("key", () -> executed.add("coalesced"), 50));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            // No more pending, the key can be scheduled again
+            CountDownLatch again = new CountDownLatch(1);
+            assertTrue(scheduler.schedule("key", again::countDown, 10));
+            assertTrue(again.await(5, TimeUnit.SECONDS));
+            assertEquals(executed, List.of("first"));
+        } finally {
+            scheduler.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void flushAndShutdown() {
+        ProtocolScheduler scheduler = new ProtocolScheduler("test-scheduler", Runnable::run);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        scheduler.schedule(() -> executed.add("second"), 60000);
+        scheduler.schedule(() -> executed.add("first"), 30000);
+
+        scheduler.flush();
+        assertEquals(executed, List.of("first", "second"));
+        assertEquals(scheduler.getPendingTaskCount(), 0);
+
+        scheduler.shutdown();
+        assertFalse(scheduler.schedule(() -> executed.add("rejected"), 0));
+        assertEquals(executed.size(), 2);
+    }
+
+    @Test
+    public void waitOnExecutorThread() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor(r -> new Thread(r, "protocol"));
+        ProtocolScheduler scheduler = ProtocolScheduler.createWaiting(executor);
+        try {
+            List<String> executed = new CopyOnWriteArrayList<>();
+            CountDownLatch done = new CountDownLatch(1);
+            long start = System.nanoTime();
+            assertTrue(scheduler.schedule(() -> {
+                executed.add(Thread.currentThread().getName());
+                done.countDown();
+            }, 100, Runnable::run));
+            assertEquals(scheduler.getPendingTaskCount(), 0);
+
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(100));
+            assertEquals(executed, List.of("protocol"));
+        } finally {
+            scheduler.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void mockConfigurationSharesScheduler() throws Exception {
+        MockUpnpServiceConfiguration configuration = new MockUpnpServiceConfiguration();
+        ProtocolScheduler scheduler = configuration.getProtocolScheduler();
+        assertSame(configuration.getProtocolScheduler(), scheduler);
+        configuration.shutdown();
+        assertFalse(configuration.getProtocolScheduler().schedule(() -> fail("Executed after shutdown"), 0));
+    }
+
+    @Test
+    public void coalesceRepeatedSearch() throws Exception {
+        MockUpnpService upnpService = new MockUpnpService(false, false, true);
+        try {
+            upnpService.getRegistry().addDevice(SampleData.createLocalDevice());
+
+            // Control points usually send their search requests several times
+            for (int i = 0; i < 3; i++) {
+                new ReceivingSearch(upnpService, createRootDeviceSearch()).run();
+            }
+            assertEquals(upnpService.getConfiguration().getProtocolScheduler().getPendingTaskCount(), 1);
+
+            for (int i = 0; i < 100 && upnpService.getRouter().getOutgoingDatagramMessages().isEmpty(); i++)
+                Thread.sleep(50);
+            Thread.sleep(100);
+            assertEquals(upnpService.getRouter().getOutgoingDatagramMessages().size(), 1);
+        } finally {
+            upnpService.shutdown();
+        }
+    }
+
+    protected IncomingSearchRequest createRootDeviceSearch() throws Exception {
+        IncomingSearchRequest searchMsg = new IncomingSearchRequest(
+                new IncomingDatagramMessage<>(
+                        new UpnpRequest(UpnpRequest.Method.MSEARCH),
+                        InetAddress.getByName("127.0.0.1"),
+                        Constants.UPNP_MULTICAST_PORT,
+                        InetAddress.getByName("127.0.0.1")
+                )
+        );
+        searchMsg.getHeaders().add(UpnpHeader.Type.MAN, new MANHeader(NotificationSubtype.DISCOVER.getHeaderString()));
+        searchMsg.getHeaders().add(UpnpHeader.Type.MX, new MXHeader(1));
+        searchMsg.getHeaders().add(UpnpHeader.Type.ST, new RootDeviceHeader());
+        searchMsg.getHeaders().add(UpnpHeader.Type.HOST, new HostHeader());
+        return searchMsg;
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.protocol;
+
+import com.distrimind.upnp.mock.MockPendingRouter;
+import com.distrimind.upnp.mock.MockRouter;
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.header.ContentTypeHeader;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.meta.RemoteService;
+import com.distrimind.upnp.model.profile.RemoteClientInfo;
+import com.distrimind.upnp.model.resource.DescriptorCache;
+import com.distrimind.upnp.model.types.UDN;
+import com.distrimind.upnp.protocol.RemoteDescriptorCache;
+import com.distrimind.upnp.protocol.RetrieveRemoteDescriptors;
+import com.distrimind.upnp.test.data.SampleData;
+import com.distrimind.upnp.test.data.SampleDeviceRoot;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.testng.Assert.*;
+
+public class RemoteDescriptorCacheTest {
+
+    @Test
+    public void revalidateStoredDescriptors() throws Exception {
+        RemoteDescriptorCache cache = new RemoteDescriptorCache(Files.createTempDirectory("descriptors"));
+        try {
+            DescriptorServer server = new DescriptorServer("\"v1\"");
+
+            // First discovery, all descriptors are retrieved and stored
+            MockUpnpService upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+            assertHydrated(upnpService);
+            RemoteDescriptorCache.Entry entry = cache.get(SampleDeviceRoot.getRootUDN(), SampleDeviceRoot.getDeviceDescriptorURL());
+            assertNotNull(entry);
+            assertEquals(entry.getETag(), "\"v1\"");
+            assertEquals(entry.getServiceDescriptors().size(), server.getServiceCount());
+
+            // Discovery after a restart, only the device descriptor is revalidated
+            upnpService = discover(cache, server);
+            List<StreamRequestMessage> requests = upnpService.getRouter().getSentStreamRequestMessages();
+            assertEquals(requests.size(), 1);
+            assertEquals(requests.get(0).getHeaders().getFirstHeader(DescriptorCache.HEADER_IF_NONE_MATCH), "\"v1\"");
+            assertHydrated(upnpService);
+
+            // The device has been updated
+            server.eTag = "\"v2\"";
+            server.deviceDescriptor = server.deviceDescriptor.replace("<friendlyName>", "<friendlyName>Updated ");
+            upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+            assertHydrated(upnpService);
+            assertEquals(cache.get(SampleDeviceRoot.getRootUDN(), SampleDeviceRoot.getDeviceDescriptorURL()).getETag(), "\"v2\"");
+        } finally {
+            cache.clear();
+            Files.delete(cache.getDirectory());
+        }
+    }
+
+    @Test
+    public void compareDescriptorsWithoutValidators() throws Exception {
+        RemoteDescriptorCache cache = new RemoteDescriptorCache(Files.createTempDirectory("descriptors"));
+        try {
+            DescriptorServer server = new DescriptorServer(null);
+            MockUpnpService upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+
+            // Same device descriptor, the stored service descriptors are used
+            upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1);
+            assertHydrated(upnpService);
+
+            server.deviceDescriptor = server.deviceDescriptor.replace("<friendlyName>", "<friendlyName>Updated ");
+            upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+            assertHydrated(upnpService);
+        } finally {
+            cache.clear();
+            Files.delete(cache.getDirectory());
+        }
+    }
+
+    @Test
+    public void ignoreUnreadableFile() throws Exception {
+        RemoteDescriptorCache cache = new RemoteDescriptorCache(Files.createTempDirectory("descriptors"));
+        try {
+            DescriptorServer server = new DescriptorServer("\"v1\"");
+            discover(cache, server);
+            Path file;
+            try (Stream<Path> files = Files.list(cache.getDirectory())) {
+                file = files.findFirst().orElseThrow();
+            }
+            Files.write(file, "truncated".getBytes(StandardCharsets.US_ASCII));
+
+            assertNull(cache.get(SampleDeviceRoot.getRootUDN(), SampleDeviceRoot.getDeviceDescriptorURL()));
+            assertFalse(Files.exists(file));
+
+            MockUpnpService upnpService = discover(cache, server);
+            assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+            assertHydrated(upnpService);
+        } finally {
+            cache.clear();
+            Files.delete(cache.getDirectory());
+        }
+    }
+
+    @Test
+    public void pruneOldAndLeastRecentlyUsedEntries() throws Exception {
+        Path directory = Files.createTempDirectory("descriptors");
+        RemoteDescriptorCache cache = new RemoteDescriptorCache(directory);
+        try {
+            store(cache, "expired", TimeUnit.DAYS.toMillis(2));
+            store(cache, "recent", TimeUnit.HOURS.toMillis(1));
+            store(cache, "oldest", TimeUnit.HOURS.toMillis(2));
+            store(cache, "used", TimeUnit.HOURS.toMillis(3));
+            // Seen again, it is the most recently used one
+            assertNotNull(cache.get(new UDN("used"), new URL(getDescriptorURL("used"))));
+            Files.write(directory.resolve("interrupted.desc123.tmp"), new byte[1]);
+
+            // After a restart
+            cache = new RemoteDescriptorCache(directory, TimeUnit.DAYS.toMillis(1), 2);
+            try (Stream<Path> files = Files.list(directory)) {
+                assertEquals(files.count(), 2);
+            }
+            assertNull(cache.get(new UDN("expired"), new URL(getDescriptorURL("expired"))));
+            assertNull(cache.get(new UDN("oldest"), new URL(getDescriptorURL("oldest"))));
+            assertNotNull(cache.get(new UDN("recent"), new URL(getDescriptorURL("recent"))));
+            assertNotNull(cache.get(new UDN("used"), new URL(getDescriptorURL("used"))));
+        } finally {
+            cache.clear();
+            Files.delete(directory);
+        }
+    }
+
+    protected static void store(RemoteDescriptorCache cache, String udn, long ageMillis) throws Exception {
+        Set<Path> before;
+        try (Stream<Path> files = Files.list(cache.getDirectory())) {
+            before = files.collect(Collectors.toSet());
+        }
+        cache.put(new RemoteDescriptorCache.Entry(new UDN(udn), getDescriptorURL(udn), null, null, "<root/>", Collections.emptyMap()));
+        try (Stream<Path> files = Files.list(cache.getDirectory())) {
+            Path file = files.filter(f -> !before.contains(f)).findFirst().orElseThrow();
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - ageMillis));
+        }
+    }
+
+    protected static String getDescriptorURL(String udn) {
+        return "http://127.0.0.1/" + udn + "/desc.xml";
+    }
+
+    protected MockUpnpService discover(RemoteDescriptorCache cache, DescriptorServer server) throws Exception {
+        MockUpnpService upnpService = new MockUpnpService(new MockUpnpServiceConfiguration(false, false) {
+            @Override
+            public RemoteDescriptorCache getRemoteDescriptorCache() {
+                return cache;
+            }
+        }) {
+            @Override
+            protected MockRouter createRouter() {
+                return new MockPendingRouter(getConfiguration(), getProtocolFactory());
+            }
+        };
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+        CompletableFuture<Void> retrieval =
+                new RetrieveRemoteDescriptors(upnpService, new RemoteDevice(SampleData.createRemoteDeviceIdentity())).runAsync();
+        // Each response may send the next requests
+        while (router.getPendingRequestCount() > 0) {
+            router.respond(server::respond);
+        }
+        retrieval.join();
+        return upnpService;
+    }
+
+    protected void assertHydrated(MockUpnpService upnpService) {
+        RemoteDevice device = upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false);
+        assertNotNull(device);
+        assertEquals(device.findServices().size(), SampleData.createRemoteDevice().findServices().size());
+    }
+
+    protected static class DescriptorServer {
+
+        protected String eTag;
+        protected String deviceDescriptor;
+        protected final Map<String, String> serviceDescriptors = new HashMap<>();
+
+        public DescriptorServer(String eTag) throws Exception {
+            this.eTag = eTag;
+            RemoteDevice device = SampleData.createRemoteDevice();
+            MockUpnpServiceConfiguration configuration = new MockUpnpServiceConfiguration();
+            deviceDescriptor = configuration.getDeviceDescriptorBinderUDA10().generate(
+                device, new RemoteClientInfo(), configuration.getNamespace()
+            );
+            for (RemoteService service : device.findServices()) {
+                serviceDescriptors.put(
+                    service.getDevice().normalizeURI(service.getDescriptorURI()).toString(),
+                    configuration.getServiceDescriptorBinderUDA10().generate(service)
+                );
+            }
+        }
+
+        public int getServiceCount() {
+            return serviceDescriptors.size();
+        }
+
+        public StreamResponseMessage respond(StreamRequestMessage request) {
+            String uri = request.getUri().toString();
+            if (uri.equals(SampleDeviceRoot.getDeviceDescriptorURL().toString())) {
+                if (eTag != null && eTag.equals(request.getHeaders().getFirstHeader(DescriptorCache.HEADER_IF_NONE_MATCH))) {
+                    return new StreamResponseMessage(UpnpResponse.Status.NOT_MODIFIED);
+                }
+                StreamResponseMessage response = new StreamResponseMessage(deviceDescriptor, ContentTypeHeader.DEFAULT_CONTENT_TYPE_UTF8);
+                if (eTag != null)
+                    response.getHeaders().add(DescriptorCache.HEADER_ETAG, eTag);
+                return response;
+            }
+            String serviceDescriptor = serviceDescriptors.get(uri);
+            return serviceDescriptor == null
+                ? new StreamResponseMessage(UpnpResponse.Status.NOT_FOUND)
+                : new StreamResponseMessage(serviceDescriptor, ContentTypeHeader.DEFAULT_CONTENT_TYPE_UTF8);
+        }
+    }
+}
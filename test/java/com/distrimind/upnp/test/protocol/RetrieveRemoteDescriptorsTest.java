@@ -0,0 +1,369 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.protocol;
+
+import com.distrimind.upnp.mock.MockPendingRouter;
+import com.distrimind.upnp.mock.MockRouter;
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.ValidationException;
+import com.distrimind.upnp.model.meta.Device;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.meta.RemoteService;
+import com.distrimind.upnp.model.meta.Service;
+import com.distrimind.upnp.binding.xml.DescriptorBindingException;
+import com.distrimind.upnp.binding.xml.DeviceDescriptorBinder;
+import com.distrimind.upnp.binding.xml.UDA10DeviceDescriptorBinderImpl;
+import com.distrimind.upnp.binding.xml.UnresolvedHostException;
+import com.distrimind.upnp.protocol.RemoteDescriptorRetrievals;
+import com.distrimind.upnp.protocol.RetrieveRemoteDescriptors;
+import com.distrimind.upnp.test.data.SampleData;
+import com.distrimind.upnp.test.data.SampleDeviceRoot;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.testng.Assert.*;
+
+public class RetrieveRemoteDescriptorsTest {
+
+    @Test
+    public void retrieveServiceDescriptorsConcurrently() throws Exception {
+        RemoteDescriptorCacheTest.DescriptorServer server = new RemoteDescriptorCacheTest.DescriptorServer(null);
+        assertTrue(server.getServiceCount() > 2);
+        MockUpnpService upnpService = createUpnpService();
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+        TestRetrieval retrieval = new TestRetrieval(upnpService, 2);
+
+        CompletableFuture<Void> done = retrieval.runAsync();
+        assertEquals(router.getPendingRequestCount(), 1);
+        router.respond(server::respond);
+
+        // All services are retrieved at the same time, up to the limit
+        assertEquals(router.getPendingRequestCount(), 2);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 3);
+        router.respond(server::respond);
+        assertEquals(router.getPendingRequestCount(), 2);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 4);
+        assertFalse(done.isDone());
+        assertNull(upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false));
+
+        while (router.getPendingRequestCount() > 0) {
+            router.respond(server::respond);
+        }
+        assertTrue(done.isDone());
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1 + server.getServiceCount());
+        RemoteDevice device = upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false);
+        assertNotNull(device);
+        assertEquals(device.findServices().size(), server.getServiceCount());
+    }
+
+    @Test
+    public void retrieveSharedServiceDescriptorOnce() throws Exception {
+        MockUpnpService upnpService = createUpnpService();
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+        TestRetrieval retrieval = new TestRetrieval(upnpService, 1);
+        URL descriptorURL = new URL(SampleData.getLocalBaseURL(), "/shared/scpd.xml");
+
+        CompletableFuture<StreamResponseMessage> first = retrieval.retrieve(descriptorURL);
+        CompletableFuture<StreamResponseMessage> second = retrieval.retrieve(descriptorURL);
+        assertSame(second, first);
+        assertEquals(router.getPendingRequestCount(), 1);
+
+        // Queued until the first response has been received
+        CompletableFuture<StreamResponseMessage> other = retrieval.retrieve(new URL(SampleData.getLocalBaseURL(), "/other/scpd.xml"));
+        assertEquals(router.getPendingRequestCount(), 1);
+        router.poll().getFuture().complete(null);
+        assertTrue(first.isDone());
+        assertEquals(router.getPendingRequestCount(), 1);
+        router.poll().getFuture().complete(null);
+        assertTrue(other.isDone());
+    }
+
+    @Test
+    public void joinActiveRetrieval() throws Exception {
+        RemoteDescriptorCacheTest.DescriptorServer server = new RemoteDescriptorCacheTest.DescriptorServer(null);
+        MockUpnpService upnpService = createUpnpService();
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+
+        CompletableFuture<Void> first = new TestRetrieval(upnpService, 4).runAsync();
+        CompletableFuture<Void> second = new TestRetrieval(upnpService, 4).runAsync();
+        assertSame(second, first);
+        assertEquals(upnpService.getRegistry().getDescriptorRetrievals().getActiveRetrievalCount(), 1);
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1);
+
+        while (router.getPendingRequestCount() > 0) {
+            router.respond(server::respond);
+        }
+        assertTrue(first.isDone());
+        assertEquals(upnpService.getRegistry().getDescriptorRetrievals().getActiveRetrievalCount(), 0);
+        assertNotNull(upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false));
+    }
+
+    @Test
+    public void bindDescriptorsOnProtocolThread() throws Exception {
+        RemoteDescriptorCacheTest.DescriptorServer server = new RemoteDescriptorCacheTest.DescriptorServer(null);
+        ExecutorService protocolExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "protocol"));
+        ExecutorService transportExecutor = Executors.newSingleThreadExecutor(r -> new Thread(r, "transport"));
+        try {
+            MockUpnpService upnpService = new MockUpnpService(new MockUpnpServiceConfiguration(false, false) {
+                @Override
+                public Executor getAsyncProtocolExecutor() {
+                    // Drops everything, as an overloaded executor may, the retrieval must not depend on it
+                    return task -> {};
+                }
+
+                @Override
+                public ExecutorService getSyncProtocolExecutorService() {
+                    return protocolExecutor;
+                }
+            }) {
+                @Override
+                protected MockRouter createRouter() {
+                    return new MockPendingRouter(getConfiguration(), getProtocolFactory());
+                }
+            };
+            MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+            Set<String> bindingThreads = ConcurrentHashMap.newKeySet();
+            CompletableFuture<Void> done = new TestRetrieval(upnpService, 4) {
+                @Override
+                protected CompletableFuture<Void> describe(String descriptorXML) {
+                    bindingThreads.add(Thread.currentThread().getName());
+                    return super.describe(descriptorXML);
+                }
+
+                @Override
+                protected RemoteService describeService(RemoteService service, URL descriptorURL, StreamResponseMessage serviceDescMsg)
+                        throws DescriptorBindingException, ValidationException {
+                    bindingThreads.add(Thread.currentThread().getName());
+                    return super.describeService(service, descriptorURL, serviceDescMsg);
+                }
+            }.runAsync();
+
+            // The transport completes the responses on its own thread
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!done.isDone() && System.currentTimeMillis() < deadline) {
+                if (router.getPendingRequestCount() > 0)
+                    transportExecutor.submit(() -> router.respond(server::respond)).get();
+                else
+                    Thread.yield();
+            }
+            done.get(5, TimeUnit.SECONDS);
+            assertEquals(bindingThreads, Collections.singleton("protocol"));
+            assertNotNull(upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false));
+        } finally {
+            protocolExecutor.shutdownNow();
+            transportExecutor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void skipRecentlyFailedDescriptor() throws Exception {
+        // No response to any request
+        MockUpnpService upnpService = new MockUpnpService();
+
+        new TestRetrieval(upnpService, 4).runAsync().join();
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1);
+        assertTrue(upnpService.getRegistry().getDescriptorRetrievals().isBackingOff(SampleDeviceRoot.getDeviceDescriptorURL()));
+
+        new TestRetrieval(upnpService, 4).runAsync().join();
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 1);
+
+        upnpService.getRegistry().getDescriptorRetrievals().resetBackoff(SampleDeviceRoot.getDeviceDescriptorURL());
+        new TestRetrieval(upnpService, 4).runAsync().join();
+        assertEquals(upnpService.getRouter().getSentStreamRequestMessages().size(), 2);
+    }
+
+    @Test
+    public void backOffOnlyOnRetrievalFailure() throws Exception {
+        RemoteDescriptorCacheTest.DescriptorServer server = new RemoteDescriptorCacheTest.DescriptorServer(null);
+        // Not reachable through a local network interface, the binder rejects the device
+        assertTrue(server.deviceDescriptor.contains("<device>"));
+        server.deviceDescriptor = server.deviceDescriptor.replaceFirst("<device>", "<URLBase>http://203.0.113.1/</URLBase><device>");
+        MockUpnpService upnpService = createUpnpService();
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+        URL descriptorURL = SampleDeviceRoot.getDeviceDescriptorURL();
+
+        CompletableFuture<Void> done = new TestRetrieval(upnpService, 4).runAsync();
+        router.respond(server::respond);
+        assertTrue(done.isDone());
+        assertNull(upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false));
+        assertFalse(upnpService.getRegistry().getDescriptorRetrievals().isBackingOff(descriptorURL));
+
+        // The device returns an error
+        done = new TestRetrieval(upnpService, 4).runAsync();
+        router.respond(new StreamResponseMessage(UpnpResponse.Status.INTERNAL_SERVER_ERROR));
+        assertTrue(done.isDone());
+        assertTrue(upnpService.getRegistry().getDescriptorRetrievals().isBackingOff(descriptorURL));
+    }
+
+    @Test
+    public void waitForHostResolution() throws Exception {
+        RemoteDescriptorCacheTest.DescriptorServer server = new RemoteDescriptorCacheTest.DescriptorServer(null);
+        CompletableFuture<InetAddress> resolution = new CompletableFuture<>();
+        AtomicInteger bindings = new AtomicInteger();
+        MockUpnpService upnpService = new MockUpnpService(new MockUpnpServiceConfiguration(false, false) {
+            @Override
+            protected DeviceDescriptorBinder createDeviceDescriptorBinderUDA10() {
+                return new UDA10DeviceDescriptorBinderImpl(getNetworkAddressFactory()) {
+                    @Override
+                    public <D extends Device<?, D, S>, S extends Service<?, D, S>> D describe(D undescribedDevice, String descriptorXml)
+                            throws DescriptorBindingException, ValidationException {
+                        if (bindings.incrementAndGet() == 1)
+                            throw new UnresolvedHostException("device.local", resolution);
+                        return super.describe(undescribedDevice, descriptorXml);
+                    }
+                };
+            }
+        }) {
+            @Override
+            protected MockRouter createRouter() {
+                return new MockPendingRouter(getConfiguration(), getProtocolFactory());
+            }
+        };
+        MockPendingRouter router = (MockPendingRouter) upnpService.getRouter();
+
+        CompletableFuture<Void> done = new TestRetrieval(upnpService, 4).runAsync();
+        router.respond(server::respond);
+        assertEquals(bindings.get(), 1);
+        assertEquals(router.getPendingRequestCount(), 0);
+        assertFalse(done.isDone());
+
+        // Bound again once the host has been resolved
+        resolution.complete(InetAddress.getLoopbackAddress());
+        assertEquals(bindings.get(), 2);
+        while (router.getPendingRequestCount() > 0) {
+            router.respond(server::respond);
+        }
+        assertTrue(done.isDone());
+        assertNotNull(upnpService.getRegistry().getRemoteDevice(SampleDeviceRoot.getRootUDN(), false));
+        assertFalse(upnpService.getRegistry().getDescriptorRetrievals().isBackingOff(SampleDeviceRoot.getDeviceDescriptorURL()));
+    }
+
+    @Test
+    public void backOffExponentially() throws Exception {
+        TestRetrievals retrievals = new TestRetrievals(1000, 3000);
+        URL descriptorURL = SampleDeviceRoot.getDeviceDescriptorURL();
+        AtomicInteger started = new AtomicInteger();
+        Supplier<CompletableFuture<Boolean>> failing = () -> {
+            started.incrementAndGet();
+            return CompletableFuture.completedFuture(true);
+        };
+
+        retrievals.retrieve(descriptorURL, failing);
+        assertEquals(started.get(), 1);
+        retrievals.nanos += TimeUnit.MILLISECONDS.toNanos(999);
+        retrievals.retrieve(descriptorURL, failing);
+        assertEquals(started.get(), 1);
+        retrievals.nanos += TimeUnit.MILLISECONDS.toNanos(1);
+        retrievals.retrieve(descriptorURL, failing);
+        assertEquals(started.get(), 2);
+
+        // Second failure, the delay is doubled
+        retrievals.nanos += TimeUnit.MILLISECONDS.toNanos(1999);
+        assertTrue(retrievals.isBackingOff(descriptorURL));
+        retrievals.nanos += TimeUnit.MILLISECONDS.toNanos(1);
+        retrievals.retrieve(descriptorURL, failing);
+        assertEquals(started.get(), 3);
+
+        // Up to the maximum
+        retrievals.nanos += TimeUnit.MILLISECONDS.toNanos(3000);
+        assertFalse(retrievals.isBackingOff(descriptorURL));
+
+        // A success forgets the failures
+        retrievals.retrieve(descriptorURL, () -> CompletableFuture.completedFuture(false));
+        assertFalse(retrievals.isBackingOff(descriptorURL));
+    }
+
+    @Test
+    public void freeRetrievalAfterTimeout() throws Exception {
+        RemoteDescriptorRetrievals retrievals = new RemoteDescriptorRetrievals(0, 0, 100);
+        URL descriptorURL = SampleDeviceRoot.getDeviceDescriptorURL();
+        AtomicInteger started = new AtomicInteger();
+        // Never completed, as if its completion had been lost
+        Supplier<CompletableFuture<Boolean>> lost = () -> {
+            started.incrementAndGet();
+            return new CompletableFuture<>();
+        };
+
+        CompletableFuture<Void> active = retrievals.retrieve(descriptorURL, lost);
+        assertSame(retrievals.retrieve(descriptorURL, lost), active);
+        assertEquals(retrievals.getActiveRetrievalCount(), 1);
+        active.get(5, TimeUnit.SECONDS);
+        assertEquals(retrievals.getActiveRetrievalCount(), 0);
+
+        retrievals.retrieve(descriptorURL, lost);
+        assertEquals(started.get(), 2);
+    }
+
+    static class TestRetrievals extends RemoteDescriptorRetrievals {
+
+        long nanos;
+
+        TestRetrievals(long initialBackoffMillis, long maxBackoffMillis) {
+            super(initialBackoffMillis, maxBackoffMillis);
+        }
+
+        @Override
+        protected long getCurrentTimeNanos() {
+            return nanos;
+        }
+    }
+
+    static class TestRetrieval extends RetrieveRemoteDescriptors {
+
+        final int maxConcurrentServiceRetrievals;
+
+        TestRetrieval(MockUpnpService upnpService, int maxConcurrentServiceRetrievals) throws Exception {
+            super(upnpService, new RemoteDevice(SampleData.createRemoteDeviceIdentity()));
+            this.maxConcurrentServiceRetrievals = maxConcurrentServiceRetrievals;
+        }
+
+        @Override
+        protected int getMaxConcurrentServiceRetrievals() {
+            return maxConcurrentServiceRetrievals;
+        }
+
+        CompletableFuture<StreamResponseMessage> retrieve(URL descriptorURL) {
+            return retrieveServiceDescriptor(new StreamRequestMessage(UpnpRequest.Method.GET, descriptorURL));
+        }
+    }
+
+    static MockUpnpService createUpnpService() throws Exception {
+        return new MockUpnpService() {
+            @Override
+            protected MockRouter createRouter() {
+                return new MockPendingRouter(getConfiguration(), getProtocolFactory());
+            }
+        };
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.protocol;
+
+import com.distrimind.upnp.controlpoint.ActionCallback;
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.model.Constants;
+import com.distrimind.upnp.model.UnsupportedDataException;
+import com.distrimind.upnp.model.action.ActionInvocation;
+import com.distrimind.upnp.model.gena.CancelReason;
+import com.distrimind.upnp.model.gena.RemoteGENASubscription;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
+import com.distrimind.upnp.model.message.discovery.IncomingSearchRequest;
+import com.distrimind.upnp.model.message.header.HostHeader;
+import com.distrimind.upnp.model.message.header.MANHeader;
+import com.distrimind.upnp.model.message.header.MXHeader;
+import com.distrimind.upnp.model.message.header.STAllHeader;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.model.meta.LocalDevice;
+import com.distrimind.upnp.model.meta.LocalService;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.types.NotificationSubtype;
+import com.distrimind.upnp.model.types.UDAServiceId;
+import com.distrimind.upnp.protocol.async.ReceivingSearch;
+import com.distrimind.upnp.registry.DefaultRegistryListener;
+import com.distrimind.upnp.registry.Registry;
+import com.distrimind.upnp.test.data.SampleData;
+import com.distrimind.upnp.test.data.TestSupport;
+import com.distrimind.upnp.transport.RouterException;
+import example.binarylight.BinaryLightSampleData;
+import example.binarylight.SwitchPower;
+import jdk.jfr.EventType;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.Assert.*;
+
+/**
+ * Checks that threads blocked in the registry don't hold monitors or wait on them, which pins
+ * the carrier of a virtual thread. When the JVM records virtual thread pinning, a discovery and
+ * control workload running on the default executors is also checked for pinned carriers.
+ */
+public class VirtualThreadPinningTest {
+
+    public static final String VIRTUAL_THREAD_PINNED = "jdk.VirtualThreadPinned";
+    public static final int SEARCHES = 16;
+    public static final int ACTIONS = 32;
+
+    @Test
+    public void waitForPendingSubscriptionWithoutMonitor() throws Exception {
+        MockUpnpService upnpService = new MockUpnpService();
+        try {
+            Registry registry = upnpService.getRegistry();
+            RemoteGENASubscription pending = createSubscription();
+            registry.registerPendingRemoteSubscription(pending);
+
+            AtomicReference<RemoteGENASubscription> found = new AtomicReference<>(pending);
+            Thread waiting = new Thread(() -> found.set(registry.getWaitRemoteSubscription("uuid:unknown")));
+            waiting.start();
+            assertBlockedWithoutMonitor(waiting);
+
+            registry.unregisterPendingRemoteSubscription(pending);
+            waiting.join(5000);
+            assertFalse(waiting.isAlive());
+            assertNull(found.get());
+        } finally {
+            upnpService.shutdown();
+        }
+    }
+
+    @Test
+    public void blockingListenerWithoutMonitor() throws Exception {
+        MockUpnpService upnpService = new MockUpnpService();
+        try {
+            CountDownLatch entered = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            AtomicReference<Thread> listenerThread = new AtomicReference<>();
+            upnpService.getRegistry().addListener(new DefaultRegistryListener() {
+                @Override
+                public void remoteDeviceAdded(Registry registry, RemoteDevice device) {
+                    listenerThread.set(Thread.currentThread());
+                    entered.countDown();
+                    TestSupport.await(release);
+                }
+            });
+
+            Thread adding = new Thread(() -> upnpService.getRegistry().addDevice(SampleData.createRemoteDevice()));
+            adding.start();
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+            assertBlockedWithoutMonitor(listenerThread.get());
+
+            release.countDown();
+            adding.join(5000);
+            assertFalse(adding.isAlive());
+        } finally {
+            upnpService.shutdown();
+        }
+    }
+
+    @Test
+    public void noPinningDuringDiscoveryAndControl() throws Exception {
+        if (!isPinningRecordable())
+            throw new SkipException("JFR event " + VIRTUAL_THREAD_PINNED + " isn't available on this JVM");
+
+        Path file = Files.createTempFile("upnp-pinning", ".jfr");
+        try {
+            try (Recording recording = new Recording()) {
+                recording.enable(VIRTUAL_THREAD_PINNED).withThreshold(Duration.ZERO).withStackTrace();
+                recording.start();
+                runWorkload();
+                recording.stop();
+                recording.dump(file);
+            }
+
+            List<RecordedEvent> pinned = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().equals(VIRTUAL_THREAD_PINNED))
+                    pinned.add(event);
+            }
+            assertTrue(pinned.isEmpty(), "Carrier threads were pinned: " + pinned);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    protected void runWorkload() throws Exception {
+        MockUpnpService upnpService = new MockUpnpService(false, false, true);
+        try {
+            LocalDevice<SwitchPower> device = BinaryLightSampleData.createDevice(SwitchPower.class);
+            upnpService.getRegistry().addDevice(device);
+            LocalService<SwitchPower> service = device.findService(new UDAServiceId("SwitchPower"));
+
+            CountDownLatch done = new CountDownLatch(SEARCHES + ACTIONS);
+            for (int i = 0; i < SEARCHES; i++) {
+                upnpService.getConfiguration().getAsyncProtocolExecutor().execute(
+                        new ReceivingSearch(upnpService, createSearchRequest()) {
+                            @Override
+                            protected void execute() throws RouterException {
+                                try {
+                                    super.execute();
+                                } finally {
+                                    done.countDown();
+                                }
+                            }
+                        }
+                );
+            }
+            for (int i = 0; i < ACTIONS; i++) {
+                ActionInvocation<LocalService<SwitchPower>> invocation =
+                        new ActionInvocation<>(service.getAction(i % 2 == 0 ? "SetTarget" : "GetStatus"));
+                if (i % 2 == 0)
+                    invocation.setInput("NewTargetValue", i % 4 == 0);
+                upnpService.getControlPoint().execute(new ActionCallback(invocation) {
+                    @Override
+                    public void success(ActionInvocation<?> invocation) {
+                        done.countDown();
+                    }
+
+                    @Override
+                    public void failure(ActionInvocation<?> invocation, UpnpResponse operation, String defaultMsg) {
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(30, TimeUnit.SECONDS));
+            assertFalse(upnpService.getRouter().getOutgoingDatagramMessages().isEmpty());
+        } finally {
+            upnpService.shutdown();
+        }
+    }
+
+    protected IncomingSearchRequest createSearchRequest() throws Exception {
+        IncomingSearchRequest searchMsg = new IncomingSearchRequest(
+                new IncomingDatagramMessage<>(
+                        new UpnpRequest(UpnpRequest.Method.MSEARCH),
+                        InetAddress.getByName("127.0.0.1"),
+                        Constants.UPNP_MULTICAST_PORT,
+                        InetAddress.getByName("127.0.0.1")
+                )
+        );
+        searchMsg.getHeaders().add(UpnpHeader.Type.MAN, new MANHeader(NotificationSubtype.DISCOVER.getHeaderString()));
+        searchMsg.getHeaders().add(UpnpHeader.Type.MX, new MXHeader(1));
+        searchMsg.getHeaders().add(UpnpHeader.Type.ST, new STAllHeader());
+        searchMsg.getHeaders().add(UpnpHeader.Type.HOST, new HostHeader());
+        return searchMsg;
+    }
+
+    protected static void assertBlockedWithoutMonitor(Thread thread) throws InterruptedException {
+        for (int i = 0; i < 500 && thread.getState() != Thread.State.WAITING && thread.getState() != Thread.State.TIMED_WAITING; i++)
+            Thread.sleep(10);
+        ThreadInfo info = ManagementFactory.getThreadMXBean().getThreadInfo(new long[]{thread.getId()}, true, false)[0];
+        assertNotNull(info);
+        assertTrue(info.getThreadState() == Thread.State.WAITING || info.getThreadState() == Thread.State.TIMED_WAITING,
+                "Not parked: " + info);
+        assertEquals(info.getLockedMonitors().length, 0, "Monitors held by a blocked thread: " + info);
+        for (StackTraceElement element : info.getStackTrace()) {
+            assertFalse(element.getClassName().equals(Object.class.getName()) && element.getMethodName().equals("wait"),
+                    "Blocked in Object.wait(): " + info);
+        }
+    }
+
+    protected static RemoteGENASubscription createSubscription() {
+        return new RemoteGENASubscription(SampleData.createUndescribedRemoteService(), 1800) {
+            @Override
+            public void failed(UpnpResponse responseStatus) {
+            }
+
+            @Override
+            public void ended(CancelReason reason, UpnpResponse responseStatus) {
+            }
+
+            @Override
+            public void eventsMissed(int numberOfMissedEvents) {
+            }
+
+            @Override
+            public void established() {
+            }
+
+            @Override
+            public void eventReceived() {
+            }
+
+            @Override
+            public void invalidMessage(UnsupportedDataException ex) {
+            }
+        };
+    }
+
+    protected static boolean isPinningRecordable() {
+        if (!FlightRecorder.isAvailable())
+            return false;
+        for (EventType type : FlightRecorder.getFlightRecorder().getEventTypes()) {
+            if (type.getName().equals(VIRTUAL_THREAD_PINNED))
+                return true;
+        }
+        return false;
+    }
+}
@@ -23,9 +23,11 @@ import com.distrimind.upnp.model.meta.RemoteDevice;
 import com.distrimind.upnp.model.message.StreamRequestMessage;
 import com.distrimind.upnp.model.message.StreamResponseMessage;
 import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.UpnpResponse;
 import com.distrimind.upnp.model.message.header.ContentTypeHeader;
 import com.distrimind.upnp.model.message.header.HostHeader;
 import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.model.resource.DescriptorCache;
 import com.distrimind.upnp.protocol.sync.ReceivingRetrieval;
 import com.distrimind.upnp.test.data.SampleData;
 import com.distrimind.upnp.test.data.SampleDeviceRoot;
@@ -70,6 +72,70 @@ public class DeviceDescriptorRetrievalTest {
         );
     }
 
+    @Test
+    public void retrieveCachedDescriptor() throws Exception {
+
+        MockUpnpService upnpService = new MockUpnpService();
+
+        LocalDevice<?> localDevice = SampleData.createLocalDevice();
+        upnpService.getRegistry().addDevice(localDevice);
+
+        StreamResponseMessage first = retrieveDescriptor(upnpService, null);
+        StreamResponseMessage second = retrieveDescriptor(upnpService, null);
+
+        // Encoded once, then served from the cache
+        assertSame(second.getBody(), first.getBody());
+        String eTag = first.getHeaders().getFirstHeader(DescriptorCache.HEADER_ETAG);
+        assertNotNull(eTag);
+        assertNotNull(first.getHeaders().getFirstHeader(DescriptorCache.HEADER_LAST_MODIFIED));
+        assertEquals(second.getHeaders().getFirstHeader(DescriptorCache.HEADER_ETAG), eTag);
+
+        // Conditional request of a control point having the descriptor already
+        StreamResponseMessage notModified = retrieveDescriptor(upnpService, eTag);
+        assertEquals(notModified.getOperation().getStatusCode(), UpnpResponse.Status.NOT_MODIFIED.getStatusCode());
+        assertFalse(notModified.hasBody());
+        assertEquals(notModified.getHeaders().getFirstHeader(DescriptorCache.HEADER_ETAG), eTag);
+
+        StreamResponseMessage modified = retrieveDescriptor(upnpService, "\"outdated\"");
+        assertEquals(modified.getOperation().getStatusCode(), UpnpResponse.Status.OK.getStatusCode());
+        assertSame(modified.getBody(), first.getBody());
+
+        // A new resource is created when the device is added again
+        upnpService.getRegistry().removeDevice(localDevice);
+        upnpService.getRegistry().addDevice(localDevice);
+        assertNotSame(retrieveDescriptor(upnpService, null).getBody(), first.getBody());
+    }
+
+    @Test
+    public void evictLeastRecentlyUsedVariant() {
+        DescriptorCache cache = new DescriptorCache(2);
+        DescriptorCache.Descriptor first = cache.put("first", "<first/>");
+        DescriptorCache.Descriptor second = cache.put("second", "<second/>");
+        assertSame(cache.get("first"), first);
+
+        // The second variant was served less recently
+        cache.put("third", "<third/>");
+        assertEquals(cache.size(), 2);
+        assertSame(cache.get("first"), first);
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+
+        // Cached again once evicted
+        assertNotSame(cache.put("second", "<second/>"), second);
+        assertNotNull(cache.get("second"));
+        assertNull(cache.get("first"));
+    }
+
+    protected StreamResponseMessage retrieveDescriptor(MockUpnpService upnpService, String ifNoneMatch) throws Exception {
+        StreamRequestMessage descRetrievalMessage = new StreamRequestMessage(UpnpRequest.Method.GET, SampleDeviceRoot.getDeviceDescriptorURI());
+        descRetrievalMessage.getHeaders().add(UpnpHeader.Type.HOST, new HostHeader("localhost", 1234));
+        if (ifNoneMatch != null)
+            descRetrievalMessage.getHeaders().add(DescriptorCache.HEADER_IF_NONE_MATCH, ifNoneMatch);
+        ReceivingRetrieval prot = new ReceivingRetrieval(upnpService, descRetrievalMessage);
+        prot.run();
+        return prot.getOutputMessage();
+    }
+
     @Test
     public void retrieveNonExistentDescriptor() throws Exception {
 
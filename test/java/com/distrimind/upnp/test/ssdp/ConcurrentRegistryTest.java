@@ -0,0 +1,147 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.ssdp;
+
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.meta.Device;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.types.UDADeviceType;
+import com.distrimind.upnp.registry.ConcurrentRegistryImpl;
+import com.distrimind.upnp.registry.DefaultRegistryListener;
+import com.distrimind.upnp.registry.Registry;
+import com.distrimind.upnp.test.data.SampleData;
+import com.distrimind.upnp.test.data.SampleDeviceEmbeddedOne;
+import com.distrimind.upnp.test.data.SampleDeviceEmbeddedTwo;
+import com.distrimind.upnp.test.data.SampleDeviceRoot;
+import com.distrimind.upnp.test.data.SampleServiceThree;
+import com.distrimind.upnp.test.data.TestSupport;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class ConcurrentRegistryTest {
+
+    @DataProvider(name = "registries")
+    public Object[][] getRegistries() {
+        return new Object[][]{{false}, {true}};
+    }
+
+    @Test(dataProvider = "registries")
+    public void indexedLookups(boolean concurrentRegistry) throws Exception {
+        MockUpnpService upnpService = createUpnpService(concurrentRegistry);
+        Registry registry = upnpService.getRegistry();
+        assertEquals(registry instanceof ConcurrentRegistryImpl, concurrentRegistry);
+
+        RemoteDevice rd = SampleData.createRemoteDevice();
+        registry.addDevice(rd);
+
+        assertSame(registry.getRemoteDevice(SampleDeviceRoot.getRootUDN(), true), rd);
+        assertNull(registry.getRemoteDevice(SampleDeviceEmbeddedTwo.getEmbeddedTwoUDN(), true));
+        RemoteDevice embeddedTwo = registry.getRemoteDevice(SampleDeviceEmbeddedTwo.getEmbeddedTwoUDN(), false);
+        assertNotNull(embeddedTwo);
+        assertSame(embeddedTwo.getRoot(), rd);
+        assertSame(registry.getDevice(SampleDeviceEmbeddedOne.getEmbeddedOneUDN(), false).getRoot(), rd);
+
+        // Compatible versions
+        Collection<Device<?, ?, ?>> devices = registry.getDevices(new UDADeviceType("MY-DEVICE-TYPE-TWO", 1));
+        assertEquals(devices.size(), 1);
+        assertEquals(devices.iterator().next().getIdentity().getUdn(), SampleDeviceEmbeddedOne.getEmbeddedOneUDN());
+        assertTrue(registry.getDevices(new UDADeviceType("MY-DEVICE-TYPE-TWO", 3)).isEmpty());
+        assertTrue(registry.getDevices(new UDADeviceType("MY-UNKNOWN-DEVICE-TYPE", 1)).isEmpty());
+
+        devices = registry.getDevices(SampleServiceThree.getThisServiceType());
+        assertEquals(devices.size(), 1);
+        assertSame(devices.iterator().next(), embeddedTwo);
+
+        assertSame(registry.getRemoteDevice(SampleDeviceRoot.getDeviceDescriptorURL()), rd);
+        assertNotNull(registry.getService(SampleData.getFirstService(embeddedTwo).getReference()));
+
+        assertTrue(registry.removeDevice(rd));
+        assertNull(registry.getRemoteDevice(SampleDeviceEmbeddedTwo.getEmbeddedTwoUDN(), false));
+        assertNull(registry.getRemoteDevice(SampleDeviceRoot.getDeviceDescriptorURL()));
+        assertTrue(registry.getDevices(SampleServiceThree.getThisServiceType()).isEmpty());
+        assertTrue(registry.getDevices(new UDADeviceType("MY-DEVICE-TYPE-TWO", 1)).isEmpty());
+
+        upnpService.shutdown();
+    }
+
+    @Test(dataProvider = "registries")
+    public void concurrentUpdatesAndLookups(boolean concurrentRegistry) throws Exception {
+        MockUpnpService upnpService = createUpnpService(concurrentRegistry);
+        final Registry registry = upnpService.getRegistry();
+        final AtomicInteger updates = new AtomicInteger();
+        registry.addListener(new DefaultRegistryListener() {
+            @Override
+            public void remoteDeviceUpdated(Registry registry, RemoteDevice device) {
+                updates.incrementAndGet();
+            }
+        });
+
+        final RemoteDevice rd = SampleData.createRemoteDevice();
+        registry.addDevice(rd);
+
+        final int threads = 8;
+        final int iterations = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit((Callable<Boolean>) () -> {
+                    for (int j = 0; j < iterations; j++) {
+                        if (!registry.update(SampleData.createRemoteDeviceIdentity(1800)))
+                            return false;
+                        if (registry.getRemoteDevice(SampleDeviceEmbeddedTwo.getEmbeddedTwoUDN(), false) == null)
+                            return false;
+                        if (registry.getDevices(SampleServiceThree.getThisServiceType()).size() != 1)
+                            return false;
+                    }
+                    return true;
+                }));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(updates.get(), threads * iterations);
+        assertEquals(registry.getRemoteDevices().size(), 1);
+        assertSame(registry.getRemoteDevice(SampleDeviceRoot.getRootUDN(), true), rd);
+
+        upnpService.shutdown();
+    }
+
+    protected MockUpnpService createUpnpService(final boolean concurrentRegistry) throws IOException {
+        MockUpnpServiceConfiguration configuration = new MockUpnpServiceConfiguration(false, false);
+        if (!concurrentRegistry)
+            return new MockUpnpService(false, configuration);
+        return TestSupport.createUpnpService(configuration, ConcurrentRegistryImpl::new);
+    }
+}
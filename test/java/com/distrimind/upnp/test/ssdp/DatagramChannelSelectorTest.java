@@ -0,0 +1,150 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.ssdp;
+
+import com.distrimind.upnp.mock.MockRouter;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.message.IncomingDatagramMessage;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.test.data.SampleDeviceRoot;
+import com.distrimind.upnp.transport.impl.DatagramChannelIOImpl;
+import com.distrimind.upnp.transport.impl.DatagramChannelSelector;
+import com.distrimind.upnp.transport.impl.DatagramIOConfigurationImpl;
+import com.distrimind.upnp.transport.impl.DatagramProcessorImpl;
+import com.distrimind.upnp.transport.spi.NetworkAddressFactory;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class DatagramChannelSelectorTest {
+
+    @Test
+    public void receiveOnSeveralChannelsWithOneThread() throws Exception {
+        NetworkAddressFactory networkAddressFactory = new MockUpnpServiceConfiguration().createNetworkAddressFactory();
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        BlockingQueue<IncomingDatagramMessage<?>> received = new LinkedBlockingQueue<>();
+        MockRouter router = new MockRouter(new MockUpnpServiceConfiguration(), null) {
+            @Override
+            public void received(IncomingDatagramMessage<?> msg) {
+                received.add(msg);
+            }
+        };
+
+        DatagramChannelSelector selector = new DatagramChannelSelector();
+        DatagramChannelIOImpl first = new DatagramChannelIOImpl(new DatagramIOConfigurationImpl(), selector);
+        DatagramChannelIOImpl second = new DatagramChannelIOImpl(new DatagramIOConfigurationImpl(), selector);
+        first.init(networkAddressFactory, loopback, router, new DatagramProcessorImpl());
+        second.init(networkAddressFactory, loopback, router, new DatagramProcessorImpl());
+
+        Thread loopThread = new Thread(first);
+        loopThread.start();
+        for (int i = 0; i < 100 && !selector.isRunning(); i++)
+            Thread.sleep(10);
+        assertTrue(selector.isRunning());
+
+        // The loop is already running, this call only registers the channel
+        second.run();
+
+        byte[] data = getSearchResponse().getBytes(StandardCharsets.US_ASCII);
+        try (DatagramSocket socket = new DatagramSocket(0, loopback)) {
+            socket.send(new DatagramPacket(data, data.length, first.getChannel().getLocalAddress()));
+            socket.send(new DatagramPacket(data, data.length, second.getChannel().getLocalAddress()));
+        }
+        IncomingDatagramMessage<?> msg = received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(msg);
+        assertEquals(msg.getHeaders().getFirstHeader(UpnpHeader.Type.LOCATION).getString(), SampleDeviceRoot.getDeviceDescriptorURL().toString());
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        // Sending through the shared channels
+        second.send(new DatagramPacket(data, data.length, first.getChannel().getLocalAddress()));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+
+        first.stop();
+        second.stop();
+        loopThread.join(5000);
+        assertFalse(loopThread.isAlive());
+        assertFalse(selector.isRunning());
+    }
+
+    @Test
+    public void queueDatagramsWhenSendBufferIsFull() throws Exception {
+        NetworkAddressFactory networkAddressFactory = new MockUpnpServiceConfiguration().createNetworkAddressFactory();
+        InetAddress loopback = InetAddress.getByName("127.0.0.1");
+        BlockingQueue<IncomingDatagramMessage<?>> received = new LinkedBlockingQueue<>();
+        MockRouter router = new MockRouter(new MockUpnpServiceConfiguration(), null) {
+            @Override
+            public void received(IncomingDatagramMessage<?> msg) {
+                received.add(msg);
+            }
+        };
+
+        DatagramChannelSelector selector = new DatagramChannelSelector();
+        DatagramChannelIOImpl receiver = new DatagramChannelIOImpl(new DatagramIOConfigurationImpl(), selector);
+        AtomicInteger fullSendBuffers = new AtomicInteger(2);
+        DatagramChannelIOImpl sender = new DatagramChannelIOImpl(new DatagramIOConfigurationImpl(), selector) {
+            @Override
+            protected int send(ByteBuffer data, SocketAddress target) throws IOException {
+                // The first attempts find no room in the send buffer
+                if (fullSendBuffers.getAndDecrement() > 0)
+                    return 0;
+                return super.send(data, target);
+            }
+        };
+        receiver.init(networkAddressFactory, loopback, router, new DatagramProcessorImpl());
+        sender.init(networkAddressFactory, loopback, router, new DatagramProcessorImpl());
+
+        Thread loopThread = new Thread(receiver);
+        loopThread.start();
+        for (int i = 0; i < 100 && !selector.isRunning(); i++)
+            Thread.sleep(10);
+        sender.run();
+
+        byte[] data = getSearchResponse().getBytes(StandardCharsets.US_ASCII);
+        sender.send(new DatagramPacket(data, data.length, receiver.getChannel().getLocalAddress()));
+        sender.send(new DatagramPacket(data, data.length, receiver.getChannel().getLocalAddress()));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        assertNotNull(received.poll(5, TimeUnit.SECONDS));
+        assertTrue(fullSendBuffers.get() < 0);
+
+        receiver.stop();
+        sender.stop();
+        loopThread.join(5000);
+        assertFalse(loopThread.isAlive());
+    }
+
+    protected String getSearchResponse() {
+        return "HTTP/1.1 200 OK\r\n" +
+                "CACHE-CONTROL: max-age=1800\r\n" +
+                "EXT:\r\n" +
+                "LOCATION: " + SampleDeviceRoot.getDeviceDescriptorURL() + "\r\n" +
+                "SERVER: foo/1 UPnP/1.0 bar/2\r\n" +
+                "ST: upnp:rootdevice\r\n" +
+                "USN: " + SampleDeviceRoot.getRootUDN() + "::upnp:rootdevice\r\n\r\n";
+    }
+}
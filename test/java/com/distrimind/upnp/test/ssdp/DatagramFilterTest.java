@@ -0,0 +1,116 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.ssdp;
+
+import com.distrimind.upnp.model.types.DeviceType;
+import com.distrimind.upnp.model.types.ServiceType;
+import com.distrimind.upnp.model.types.UDADeviceType;
+import com.distrimind.upnp.model.types.UDAServiceType;
+import com.distrimind.upnp.transport.impl.HeaderPrefixDatagramFilter;
+import com.distrimind.upnp.transport.spi.DatagramFilter;
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.testng.Assert.*;
+
+public class DatagramFilterTest {
+
+    protected DatagramFilter createFilter() {
+        return HeaderPrefixDatagramFilter.of(
+                new DeviceType[]{new UDADeviceType("InternetGatewayDevice")},
+                new ServiceType[]{new UDAServiceType("WANIPConnection")}
+        );
+    }
+
+    @Test
+    public void acceptInterestingNotifications() {
+        DatagramFilter filter = createFilter();
+        assertTrue(isAccepted(filter, getNotify("urn:schemas-upnp-org:device:InternetGatewayDevice:1", "uuid:1234::urn:schemas-upnp-org:device:InternetGatewayDevice:1")));
+        assertTrue(isAccepted(filter, getNotify("urn:schemas-upnp-org:service:WANIPConnection:2", "uuid:1234::urn:schemas-upnp-org:service:WANIPConnection:2")));
+        assertTrue(isAccepted(filter,
+                "notify * HTTP/1.1\r\n" +
+                "nt:   URN:SCHEMAS-UPNP-ORG:DEVICE:INTERNETGATEWAYDEVICE:1\r\n" +
+                "nts: ssdp:alive\r\n\r\n"
+        ));
+    }
+
+    @Test
+    public void dropUninterestingNotifications() {
+        DatagramFilter filter = createFilter();
+        assertFalse(isAccepted(filter, getNotify("urn:schemas-upnp-org:device:MediaRenderer:1", "uuid:1234::urn:schemas-upnp-org:device:MediaRenderer:1")));
+        assertFalse(isAccepted(filter, getNotify("upnp:rootdevice", "uuid:1234::upnp:rootdevice")));
+        // The type must be at the start of the value
+        assertFalse(isAccepted(filter, getNotify("urn:foo:urn:schemas-upnp-org:service:WANIPConnection:1", "uuid:1234")));
+    }
+
+    @Test
+    public void filterSearchResponses() {
+        DatagramFilter filter = createFilter();
+        assertTrue(isAccepted(filter, getSearchResponse("urn:schemas-upnp-org:service:WANIPConnection:1")));
+        assertFalse(isAccepted(filter, getSearchResponse("urn:schemas-upnp-org:service:ContentDirectory:1")));
+    }
+
+    @Test
+    public void acceptOtherDatagrams() {
+        DatagramFilter filter = createFilter();
+        assertTrue(isAccepted(filter,
+                "M-SEARCH * HTTP/1.1\r\n" +
+                "HOST: 239.255.255.250:1900\r\n" +
+                "MAN: \"ssdp:discover\"\r\n" +
+                "MX: 3\r\n" +
+                "ST: urn:schemas-upnp-org:device:MediaRenderer:1\r\n\r\n"
+        ));
+        assertTrue(isAccepted(filter, "NOTIFY * HTTP/1.1\r\nHOST: 239.255.255.250:1900\r\n\r\n"));
+    }
+
+    @Test
+    public void ignoreBytesOutsideOfSlice() {
+        DatagramFilter filter = createFilter();
+        byte[] interesting = getNotify("urn:schemas-upnp-org:device:InternetGatewayDevice:1", "uuid:1234").getBytes(StandardCharsets.US_ASCII);
+        byte[] uninteresting = getNotify("urn:schemas-upnp-org:device:MediaRenderer:1", "uuid:1234").getBytes(StandardCharsets.US_ASCII);
+        byte[] buffer = new byte[interesting.length + uninteresting.length];
+        System.arraycopy(uninteresting, 0, buffer, 0, uninteresting.length);
+        System.arraycopy(interesting, 0, buffer, uninteresting.length, interesting.length);
+        assertFalse(filter.isAccepted(buffer, 0, uninteresting.length));
+        assertTrue(filter.isAccepted(buffer, uninteresting.length, interesting.length));
+    }
+
+    protected boolean isAccepted(DatagramFilter filter, String datagram) {
+        byte[] data = datagram.getBytes(StandardCharsets.US_ASCII);
+        return filter.isAccepted(data, 0, data.length);
+    }
+
+    protected String getNotify(String nt, String usn) {
+        return "NOTIFY * HTTP/1.1\r\n" +
+                "HOST: 239.255.255.250:1900\r\n" +
+                "CACHE-CONTROL: max-age=1800\r\n" +
+                "LOCATION: http://127.0.0.1:1234/desc.xml\r\n" +
+                "NT: " + nt + "\r\n" +
+                "NTS: ssdp:alive\r\n" +
+                "USN: " + usn + "\r\n\r\n";
+    }
+
+    protected String getSearchResponse(String st) {
+        return "HTTP/1.1 200 OK\r\n" +
+                "CACHE-CONTROL: max-age=1800\r\n" +
+                "EXT:\r\n" +
+                "LOCATION: http://127.0.0.1:1234/desc.xml\r\n" +
+                "ST: " + st + "\r\n" +
+                "USN: uuid:1234::" + st + "\r\n\r\n";
+    }
+}
@@ -20,12 +20,17 @@ import com.distrimind.upnp.mock.MockUpnpService;
 import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
 import com.distrimind.upnp.model.ExpirationDetails;
 import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.model.meta.RemoteDeviceIdentity;
 import com.distrimind.upnp.model.resource.Resource;
+import com.distrimind.upnp.registry.DefaultRegistryListener;
+import com.distrimind.upnp.registry.Registry;
 import com.distrimind.upnp.test.data.SampleData;
 import org.testng.annotations.Test;
 
 import java.net.URI;
+import java.net.URL;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
@@ -126,6 +131,96 @@ public class RegistryExpirationTest {
         upnpService.shutdown();
     }
 
+    @Test
+    public void updatePostponesScheduledExpiration() throws Exception {
+
+        MockUpnpService upnpService = new MockUpnpService(false, new MockUpnpServiceConfiguration(true) {
+
+            @Override
+            public int getRegistryMaintenanceIntervalMillis() {
+                return 100;
+            }
+        }
+        );
+
+        RemoteDevice rd = SampleData.createRemoteDevice(
+                SampleData.createRemoteDeviceIdentity(3)
+        );
+        upnpService.getRegistry().addDevice(rd);
+
+        // The expiration scheduled when the device was added is reached after the update
+        Thread.sleep(2000);
+        assertTrue(upnpService.getRegistry().update(rd.getIdentity()));
+        Thread.sleep(2500);
+        assertEquals(upnpService.getRegistry().getRemoteDevices().size(), 1);
+
+        // The rescheduled expiration
+        Thread.sleep(2500);
+        assertEquals(upnpService.getRegistry().getRemoteDevices().size(), 0);
+
+        upnpService.shutdown();
+    }
+
+    @Test
+    public void updateNotificationsAreDebounced() throws Exception {
+
+        MockUpnpService upnpService = new MockUpnpService(false, new MockUpnpServiceConfiguration(false, false) {
+
+            @Override
+            public int getRemoteDeviceUpdateNotificationIntervalMillis() {
+                return 60000;
+            }
+        }
+        );
+        final AtomicInteger updates = new AtomicInteger();
+        upnpService.getRegistry().addListener(new DefaultRegistryListener() {
+            @Override
+            public void remoteDeviceUpdated(Registry registry, RemoteDevice device) {
+                updates.incrementAndGet();
+            }
+        });
+
+        RemoteDevice rd = SampleData.createRemoteDevice(
+                SampleData.createRemoteDeviceIdentity(1800)
+        );
+        upnpService.getRegistry().addDevice(rd);
+
+        // Only the first refresh within the interval is notified
+        for (int i = 0; i < 10; i++) {
+            assertTrue(upnpService.getRegistry().update(SampleData.createRemoteDeviceIdentity(1800)));
+        }
+        Thread.sleep(500);
+        assertEquals(updates.get(), 1);
+
+        // A new maximum age is notified
+        assertTrue(upnpService.getRegistry().update(SampleData.createRemoteDeviceIdentity(900)));
+        Thread.sleep(500);
+        assertEquals(updates.get(), 2);
+
+        // A new descriptor URL is notified
+        RemoteDeviceIdentity moved = new RemoteDeviceIdentity(
+                rd.getIdentity().getUdn(), 900, new URL("http://127.0.0.1:1234/other/description.xml"),
+                null, rd.getIdentity().getDiscoveredOnLocalAddress()
+        );
+        assertTrue(upnpService.getRegistry().update(moved));
+        Thread.sleep(500);
+        assertEquals(updates.get(), 3);
+
+        // Then only once, the following announcements of the new URL are debounced
+        for (int i = 0; i < 10; i++) {
+            assertTrue(upnpService.getRegistry().update(moved));
+        }
+        Thread.sleep(500);
+        assertEquals(updates.get(), 3);
+
+        // Back to the URL the device has been retrieved from
+        assertTrue(upnpService.getRegistry().update(SampleData.createRemoteDeviceIdentity(900)));
+        Thread.sleep(500);
+        assertEquals(updates.get(), 4);
+
+        upnpService.shutdown();
+    }
+
     @Test
     public void addResourceAndExpire() throws Exception {
 
@@ -0,0 +1,271 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.ssdp;
+
+import com.distrimind.upnp.mock.MockUpnpService;
+import com.distrimind.upnp.mock.MockUpnpServiceConfiguration;
+import com.distrimind.upnp.model.meta.RemoteDevice;
+import com.distrimind.upnp.protocol.ProtocolScheduler;
+import com.distrimind.upnp.registry.BatchingRegistryListener;
+import com.distrimind.upnp.registry.DefaultRegistryListener;
+import com.distrimind.upnp.registry.Registry;
+import com.distrimind.upnp.registry.RegistryEvent;
+import com.distrimind.upnp.registry.RegistryImpl;
+import com.distrimind.upnp.registry.RegistryListenerDispatcher;
+import com.distrimind.upnp.test.data.SampleData;
+import com.distrimind.upnp.test.data.TestSupport;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class RegistryListenerDispatchTest {
+
+    @Test
+    public void slowListenerDoesNotDelayOthers() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        MockUpnpService upnpService = createUpnpService(executor, RegistryListenerDispatcher.DEFAULT_MAX_PENDING_EVENTS);
+        RegistryImpl registry = (RegistryImpl) upnpService.getRegistry();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            RecordingListener slow = new RecordingListener(release, 5);
+            RecordingListener fast = new RecordingListener(null, 5);
+            registry.addListener(slow);
+            registry.addListener(fast);
+
+            produceEvents(registry, 3, slow.started);
+            long producedMillis = System.currentTimeMillis();
+
+            // The fast listener received everything while the slow one is still blocked by the first event
+            assertTrue(fast.done.await(5, TimeUnit.SECONDS));
+            assertEquals(fast.getTypes(), getExpectedTypes(3));
+            assertEquals(registry.getListenerDispatcher().getPendingEventCount(slow), 4);
+            // The lag of the pending events grows with the clock
+            while (System.currentTimeMillis() <= producedMillis)
+                Thread.yield();
+            assertTrue(registry.getListenerDispatcher().getLagMillis(slow) > 0);
+            assertEquals(registry.getListenerDispatcher().getLagMillis(fast), 0);
+
+            release.countDown();
+            assertTrue(slow.done.await(5, TimeUnit.SECONDS));
+            assertEquals(slow.getTypes(), getExpectedTypes(3));
+            assertEquals(registry.getListenerDispatcher().getPendingEventCount(slow), 0);
+            assertEquals(registry.getListenerDispatcher().getDroppedEventCount(slow), 0);
+        } finally {
+            upnpService.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void batchedDelivery() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        MockUpnpService upnpService = createUpnpService(executor, RegistryListenerDispatcher.DEFAULT_MAX_PENDING_EVENTS);
+        RegistryImpl registry = (RegistryImpl) upnpService.getRegistry();
+        try {
+            final CountDownLatch started = new CountDownLatch(1);
+            final CountDownLatch release = new CountDownLatch(1);
+            final CountDownLatch done = new CountDownLatch(5);
+            final List<List<RegistryEvent.Type>> batches = Collections.synchronizedList(new ArrayList<>());
+            registry.addListener(new BatchingListener() {
+                @Override
+                public void registryEventsReceived(Registry registry, List<RegistryEvent> events) {
+                    List<RegistryEvent.Type> types = new ArrayList<>();
+                    for (RegistryEvent event : events) {
+                        types.add(event.getType());
+                    }
+                    batches.add(types);
+                    started.countDown();
+                    TestSupport.await(release);
+                    for (int i = 0; i < events.size(); i++)
+                        done.countDown();
+                }
+            });
+
+            produceEvents(registry, 3, started);
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+
+            // The events queued while the first batch was delivered are received together
+            assertEquals(batches.size(), 2);
+            assertEquals(batches.get(0), Collections.singletonList(RegistryEvent.Type.REMOTE_DEVICE_ADDED));
+            assertEquals(batches.get(1), getExpectedTypes(3).subList(1, 5));
+        } finally {
+            upnpService.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void updatesDroppedWhenListenerLags() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        MockUpnpService upnpService = createUpnpService(executor, 2);
+        RegistryImpl registry = (RegistryImpl) upnpService.getRegistry();
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            RecordingListener listener = new RecordingListener(release, 4);
+            registry.addListener(listener);
+
+            // The addition is in delivery, two updates are queued, the next ones are dropped
+            produceEvents(registry, 5, listener.started);
+            assertEquals(registry.getListenerDispatcher().getDroppedEventCount(listener), 3);
+
+            release.countDown();
+            assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+            assertEquals(listener.getTypes(), getExpectedTypes(2));
+
+            // Removed listeners don't receive events anymore
+            registry.removeListener(listener);
+            RecordingListener other = new RecordingListener(null, 1);
+            registry.addListener(other);
+            registry.addDevice(SampleData.createRemoteDevice());
+            assertTrue(other.done.await(5, TimeUnit.SECONDS));
+            assertEquals(listener.getTypes().size(), 4);
+        } finally {
+            upnpService.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void delayedBatchNotHandedToProtocolExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        // Drops everything, as an overloaded asynchronous protocol executor would
+        ProtocolScheduler scheduler = new ProtocolScheduler("test-scheduler", task -> {});
+        MockUpnpService upnpService = createUpnpService(executor, RegistryListenerDispatcher.DEFAULT_MAX_PENDING_EVENTS, scheduler);
+        RegistryImpl registry = (RegistryImpl) upnpService.getRegistry();
+        try {
+            final CountDownLatch done = new CountDownLatch(2);
+            registry.addListener(new BatchingListener() {
+                @Override
+                public long getBatchDelayMillis() {
+                    return 50;
+                }
+
+                @Override
+                public void registryEventsReceived(Registry registry, List<RegistryEvent> events) {
+                    for (int i = 0; i < events.size(); i++)
+                        done.countDown();
+                }
+            });
+
+            RemoteDevice rd = SampleData.createRemoteDevice();
+            registry.addDevice(rd);
+            assertTrue(registry.removeDevice(rd));
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        } finally {
+            upnpService.shutdown();
+            scheduler.shutdown();
+            executor.shutdownNow();
+        }
+    }
+
+    protected void produceEvents(Registry registry, int updates, CountDownLatch inDelivery) throws Exception {
+        RemoteDevice rd = SampleData.createRemoteDevice();
+        registry.addDevice(rd);
+        // Wait until the first event is in delivery
+        assertTrue(inDelivery.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < updates; i++) {
+            assertTrue(registry.update(SampleData.createRemoteDeviceIdentity()));
+        }
+        assertTrue(registry.removeDevice(rd));
+    }
+
+    protected List<RegistryEvent.Type> getExpectedTypes(int updates) {
+        List<RegistryEvent.Type> types = new ArrayList<>();
+        types.add(RegistryEvent.Type.REMOTE_DEVICE_ADDED);
+        types.addAll(Collections.nCopies(updates, RegistryEvent.Type.REMOTE_DEVICE_UPDATED));
+        types.add(RegistryEvent.Type.REMOTE_DEVICE_REMOVED);
+        return types;
+    }
+
+    protected MockUpnpService createUpnpService(final ExecutorService listenerExecutor, final int maxPendingEvents) throws IOException {
+        return createUpnpService(listenerExecutor, maxPendingEvents, null);
+    }
+
+    protected MockUpnpService createUpnpService(final ExecutorService listenerExecutor, final int maxPendingEvents,
+                                                final ProtocolScheduler scheduler) throws IOException {
+        MockUpnpServiceConfiguration configuration = new MockUpnpServiceConfiguration(false, false) {
+            @Override
+            public ExecutorService getRegistryListenerExecutor() {
+                return listenerExecutor;
+            }
+
+            @Override
+            public ProtocolScheduler getProtocolScheduler() {
+                return scheduler != null ? scheduler : super.getProtocolScheduler();
+            }
+        };
+        return TestSupport.createUpnpService(configuration, service -> new RegistryImpl(service) {
+            @Override
+            protected RegistryListenerDispatcher createListenerDispatcher() {
+                return new RegistryListenerDispatcher(this, maxPendingEvents);
+            }
+        });
+    }
+
+    static class RecordingListener extends DefaultRegistryListener {
+
+        final List<RegistryEvent.Type> types = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release;
+        final CountDownLatch done;
+
+        RecordingListener(CountDownLatch release, int expectedEvents) {
+            this.release = release;
+            this.done = new CountDownLatch(expectedEvents);
+        }
+
+        List<RegistryEvent.Type> getTypes() {
+            return new ArrayList<>(types);
+        }
+
+        void record(RegistryEvent.Type type) {
+            types.add(type);
+            started.countDown();
+            if (release != null)
+                TestSupport.await(release);
+            done.countDown();
+        }
+
+        @Override
+        public void remoteDeviceAdded(Registry registry, RemoteDevice device) {
+            record(RegistryEvent.Type.REMOTE_DEVICE_ADDED);
+        }
+
+        @Override
+        public void remoteDeviceUpdated(Registry registry, RemoteDevice device) {
+            record(RegistryEvent.Type.REMOTE_DEVICE_UPDATED);
+        }
+
+        @Override
+        public void remoteDeviceRemoved(Registry registry, RemoteDevice device) {
+            record(RegistryEvent.Type.REMOTE_DEVICE_REMOVED);
+        }
+    }
+
+    static abstract class BatchingListener extends DefaultRegistryListener implements BatchingRegistryListener {
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.transport;
+
+import com.distrimind.upnp.transport.HostAddressResolver;
+import org.testng.annotations.Test;
+
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.*;
+
+public class HostAddressResolverTest {
+
+    @Test
+    public void parseLiteralAddresses() throws Exception {
+        assertEquals(HostAddressResolver.getLiteralAddress("192.168.1.254"), InetAddress.getByName("192.168.1.254"));
+        assertEquals(HostAddressResolver.getAddress("10.0.0.1"), InetAddress.getByName("10.0.0.1"));
+        InetAddress ipv6 = HostAddressResolver.getLiteralAddress("[fe80::1]");
+        assertTrue(ipv6 instanceof Inet6Address);
+        assertEquals(HostAddressResolver.getLiteralAddress("fe80::1"), ipv6);
+
+        assertNull(HostAddressResolver.getLiteralAddress("192.168.1.256"));
+        assertNull(HostAddressResolver.getLiteralAddress("192.168.1"));
+        assertNull(HostAddressResolver.getLiteralAddress("192.168..1"));
+        assertNull(HostAddressResolver.getLiteralAddress("192.168.1.1."));
+        assertNull(HostAddressResolver.getLiteralAddress("example.com"));
+        assertNull(HostAddressResolver.getLiteralAddress("[not:an:address]"));
+        // Invalid IPv6 literal, no name service lookup
+        assertNull(HostAddressResolver.getAddress("fe80::zz"));
+    }
+
+    @Test
+    public void resolveHostNameInBackground() throws Exception {
+        // The resolution has been started, the calling thread doesn't wait for it
+        InetAddress address = HostAddressResolver.getAddress("localhost");
+        for (int i = 0; i < 500 && address == null; i++) {
+            Thread.sleep(10);
+            address = HostAddressResolver.getAddress("localhost");
+        }
+        assertNotNull(address);
+        assertTrue(address.isLoopbackAddress());
+        assertSame(HostAddressResolver.getAddress("localhost"), address);
+    }
+
+    @Test
+    public void waitForResolution() throws Exception {
+        assertEquals(HostAddressResolver.resolve("10.0.0.1").getNow(null), InetAddress.getByName("10.0.0.1"));
+        CompletableFuture<InetAddress> invalid = HostAddressResolver.resolve("fe80::zz");
+        assertTrue(invalid.isDone());
+        assertNull(invalid.get());
+
+        InetAddress address = HostAddressResolver.resolve("localhost").get(5, TimeUnit.SECONDS);
+        assertNotNull(address);
+        assertTrue(address.isLoopbackAddress());
+        // Cached before the waiting callers continue
+        assertSame(HostAddressResolver.getAddress("localhost"), address);
+        assertSame(HostAddressResolver.resolve("localhost").getNow(null), address);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.transport;
+
+import com.distrimind.upnp.model.message.StreamRequestMessage;
+import com.distrimind.upnp.model.message.StreamResponseMessage;
+import com.distrimind.upnp.model.message.UpnpRequest;
+import com.distrimind.upnp.model.message.header.UpnpHeader;
+import com.distrimind.upnp.transport.impl.PooledStreamClientConfigurationImpl;
+import com.distrimind.upnp.transport.impl.PooledStreamClientImpl;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.testng.Assert.*;
+
+public class PooledStreamClientTest {
+
+    protected ServerSocket serverSocket;
+    protected final AtomicInteger acceptedConnections = new AtomicInteger();
+    protected final AtomicInteger activeRequests = new AtomicInteger();
+    protected final AtomicInteger maxActiveRequests = new AtomicInteger();
+    protected final AtomicInteger droppedRequests = new AtomicInteger();
+    protected final Semaphore closedConnections = new Semaphore(0);
+
+    @BeforeMethod
+    public void startServer() throws IOException {
+        acceptedConnections.set(0);
+        activeRequests.set(0);
+        maxActiveRequests.set(0);
+        droppedRequests.set(0);
+        closedConnections.drainPermits();
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    Socket socket = serverSocket.accept();
+                    acceptedConnections.incrementAndGet();
+                    Thread handler = new Thread(() -> serve(socket));
+                    handler.setDaemon(true);
+                    handler.start();
+                }
+            } catch (IOException ex) {
+                // Server stopped
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    @AfterMethod
+    public void stopServer() throws IOException {
+        serverSocket.close();
+    }
+
+    @Test
+    public void reuseConnection() throws Exception {
+        PooledStreamClientImpl client = createClient(4, 10);
+        try {
+            for (int i = 0; i < 5; i++) {
+                StreamResponseMessage response = client.sendRequest(
+                        new StreamRequestMessage(UpnpRequest.Method.POST, getURI("/control"), "body" + i)
+                );
+                assertNotNull(response);
+                assertEquals(response.getOperation().getStatusCode(), 200);
+                assertEquals(response.getBodyString(), "POST /control body" + i);
+            }
+            StreamResponseMessage response = client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml")));
+            assertNotNull(response);
+            assertEquals(response.getBodyString(), "GET /desc.xml ");
+            assertEquals(response.getHeaders().getFirstHeader(UpnpHeader.Type.SERVER).getString(), "test/1.0 UPnP/1.0 test/1.0");
+
+            // Chunked response
+            response = client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/chunked")));
+            assertNotNull(response);
+            assertEquals(response.getBodyString(), "Hello chunked world");
+
+            assertEquals(acceptedConnections.get(), 1);
+            assertEquals(client.getConnectionCount("127.0.0.1", serverSocket.getLocalPort()), 1);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void reconnectWhenClosedOrIdle() throws Exception {
+        PooledStreamClientImpl client = createClient(4, 1);
+        try {
+            // The server closes the connection after the response
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/close"))));
+            assertEquals(client.getConnectionCount("127.0.0.1", serverSocket.getLocalPort()), 0);
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertEquals(acceptedConnections.get(), 2);
+
+            // The idle connection expires
+            Thread.sleep(1200);
+            client.evictIdleConnections();
+            assertEquals(client.getConnectionCount("127.0.0.1", serverSocket.getLocalPort()), 0);
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertEquals(acceptedConnections.get(), 3);
+
+            // Closed by the server while idle, the request is sent again on a new connection
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/close-after"))));
+            Thread.sleep(100);
+            StreamResponseMessage response = client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml")));
+            assertNotNull(response);
+            assertEquals(response.getBodyString(), "GET /desc.xml ");
+            assertEquals(acceptedConnections.get(), 4);
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void limitConnectionsPerHost() throws Exception {
+        PooledStreamClientImpl client = createClient(2, 10);
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<StreamResponseMessage>> responses = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                responses.add(executor.submit(() -> client.sendRequest(
+                        new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/slow"))
+                )));
+            }
+            for (Future<StreamResponseMessage> response : responses) {
+                assertNotNull(response.get());
+                assertEquals(response.get().getOperation().getStatusCode(), 200);
+            }
+            assertEquals(maxActiveRequests.get(), 2);
+            assertEquals(acceptedConnections.get(), 2);
+        } finally {
+            executor.shutdown();
+            client.stop();
+        }
+    }
+
+    @Test
+    public void resendOnlyIdempotentRequests() throws Exception {
+        PooledStreamClientImpl client = createClient(1, 10);
+        try {
+            // The server might have executed the action before closing the reused connection
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.POST, getURI("/drop"), "body")));
+            assertEquals(droppedRequests.get(), 1);
+
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/drop"))));
+            assertEquals(droppedRequests.get(), 3);
+
+            // A connection closed by the server while idle isn't used for an action
+            closedConnections.drainPermits();
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/close-after"))));
+            assertTrue(closedConnections.tryAcquire(5, TimeUnit.SECONDS));
+            StreamResponseMessage response = client.sendRequest(
+                    new StreamRequestMessage(UpnpRequest.Method.POST, getURI("/control"), "body")
+            );
+            assertNotNull(response);
+            assertEquals(response.getBodyString(), "POST /control body");
+        } finally {
+            client.stop();
+        }
+    }
+
+    @Test
+    public void dropUnusedPools() throws Exception {
+        PooledStreamClientImpl client = createClient(4, 0);
+        try {
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+            assertEquals(client.getPoolCount(), 1);
+
+            // Evicted by the timer, without further request
+            long deadline = System.currentTimeMillis() + 5000;
+            while (client.getPoolCount() > 0 && System.currentTimeMillis() < deadline)
+                Thread.sleep(50);
+            assertEquals(client.getPoolCount(), 0);
+            assertEquals(client.getConnectionCount("127.0.0.1", serverSocket.getLocalPort()), 0);
+
+            assertNotNull(client.sendRequest(new StreamRequestMessage(UpnpRequest.Method.GET, getURI("/desc.xml"))));
+        } finally {
+            client.stop();
+        }
+    }
+
+    protected PooledStreamClientImpl createClient(int maxConnectionsPerHost, int idleTimeoutSeconds) {
+        PooledStreamClientConfigurationImpl configuration = new PooledStreamClientConfigurationImpl(null, 5);
+        configuration.setMaxConnectionsPerHost(maxConnectionsPerHost);
+        configuration.setIdleTimeoutSeconds(idleTimeoutSeconds);
+        return new PooledStreamClientImpl(configuration);
+    }
+
+    protected URI getURI(String path) {
+        return URI.create("http://127.0.0.1:" + serverSocket.getLocalPort() + path);
+    }
+
+    protected void serve(Socket socket) {
+        try (Socket s = socket) {
+            InputStream in = new BufferedInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            String requestLine;
+            while ((requestLine = readLine(in)) != null) {
+                int contentLength = 0;
+                String line;
+                while ((line = readLine(in)) != null && !line.isEmpty()) {
+                    if (line.toLowerCase(Locale.ROOT).startsWith("content-length:"))
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+                byte[] body = in.readNBytes(contentLength);
+                String[] tokens = requestLine.split(" ");
+                String path = tokens[1];
+
+                if (path.equals("/drop")) {
+                    droppedRequests.incrementAndGet();
+                    return;
+                }
+
+                int active = activeRequests.incrementAndGet();
+                maxActiveRequests.accumulateAndGet(active, Math::max);
+                if (path.equals("/slow"))
+                    Thread.sleep(200);
+                activeRequests.decrementAndGet();
+
+                if (path.equals("/chunked")) {
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nTransfer-Encoding: chunked\r\n\r\n"
+                            + "6\r\nHello \r\n7;ext=1\r\nchunked\r\n6\r\n world\r\n0\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                    out.flush();
+                    continue;
+                }
+                byte[] responseBody = (tokens[0] + " " + path + " " + new String(body, StandardCharsets.UTF_8)).getBytes(StandardCharsets.UTF_8);
+                boolean close = path.equals("/close");
+                out.write(("HTTP/1.1 200 OK\r\n"
+                        + "Content-Type: text/plain; charset=\"utf-8\"\r\n"
+                        + "Server: test/1.0 UPnP/1.0 test/1.0\r\n"
+                        + (close ? "Connection: close\r\n" : "")
+                        + "Content-Length: " + responseBody.length + "\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+                out.write(responseBody);
+                out.flush();
+                if (close || path.equals("/close-after"))
+                    return;
+            }
+        } catch (IOException ex) {
+            // Connection closed
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closedConnections.release();
+        }
+    }
+
+    protected static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1 && b != '\n') {
+            if (b != '\r')
+                line.write(b);
+        }
+        if (b == -1 && line.size() == 0)
+            return null;
+        return line.toString(StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ *     This library is free software; you can redistribute it and/or
+ *     modify it under the terms of the GNU Lesser General Public
+ *     License as published by the Free Software Foundation; either
+ *     version 2.1 of the License.
+ *
+ *     This library is distributed in the hope that it will be useful,
+ *     but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *     MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *     Lesser General Public License for more details.
+ *
+ *     You should have received a copy of the GNU Lesser General Public
+ *     License along with this library; if not, write to the Free Software
+ *     Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+package com.distrimind.upnp.test.transport;
+
+import com.distrimind.upnp.transport.impl.SubnetIndex;
+import org.testng.annotations.Test;
+
+import java.net.InetAddress;
+
+import static org.testng.Assert.*;
+
+public class SubnetIndexTest {
+
+    @Test
+    public void findLongestMatchingSubnet() throws Exception {
+        InetAddress wide = InetAddress.getByName("10.0.0.1");
+        InetAddress narrow = InetAddress.getByName("10.1.2.3");
+        InetAddress other = InetAddress.getByName("192.168.1.10");
+        SubnetIndex index = new SubnetIndex.Builder()
+                .add(wide, 8)
+                .add(narrow, 24)
+                .add(other, 23)
+                .build();
+
+        assertEquals(index.getBindAddress(InetAddress.getByName("10.1.2.200")), narrow);
+        assertEquals(index.getBindAddress(InetAddress.getByName("10.1.3.1")), wide);
+        assertEquals(index.getBindAddress(InetAddress.getByName("10.255.255.255")), wide);
+        assertEquals(index.getBindAddress(InetAddress.getByName("192.168.0.1")), other);
+        assertEquals(index.getBindAddress(InetAddress.getByName("192.168.1.255")), other);
+        assertNull(index.getBindAddress(InetAddress.getByName("192.168.2.1")));
+        assertNull(index.getBindAddress(InetAddress.getByName("11.0.0.1")));
+
+        // Cached results
+        assertEquals(index.getBindAddress(InetAddress.getByName("10.1.2.200")), narrow);
+        assertNull(index.getBindAddress(InetAddress.getByName("192.168.2.1")));
+    }
+
+    @Test
+    public void keepFirstBindAddressOfSubnet() throws Exception {
+        InetAddress first = InetAddress.getByName("192.168.1.10");
+        InetAddress second = InetAddress.getByName("192.168.1.20");
+        SubnetIndex index = new SubnetIndex.Builder()
+                .add(first, 24)
+                .add(second, 24)
+                .build();
+        assertEquals(index.getBindAddress(InetAddress.getByName("192.168.1.20")), first);
+    }
+
+    @Test
+    public void separateAddressFamilies() throws Exception {
+        InetAddress ipv4 = InetAddress.getByName("10.0.0.1");
+        InetAddress ipv6 = InetAddress.getByName("fd00:1:2:3::10");
+        SubnetIndex index = new SubnetIndex.Builder()
+                .add(ipv4, 0)
+                .add(ipv6, 64)
+                .build();
+
+        assertEquals(index.getBindAddress(InetAddress.getByName("8.8.8.8")), ipv4);
+        assertEquals(index.getBindAddress(InetAddress.getByName("fd00:1:2:3:ffff::1")), ipv6);
+        assertNull(index.getBindAddress(InetAddress.getByName("fd00:1:2:4::1")));
+    }
+
+    @Test
+    public void interpretReportedPrefixLengths() throws Exception {
+        InetAddress unknown = InetAddress.getByName("10.0.0.1");
+        InetAddress host = InetAddress.getByName("192.168.1.10");
+        InetAddress vista = InetAddress.getByName("172.16.0.1");
+        SubnetIndex index = new SubnetIndex.Builder()
+                .add(unknown, -1)
+                .add(host, 33)
+                .add(vista, 64)
+                .build();
+
+        assertEquals(index.getBindAddress(InetAddress.getByName("192.168.1.10")), host);
+        assertEquals(index.getBindAddress(InetAddress.getByName("192.168.1.11")), unknown);
+        assertEquals(index.getBindAddress(InetAddress.getByName("172.16.0.2")), unknown);
+        assertNull(index.getBindAddress(InetAddress.getByName("::1")));
+    }
+
+    @Test
+    public void lookupManyAddresses() throws Exception {
+        InetAddress bindAddress = InetAddress.getByName("10.0.0.1");
+        SubnetIndex index = new SubnetIndex.Builder().add(bindAddress, 16).build();
+        for (int i = 0; i < 1024; i++) {
+            InetAddress inSubnet = InetAddress.getByAddress(new byte[]{10, 0, (byte) (i >> 8), (byte) i});
+            InetAddress outOfSubnet = InetAddress.getByAddress(new byte[]{10, 1, (byte) (i >> 8), (byte) i});
+            assertEquals(index.getBindAddress(inSubnet), bindAddress);
+            assertNull(index.getBindAddress(outOfSubnet));
+        }
+    }
+}
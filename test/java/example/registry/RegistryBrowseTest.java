@@ -140,6 +140,38 @@ public class RegistryBrowseTest {
         );
     }
 
+    @Test
+    public void findResourceByPathQuery() throws Exception {
+        MockUpnpService upnpService = new MockUpnpService();
+        Registry registry = upnpService.getRegistry();
+
+        Resource<String> exact = new Resource<>(URI.create("/exact/cb"), "exact");
+        Resource<String> prefix = new Resource<>(URI.create("/prefix"), "prefix") {
+            @Override
+            public boolean matches(URI pathQuery) {
+                return pathQuery.getPath().startsWith(getPathQuery().getPath());
+            }
+        };
+        registry.addResource(exact);
+        registry.addResource(prefix);
+
+        assertSame(registry.getResource(URI.create("/exact/cb")), exact);
+        assertSame(registry.getResource(URI.create("/exact/cb/")), exact);
+        assertNull(registry.getResource(URI.create("/exact")));
+        assertSame(registry.getResource(URI.create("/prefix/any/path")), prefix);
+        assertNull(registry.getResource(DeviceDescriptorResource.class, URI.create("/exact/cb")));
+
+        // Replaced by a resource with the same path and query
+        Resource<String> replacement = new Resource<>(URI.create("/prefix"), "replacement");
+        registry.addResource(replacement);
+        assertSame(registry.getResource(URI.create("/prefix")), replacement);
+        assertNull(registry.getResource(URI.create("/prefix/any/path")));
+
+        assertTrue(registry.removeResource(exact));
+        assertNull(registry.getResource(URI.create("/exact/cb")));
+        assertEquals(registry.getResources().size(), 1);
+    }
+
     /* TODO: We for now just ignore duplicate devices because we need to test proxies
     @Test(expectedExceptions = RegistrationException.class)
     public void registerDuplicateDevices() throws Exception {